@@ -0,0 +1,91 @@
+package net.alexheavens.cs4099.concurrent;
+
+import java.util.concurrent.TimeUnit;
+
+import net.alexheavens.cs4099.simulation.BarrierType;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the barriers at which node Threads wait during simulation.
+ * 
+ * Each operation resumes every follower waiting at the barrier, as happens
+ * when every node is made runnable in a timestep, then waits as the leader
+ * until all of them have returned to the barrier.
+ * 
+ * Run with <code>gradle benchmark</code>. Large follower counts need a raised
+ * process limit and a small Thread stack size, e.g. <code>-Xss256k</code>.
+ * 
+ * @author Alexander Heavens <alexander.heavens@gmail.com>
+ * @version 1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xss256k")
+public class BarrierBenchmark {
+
+	@Param( { "10", "100", "1000", "10000", "100000" })
+	public int followers;
+
+	@Param( { "LOCKING", "PARKING" })
+	public BarrierType barrierType;
+
+	private LeaderBarrier barrier;
+	private Thread[] followerThreads;
+	private volatile boolean running;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		barrier = barrierType.createBarrier(Thread.currentThread(), followers);
+		running = true;
+		followerThreads = new Thread[followers];
+		for (int i = 0; i < followers; i++) {
+			followerThreads[i] = new Thread() {
+				public void run() {
+					while (running) {
+						try {
+							barrier.waitThread();
+						} catch (InterruptedException e) {
+							return;
+						}
+					}
+				}
+			};
+			followerThreads[i].setDaemon(true);
+			followerThreads[i].start();
+		}
+		barrier.waitThreadUnInterruptedly();
+	}
+
+	@Benchmark
+	public void resumeAllFollowers() {
+		for (Thread follower : followerThreads)
+			barrier.notifyThread(follower);
+		barrier.waitThreadUnInterruptedly();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws InterruptedException {
+		running = false;
+		for (Thread follower : followerThreads)
+			follower.interrupt();
+		barrier.resumeAll();
+		for (Thread follower : followerThreads)
+			follower.join();
+	}
+}
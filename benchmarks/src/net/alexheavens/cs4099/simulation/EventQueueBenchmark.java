@@ -0,0 +1,110 @@
+package net.alexheavens.cs4099.simulation;
+
+import java.util.Random;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import net.alexheavens.cs4099.network.IMessageImpl;
+import net.alexheavens.cs4099.network.StringMessage;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the priority queue of the EventController with the TimingWheel,
+ * each holding millions of pending MessageArrivalEvents.
+ * 
+ * Each operation removes the earliest event and schedules a new arrival a
+ * random link latency later, keeping the number of pending events constant.
+ * 
+ * @author Alexander Heavens <alexander.heavens@gmail.com>
+ * @version 1.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class EventQueueBenchmark {
+
+	private static final int LATENCIES = 1 << 16;
+
+	@State(Scope.Thread)
+	public static abstract class PendingEvents {
+
+		@Param( { "1000000", "4000000" })
+		public int pending;
+
+		@Param( { "10", "1000", "1000000" })
+		public int maxLatency;
+
+		protected IMessageImpl<?> message;
+		private int[] latencies;
+		private int nextLatency;
+
+		@Setup(Level.Trial)
+		public void setup() {
+			message = new StringMessage("benchmark");
+			message.markAsSent(0);
+
+			final Random random = new Random(4099);
+			latencies = new int[LATENCIES];
+			for (int i = 0; i < LATENCIES; i++)
+				latencies[i] = 1 + random.nextInt(maxLatency);
+
+			for (int i = 0; i < pending; i++)
+				add(new MessageArrivalEvent(message, nextLatency()));
+		}
+
+		protected long nextLatency() {
+			nextLatency = (nextLatency + 1) & (LATENCIES - 1);
+			return latencies[nextLatency];
+		}
+
+		protected abstract void add(ISimulationEvent event);
+	}
+
+	public static class PriorityQueueEvents extends PendingEvents {
+		protected final PriorityBlockingQueue<ISimulationEvent> queue = new PriorityBlockingQueue<ISimulationEvent>();
+
+		protected void add(ISimulationEvent event) {
+			queue.add(event);
+		}
+	}
+
+	public static class TimingWheelEvents extends PendingEvents {
+		protected final TimingWheel wheel = new TimingWheel();
+
+		protected void add(ISimulationEvent event) {
+			wheel.add(event);
+		}
+	}
+
+	@Benchmark
+	public ISimulationEvent priorityQueueHold(PriorityQueueEvents events) {
+		final ISimulationEvent earliest = events.queue.poll();
+		events.queue.add(new MessageArrivalEvent(events.message, earliest
+				.getTimestep()
+				+ events.nextLatency()));
+		return earliest;
+	}
+
+	@Benchmark
+	public ISimulationEvent timingWheelHold(TimingWheelEvents events) {
+		final ISimulationEvent earliest = events.wheel.poll();
+		events.wheel.add(new MessageArrivalEvent(events.message, earliest
+				.getTimestep()
+				+ events.nextLatency()));
+		return earliest;
+	}
+}
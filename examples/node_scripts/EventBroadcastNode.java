@@ -0,0 +1,23 @@
+import net.alexheavens.cs4099.network.IMessage;
+import net.alexheavens.cs4099.network.StringMessage;
+import net.alexheavens.cs4099.usercode.EventNodeScript;
+
+public class EventBroadcastNode extends EventNodeScript {
+
+	public boolean visited = false;
+
+	public void onStart() {
+		if (machineId() == 0) {
+			StringMessage message = new StringMessage("HELLO");
+			sendAll(message);
+			visited = true;
+		}
+	}
+
+	public void onMessage(IMessage<?> message, int fromIndex) {
+		if (!visited) {
+			sendAll(message);
+			visited = true;
+		}
+	}
+}
@@ -0,0 +1,74 @@
+import java.awt.Color;
+import java.util.HashMap;
+import net.alexheavens.cs4099.network.IMessage;
+import net.alexheavens.cs4099.network.NumericMessage;
+import net.alexheavens.cs4099.usercode.EventNodeScript;
+
+public class EventTreeLeaderNode extends EventNodeScript {
+
+	private HashMap<Integer, Integer> neighboursIds;
+	private int leader;
+	private int parent = -1;
+
+	public void setup() {
+		neighboursIds = new HashMap<Integer, Integer>(neighbourCount());
+		leader = machineId();
+	}
+
+	public void onStart() {
+		if (neighbourCount() <= 1)
+			sendCandidate();
+	}
+
+	public void onMessage(IMessage<?> message, int fromIndex) {
+		NumericMessage numericMessage = (NumericMessage) message;
+
+		if (parent == -1) {
+			neighboursIds.put(fromIndex, numericMessage.getData().intValue());
+			if (neighboursIds.size() == neighbourCount() - 1)
+				sendCandidate();
+			return;
+		}
+
+		NumericMessage leaderMessage = numericMessage;
+		if (leaderMessage.getTag().equals("CANDIDATE")) {
+			if (leaderMessage.getData().intValue() > leader)
+				leader = leaderMessage.getData().intValue();
+			leaderMessage = new NumericMessage("LEADER", leader);
+		}
+
+		leader = leaderMessage.getData().intValue();
+		sendAllExcept(parent, leaderMessage);
+
+		if (leader == machineId())
+			setColour(Color.RED);
+		else
+			setColour(Color.GRAY);
+	}
+
+	private void sendCandidate() {
+		for (int i = 0; i < neighbourCount(); i++) {
+			if (neighboursIds.containsKey(i)) {
+				int neighbourLeader = neighboursIds.get(i);
+				if (neighbourLeader > leader) {
+					leader = neighbourLeader;
+				}
+			} else {
+				parent = i;
+			}
+		}
+
+		NumericMessage candidateMessage = new NumericMessage("CANDIDATE",
+				leader);
+		send(parent, candidateMessage);
+
+		setColour(Color.GREEN);
+	}
+
+	private void sendAllExcept(int exception, IMessage<?> message) {
+		for (int i = 0; i < neighbourCount(); i++) {
+			if (i != exception)
+				send(i, message);
+		}
+	}
+}
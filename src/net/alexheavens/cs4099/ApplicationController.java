@@ -9,6 +9,7 @@ import net.alexheavens.cs4099.network.Network;
 import net.alexheavens.cs4099.network.configuration.INetworkConfig;
 import net.alexheavens.cs4099.network.configuration.NetworkConfig;
 import net.alexheavens.cs4099.network.configuration.NetworkConfigException;
+import net.alexheavens.cs4099.simulation.ExecutionMode;
 import net.alexheavens.cs4099.simulation.SimulationResults;
 import net.alexheavens.cs4099.simulation.SimulationRunner;
 import net.alexheavens.cs4099.usercode.ClassLimitation;
@@ -40,7 +41,10 @@ public class ApplicationController {
 	 */
 	public ApplicationController(ApplicationModel model) {
 		this.model = model;
-		dynamicClassLoader = new DynamicClassLoader();
+
+		// Scripts count their back edges, so that they can be stopped once
+		// timed out, and limited by an instruction budget.
+		dynamicClassLoader = new DynamicClassLoader(true);
 	}
 
 	/**
@@ -91,6 +95,76 @@ public class ApplicationController {
 	public void simulate(INetworkConfig net, long length,
 			Class<? extends NodeScript> userCode, ClassLimitation limitation,
 			File output, long timeout, boolean scrambleIds) {
+		simulate(net, length, userCode, limitation, output, timeout,
+				scrambleIds, ExecutionMode.PLATFORM_THREADS);
+	}
+
+	/**
+	 * Simulates user code under specified network conditions for a set number
+	 * of timesteps, executing the nodes in the given mode.
+	 * 
+	 * @param net
+	 *            the network configuration under which to simulate.
+	 * @param length
+	 *            the number of timesteps that the simulation will execute for.
+	 * @param userCode
+	 *            the user-defined Node that is replicated and simulated across
+	 *            the network.
+	 * @param output
+	 *            the destination file that a copy of the simulation results
+	 *            will be written to.
+	 * @param limitation
+	 *            the static limitations placed on the user code.
+	 * @param timeout
+	 *            the time a node can execute for in one timestep before being
+	 *            timed out.
+	 * @param scrambleIds
+	 *            if the machine IDs seen by the user code are to be scrambled.
+	 * @param mode
+	 *            the manner in which node Threads are created.
+	 * @see #simulate(INetworkConfig, long, Class, ClassLimitation, File, long,
+	 *      boolean)
+	 */
+	public void simulate(INetworkConfig net, long length,
+			Class<? extends NodeScript> userCode, ClassLimitation limitation,
+			File output, long timeout, boolean scrambleIds, ExecutionMode mode) {
+		simulate(net, length, userCode, limitation, output, timeout,
+				scrambleIds, mode, 0);
+	}
+
+	/**
+	 * Simulates user code under specified network conditions for a set number
+	 * of timesteps, executing the nodes in the given mode and limiting each
+	 * to an instruction budget.
+	 * 
+	 * @param net
+	 *            the network configuration under which to simulate.
+	 * @param length
+	 *            the number of timesteps that the simulation will execute for.
+	 * @param userCode
+	 *            the user-defined Node that is replicated and simulated across
+	 *            the network.
+	 * @param output
+	 *            the destination file that a copy of the simulation results
+	 *            will be written to.
+	 * @param limitation
+	 *            the static limitations placed on the user code.
+	 * @param timeout
+	 *            the time a node can execute for in one timestep before being
+	 *            timed out.
+	 * @param scrambleIds
+	 *            if the machine IDs seen by the user code are to be scrambled.
+	 * @param mode
+	 *            the manner in which node Threads are created.
+	 * @param instructionBudget
+	 *            the number of back edges and method entries a node can make
+	 *            in one timestep before being timed out, or 0 for no limit.
+	 * @see SimulationRunner#setInstructionBudget(long)
+	 */
+	public void simulate(INetworkConfig net, long length,
+			Class<? extends NodeScript> userCode, ClassLimitation limitation,
+			File output, long timeout, boolean scrambleIds, ExecutionMode mode,
+			long instructionBudget) {
 
 		boolean completed = false;
 		boolean isNewFile = false;
@@ -105,12 +179,16 @@ public class ApplicationController {
 			Network simNetwork = new Network(userCode, net, scrambleIds);
 
 			SimulationRunner simRunner = new SimulationRunner(simNetwork,
-					length, net.generateDeathEvents(), timeout);
+					length, net.generateDeathEvents(), timeout, mode);
+			if (instructionBudget > 0)
+				simRunner.setInstructionBudget(instructionBudget);
 			final SimulationResults results = simRunner.simulate();
 			JSONObject resultsJson = results.getEvents().toJSONObject();
 			resultsJson.element("network", net.toJSONObject());
 			resultsJson.element("length", length);
 			resultsJson.element("nodeSimTimes", results.getJSONTimeMap());
+			resultsJson.element("recording", simRunner.recording()
+					.toJSONObject());
 
 			BufferedWriter writer = new BufferedWriter(new FileWriter(output));
 			resultsJson.write(writer);
@@ -128,6 +206,8 @@ public class ApplicationController {
 			model.setSimulationException(e);
 		} catch (LimitationFailureException e) {
 			model.setSimulationException(e);
+		} catch (UnsupportedOperationException e) {
+			model.setSimulationException(e);
 		} finally {
 			if (!completed && isNewFile)
 				if (!output.delete())
@@ -174,10 +254,78 @@ public class ApplicationController {
 	 * @param scrambleIds
 	 *            if the machine IDs seen by the user code are to be scrambled.
 	 */
-	@SuppressWarnings("unchecked")
 	public void simulate(File netFile, long length, File userCode,
 			ClassLimitation limitation, File output, long timeout,
 			boolean scrambleIds) {
+		simulate(netFile, length, userCode, limitation, output, timeout,
+				scrambleIds, ExecutionMode.PLATFORM_THREADS);
+	}
+
+	/**
+	 * Simulates user code from file under specified network conditions for a
+	 * set number of timesteps, executing the nodes in the given mode.
+	 * 
+	 * @param netFile
+	 *            the network configuration file from which to take the network,
+	 * @param length
+	 *            the number of timesteps that the simulation will execute for.
+	 * @param userCode
+	 *            the user-defined Node that is replicated and simulated across
+	 *            the network.
+	 * @param output
+	 *            the destination file that a copy of the simulation results
+	 *            will be written to.
+	 * @param limitation
+	 *            the static limitations placed on the user code.
+	 * @param timeout
+	 *            the time a node can execute for in one timestep before being
+	 *            timed out.
+	 * @param scrambleIds
+	 *            if the machine IDs seen by the user code are to be scrambled.
+	 * @param mode
+	 *            the manner in which node Threads are created.
+	 * @see #simulate(File, long, File, ClassLimitation, File, long, boolean)
+	 */
+	public void simulate(File netFile, long length, File userCode,
+			ClassLimitation limitation, File output, long timeout,
+			boolean scrambleIds, ExecutionMode mode) {
+		simulate(netFile, length, userCode, limitation, output, timeout,
+				scrambleIds, mode, 0);
+	}
+
+	/**
+	 * Simulates user code from file under specified network conditions for a
+	 * set number of timesteps, executing the nodes in the given mode and
+	 * limiting each to an instruction budget.
+	 * 
+	 * @param netFile
+	 *            the network configuration file from which to take the network,
+	 * @param length
+	 *            the number of timesteps that the simulation will execute for.
+	 * @param userCode
+	 *            the user-defined Node that is replicated and simulated across
+	 *            the network.
+	 * @param output
+	 *            the destination file that a copy of the simulation results
+	 *            will be written to.
+	 * @param limitation
+	 *            the static limitations placed on the user code.
+	 * @param timeout
+	 *            the time a node can execute for in one timestep before being
+	 *            timed out.
+	 * @param scrambleIds
+	 *            if the machine IDs seen by the user code are to be scrambled.
+	 * @param mode
+	 *            the manner in which node Threads are created.
+	 * @param instructionBudget
+	 *            the number of back edges and method entries a node can make
+	 *            in one timestep before being timed out, or 0 for no limit.
+	 * @see SimulationRunner#setInstructionBudget(long)
+	 */
+	@SuppressWarnings("unchecked")
+	public void simulate(File netFile, long length, File userCode,
+			ClassLimitation limitation, File output, long timeout,
+			boolean scrambleIds, ExecutionMode mode, long instructionBudget) {
 		try {
 
 			// Construct the user class.
@@ -188,7 +336,7 @@ public class ApplicationController {
 			NetworkConfig net = new NetworkConfig(netFile);
 
 			simulate(net, length, userNodeClass, limitation, output, timeout,
-					scrambleIds);
+					scrambleIds, mode, instructionBudget);
 		} catch (IOException e) {
 			model.setSimulationException(e);
 		} catch (ClassNotFoundException e) {
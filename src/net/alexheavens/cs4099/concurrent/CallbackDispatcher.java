@@ -0,0 +1,300 @@
+package net.alexheavens.cs4099.concurrent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The CallbackDispatcher executes short tasks on a small, fixed pool of worker
+ * Threads, keeping count of the tasks that have yet to complete.
+ *
+ * A Thread may wait at the dispatcher until all dispatched tasks, including
+ * any dispatched by those tasks, have completed. Dispatched tasks may also be
+ * held back, to be executed together once released.
+ *
+ * A dispatcher may instead give each worker tasks of its own, so that the tasks
+ * of a key, such as the simulation ID of a node, always execute on the worker
+ * the key is assigned to. Tasks for keys that communicate most can then share a
+ * worker, and the data they pass stays in that worker's cache.
+ *
+ * @author Alexander Heavens <alexander.heavens@gmail.com>
+ * @version 1.0
+ */
+public class CallbackDispatcher {
+
+	private final ExecutorService workers;
+	private final ExecutorService[] keyWorkers;
+	private final int[] workerOf;
+	private final AtomicInteger nextWorker;
+	private final ReentrantLock lock;
+	private final Condition idle;
+	private final List<HeldTask> heldTasks;
+	private int pendingTasks;
+	private boolean holding;
+
+	/**
+	 * Creates a dispatcher with a worker for each available processor.
+	 */
+	public CallbackDispatcher() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Creates a dispatcher with a fixed number of workers.
+	 *
+	 * @param nWorkers
+	 *            the number of worker Threads.
+	 * @throws IllegalArgumentException
+	 *             If nWorkers is less than 1.
+	 */
+	public CallbackDispatcher(int nWorkers) {
+		this(createWorkers(nWorkers));
+	}
+
+	/**
+	 * Creates a dispatcher executing tasks on a given ExecutorService, which
+	 * the dispatcher will shut down when it is itself shut down.
+	 *
+	 * @param workerService
+	 *            the service executing dispatched tasks.
+	 * @throws IllegalArgumentException
+	 *             If workerService is null.
+	 */
+	public CallbackDispatcher(ExecutorService workerService) {
+		if (workerService == null)
+			throw new IllegalArgumentException(
+					"Cannot create a CallbackDispatcher with null workers.");
+		lock = new ReentrantLock();
+		idle = lock.newCondition();
+		heldTasks = new ArrayList<HeldTask>();
+		pendingTasks = 0;
+		holding = false;
+		workers = workerService;
+		keyWorkers = null;
+		workerOf = null;
+		nextWorker = null;
+	}
+
+	/**
+	 * Creates a dispatcher with a worker for each worker number assigned to a
+	 * key, which executes every task dispatched for the keys assigned to it.
+	 *
+	 * @param assignment
+	 *            the worker of each key, numbered from 0, or -1 for a key whose
+	 *            tasks may execute on any worker.
+	 * @throws IllegalArgumentException
+	 *             If assignment is null, or assigns a key to a worker below -1.
+	 * @see #dispatch(Runnable, int)
+	 */
+	public CallbackDispatcher(int[] assignment) {
+		if (assignment == null)
+			throw new IllegalArgumentException(
+					"Cannot create a CallbackDispatcher with a null assignment.");
+		int nWorkers = 1;
+		for (int worker : assignment) {
+			if (worker < -1)
+				throw new IllegalArgumentException(
+						"Cannot assign a key to worker " + worker);
+			nWorkers = Math.max(nWorkers, worker + 1);
+		}
+
+		lock = new ReentrantLock();
+		idle = lock.newCondition();
+		heldTasks = new ArrayList<HeldTask>();
+		pendingTasks = 0;
+		holding = false;
+		workers = null;
+		keyWorkers = new ExecutorService[nWorkers];
+		for (int i = 0; i < nWorkers; i++)
+			keyWorkers[i] = createWorkers(1);
+		workerOf = assignment.clone();
+		nextWorker = new AtomicInteger();
+	}
+
+	/**
+	 * Executes a task on a worker Thread at some point in the future.
+	 *
+	 * @param task
+	 *            the task to execute.
+	 */
+	public void dispatch(Runnable task) {
+		dispatch(task, -1);
+	}
+
+	/**
+	 * Executes a task for a key on a worker Thread at some point in the
+	 * future. If the dispatcher was created with an assignment of keys to
+	 * workers, the task executes on the worker of its key, and tasks for the
+	 * same key execute in the order they were dispatched. Otherwise the key is
+	 * ignored.
+	 *
+	 * @param task
+	 *            the task to execute.
+	 * @param key
+	 *            the key of the task, or -1 if it may execute on any worker.
+	 */
+	public void dispatch(final Runnable task, int key) {
+		if (task == null)
+			throw new IllegalArgumentException(
+					"Attempted to dispatch a null task.");
+
+		final Runnable countedTask = new Runnable() {
+			public void run() {
+				try {
+					task.run();
+				} finally {
+					completeTask();
+				}
+			}
+		};
+		final Executor worker = workerFor(key);
+
+		lock.lock();
+		try {
+			pendingTasks++;
+			if (holding) {
+				heldTasks.add(new HeldTask(countedTask, worker));
+				return;
+			}
+		} finally {
+			lock.unlock();
+		}
+
+		worker.execute(countedTask);
+	}
+
+	/**
+	 * Holds back all following dispatched tasks until {@link #releaseTasks()}
+	 * is called. Held tasks still count as incomplete.
+	 */
+	public void holdTasks() {
+		lock.lock();
+		try {
+			holding = true;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Executes every task that was held back, in the order they were
+	 * dispatched, and stops holding back tasks.
+	 */
+	public void releaseTasks() {
+		final List<HeldTask> releasedTasks;
+		lock.lock();
+		try {
+			holding = false;
+			releasedTasks = new ArrayList<HeldTask>(heldTasks);
+			heldTasks.clear();
+		} finally {
+			lock.unlock();
+		}
+
+		for (HeldTask task : releasedTasks)
+			task.worker.execute(task.task);
+	}
+
+	/**
+	 * Blocks the calling Thread until no dispatched task remains incomplete.
+	 *
+	 * If the calling Thread is interrupted while waiting, it will continue to
+	 * wait. When it finally returns from this method its interrupted status
+	 * will still be set.
+	 */
+	public void awaitIdle() {
+		lock.lock();
+		try {
+			while (pendingTasks > 0)
+				idle.awaitUninterruptibly();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return The number of dispatched tasks that have yet to complete.
+	 */
+	public int pendingTaskCount() {
+		lock.lock();
+		try {
+			return pendingTasks;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Stops the workers once all dispatched tasks have completed. No further
+	 * tasks may be dispatched.
+	 */
+	public void shutdown() {
+		if (workers != null) {
+			workers.shutdown();
+		} else {
+			for (ExecutorService worker : keyWorkers)
+				worker.shutdown();
+		}
+	}
+
+	/**
+	 * @return The number of workers given tasks of their own, or 0 if all
+	 *         workers share tasks.
+	 */
+	public int keyWorkerCount() {
+		return (keyWorkers == null) ? 0 : keyWorkers.length;
+	}
+
+	private static ExecutorService createWorkers(int nWorkers) {
+		if (nWorkers < 1)
+			throw new IllegalArgumentException(
+					"Cannot create a CallbackDispatcher with less than 1 worker.");
+		return Executors.newFixedThreadPool(nWorkers, new ThreadFactory() {
+			public Thread newThread(Runnable runnable) {
+				final Thread worker = new Thread(runnable);
+				worker.setDaemon(true);
+				return worker;
+			}
+		});
+	}
+
+	private Executor workerFor(int key) {
+		if (workers != null)
+			return workers;
+		if (key >= 0 && key < workerOf.length && workerOf[key] >= 0)
+			return keyWorkers[workerOf[key]];
+		return keyWorkers[(nextWorker.getAndIncrement() & Integer.MAX_VALUE)
+				% keyWorkers.length];
+	}
+
+	private void completeTask() {
+		lock.lock();
+		try {
+			pendingTasks--;
+			if (pendingTasks == 0)
+				idle.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/*
+	 * A task held back, with the worker that will execute it.
+	 */
+	private static class HeldTask {
+
+		private final Runnable task;
+		private final Executor worker;
+
+		HeldTask(Runnable task, Executor worker) {
+			this.task = task;
+			this.worker = worker;
+		}
+	}
+}
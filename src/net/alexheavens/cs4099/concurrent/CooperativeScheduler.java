@@ -0,0 +1,312 @@
+package net.alexheavens.cs4099.concurrent;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The CooperativeScheduler is a LeaderBarrier that allows only one of its
+ * member Threads to execute at a time, handing control between them in a fixed
+ * order.
+ *
+ * Member Threads are created through the factory returned by
+ * {@link #memberFactory(ThreadFactory)} and are ranked in the order they begin
+ * executing. A member that has been notified does not resume immediately, but
+ * is queued until the member currently executing waits. Control is then handed
+ * directly to the lowest ranked queued member, so that the leader only resumes
+ * once no member is left to execute.
+ *
+ * Members waiting for control park on a Condition of the scheduler's lock.
+ * Each member remains a Thread of its own, so handing control between members
+ * unparks one Thread and parks another. If the underlying factory creates
+ * virtual Threads, these are still run by the runtime's scheduler rather than
+ * on one dedicated carrier Thread.
+ *
+ * As the order in which members execute depends only on their ranks and the
+ * order of notifications, a simulation using the scheduler is deterministic.
+ *
+ * @author Alexander Heavens <alexander.heavens@gmail.com>
+ * @version 1.0
+ */
+public class CooperativeScheduler extends LeaderBarrier {
+
+	private final ReentrantLock lock;
+	private final Condition leaderResumed;
+	private final Map<Thread, Condition> batons;
+	private final Map<Thread, Integer> ranks;
+	private final Set<Thread> waiting;
+	private final TreeMap<Integer, Thread> ready;
+	private volatile boolean leaderBlocking;
+	private Thread running;
+	private int nextRank;
+	private boolean released;
+
+	/**
+	 * Creates a new CooperativeScheduler, blocking the leader Thread while any
+	 * of its members are executing.
+	 *
+	 * @param leader
+	 *            the blocking leader Thread.
+	 * @throws NullPointerException
+	 *             If the leader is null.
+	 */
+	public CooperativeScheduler(Thread leader) {
+		super(leader, 1);
+		lock = new ReentrantLock();
+		leaderResumed = lock.newCondition();
+		batons = new HashMap<Thread, Condition>();
+		ranks = new HashMap<Thread, Integer>();
+		waiting = new HashSet<Thread>();
+		ready = new TreeMap<Integer, Thread>();
+		leaderBlocking = false;
+		running = null;
+		nextRank = 0;
+		released = false;
+	}
+
+	/**
+	 * Wraps a ThreadFactory so that the Threads it creates are members of the
+	 * scheduler, executing only when handed control.
+	 *
+	 * @param factory
+	 *            the factory creating the underlying Threads.
+	 * @return A factory of Threads executing under the scheduler.
+	 */
+	public ThreadFactory memberFactory(final ThreadFactory factory) {
+		if (factory == null)
+			throw new IllegalArgumentException(
+					"Cannot create members from a null ThreadFactory.");
+
+		return new ThreadFactory() {
+			public Thread newThread(final Runnable runnable) {
+				return factory.newThread(new Runnable() {
+					public void run() {
+						admit();
+						try {
+							runnable.run();
+						} finally {
+							leave();
+						}
+					}
+				});
+			}
+		};
+	}
+
+	/**
+	 * Blocks a member Thread until it is notified and handed control, or the
+	 * leader Thread until no member is left to execute.
+	 *
+	 * @throws InterruptedException
+	 *             If a waiting Thread is interrupted whilst within the
+	 *             scheduler.
+	 */
+	@Override
+	public void waitThread() throws InterruptedException {
+		waitThread(false);
+	}
+
+	/**
+	 * Blocks the calling Thread as {@link #waitThread()}, continuing to wait if
+	 * interrupted. When it finally returns from this method its interrupted
+	 * status will still be set.
+	 */
+	@Override
+	public void waitThreadUnInterruptedly() {
+		try {
+			waitThread(true);
+		} catch (InterruptedException e) {
+			throw new IllegalArgumentException();
+		}
+	}
+
+	/**
+	 * Queues a waiting member to be handed control once no lower ranked member
+	 * is queued and the member currently executing, if any, waits.
+	 *
+	 * @param follower
+	 *            the member Thread to resume.
+	 * @throws IllegalArgumentException
+	 *             If the Thread is the leader or is not waiting.
+	 */
+	@Override
+	public void notifyThread(Thread follower) {
+		if (follower == getLeader())
+			throw new IllegalArgumentException(
+					"Cannot resume leader node from follower resume method.");
+
+		lock.lock();
+		try {
+			if (!waiting.remove(follower))
+				throw new IllegalArgumentException(
+						"Cannot resume a Thread that is not waiting.");
+			ready.put(ranks.get(follower), follower);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public boolean containsThread(Thread member) {
+		lock.lock();
+		try {
+			if (member == getLeader())
+				return leaderBlocking;
+			return waiting.contains(member) || ready.containsValue(member);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return The number of members waiting or queued for control.
+	 */
+	@Override
+	public int getNumberOfFollowers() {
+		lock.lock();
+		try {
+			return waiting.size() + ready.size();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Does nothing, as a member leaves the scheduler when its Thread
+	 * terminates.
+	 */
+	@Override
+	public void releaseThread(Thread member) {
+	}
+
+	/**
+	 * Resumes all members, which will no longer wait at the scheduler or wait
+	 * for control.
+	 */
+	@Override
+	public void resumeAll() {
+		lock.lock();
+		try {
+			released = true;
+			waiting.clear();
+			ready.clear();
+			running = null;
+			for (Condition baton : batons.values())
+				baton.signal();
+			leaderResumed.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void waitThread(boolean uninterruptible)
+			throws InterruptedException {
+		final Thread currentThread = Thread.currentThread();
+		lock.lock();
+		try {
+			if (currentThread == getLeader()) {
+				leaderBlocking = true;
+				if (running == null)
+					handOff();
+				while (running != null && !released)
+					leaderResumed.await();
+				leaderBlocking = false;
+			} else {
+				final Condition baton = batons.get(currentThread);
+				if (baton == null)
+					throw new IllegalStateException(
+							"Cannot wait a Thread that is not a member.");
+
+				waiting.add(currentThread);
+				if (running == currentThread)
+					handOff();
+				while (running != currentThread && !released) {
+					if (uninterruptible) {
+						baton.awaitUninterruptibly();
+					} else {
+						try {
+							baton.await();
+						} catch (InterruptedException e) {
+							withdraw(currentThread);
+							throw e;
+						}
+					}
+				}
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/*
+	 * Ranks the calling Thread, then blocks it until handed control.
+	 */
+	private void admit() {
+		final Thread currentThread = Thread.currentThread();
+		lock.lock();
+		try {
+			final int rank = nextRank++;
+			final Condition baton = lock.newCondition();
+			ranks.put(currentThread, rank);
+			batons.put(currentThread, baton);
+
+			if (running == null && ready.isEmpty()) {
+				running = currentThread;
+			} else {
+				ready.put(rank, currentThread);
+				while (running != currentThread && !released)
+					baton.awaitUninterruptibly();
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/*
+	 * Removes the terminating calling Thread from the scheduler.
+	 */
+	private void leave() {
+		final Thread currentThread = Thread.currentThread();
+		lock.lock();
+		try {
+			withdraw(currentThread);
+			ranks.remove(currentThread);
+			batons.remove(currentThread);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/*
+	 * Removes a member from those waiting and queued, passing on control if it
+	 * was executing. Must be called with the lock held.
+	 */
+	private void withdraw(Thread member) {
+		waiting.remove(member);
+		final Integer rank = ranks.get(member);
+		if (rank != null)
+			ready.remove(rank);
+		if (running == member)
+			handOff();
+	}
+
+	/*
+	 * Hands control to the lowest ranked queued member, or to the leader if
+	 * none is queued. Must be called with the lock held.
+	 */
+	private void handOff() {
+		final Map.Entry<Integer, Thread> next = ready.pollFirstEntry();
+		if (next == null) {
+			running = null;
+			leaderResumed.signal();
+		} else {
+			running = next.getValue();
+			batons.get(running).signal();
+		}
+	}
+}
@@ -0,0 +1,120 @@
+package net.alexheavens.cs4099.concurrent;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The DeferringRegistrar wraps a WaitRegistrar so that notifications made to it
+ * can be held back and later released together.
+ *
+ * While notifications are held, Threads notified through the registrar remain
+ * waiting. On release, each is notified at the underlying registrar in the
+ * order it was first notified, so that they resume at once.
+ *
+ * @author Alexander Heavens <alexander.heavens@gmail.com>
+ * @version 1.0
+ */
+public class DeferringRegistrar implements WaitRegistrar {
+
+	private final WaitRegistrar registrar;
+	private final ReentrantLock lock;
+	private final Set<Thread> deferred;
+	private boolean holding;
+
+	/**
+	 * Creates a DeferringRegistrar that notifies Threads at another registrar.
+	 *
+	 * @param registrar
+	 *            the registrar at which Threads wait.
+	 * @throws IllegalArgumentException
+	 *             If the registrar is null.
+	 */
+	public DeferringRegistrar(WaitRegistrar registrar) {
+		if (registrar == null)
+			throw new IllegalArgumentException(
+					"Cannot defer notifications to a null registrar.");
+		this.registrar = registrar;
+		lock = new ReentrantLock();
+		deferred = new LinkedHashSet<Thread>();
+		holding = false;
+	}
+
+	/**
+	 * Holds back all following notifications until
+	 * {@link #releaseNotifications()} is called.
+	 */
+	public void holdNotifications() {
+		lock.lock();
+		try {
+			holding = true;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Notifies every Thread whose notification was held back, and stops
+	 * holding back notifications.
+	 */
+	public void releaseNotifications() {
+		final List<Thread> targets;
+		lock.lock();
+		try {
+			holding = false;
+			targets = new ArrayList<Thread>(deferred);
+			deferred.clear();
+		} finally {
+			lock.unlock();
+		}
+
+		for (Thread target : targets)
+			registrar.notifyThread(target);
+	}
+
+	/**
+	 * @return The number of Threads whose notifications are held back.
+	 */
+	public int deferredCount() {
+		lock.lock();
+		try {
+			return deferred.size();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public void waitThread() throws InterruptedException {
+		registrar.waitThread();
+	}
+
+	/**
+	 * Notifies a Thread at the underlying registrar, or defers doing so if
+	 * notifications are being held back.
+	 *
+	 * @param target
+	 *            the thread to be resumed.
+	 */
+	public void notifyThread(Thread target) {
+		lock.lock();
+		try {
+			if (holding) {
+				deferred.add(target);
+				return;
+			}
+		} finally {
+			lock.unlock();
+		}
+		registrar.notifyThread(target);
+	}
+
+	public boolean containsThread(Thread member) {
+		return registrar.containsThread(member);
+	}
+
+	public void releaseThread(Thread member) {
+		registrar.releaseThread(member);
+	}
+}
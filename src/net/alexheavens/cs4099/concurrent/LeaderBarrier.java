@@ -25,7 +25,7 @@ public class LeaderBarrier implements WaitRegistrar {
 	private final Condition followerThresholdMet;
 	protected final ConcurrentHashMap<Thread, Condition> followers;
 	private final Thread leader;
-	private final int followerThreshold;
+	private volatile int followerThreshold;
 
 	/**
 	 * Creates a new LeaderBarrier blocking for Thread leader until
@@ -59,7 +59,8 @@ public class LeaderBarrier implements WaitRegistrar {
 
 	/**
 	 * @return The number of follower Threads waiting at the barrier required to
-	 *         allow the leader to pass through it.
+	 *         allow the leader to pass through it. This falls by one for each
+	 *         follower released from the barrier.
 	 */
 	public int getFollowerThreshold() {
 		return followerThreshold;
@@ -144,6 +145,40 @@ public class LeaderBarrier implements WaitRegistrar {
 		}
 	}
 
+	/**
+	 * Releases a follower Thread from the barrier for good, lowering the
+	 * follower threshold by one. The leader will pass through the barrier if
+	 * enough of the remaining followers are waiting.
+	 * 
+	 * @param member
+	 *            a follower Thread that is not waiting and will never again
+	 *            wait at the barrier.
+	 * @throws IllegalArgumentException
+	 *             If the Thread is the leader or is waiting at the barrier.
+	 * @throws IllegalStateException
+	 *             If every follower has already been released.
+	 */
+	public void releaseThread(Thread member) {
+		if (member == leader)
+			throw new IllegalArgumentException(
+					"Cannot release the leader Thread from the barrier.");
+
+		lock.lock();
+		try {
+			if (followers.containsKey(member))
+				throw new IllegalArgumentException(
+						"Cannot release a Thread waiting at the barrier.");
+			if (followerThreshold == 0)
+				throw new IllegalStateException(
+						"Released more followers than the barrier expects.");
+			followerThreshold--;
+			if (followers.size() >= followerThreshold)
+				followerThresholdMet.signal();
+		} finally {
+			lock.unlock();
+		}
+	}
+
 	/**
 	 * Resume all follower threads locked in the barrier.
 	 */
@@ -0,0 +1,331 @@
+package net.alexheavens.cs4099.concurrent;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The ParkingBarrier is a LeaderBarrier that blocks and resumes Threads without
+ * locks, parking them with {@link LockSupport}.
+ *
+ * Each follower is given a slot on its first arrival at the barrier, which is
+ * reused for every later wait. The count of waiting followers and the follower
+ * threshold are kept atomically, so the leader only needs to compare the two.
+ * A Thread arriving at the barrier spins briefly before parking, as it is
+ * often resumed soon after; the length of the spin adapts to how often
+ * spinning succeeds.
+ *
+ * A Thread resuming a follower that has not yet arrived records itself in the
+ * follower's slot and parks. The follower unparks it once its slot is marked
+ * as waiting, handing the resume over without a lock.
+ *
+ * @author Alexander Heavens <alexander.heavens@gmail.com>
+ * @version 1.0
+ */
+public class ParkingBarrier extends LeaderBarrier {
+
+	/**
+	 * The most times a Thread will spin before parking.
+	 */
+	public static final int MAX_SPINS = 1 << 12;
+
+	private static final int WAITING = 0;
+	private static final int RESUMED = 1;
+	private static final int CANCELLED = 2;
+
+	private final ConcurrentHashMap<Thread, Slot> slots;
+	private final AtomicInteger waitingFollowers;
+	private final AtomicInteger followerThreshold;
+	private final boolean spinEnabled;
+	private volatile boolean leaderBlocking;
+	private volatile int spinLimit;
+
+	/**
+	 * Creates a new ParkingBarrier blocking for Thread leader until
+	 * followerThreshold number of Threads are also waiting.
+	 *
+	 * @param leader
+	 *            the blocking leader Thread.
+	 * @param followerThreshold
+	 *            the required number of followers waiting before the leader can
+	 *            continue.
+	 *
+	 * @throws NullPointerException
+	 *             If the leader is null.
+	 * @throws IllegalArgumentException
+	 *             If the followerThreshold is less than 1.
+	 */
+	public ParkingBarrier(Thread leader, int followerThreshold) {
+		super(leader, followerThreshold);
+		slots = new ConcurrentHashMap<Thread, Slot>(followerThreshold);
+		waitingFollowers = new AtomicInteger(0);
+		this.followerThreshold = new AtomicInteger(followerThreshold);
+
+		// Spinning only helps when another processor can resume the Thread.
+		spinEnabled = Runtime.getRuntime().availableProcessors() > 1;
+		spinLimit = spinEnabled ? MAX_SPINS / 4 : 0;
+		leaderBlocking = false;
+	}
+
+	@Override
+	public int getFollowerThreshold() {
+		return followerThreshold.get();
+	}
+
+	@Override
+	public int getNumberOfFollowers() {
+		return waitingFollowers.get();
+	}
+
+	@Override
+	public void waitThread() throws InterruptedException {
+		if (Thread.currentThread() == getLeader())
+			waitLeader(false);
+		else
+			waitFollower(false);
+	}
+
+	@Override
+	public void waitThreadUnInterruptedly() {
+		try {
+			if (Thread.currentThread() == getLeader())
+				waitLeader(true);
+			else
+				waitFollower(true);
+		} catch (InterruptedException e) {
+			throw new IllegalArgumentException();
+		}
+	}
+
+	/**
+	 * Resumes the execution of a follower Thread, removing it as a follower and
+	 * decrementing the follower count.
+	 *
+	 * @note The Thread that makes this call will park until the follower
+	 *       Thread is in a waiting state. If the follower is not expected to
+	 *       enter the barrier, this will block indefinitely.
+	 *
+	 * @param follower
+	 *            the Thread to release from the barrier.
+	 */
+	@Override
+	public void notifyThread(Thread follower) {
+
+		if (follower == getLeader())
+			throw new IllegalArgumentException(
+					"Cannot resume leader node from follower resume method.");
+
+		if (follower == Thread.currentThread())
+			throw new IllegalArgumentException(
+					"Cannot call resumeFollower with current Thread.");
+
+		final Thread currentThread = Thread.currentThread();
+		final Slot slot = slotOf(follower);
+		boolean interrupted = false;
+		try {
+			while (!slot.state.compareAndSet(WAITING, RESUMED)) {
+
+				// A follower interrupted out of the barrier has nothing to
+				// resume.
+				if (slot.state.get() == CANCELLED)
+					return;
+
+				// The follower reads the resumer after marking its slot, so
+				// either it unparks this Thread or the state is seen here.
+				slot.resumer = currentThread;
+				if (slot.state.get() == RESUMED)
+					LockSupport.park(this);
+				if (Thread.interrupted())
+					interrupted = true;
+			}
+		} finally {
+			slot.resumer = null;
+			if (interrupted)
+				currentThread.interrupt();
+		}
+
+		waitingFollowers.decrementAndGet();
+		LockSupport.unpark(follower);
+	}
+
+	@Override
+	public boolean containsThread(Thread member) {
+		if (member == getLeader())
+			return leaderBlocking;
+		final Slot slot = slots.get(member);
+		return slot != null && slot.state.get() == WAITING;
+	}
+
+	@Override
+	public void releaseThread(Thread member) {
+		if (member == getLeader())
+			throw new IllegalArgumentException(
+					"Cannot release the leader Thread from the barrier.");
+		if (containsThread(member))
+			throw new IllegalArgumentException(
+					"Cannot release a Thread waiting at the barrier.");
+
+		int threshold;
+		do {
+			threshold = followerThreshold.get();
+			if (threshold == 0)
+				throw new IllegalStateException(
+						"Released more followers than the barrier expects.");
+		} while (!followerThreshold.compareAndSet(threshold, threshold - 1));
+
+		// The member never waits again, so any Thread resuming it gives up.
+		final Slot slot = slots.remove(member);
+		if (slot != null) {
+			slot.state.set(CANCELLED);
+			final Thread resumer = slot.resumer;
+			if (resumer != null)
+				LockSupport.unpark(resumer);
+		}
+
+		if (waitingFollowers.get() >= threshold - 1)
+			LockSupport.unpark(getLeader());
+	}
+
+	/**
+	 * @return The number of Threads holding a slot at the barrier.
+	 */
+	int slotCount() {
+		return slots.size();
+	}
+
+	@Override
+	public void resumeAll() {
+		for (Slot slot : slots.values()) {
+			if (slot.state.compareAndSet(WAITING, RESUMED)) {
+				waitingFollowers.decrementAndGet();
+				LockSupport.unpark(slot.owner);
+			}
+		}
+	}
+
+	private void waitLeader(boolean uninterruptible)
+			throws InterruptedException {
+		if (spin())
+			return;
+
+		boolean interrupted = false;
+		leaderBlocking = true;
+		try {
+			while (waitingFollowers.get() < getFollowerThreshold()) {
+				LockSupport.park(this);
+				if (Thread.interrupted()) {
+					if (!uninterruptible)
+						throw new InterruptedException();
+					interrupted = true;
+				}
+			}
+		} finally {
+			leaderBlocking = false;
+			if (interrupted)
+				Thread.currentThread().interrupt();
+		}
+	}
+
+	private void waitFollower(boolean uninterruptible)
+			throws InterruptedException {
+		final Slot slot = slotOf(Thread.currentThread());
+
+		slot.state.set(WAITING);
+		if (waitingFollowers.incrementAndGet() >= getFollowerThreshold())
+			LockSupport.unpark(getLeader());
+		final Thread resumer = slot.resumer;
+		if (resumer != null)
+			LockSupport.unpark(resumer);
+
+		if (spin(slot))
+			return;
+
+		boolean interrupted = false;
+		try {
+			while (slot.state.get() != RESUMED) {
+				LockSupport.park(this);
+				if (Thread.interrupted()) {
+					if (!uninterruptible
+							&& slot.state.compareAndSet(WAITING, CANCELLED)) {
+						waitingFollowers.decrementAndGet();
+						throw new InterruptedException();
+					}
+					interrupted = true;
+				}
+			}
+		} finally {
+			if (interrupted)
+				Thread.currentThread().interrupt();
+		}
+	}
+
+	/*
+	 * Spins until the leader's follower threshold is met, adapting the spin
+	 * limit. Returns whether the threshold was met while spinning.
+	 */
+	private boolean spin() {
+		final int limit = spinLimit;
+		for (int i = 0; i < limit; i++) {
+			if (waitingFollowers.get() >= getFollowerThreshold()) {
+				adaptSpin(true);
+				return true;
+			}
+		}
+		adaptSpin(false);
+		return false;
+	}
+
+	/*
+	 * Spins until a follower's slot is resumed, adapting the spin limit.
+	 * Returns whether the slot was resumed while spinning.
+	 */
+	private boolean spin(Slot slot) {
+		final int limit = spinLimit;
+		for (int i = 0; i < limit; i++) {
+			if (slot.state.get() == RESUMED) {
+				adaptSpin(true);
+				return true;
+			}
+		}
+		adaptSpin(false);
+		return false;
+	}
+
+	private Slot slotOf(Thread follower) {
+		Slot slot = slots.get(follower);
+		if (slot == null) {
+			final Slot created = new Slot(follower);
+			slot = slots.putIfAbsent(follower, created);
+			if (slot == null)
+				slot = created;
+		}
+		return slot;
+	}
+
+	private void adaptSpin(boolean succeeded) {
+		if (!spinEnabled)
+			return;
+
+		// Racy updates only make the limit less precise.
+		final int limit = spinLimit;
+		if (succeeded && limit < MAX_SPINS)
+			spinLimit = limit << 1;
+		else if (!succeeded && limit > 1)
+			spinLimit = limit >> 1;
+	}
+
+	/*
+	 * The state of a follower at the barrier, and the Thread waiting to resume
+	 * it if the follower has not yet arrived.
+	 */
+	private static class Slot {
+		final Thread owner;
+		final AtomicInteger state;
+		volatile Thread resumer;
+
+		Slot(Thread owner) {
+			this.owner = owner;
+			state = new AtomicInteger(RESUMED);
+		}
+	}
+}
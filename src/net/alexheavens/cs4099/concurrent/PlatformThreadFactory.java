@@ -0,0 +1,41 @@
+package net.alexheavens.cs4099.concurrent;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * The PlatformThreadFactory creates an ordinary Thread for each Runnable, as
+ * the simulator has always done for the execution of a Node.
+ *
+ * @author Alexander Heavens <alexander.heavens@gmail.com>
+ * @version 1.0
+ */
+public class PlatformThreadFactory implements ThreadFactory {
+
+	// Thread.stop throws UnsupportedOperationException from Java 20.
+	private static final int LAST_STOPPING_RUNTIME = 19;
+
+	/**
+	 * @return Whether the platform Threads created can be stopped by
+	 *         <code>Thread.stop</code> on this Java runtime.
+	 */
+	public static boolean canStopThreads() {
+		final String version = System.getProperty("java.specification.version",
+				"1.0");
+		if (version.startsWith("1."))
+			return true;
+		try {
+			return Integer.parseInt(version) <= LAST_STOPPING_RUNTIME;
+		} catch (NumberFormatException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * @return An unstarted platform Thread that will execute
+	 *         <code>runnable</code>.
+	 */
+	public Thread newThread(Runnable runnable) {
+		return new Thread(runnable);
+	}
+
+}
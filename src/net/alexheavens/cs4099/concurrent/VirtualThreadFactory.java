@@ -0,0 +1,129 @@
+package net.alexheavens.cs4099.concurrent;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * The VirtualThreadFactory creates virtual Threads on runtimes that support
+ * them (Java 21 and later), allowing a simulation to hold one Thread per Node
+ * without holding one native Thread per Node.
+ *
+ * As the simulator is built against Java 8, the virtual Thread API is reached
+ * reflectively. On older runtimes, creating a factory will fail with an
+ * <code>UnsupportedOperationException</code>.
+ *
+ * The virtual Threads created share a bounded pool of carrier Threads. The
+ * size of this pool is fixed by the JVM when the first virtual Thread is
+ * created, so a requested parallelism only takes effect if no virtual Thread
+ * has yet been started and the pool has not been configured on the command
+ * line.
+ *
+ * @author Alexander Heavens <alexander.heavens@gmail.com>
+ * @version 1.0
+ */
+public class VirtualThreadFactory implements ThreadFactory {
+
+	/**
+	 * The system property that sets the number of carrier Threads.
+	 */
+	public static final String PARALLELISM_PROPERTY = "jdk.virtualThreadScheduler.parallelism";
+
+	/**
+	 * The system property that bounds the number of carrier Threads.
+	 */
+	public static final String MAX_POOL_SIZE_PROPERTY = "jdk.virtualThreadScheduler.maxPoolSize";
+
+	private static final Method OF_VIRTUAL = findMethod(Thread.class,
+			"ofVirtual");
+	private static final Method IS_VIRTUAL = findMethod(Thread.class,
+			"isVirtual");
+
+	private final ThreadFactory virtualFactory;
+
+	/**
+	 * Creates a factory of virtual Threads sharing a carrier pool sized to the
+	 * number of available processors.
+	 *
+	 * @throws UnsupportedOperationException
+	 *             if the runtime does not support virtual Threads.
+	 */
+	public VirtualThreadFactory() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Creates a factory of virtual Threads sharing a carrier pool of at most
+	 * <code>carrierThreads</code> Threads.
+	 *
+	 * @param carrierThreads
+	 *            the maximum number of carrier Threads.
+	 * @throws IllegalArgumentException
+	 *             if carrierThreads is less than 1.
+	 * @throws UnsupportedOperationException
+	 *             if the runtime does not support virtual Threads.
+	 */
+	public VirtualThreadFactory(int carrierThreads) {
+		if (carrierThreads < 1)
+			throw new IllegalArgumentException(
+					"Cannot create a VirtualThreadFactory with less than 1 carrier Thread.");
+		if (!isSupported())
+			throw new UnsupportedOperationException(
+					"Virtual Threads are not supported by this Java runtime.");
+
+		final String carriers = Integer.toString(carrierThreads);
+		if (System.getProperty(PARALLELISM_PROPERTY) == null)
+			System.setProperty(PARALLELISM_PROPERTY, carriers);
+		if (System.getProperty(MAX_POOL_SIZE_PROPERTY) == null)
+			System.setProperty(MAX_POOL_SIZE_PROPERTY, carriers);
+
+		try {
+			final Object builder = OF_VIRTUAL.invoke(null);
+			final Method factory = findMethod(
+					Class.forName("java.lang.Thread$Builder"), "factory");
+			virtualFactory = (ThreadFactory) factory.invoke(builder);
+		} catch (Exception e) {
+			throw new UnsupportedOperationException(
+					"Unable to create virtual Threads.", e);
+		}
+	}
+
+	/**
+	 * @return An unstarted virtual Thread that will execute
+	 *         <code>runnable</code>.
+	 */
+	public Thread newThread(Runnable runnable) {
+		return virtualFactory.newThread(runnable);
+	}
+
+	/**
+	 * @return Whether the current runtime supports virtual Threads.
+	 */
+	public static boolean isSupported() {
+		return OF_VIRTUAL != null;
+	}
+
+	/**
+	 * @param thread
+	 *            any Thread.
+	 * @return Whether <code>thread</code> is a virtual Thread.
+	 */
+	public static boolean isVirtual(Thread thread) {
+		if (IS_VIRTUAL == null)
+			return false;
+		try {
+			return (Boolean) IS_VIRTUAL.invoke(thread);
+		} catch (Exception e) {
+			return false;
+		}
+	}
+
+	private static Method findMethod(Class<?> type, String name) {
+		try {
+			return type.getMethod(name);
+		} catch (NoSuchMethodException e) {
+			return null;
+		} catch (SecurityException e) {
+			return null;
+		}
+	}
+}
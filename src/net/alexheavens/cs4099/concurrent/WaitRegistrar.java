@@ -34,4 +34,14 @@ public interface WaitRegistrar {
 	 * @return Whether member is waiting in the registrar.
 	 */
 	public boolean containsThread(Thread member);
+
+	/**
+	 * Releases a Thread from the registrar for good, so that it is no longer
+	 * expected to wait there. The Thread must not be waiting at, and must never
+	 * again wait at, the registrar.
+	 * 
+	 * @param member
+	 *            the Thread to release.
+	 */
+	public void releaseThread(Thread member);
 }
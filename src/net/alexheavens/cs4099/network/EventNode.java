@@ -0,0 +1,489 @@
+package net.alexheavens.cs4099.network;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.CountDownLatch;
+
+import net.alexheavens.cs4099.concurrent.CallbackDispatcher;
+import net.alexheavens.cs4099.simulation.ExecutionMode;
+import net.alexheavens.cs4099.simulation.ISimulationEvent;
+import net.alexheavens.cs4099.simulation.InvalidCallException;
+import net.alexheavens.cs4099.simulation.MessageReadEvent;
+import net.alexheavens.cs4099.simulation.NodeFailureEvent;
+import net.alexheavens.cs4099.simulation.NodeHaltedException;
+import net.alexheavens.cs4099.simulation.ProcessKilledError;
+import net.alexheavens.cs4099.simulation.SimulationProfiler;
+import net.alexheavens.cs4099.simulation.SimulationRuntimeException;
+import net.alexheavens.cs4099.simulation.SimulationState;
+import net.alexheavens.cs4099.usercode.EventNodeScript;
+import net.alexheavens.cs4099.usercode.InstructionBudgetExceededError;
+import net.alexheavens.cs4099.usercode.ScriptInstrumenter;
+
+/**
+ * The Node structure that acts on behalf of an event-driven user script.
+ *
+ * An EventNode has no Thread of its own. Its script is invoked on the workers
+ * of a {@link CallbackDispatcher} whenever a message arrives for it or it is
+ * unpaused, so that a Node only holds a Thread while it has work to do.
+ * Invocations are dispatched for the node's simulation ID, so execute on the
+ * worker assigned to the node where the dispatcher assigns keys to workers.
+ *
+ * Between invocations an EventNode waiting for messages is in the
+ * RECEIVE_BLOCK state.
+ *
+ * The workers are shared by every EventNode, so are never stopped or
+ * interrupted on behalf of one. An EventNode timed out is instead cancelled:
+ * invocations dispatched to it are dropped, and one executing is ended at the
+ * next back edge of its script, once the budget entered for it is revoked.
+ *
+ * @author Alexander Heavens <alexander.heavens@gmail.com>
+ * @version 1.0
+ */
+public class EventNode extends Node {
+
+	private final EventNodeScript eventScript;
+	private CallbackDispatcher dispatcher;
+	private boolean dispatched;
+
+	/**
+	 * Creates a new node for a given event-driven script.
+	 *
+	 * @param script
+	 *            the script executed by the node.
+	 */
+	public EventNode(EventNodeScript script) {
+		this(script, false);
+	}
+
+	/**
+	 * Creates a new node for a given event-driven script that may be an
+	 * initiator.
+	 *
+	 * @param script
+	 *            the script executed by the node.
+	 * @param isInitiator
+	 *            whether the node is an initiator.
+	 */
+	public EventNode(EventNodeScript script, boolean isInitiator) {
+		super(script, isInitiator);
+		eventScript = script;
+		dispatched = false;
+	}
+
+	/**
+	 * Begins simulation of the node. The setup method will first be called,
+	 * followed by the script's start callback, on a worker of the dispatcher.
+	 *
+	 * @param callbackDispatcher
+	 *            the dispatcher that will invoke the script.
+	 * @param testProfiler
+	 *            the profiler used to monitor node execution.
+	 */
+	public void simulate(CallbackDispatcher callbackDispatcher,
+			SimulationProfiler testProfiler) {
+		if (callbackDispatcher == null)
+			throw new IllegalArgumentException(
+					"Attempted to simulate node with a null dispatcher.");
+
+		lock.lock();
+		try {
+			if (getSimulationState() != SimulationState.PRE_SIMULATION)
+				throw new IllegalStateException(
+						"Attempted to simulate a node twice.");
+			this.dispatcher = callbackDispatcher;
+			this.profiler = testProfiler;
+			dispatched = true;
+			dispatcher.dispatch(new Runnable() {
+				public void run() {
+					invoke(true, false);
+				}
+			}, getSimulationId());
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Begins simulation of the node by a caller that invokes the script's
+	 * callbacks itself, in an order of its choosing, rather than through a
+	 * dispatcher. The node's events are held in its outbox for the caller to
+	 * collect, and its execution is attributed to the calling Thread.
+	 *
+	 * @param testProfiler
+	 *            the profiler used to monitor node execution.
+	 */
+	public void simulateDirectly(SimulationProfiler testProfiler) {
+		if (testProfiler == null)
+			throw new IllegalArgumentException(
+					"Attempted to simulate node with a null profiler.");
+
+		lock.lock();
+		try {
+			if (getSimulationState() != SimulationState.PRE_SIMULATION)
+				throw new IllegalStateException(
+						"Attempted to simulate a node twice.");
+			this.profiler = testProfiler;
+			nodeThread = Thread.currentThread();
+			holdEvents();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Begins simulation of the node part way through, in the state captured
+	 * from a node of another simulation of the same network between
+	 * timesteps. Neither the setup method nor any callback of the script is
+	 * invoked; the fields of the script are restored separately.
+	 *
+	 * @param callbackDispatcher
+	 *            the dispatcher that will invoke the script.
+	 * @param testProfiler
+	 *            the profiler used to monitor node execution.
+	 * @param state
+	 *            the state in which the node waits between invocations.
+	 * @param inbox
+	 *            the messages that have arrived at the node, but are yet to
+	 *            be delivered to its script.
+	 * @throws IllegalArgumentException
+	 *             if the state is not one in which the node can wait between
+	 *             invocations, or a message was not sent to the node.
+	 * @throws IllegalStateException
+	 *             if the node has already begun simulation.
+	 */
+	public void restore(CallbackDispatcher callbackDispatcher,
+			SimulationProfiler testProfiler, SimulationState state,
+			Collection<IMessageImpl<?>> inbox) {
+		if (callbackDispatcher == null)
+			throw new IllegalArgumentException(
+					"Attempted to simulate node with a null dispatcher.");
+		switch (state) {
+		case RECEIVE_BLOCK:
+		case PAUSED:
+		case NODE_ERROR:
+		case TIMEOUT:
+		case POST_SIMULATION:
+			break;
+		default:
+			throw new IllegalArgumentException(
+					"Attempted to restore node in state " + state + ".");
+		}
+
+		lock.lock();
+		try {
+			if (getSimulationState() != SimulationState.PRE_SIMULATION)
+				throw new IllegalStateException(
+						"Attempted to simulate a node twice.");
+			for (IMessageImpl<?> message : inbox) {
+				if (message.target() != this)
+					throw new IllegalArgumentException(
+							"Attempted to restore message of another node.");
+				enqueueMessage(message);
+			}
+			this.dispatcher = callbackDispatcher;
+			this.profiler = testProfiler;
+			dispatched = false;
+
+			// Set directly, as the node is not executing and so is not
+			// profiled.
+			simState = state;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return The messages that have arrived at the node, but are yet to be
+	 *         delivered to its script, in the order they would be delivered.
+	 */
+	public Collection<IMessageImpl<?>> inbox() {
+		lock.lock();
+		try {
+			final IMessageImpl<?>[] inbox = messages
+					.toArray(new IMessageImpl<?>[messages.size()]);
+			Arrays.sort(inbox);
+			return Arrays.asList(inbox);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public <MsgType extends IMessage<?>> MsgType receive() {
+		throw new InvalidCallException("Receive call in an event-driven node.");
+	}
+
+	@Override
+	public <MsgType extends IMessage<?>> MsgType receive(ILinkEndpoint neighbour) {
+		throw new InvalidCallException("Receive call in an event-driven node.");
+	}
+
+	@Override
+	public void pause(long pauseSteps) {
+
+		if (getSimulationState() == SimulationState.SETUP)
+			throw new InvalidCallException("Called pause from setup.");
+
+		try {
+			enterPause(pauseSteps);
+		} catch (RuntimeException e) {
+			throw new SimulationRuntimeException(e);
+		}
+	}
+
+	@Override
+	public void unpause() {
+		try {
+			lock.lock();
+			try {
+
+				if (getSimulationState() != SimulationState.PAUSED)
+					throw new IllegalStateException("Unpaused non-paused Node.");
+
+				dispatch(true);
+			} finally {
+				lock.unlock();
+			}
+		} catch (RuntimeException e) {
+			throw new SimulationRuntimeException(e);
+		}
+	}
+
+	@Override
+	public void queueMessages(Collection<IMessageImpl<?>> messages) {
+		for (IMessageImpl<?> message : messages) {
+			if (message.getSentAt() == IMessageImpl.TIMESTEP_NOT_SENT)
+				throw new IllegalArgumentException(
+						"Queued unsent message at Node.");
+		}
+
+		try {
+			lock.lock();
+			try {
+				for (IMessageImpl<?> message : messages)
+					enqueueMessage(message);
+				if (getSimulationState() == SimulationState.RECEIVE_BLOCK
+						&& !dispatched)
+					dispatch(false);
+			} finally {
+				lock.unlock();
+			}
+		} catch (RuntimeException e) {
+			throw new SimulationRuntimeException(e);
+		}
+	}
+
+	@Override
+	public void halt(CountDownLatch halted) {
+		if (halted == null)
+			throw new IllegalArgumentException(
+					"Attempted to halt node with a null latch.");
+
+		lock.lock();
+		try {
+			final SimulationState state = getSimulationState();
+			if (state == SimulationState.PRE_SIMULATION)
+				throw new IllegalStateException(
+						"Attempted to halt non-executing node.");
+
+			if (state != SimulationState.POST_SIMULATION) {
+				setSimulationState(SimulationState.HALTED);
+				setSimulationState(SimulationState.POST_SIMULATION);
+			}
+			halted.countDown();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Cancels the node, leaving the worker invoking it, if any, to continue
+	 * with other invocations once the script has been ended by its revoked
+	 * budget.
+	 */
+	@Override
+	public void kill() {
+
+		NodeFailureEvent failureEvent = new NodeFailureEvent(
+				ISimulationEvent.CURRENT_TIMESTEP, this,
+				new IllegalStateException("Node timeout."));
+		lock.lock();
+		try {
+			if (!isLive(getSimulationState()))
+				return;
+			raiseEventImmediately(failureEvent);
+			setSimulationState(SimulationState.TIMEOUT);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * The workers are never stopped on behalf of a node, so a script must be
+	 * instrumented to be ended once its budget is revoked.
+	 */
+	@Override
+	public void checkStoppable(ExecutionMode mode) {
+		if (!ScriptInstrumenter.isInstrumented(getScript().getClass()))
+			throw new UnsupportedOperationException("Cannot time out node "
+					+ getSimulationId() + ": its script is invoked on shared"
+					+ " dispatcher Threads, which are never"
+					+ " stopped, and does not count back edges.");
+	}
+
+	/**
+	 * @return The thread currently, or most recently, invoking the script.
+	 */
+	@Override
+	public Thread getThread() {
+		return nodeThread;
+	}
+
+	private void dispatch(final boolean waking) {
+		dispatched = true;
+		dispatcher.dispatch(new Runnable() {
+			public void run() {
+				invoke(false, waking);
+			}
+		}, getSimulationId());
+	}
+
+	private void invoke(boolean starting, boolean waking) {
+		try {
+			lock.lock();
+			try {
+				nodeThread = Thread.currentThread();
+				final SimulationState state = getSimulationState();
+				if (starting) {
+					setSimulationState(SimulationState.SETUP);
+				} else if (state == SimulationState.RECEIVE_BLOCK
+						|| state == SimulationState.PAUSED) {
+					setSimulationState(SimulationState.SIMULATING);
+				} else {
+
+					// The node has stopped since the invocation was dispatched.
+					dispatched = false;
+					return;
+				}
+			} finally {
+				lock.unlock();
+			}
+
+			profiler.enterProcess(this);
+			if (starting) {
+				setup();
+				setSimulationState(SimulationState.SIMULATING);
+			}
+			profiler.checkProcess(this);
+			if (starting)
+				eventScript.onStart();
+			else if (waking)
+				eventScript.onWake();
+			deliverMessages();
+
+		} catch (SimulationRuntimeException e) {
+
+			// Unpack non-user code RuntimeExceptions, rethrow.
+			endInvocation(SimulationState.NODE_ERROR);
+			throw e.getException();
+		} catch (NodeHaltedException e) {
+
+			// Allow halted nodes to end simulation.
+			endInvocation(SimulationState.POST_SIMULATION);
+		} catch (ProcessKilledError e) {
+
+			// The node has been timed out from the worker invoking it.
+			endInvocation(SimulationState.TIMEOUT);
+		} catch (InstructionBudgetExceededError e) {
+
+			// The script has exhausted its budget, or been cancelled, in
+			// which case its failure has already been raised.
+			NodeFailureEvent failureEvent = new NodeFailureEvent(
+					ISimulationEvent.CURRENT_TIMESTEP, this,
+					new IllegalStateException("Node timeout."));
+
+			lock.lock();
+			try {
+				if (isLive(getSimulationState()))
+					raiseEvent(failureEvent);
+			} finally {
+				lock.unlock();
+			}
+			endInvocation(SimulationState.TIMEOUT);
+		} catch (RuntimeException e) {
+
+			// User created RuntimeExceptions cause a failure event.
+			NodeFailureEvent failureEvent = new NodeFailureEvent(
+					ISimulationEvent.CURRENT_TIMESTEP, this, e);
+
+			lock.lock();
+			try {
+				raiseEvent(failureEvent);
+			} finally {
+				lock.unlock();
+			}
+			endInvocation(SimulationState.NODE_ERROR);
+		}
+	}
+
+	/*
+	 * Delivers queued messages to the script until none remain or the script
+	 * stops simulating, at which point the invocation ends.
+	 */
+	private void deliverMessages() {
+		while (true) {
+			final IMessageImpl<?> message;
+			lock.lock();
+			try {
+				if (getSimulationState() != SimulationState.SIMULATING) {
+					dispatched = false;
+					return;
+				}
+				if (messages.isEmpty()) {
+					setSimulationState(SimulationState.RECEIVE_BLOCK);
+					dispatched = false;
+					return;
+				}
+
+				message = messages.poll();
+				message.link().removeMessage(message);
+				MessageReadEvent readEvent = new MessageReadEvent(message,
+						ISimulationEvent.CURRENT_TIMESTEP);
+				raiseEvent(readEvent);
+			} finally {
+				lock.unlock();
+			}
+
+			eventScript.onMessage(message, message.sourceIndex());
+		}
+	}
+
+	/*
+	 * Whether a node in the given state is yet to end simulation, and so can
+	 * be timed out.
+	 */
+	private static boolean isLive(SimulationState state) {
+		switch (state) {
+		case TIMEOUT:
+		case NODE_ERROR:
+		case HALTED:
+		case POST_SIMULATION:
+			return false;
+		default:
+			return true;
+		}
+	}
+
+	private void endInvocation(SimulationState endState) {
+		lock.lock();
+		try {
+			final SimulationState state = getSimulationState();
+			if (state != SimulationState.TIMEOUT
+					&& state != SimulationState.POST_SIMULATION)
+				setSimulationState(endState);
+			dispatched = false;
+		} finally {
+			lock.unlock();
+		}
+	}
+}
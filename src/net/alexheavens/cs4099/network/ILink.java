@@ -1,7 +1,7 @@
 package net.alexheavens.cs4099.network;
 
 /**
- * The ILink interface defines a bond between two <code>INodes</code> within an
+ * The ILink interface defines a bond between two <code>ILinkEndpoints</code> within an
  * <code>INetwork</code>.
  * 
  * @author Alexander Heavens
@@ -19,19 +19,19 @@ public interface ILink {
 	/**
 	 * @return The Node from which this Link emanates.
 	 */
-	public INode getSource();
+	public ILinkEndpoint getSource();
 
 	/**
 	 * @return The Node to which this Link goes.
 	 */
-	public INode getTarget();
+	public ILinkEndpoint getTarget();
 
 	/**
 	 * @param node
 	 *            the node of which the opposite is needed.
 	 * @return The node other than the specified, either source or target.
 	 */
-	public INode opposite(INode node);
+	public ILinkEndpoint opposite(ILinkEndpoint node);
 
 	/**
 	 * @return The number of timesteps taken for a message to traverse the link.
@@ -43,6 +43,6 @@ public interface ILink {
 	 *            the node from which we want the number of messages.
 	 * @return The number of message queued for node.
 	 */
-	public int messageCount(INode node);
+	public int messageCount(ILinkEndpoint node);
 
 }
@@ -0,0 +1,56 @@
+package net.alexheavens.cs4099.network;
+
+/**
+ * One end of a link: the identity of a node and the links it holds to its
+ * neighbours. The neighbours of a node, and the source and target of a
+ * message, are link endpoints, so a node simulated elsewhere may stand at the
+ * far end of a link without being simulated itself.
+ *
+ * @author Alexander Heavens
+ * @version 1.0
+ */
+public interface ILinkEndpoint {
+
+	/**
+	 * Adds an endpoint to this endpoint's list of neighbours, simultaneously
+	 * adding this to its list and creating the appropriate Link.
+	 * 
+	 * @param n
+	 *            the endpoint to add.
+	 * @param latency
+	 *            the delay a message will have when sent along the link.
+	 * @return The link created as a result of adding <code>n</code> as a
+	 *         neighbour.
+	 */
+	public ILinkImpl addNeighbour(ILinkEndpoint n, long latency);
+
+	/**
+	 * @param n
+	 *            the endpoint to which we want the link.
+	 * @return The link joining this endpoint and n, or null if none exists.
+	 */
+	public ILink neighbourLink(ILinkEndpoint n);
+
+	/**
+	 * @param n
+	 *            an endpoint other than this.
+	 * @return Whether n is a neighbour.
+	 */
+	public boolean isNeighbour(ILinkEndpoint n);
+
+	/**
+	 * @return The unique ID given to the machine.
+	 */
+	public int getSimulationId();
+
+	/**
+	 * @return The integer identifier attached to the machine.
+	 */
+	public int getMachineId();
+
+	/**
+	 * @return If the machine is the initiator of the sim.
+	 */
+	public boolean isInitiator();
+
+}
@@ -27,7 +27,7 @@ public interface IMessageImpl<DataType> extends IMessage<DataType>,
 	 * @param target
 	 *            the node to which the message is addressed.
 	 */
-	public void attachSendData(INodeImpl source, INodeImpl target);
+	public void attachSendData(ILinkEndpoint source, ILinkEndpoint target);
 
 	/**
 	 * @return If in transit, the time-step which transit began, else -1.
@@ -37,12 +37,12 @@ public interface IMessageImpl<DataType> extends IMessage<DataType>,
 	/**
 	 * @return The node from which the message is addressed.
 	 */
-	public INode source();
+	public ILinkEndpoint source();
 
 	/**
 	 * @return The node to which the message is addressed.
 	 */
-	public INode target();
+	public ILinkEndpoint target();
 
 	/**
 	 * @return a clean copy of the message.
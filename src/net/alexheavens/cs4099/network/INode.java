@@ -42,7 +42,7 @@ public interface INode {
 	 * @param message
 	 *            the message that is sent to the neighbour.
 	 */
-	public void send(INode recipient, IMessage<?> message);
+	public void send(ILinkEndpoint recipient, IMessage<?> message);
 
 	/**
 	 * Send a message to all neighbouring nodes.
@@ -72,12 +72,12 @@ public interface INode {
 	 *            The neighbouring node from which a message is expected.
 	 * @return A message from the specified neighbour.
 	 */
-	public <MsgType extends IMessage<?>> MsgType receive(INode neighbour);
+	public <MsgType extends IMessage<?>> MsgType receive(ILinkEndpoint neighbour);
 
 	/**
 	 * @return A list of adjacent neighbours.
 	 */
-	public Iterator<INode> neighbours();
+	public Iterator<ILinkEndpoint> neighbours();
 
 	/**
 	 * @return The number of neighbours connected to an <code>INode</code>.
@@ -94,14 +94,14 @@ public interface INode {
 	 *            the node to which we want the link.
 	 * @return The link joining this node and n, or null if none exists.
 	 */
-	public ILink neighbourLink(INode n);
+	public ILink neighbourLink(ILinkEndpoint n);
 
 	/**
 	 * @param n
 	 *            a node other than this.
 	 * @return Whether n is a neighbour.
 	 */
-	public boolean isNeighbour(INode n);
+	public boolean isNeighbour(ILinkEndpoint n);
 
 	/**
 	 * All neighbours to an INode must be addressable given a unique, but
@@ -111,16 +111,16 @@ public interface INode {
 	 * @param index
 	 *            the index of a neighbour, between 0 and
 	 *            <code>neighbourCount()</code> - 1.
-	 * @return The INode neighbour with the index.
+	 * @return The neighbour with the index.
 	 */
-	public INode getNeighbour(int index);
+	public ILinkEndpoint getNeighbour(int index);
 
 	/**
 	 * @param sourceNode
 	 *            A neighbouring node.
 	 * @return The index addressing that node.
 	 */
-	public int getIndex(INode sourceNode);
+	public int getIndex(ILinkEndpoint sourceNode);
 
 	/**
 	 * Change the colour of the node at this point in simulation.
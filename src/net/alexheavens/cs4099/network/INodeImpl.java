@@ -1,9 +1,10 @@
 package net.alexheavens.cs4099.network;
 
-import net.alexheavens.cs4099.concurrent.WaitRegistrar;
+import java.util.Collection;
+import java.util.concurrent.CountDownLatch;
+
 import net.alexheavens.cs4099.simulation.ISimulationEvent;
 import net.alexheavens.cs4099.simulation.ProfiledProcess;
-import net.alexheavens.cs4099.simulation.SimulationProfiler;
 import net.alexheavens.cs4099.simulation.SimulationState;
 import net.alexheavens.cs4099.usercode.NodeScript;
 
@@ -14,7 +15,7 @@ import net.alexheavens.cs4099.usercode.NodeScript;
  * @author Alexander Heavens
  * @version 1.0
  */
-public interface INodeImpl extends INode, ProfiledProcess {
+public interface INodeImpl extends INode, ILinkEndpoint, ProfiledProcess {
 
 	/**
 	 * The default machineId for an uninitialised node.
@@ -49,19 +50,6 @@ public interface INodeImpl extends INode, ProfiledProcess {
 	 */
 	public static final String ID_SET_TWICE_MSG = "Attempted to set machine Id twice.";
 
-	/**
-	 * Adds a node to this node's list of neighbours, simultaneously it's own
-	 * list and creating the appropriate Link.
-	 * 
-	 * @param n
-	 *            the node to add.
-	 * @param latency
-	 *            the delay a message will have when sent along the link.
-	 * @return The link created as a result of adding <code>n</code> as a
-	 *         neighbour.
-	 */
-	public ILinkImpl addNeighbour(INodeImpl n, long latency);
-
 	/**
 	 * @param id
 	 *            the integer identifier attached to this node.
@@ -71,25 +59,13 @@ public interface INodeImpl extends INode, ProfiledProcess {
 	 */
 	public void setSimulationId(int id, int scrambleCode);
 
-	/**
-	 * Begins simulation of the node. The setup method will first be called,
-	 * followed by execute.
-	 * 
-	 * @param registrar
-	 *            the location that the simulation threads will wait when in a
-	 *            blocking state.
-	 * @param profiler
-	 *            the profiler used to monitor node execution.
-	 */
-	public void simulate(WaitRegistrar registrar, SimulationProfiler profiler);
-
 	/**
 	 * @return The current state of the node's simulation.
 	 */
 	public SimulationState getSimulationState();
 
 	/**
-	 * Causes an event to be passed to any observers.
+	 * Causes an event to be passed to any listeners.
 	 * 
 	 * @param event
 	 *            an event that has occurred within the node.
@@ -111,11 +87,28 @@ public interface INodeImpl extends INode, ProfiledProcess {
 	 */
 	public void queueMessage(IMessageImpl<?> message);
 
+	/**
+	 * Queues several messages for this node at once, waking it at most once.
+	 * 
+	 * @param messages
+	 *            the messages we wish to queue.
+	 */
+	public void queueMessages(Collection<IMessageImpl<?>> messages);
+
 	/**
 	 * Causes the execution of the node to halt on the next blocking operation.
 	 */
 	public void halt();
 
+	/**
+	 * Causes the execution of the node to halt on the next blocking operation,
+	 * without waiting for it to do so. Many nodes may then be halted at once.
+	 * 
+	 * @param halted
+	 *            a latch counted down once the node has left simulation.
+	 */
+	public void halt(CountDownLatch halted);
+
 	/**
 	 * @return the thread executing the user script.
 	 */
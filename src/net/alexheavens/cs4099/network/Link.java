@@ -12,8 +12,8 @@ import java.util.concurrent.PriorityBlockingQueue;
  */
 public class Link implements ILinkImpl {
 
-	private final INode source;
-	private final INode target;
+	private final ILinkEndpoint source;
+	private final ILinkEndpoint target;
 	private final long latency;
 	private final PriorityBlockingQueue<IMessageImpl<?>> sourceMessages;
 	private final PriorityBlockingQueue<IMessageImpl<?>> targetMessages;
@@ -29,7 +29,7 @@ public class Link implements ILinkImpl {
 	 * @param l
 	 *            the latency of the link.
 	 */
-	public Link(INode s, INode t, long l) {
+	public Link(ILinkEndpoint s, ILinkEndpoint t, long l) {
 		if (s == null)
 			throw new IllegalArgumentException("Null link source.");
 		if (t == null)
@@ -53,19 +53,19 @@ public class Link implements ILinkImpl {
 	 * @param t
 	 *            the target node.
 	 */
-	public Link(INode s, INode t) {
+	public Link(ILinkEndpoint s, ILinkEndpoint t) {
 		this(s, t, MIN_LATENCY);
 	}
 
-	public INode getSource() {
+	public ILinkEndpoint getSource() {
 		return source;
 	}
 
-	public INode getTarget() {
+	public ILinkEndpoint getTarget() {
 		return target;
 	}
 
-	public INode opposite(INode n) {
+	public ILinkEndpoint opposite(ILinkEndpoint n) {
 		if (n == source) {
 			return target;
 		} else if (n == target) {
@@ -81,8 +81,8 @@ public class Link implements ILinkImpl {
 	}
 
 	public void queueMessage(IMessageImpl<?> message) {
-		INodeImpl messageTarget = (INodeImpl) message.target();
-		INode messageSource = message.source();
+		ILinkEndpoint messageTarget = message.target();
+		ILinkEndpoint messageSource = message.source();
 		if (messageSource != target && messageSource != source)
 			throw new IllegalArgumentException(
 					"Attempted to queue message from non-link node.");
@@ -106,7 +106,7 @@ public class Link implements ILinkImpl {
 					"Attempted to pop message for non-link node.");
 	}
 
-	public int messageCount(INode targetNode) {
+	public int messageCount(ILinkEndpoint targetNode) {
 		if (targetNode != source && targetNode != target)
 			throw new IllegalArgumentException(
 					"Message count for non-link node.");
@@ -119,7 +119,7 @@ public class Link implements ILinkImpl {
 	}
 
 	public void removeMessage(IMessageImpl<?> returnMessage) {
-		final INode recipient = returnMessage.target();
+		final ILinkEndpoint recipient = returnMessage.target();
 		if (recipient == source) {
 			sourceMessages.remove(returnMessage);
 		} else if (recipient == target) {
@@ -21,12 +21,13 @@ public abstract class MessageImpl<DataType> implements IMessageImpl<DataType>,
 
 	private DataType messageData = null;
 	private String messageTag = null;
-	protected INode sourceNode = null;
-	protected INode targetNode = null;
+	protected ILinkEndpoint sourceNode = null;
+	protected ILinkEndpoint targetNode = null;
 	protected ILinkImpl link = null;
 	protected long timestepSent = IMessageImpl.TIMESTEP_NOT_SENT;
 	protected long timestepArrived = IMessageImpl.TIMESTEP_NOT_SENT;
 	protected boolean marked = false;
+	private long queueOrder = 0;
 
 	private int sourceId = -1;
 	private int targetId = -1;
@@ -67,7 +68,7 @@ public abstract class MessageImpl<DataType> implements IMessageImpl<DataType>,
 	 * @param target
 	 *            the target node.
 	 */
-	public void attachSendData(INodeImpl source, INodeImpl target) {
+	public void attachSendData(ILinkEndpoint source, ILinkEndpoint target) {
 		if (marked)
 			throw new IllegalStateException(
 					"Marked message with send data twice.");
@@ -99,7 +100,7 @@ public abstract class MessageImpl<DataType> implements IMessageImpl<DataType>,
 		return messageTag;
 	}
 
-	public INode source() {
+	public ILinkEndpoint source() {
 		return sourceNode;
 	}
 
@@ -107,7 +108,7 @@ public abstract class MessageImpl<DataType> implements IMessageImpl<DataType>,
 		return sourceId;
 	}
 
-	public INode target() {
+	public ILinkEndpoint target() {
 		return targetNode;
 	}
 
@@ -127,6 +128,7 @@ public abstract class MessageImpl<DataType> implements IMessageImpl<DataType>,
 			message.timestepArrived = TIMESTEP_NOT_SENT;
 			message.timestepSent = TIMESTEP_NOT_SENT;
 			message.marked = false;
+			message.queueOrder = 0;
 			return message;
 		} catch (CloneNotSupportedException e) {
 			throw new RuntimeException(e);
@@ -149,6 +151,18 @@ public abstract class MessageImpl<DataType> implements IMessageImpl<DataType>,
 		timestepSent = timestep;
 	}
 
+	/**
+	 * Notes the position of the message among those queued at its target, by
+	 * which messages sent at the same timestep are ordered, first queued
+	 * first.
+	 * 
+	 * @param order
+	 *            the number of messages queued at the target before this one.
+	 */
+	void markAsQueued(long order) {
+		queueOrder = order;
+	}
+
 	public final int compareTo(Object obj) {
 		IMessageImpl<?> objMessage = (IMessageImpl<?>) obj;
 		long objTimestep = objMessage.getSentAt();
@@ -156,12 +170,15 @@ public abstract class MessageImpl<DataType> implements IMessageImpl<DataType>,
 			return -1;
 		else if (objTimestep < timestepSent)
 			return 1;
+		else if (objMessage instanceof MessageImpl<?>)
+			return Long.compare(queueOrder,
+					((MessageImpl<?>) objMessage).queueOrder);
 		else
 			return 0;
 	}
 
 	public int sourceIndex() {
-		return targetNode.getIndex(sourceNode);
+		return ((INode) targetNode).getIndex(sourceNode);
 	}
 
 	public long getArrivedAt() {
@@ -6,6 +6,7 @@ import java.util.Random;
 import net.alexheavens.cs4099.network.configuration.ILinkConfig;
 import net.alexheavens.cs4099.network.configuration.INetworkConfig;
 import net.alexheavens.cs4099.simulation.ImportedNode;
+import net.alexheavens.cs4099.usercode.EventNodeScript;
 import net.alexheavens.cs4099.usercode.NodeScript;
 
 /**
@@ -78,23 +79,107 @@ public class Network implements INetwork {
 	public Network(Class<? extends NodeScript> nodeClass,
 			INetworkConfig config, boolean scrambleIds)
 			throws InstantiationException, IllegalAccessException {
-		this(nodeClass);
+		this(nodeClass, config, scrambleIds, new Random());
+	}
+
+	/**
+	 * Creates a network for a particular configuration, choosing the initiator
+	 * and any scrambling of machine IDs from a seed. Networks created with the
+	 * same seed are identical.
+	 * 
+	 * @param config
+	 *            the configuration of the network.
+	 * @param nodeClass
+	 *            the class of script that the nodes within the network will
+	 *            execute.
+	 * @param scrambleIds
+	 *            if the machine IDs of the nodes are to be scambled.
+	 * @param seed
+	 *            the seed of the random choices made in creating the network.
+	 * @throws InstantiationException
+	 *             if the node class cannot be instantiated.
+	 * @throws IllegalAccessException
+	 *             if a field cannot be accessed in the script class.
+	 */
+	public Network(Class<? extends NodeScript> nodeClass,
+			INetworkConfig config, boolean scrambleIds, long seed)
+			throws InstantiationException, IllegalAccessException {
+		this(nodeClass, config, scrambleIds, new Random(seed));
+	}
+
+	private Network(Class<? extends NodeScript> nodeClass,
+			INetworkConfig config, boolean scrambleIds, Random randomGenerator)
+			throws InstantiationException, IllegalAccessException {
 
 		// Create a single, random initiator node.
-		final Random randomGenerator = new Random();
-		final int initiator = randomGenerator.nextInt(config.nodeCount());
-		final int scrambleCode = (scrambleIds) ? randomGenerator.nextInt(config
-				.nodeCount()) : 0;
+		this(nodeClass, config, randomGenerator.nextInt(config.nodeCount()),
+				(scrambleIds) ? randomGenerator.nextInt(config.nodeCount()) : 0);
+	}
 
-		for (int i = 0; i < config.nodeCount(); i++) {
-			Node newNode = new Node((NodeScript) userNodeClass.create(),
-					i == initiator);
-			addNode(newNode, scrambleCode);
-		}
+	/**
+	 * Creates a network for a particular configuration with a given initiator
+	 * and scrambling of machine IDs, such as those of another network.
+	 * 
+	 * @param nodeClass
+	 *            the class of script that the nodes within the network will
+	 *            execute.
+	 * @param config
+	 *            the configuration of the network.
+	 * @param initiator
+	 *            the simulation ID of the initiator node.
+	 * @param scrambleCode
+	 *            the amount added to the simulation ID of each node to give
+	 *            its machine ID, or 0 if machine IDs are not scrambled.
+	 * @throws InstantiationException
+	 *             if the node class cannot be instantiated.
+	 * @throws IllegalAccessException
+	 *             if a field cannot be accessed in the script class.
+	 */
+	public Network(Class<? extends NodeScript> nodeClass,
+			INetworkConfig config, int initiator, int scrambleCode)
+			throws InstantiationException, IllegalAccessException {
+		this(nodeClass);
+		if (initiator < 0 || initiator >= config.nodeCount())
+			throw new IllegalArgumentException("Invalid initiator: "
+					+ initiator);
+		if (scrambleCode < 0)
+			throw new IllegalArgumentException("Invalid scramble code: "
+					+ scrambleCode);
+
+		for (int i = 0; i < config.nodeCount(); i++)
+			addNode(createNode(userNodeClass, i == initiator), scrambleCode);
 
 		addConfig(config);
 	}
 
+	/**
+	 * Creates a node executing a new instance of a script class, which is
+	 * event-driven if the script is.
+	 * 
+	 * @param nodeClass
+	 *            the class of script that the node will execute.
+	 * @param isInitiator
+	 *            whether the node is an initiator.
+	 * @return The node, without a simulation ID or neighbours.
+	 * @throws InstantiationException
+	 *             if the node class cannot be instantiated.
+	 * @throws IllegalAccessException
+	 *             if a field cannot be accessed in the script class.
+	 */
+	public static Node createNode(Class<? extends NodeScript> nodeClass,
+			boolean isInitiator) throws InstantiationException,
+			IllegalAccessException {
+		return createNode(ImportedNode.createType(nodeClass), isInitiator);
+	}
+
+	private static Node createNode(ImportedNode nodeClass, boolean isInitiator)
+			throws InstantiationException, IllegalAccessException {
+		final NodeScript script = (NodeScript) nodeClass.create();
+		return (script instanceof EventNodeScript) ? new EventNode(
+				(EventNodeScript) script, isInitiator) : new ThreadedNode(
+				script, isInitiator);
+	}
+
 	private void addConfig(INetworkConfig config)
 			throws InstantiationException, IllegalAccessException {
 		for (ILinkConfig link : config.links()) {
@@ -2,24 +2,25 @@ package net.alexheavens.cs4099.network;
 
 import java.awt.Color;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
-import java.util.Observable;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.PriorityBlockingQueue;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
 
-import net.alexheavens.cs4099.concurrent.WaitRegistrar;
 import net.alexheavens.cs4099.simulation.ColourChangeEvent;
+import net.alexheavens.cs4099.simulation.ExecutionMode;
 import net.alexheavens.cs4099.simulation.ISimulationEvent;
+import net.alexheavens.cs4099.simulation.ISimulationEventListener;
 import net.alexheavens.cs4099.simulation.InvalidCallException;
-import net.alexheavens.cs4099.simulation.MessageReadEvent;
 import net.alexheavens.cs4099.simulation.MessageSentEvent;
-import net.alexheavens.cs4099.simulation.NodeFailureEvent;
-import net.alexheavens.cs4099.simulation.NodeHaltedException;
 import net.alexheavens.cs4099.simulation.NodePauseEvent;
-import net.alexheavens.cs4099.simulation.NodeReceiveBlockEvent;
-import net.alexheavens.cs4099.simulation.NodeReceiveBlockResumeEvent;
+import net.alexheavens.cs4099.simulation.SimulationEventBus;
 import net.alexheavens.cs4099.simulation.SimulationProfiler;
 import net.alexheavens.cs4099.simulation.SimulationRuntimeException;
 import net.alexheavens.cs4099.simulation.SimulationState;
@@ -28,26 +29,37 @@ import net.alexheavens.cs4099.usercode.NodeScript;
 /**
  * The underlying Node structure that acts on behalf of a user script.
  * 
+ * How the script is executed is left to subclasses: a {@link ThreadedNode} on
+ * a Thread of its own, and an {@link EventNode} on the workers of a
+ * dispatcher.
+ * 
  * @author Alexander Heavens <alexander.heavens@gmail.com>
  * @version 1.0
  */
-public class Node extends Observable implements INodeImpl, Runnable {
-
-	private ReentrantLock lock;
-	private Condition blocked, completed;
-	protected HashMap<INode, ILinkImpl> links;
-	private ArrayList<INode> neighbours;
-	private HashMap<INode, Integer> neighbourIds;
+public abstract class Node implements INodeImpl {
+
+	protected ReentrantLock lock;
+	private Condition blocked;
+	protected final List<CountDownLatch> haltLatches;
+	protected HashMap<ILinkEndpoint, ILinkImpl> links;
+	private ArrayList<ILinkEndpoint> neighbours;
+	private HashMap<ILinkEndpoint, Integer> neighbourIds;
 	protected PriorityBlockingQueue<IMessageImpl<?>> messages;
-	protected INode expectedSender;
 	protected int machineId = INIT_MACHINE_ID;
 	protected volatile SimulationState simState;
 	protected Thread nodeThread;
-	protected WaitRegistrar waitRegistrar;
 	private final NodeScript script;
 	protected SimulationProfiler profiler;
 	private final boolean isInitiator;
 	private int scrambleCode;
+	private final ConcurrentLinkedQueue<ISimulationEvent> outbox;
+	private volatile boolean holdingEvents;
+	private final SimulationEventBus eventBus;
+	// Written only by the Thread executing the script, whether the node's own
+	// or, one invocation at a time, a worker invoking an event-driven node, so
+	// incremented without synchronisation. Read by the profiler's Thread.
+	private volatile long raisedEvents;
+	private long queuedMessages;
 
 	/**
 	 * Creates a new node for a given script.
@@ -73,18 +85,26 @@ public class Node extends Observable implements INodeImpl, Runnable {
 		this.isInitiator = isInitiator;
 		script.setNode(this);
 		simState = SimulationState.PRE_SIMULATION;
-		neighbours = new ArrayList<INode>();
-		neighbourIds = new HashMap<INode, Integer>();
-		links = new HashMap<INode, ILinkImpl>();
+		neighbours = new ArrayList<ILinkEndpoint>();
+		neighbourIds = new HashMap<ILinkEndpoint, Integer>();
+
+		// Iterate links in the order they were added, so that sendAll() is
+		// deterministic.
+		links = new LinkedHashMap<ILinkEndpoint, ILinkImpl>();
 		messages = new PriorityBlockingQueue<IMessageImpl<?>>();
 		nodeThread = null;
 		lock = new ReentrantLock();
 		blocked = lock.newCondition();
-		completed = lock.newCondition();
+		haltLatches = new ArrayList<CountDownLatch>(1);
+		outbox = new ConcurrentLinkedQueue<ISimulationEvent>();
+		holdingEvents = false;
+		eventBus = new SimulationEventBus();
+		raisedEvents = 0;
+		queuedMessages = 0;
 	}
 
 	@Override
-	public ILinkImpl addNeighbour(INodeImpl n, long latency) {
+	public ILinkImpl addNeighbour(ILinkEndpoint n, long latency) {
 		if (n == null)
 			throw new IllegalArgumentException(NULL_NEIGHBOUR_MSG);
 		if (n.getSimulationId() == INIT_MACHINE_ID)
@@ -108,113 +128,12 @@ public class Node extends Observable implements INodeImpl, Runnable {
 	}
 
 	@Override
-	public Iterator<INode> neighbours() {
+	public Iterator<ILinkEndpoint> neighbours() {
 		return links.keySet().iterator();
 	}
 
-	@SuppressWarnings("unchecked")
-	@Override
-	public <MsgType extends IMessage<?>> MsgType receive() {
-
-		if (getSimulationState() == SimulationState.SETUP)
-			throw new InvalidCallException("Receive call in setup method.");
-
-		if (neighbourCount() == 0)
-			return null;
-
-		// Receive block if no message.
-		while (messages.size() == 0) {
-			lock.lock();
-			try {
-				// In the odd case that a message arrives between the message
-				// check and locking.
-				if (messages.size() > 0)
-					break;
-
-				setSimulationState(SimulationState.RECEIVE_BLOCK);
-				NodeReceiveBlockEvent blockEvent = new NodeReceiveBlockEvent(
-						ISimulationEvent.CURRENT_TIMESTEP, this);
-				raiseEvent(blockEvent);
-			} finally {
-				lock.unlock();
-			}
-			try {
-				waitRegistrar.waitThread();
-			} catch (InterruptedException e) {
-				throw new NodeHaltedException();
-			}
-
-			NodeReceiveBlockResumeEvent unblockEvent = new NodeReceiveBlockResumeEvent(
-					ISimulationEvent.CURRENT_TIMESTEP, this);
-			raiseEvent(unblockEvent);
-		}
-
-		// Remove the message from the top of the general message pile.
-		lock.lock();
-		try {
-			IMessageImpl<?> returnMessage = messages.poll();
-			returnMessage.link().removeMessage(returnMessage);
-			MessageReadEvent readEvent = new MessageReadEvent(returnMessage,
-					ISimulationEvent.CURRENT_TIMESTEP);
-			raiseEvent(readEvent);
-			return (MsgType) returnMessage;
-		} finally {
-			lock.unlock();
-		}
-	}
-
-	@SuppressWarnings("unchecked")
-	public <MsgType extends IMessage<?>> MsgType receive(INode neighbour) {
-
-		if (getSimulationState() == SimulationState.SETUP)
-			throw new InvalidCallException("Receive call in setup method.");
-
-		// Receive block if no message.
-		while (messages.size() == 0) {
-			lock.lock();
-
-			try {
-				// In the odd case that a message arrives between the message
-				// check and locking.
-				if (messages.size() > 0)
-					break;
-
-				NodeReceiveBlockEvent blockEvent = new NodeReceiveBlockEvent(
-						ISimulationEvent.CURRENT_TIMESTEP, this);
-				expectedSender = neighbour;
-				raiseEvent(blockEvent);
-				setSimulationState(SimulationState.RECEIVE_BLOCK);
-			} finally {
-				lock.unlock();
-			}
-			try {
-				waitRegistrar.waitThread();
-			} catch (InterruptedException e) {
-				throw new NodeHaltedException();
-			}
-
-			NodeReceiveBlockResumeEvent unblockEvent = new NodeReceiveBlockResumeEvent(
-					ISimulationEvent.CURRENT_TIMESTEP, this);
-			raiseEvent(unblockEvent);
-		}
-
-		// Remove the message from the top of the general message pile.
-		lock.lock();
-		try {
-			IMessageImpl<?> returnMessage = links.get(neighbour).popMessage(
-					this);
-			messages.remove(returnMessage);
-			MessageReadEvent readEvent = new MessageReadEvent(returnMessage,
-					ISimulationEvent.CURRENT_TIMESTEP);
-			raiseEvent(readEvent);
-			return (MsgType) returnMessage;
-		} finally {
-			lock.unlock();
-		}
-	}
-
 	@Override
-	public void send(INode recipient, IMessage<?> message) {
+	public void send(ILinkEndpoint recipient, IMessage<?> message) {
 
 		if (getSimulationState() == SimulationState.SETUP)
 			throw new InvalidCallException("Called send from setup.");
@@ -232,7 +151,7 @@ public class Node extends Observable implements INodeImpl, Runnable {
 			try {
 				IMessageImpl<?> newMessage = ((IMessageImpl<?>) message)
 						.clone();
-				newMessage.attachSendData(this, (INodeImpl) recipient);
+				newMessage.attachSendData(this, recipient);
 				MessageSentEvent sentEvent = new MessageSentEvent(newMessage,
 						ISimulationEvent.CURRENT_TIMESTEP);
 				raiseEvent(sentEvent);
@@ -258,12 +177,12 @@ public class Node extends Observable implements INodeImpl, Runnable {
 	}
 
 	@Override
-	public ILink neighbourLink(INode n) {
+	public ILink neighbourLink(ILinkEndpoint n) {
 		return links.get(n);
 	}
 
 	@Override
-	public boolean isNeighbour(INode n) {
+	public boolean isNeighbour(ILinkEndpoint n) {
 		return links.containsKey(n);
 	}
 
@@ -288,91 +207,14 @@ public class Node extends Observable implements INodeImpl, Runnable {
 		return machineId + scrambleCode;
 	}
 
-	@Override
-	public void simulate(WaitRegistrar registrar,
-			SimulationProfiler testProfiler) {
-		lock.lock();
-		try {
-			this.waitRegistrar = registrar;
-			this.profiler = testProfiler;
-			nodeThread = new Thread(this);
-			nodeThread.start();
-		} finally {
-			lock.unlock();
-		}
-		while (getSimulationState() == SimulationState.PRE_SIMULATION) {
-		}
-	}
-
-	@Override
-	public void run() {
-
-		try {
-			setSimulationState(SimulationState.SETUP);
-			setup();
-			setSimulationState(SimulationState.SIMULATING);
-
-			execute();
-			setSimulationState(SimulationState.COMPLETED);
-			try {
-				waitRegistrar.waitThread();
-			} catch (InterruptedException e) {
-				throw new NodeHaltedException();
-			}
-		} catch (SimulationRuntimeException e) {
-
-			// Unpack non-user code RuntimeExceptions, rethrow.
-			throw e.getException();
-		} catch (NodeHaltedException e) {
-
-			// Allow halted nodes to end simulation.
-
-		} catch (RuntimeException e) {
-
-			// User created RuntimeExceptions cause a failure event.
-			NodeFailureEvent failureEvent = new NodeFailureEvent(
-					ISimulationEvent.CURRENT_TIMESTEP, this, e);
-
-			lock.lock();
-			try {
-				raiseEvent(failureEvent);
-				setSimulationState(SimulationState.NODE_ERROR);
-			} finally {
-				lock.unlock();
-			}
-
-			try {
-				waitRegistrar.waitThread();
-			} catch (InterruptedException e1) {
-			}
-		} finally {
-			setSimulationState(SimulationState.POST_SIMULATION);
-		}
-
-	}
-
 	@Override
 	public void halt() {
-
-		lock.lock();
+		final CountDownLatch halted = new CountDownLatch(1);
+		halt(halted);
 		try {
-			final SimulationState state = getSimulationState();
-			if (state == SimulationState.PRE_SIMULATION)
-				throw new IllegalStateException(
-						"Attempted to halt non-executing node.");
-
-			if (state == SimulationState.POST_SIMULATION)
-				return;
-
-			setSimulationState(SimulationState.HALTED);
-			nodeThread.interrupt();
-			while (simState != SimulationState.POST_SIMULATION)
-				completed.await();
-
+			halted.await();
 		} catch (InterruptedException e) {
 			throw new IllegalStateException();
-		} finally {
-			lock.unlock();
 		}
 	}
 
@@ -391,86 +233,126 @@ public class Node extends Observable implements INodeImpl, Runnable {
 		if (event == null)
 			throw new IllegalArgumentException(
 					"Raised null ISimulationEvent from Node.");
-		setChanged();
-		notifyObservers(event);
+		if (holdingEvents)
+			outbox.add(event);
+		else
+			publishEvent(event);
+
+		raisedEvents++;
+		if (profiler != null)
+			profiler.checkProcess(this);
 	}
 
 	@Override
-	public void pause(long pauseSteps) {
+	public long raisedEventCount() {
+		return raisedEvents;
+	}
 
-		if (getSimulationState() == SimulationState.SETUP)
-			throw new InvalidCallException("Called pause from setup.");
+	/**
+	 * Holds the events raised by the node in its outbox, rather than passing
+	 * each to listeners as it is raised. Nodes raising events at the same time
+	 * then do not contend with one another at their listeners.
+	 */
+	public void holdEvents() {
+		holdingEvents = true;
+	}
 
-		try {
-			NodePauseEvent pauseEvent = new NodePauseEvent(pauseSteps, this);
-			lock.lock();
-			try {
+	/**
+	 * Removes the earliest raised event from the node's outbox.
+	 * 
+	 * @return The event, or null if the outbox is empty.
+	 */
+	public ISimulationEvent pollOutbox() {
+		return outbox.poll();
+	}
+
+	/**
+	 * Passes an event straight to listeners, after any still held in the
+	 * outbox. Used for events raised on behalf of the node by another Thread,
+	 * which must be heard before the node next blocks.
+	 * 
+	 * @param event
+	 *            an event that has occurred within the node.
+	 */
+	protected void raiseEventImmediately(ISimulationEvent event) {
+		ISimulationEvent heldEvent;
+		while ((heldEvent = outbox.poll()) != null)
+			publishEvent(heldEvent);
+		publishEvent(event);
+	}
 
-				if (getSimulationState() != SimulationState.SIMULATING)
-					throw new IllegalStateException(
-							"Paused node outside of simulation, in state "
-									+ simState + ".");
+	/**
+	 * Adds a listener to be passed every event the node raises.
+	 * 
+	 * @param listener
+	 *            the listener to add.
+	 */
+	public void addEventListener(ISimulationEventListener listener) {
+		eventBus.addListener(listener);
+	}
 
-				raiseEvent(pauseEvent);
-				setSimulationState(SimulationState.PAUSED);
-			} finally {
-				lock.unlock();
-			}
-			try {
-				waitRegistrar.waitThread();
-			} catch (InterruptedException e) {
-				throw new NodeHaltedException();
-			}
-		} catch (NodeHaltedException e) {
-			throw e;
-		} catch (RuntimeException e) {
-			throw new SimulationRuntimeException(e);
-		}
+	/**
+	 * @param listener
+	 *            the listener to no longer pass events the node raises.
+	 */
+	public void removeEventListener(ISimulationEventListener listener) {
+		eventBus.removeListener(listener);
 	}
 
-	@Override
-	public void unpause() {
+	/**
+	 * @return The number of listeners passed events the node raises.
+	 */
+	public int eventListenerCount() {
+		return eventBus.listenerCount();
+	}
+
+	private void publishEvent(ISimulationEvent event) {
+		eventBus.publish(event);
+	}
+
+	/**
+	 * Raises the event pausing the node and moves it into the paused state,
+	 * without waiting for it to be unpaused.
+	 * 
+	 * @param pauseSteps
+	 *            the number of steps to pause the node for.
+	 */
+	protected void enterPause(long pauseSteps) {
+		NodePauseEvent pauseEvent = new NodePauseEvent(pauseSteps, this);
+		lock.lock();
 		try {
-			lock.lock();
-			try {
 
-				if (getSimulationState() != SimulationState.PAUSED)
-					throw new IllegalStateException("Unpaused non-paused Node.");
+			if (getSimulationState() != SimulationState.SIMULATING)
+				throw new IllegalStateException(
+						"Paused node outside of simulation, in state "
+								+ simState + ".");
 
-				setSimulationState(SimulationState.SIMULATING);
-				waitRegistrar.notifyThread(nodeThread);
-			} finally {
-				lock.unlock();
-			}
-		} catch (RuntimeException e) {
-			throw new SimulationRuntimeException(e);
+			raiseEvent(pauseEvent);
+			setSimulationState(SimulationState.PAUSED);
+		} finally {
+			lock.unlock();
 		}
 	}
 
 	@Override
 	public void queueMessage(IMessageImpl<?> message) {
-		if (message.getSentAt() == IMessageImpl.TIMESTEP_NOT_SENT)
-			throw new IllegalArgumentException("Queued unsent message at Node.");
+		queueMessages(Collections.<IMessageImpl<?>> singletonList(message));
+	}
 
-		try {
-			lock.lock();
-			try {
-				messages.add(message);
-				links.get(message.source()).queueMessage(message);
-				final boolean isExpected = expectedSender == null
-						|| message.source() == expectedSender;
-				if (getSimulationState() == SimulationState.RECEIVE_BLOCK
-						&& isExpected) {
-					expectedSender = null;
-					setSimulationState(SimulationState.SIMULATING);
-					waitRegistrar.notifyThread(nodeThread);
-				}
-			} finally {
-				lock.unlock();
-			}
-		} catch (RuntimeException e) {
-			throw new SimulationRuntimeException(e);
-		}
+	/**
+	 * Adds an arrived message to those waiting to be received, both by any
+	 * neighbour and from its source. Messages sent at the same timestep are
+	 * received in the order they are queued. The lock of the node must be
+	 * held.
+	 * 
+	 * @param message
+	 *            the message, sent to this node.
+	 */
+	protected void enqueueMessage(IMessageImpl<?> message) {
+		if (message instanceof MessageImpl<?>)
+			((MessageImpl<?>) message).markAsQueued(queuedMessages++);
+		messages.add(message);
+		links.get(message.source()).queueMessage(message);
 	}
 
 	@Override
@@ -493,7 +375,9 @@ public class Node extends Observable implements INodeImpl, Runnable {
 				blocked.signalAll();
 				break;
 			case POST_SIMULATION:
-				completed.signalAll();
+				for (CountDownLatch halted : haltLatches)
+					halted.countDown();
+				haltLatches.clear();
 				break;
 			default:
 				break;
@@ -512,7 +396,7 @@ public class Node extends Observable implements INodeImpl, Runnable {
 	}
 
 	@Override
-	public INode getNeighbour(int index) {
+	public ILinkEndpoint getNeighbour(int index) {
 		if (index < 0 || index >= neighbourCount())
 			throw new IndexOutOfBoundsException();
 
@@ -534,7 +418,7 @@ public class Node extends Observable implements INodeImpl, Runnable {
 	}
 
 	@Override
-	public int getIndex(INode neighbour) {
+	public int getIndex(ILinkEndpoint neighbour) {
 		if (!isNeighbour(neighbour))
 			throw new IllegalArgumentException("Non neighbour index request.");
 		return neighbourIds.get(neighbour);
@@ -563,36 +447,22 @@ public class Node extends Observable implements INodeImpl, Runnable {
 		}
 	}
 
-	@SuppressWarnings("deprecation")
-	@Override
-	public void kill() {
-
-		NodeFailureEvent failureEvent = new NodeFailureEvent(
-				ISimulationEvent.CURRENT_TIMESTEP, this,
-				new IllegalStateException("Node timeout."));
-		lock.lock();
-		try {
-			raiseEvent(failureEvent);
-			setSimulationState(SimulationState.TIMEOUT);
-			new Thread() {
-				public void run() {
-					try {
-						waitRegistrar.waitThread();
-					} catch (InterruptedException e) {
-					}
-				}
-			}.start();
-			synchronized (nodeThread) {
-				nodeThread.stop();
-			}
-		} finally {
-			lock.unlock();
-		}
-	}
-
 	@Override
 	public boolean isInitiator() {
 		return isInitiator;
 	}
 
+	/**
+	 * Checks that the node can be stopped once timed out, in the given mode of
+	 * execution. A node that could not be stopped would hold simulation
+	 * forever.
+	 * 
+	 * @param mode
+	 *            the manner in which nodes are executed.
+	 * @throws UnsupportedOperationException
+	 *             if the node cannot be stopped.
+	 * @see net.alexheavens.cs4099.usercode.ScriptInstrumenter
+	 */
+	public abstract void checkStoppable(ExecutionMode mode);
+
 }
@@ -0,0 +1,505 @@
+package net.alexheavens.cs4099.network;
+
+import java.util.Collection;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadFactory;
+
+import net.alexheavens.cs4099.concurrent.PlatformThreadFactory;
+import net.alexheavens.cs4099.concurrent.WaitRegistrar;
+import net.alexheavens.cs4099.simulation.ExecutionMode;
+import net.alexheavens.cs4099.simulation.ISimulationEvent;
+import net.alexheavens.cs4099.simulation.InvalidCallException;
+import net.alexheavens.cs4099.simulation.MessageReadEvent;
+import net.alexheavens.cs4099.simulation.NodeFailureEvent;
+import net.alexheavens.cs4099.simulation.NodeHaltedException;
+import net.alexheavens.cs4099.simulation.NodeReceiveBlockEvent;
+import net.alexheavens.cs4099.simulation.NodeReceiveBlockResumeEvent;
+import net.alexheavens.cs4099.simulation.ProcessKilledError;
+import net.alexheavens.cs4099.simulation.SimulationProfiler;
+import net.alexheavens.cs4099.simulation.SimulationRuntimeException;
+import net.alexheavens.cs4099.simulation.SimulationState;
+import net.alexheavens.cs4099.usercode.InstructionBudgetExceededError;
+import net.alexheavens.cs4099.usercode.NodeScript;
+import net.alexheavens.cs4099.usercode.ScriptInstrumenter;
+
+/**
+ * The Node structure that executes a user script on a Thread of its own.
+ *
+ * The Thread waits at a {@link WaitRegistrar} whenever the node blocks, in a
+ * receive or a pause, and is notified there once the node can continue.
+ *
+ * @author Alexander Heavens <alexander.heavens@gmail.com>
+ * @version 1.0
+ */
+public class ThreadedNode extends Node implements Runnable {
+
+	protected ILinkEndpoint expectedSender;
+	protected ThreadFactory threadFactory;
+	protected WaitRegistrar waitRegistrar;
+	private volatile boolean released;
+	private CountDownLatch startLatch;
+
+	/**
+	 * Creates a new node for a given script.
+	 * 
+	 * @param script
+	 *            the script executed by the node.
+	 */
+	public ThreadedNode(NodeScript script) {
+		this(script, false);
+	}
+
+	/**
+	 * Creates a new node for a given script that may be an initiator.
+	 * 
+	 * @param script
+	 *            the script executed by the node.
+	 * @param isInitiator
+	 *            whether the node is an initiator.
+	 */
+	public ThreadedNode(NodeScript script, boolean isInitiator) {
+		super(script, isInitiator);
+		threadFactory = new PlatformThreadFactory();
+		released = false;
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public <MsgType extends IMessage<?>> MsgType receive() {
+
+		if (getSimulationState() == SimulationState.SETUP)
+			throw new InvalidCallException("Receive call in setup method.");
+
+		if (neighbourCount() == 0)
+			return null;
+
+		// Receive block if no message.
+		while (messages.size() == 0) {
+			lock.lock();
+			try {
+				// In the odd case that a message arrives between the message
+				// check and locking.
+				if (messages.size() > 0)
+					break;
+
+				setSimulationState(SimulationState.RECEIVE_BLOCK);
+				NodeReceiveBlockEvent blockEvent = new NodeReceiveBlockEvent(
+						ISimulationEvent.CURRENT_TIMESTEP, this);
+				raiseEvent(blockEvent);
+			} finally {
+				lock.unlock();
+			}
+			try {
+				waitRegistrar.waitThread();
+			} catch (InterruptedException e) {
+				throw new NodeHaltedException();
+			}
+			profiler.checkProcess(this);
+
+			NodeReceiveBlockResumeEvent unblockEvent = new NodeReceiveBlockResumeEvent(
+					ISimulationEvent.CURRENT_TIMESTEP, this);
+			raiseEvent(unblockEvent);
+		}
+
+		// Remove the message from the top of the general message pile.
+		lock.lock();
+		try {
+			IMessageImpl<?> returnMessage = messages.poll();
+			returnMessage.link().removeMessage(returnMessage);
+			MessageReadEvent readEvent = new MessageReadEvent(returnMessage,
+					ISimulationEvent.CURRENT_TIMESTEP);
+			raiseEvent(readEvent);
+			return (MsgType) returnMessage;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	public <MsgType extends IMessage<?>> MsgType receive(ILinkEndpoint neighbour) {
+
+		if (getSimulationState() == SimulationState.SETUP)
+			throw new InvalidCallException("Receive call in setup method.");
+
+		// Receive block if no message.
+		while (messages.size() == 0) {
+			lock.lock();
+
+			try {
+				// In the odd case that a message arrives between the message
+				// check and locking.
+				if (messages.size() > 0)
+					break;
+
+				NodeReceiveBlockEvent blockEvent = new NodeReceiveBlockEvent(
+						ISimulationEvent.CURRENT_TIMESTEP, this);
+				expectedSender = neighbour;
+				raiseEvent(blockEvent);
+				setSimulationState(SimulationState.RECEIVE_BLOCK);
+			} finally {
+				lock.unlock();
+			}
+			try {
+				waitRegistrar.waitThread();
+			} catch (InterruptedException e) {
+				throw new NodeHaltedException();
+			}
+			profiler.checkProcess(this);
+
+			NodeReceiveBlockResumeEvent unblockEvent = new NodeReceiveBlockResumeEvent(
+					ISimulationEvent.CURRENT_TIMESTEP, this);
+			raiseEvent(unblockEvent);
+		}
+
+		// Remove the message from the top of the general message pile.
+		lock.lock();
+		try {
+			IMessageImpl<?> returnMessage = links.get(neighbour).popMessage(
+					this);
+			messages.remove(returnMessage);
+			MessageReadEvent readEvent = new MessageReadEvent(returnMessage,
+					ISimulationEvent.CURRENT_TIMESTEP);
+			raiseEvent(readEvent);
+			return (MsgType) returnMessage;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Begins simulation of the node. The setup method will first be called,
+	 * followed by execute.
+	 * 
+	 * @param registrar
+	 *            the location that the simulation threads will wait when in a
+	 *            blocking state.
+	 * @param testProfiler
+	 *            the profiler used to monitor node execution.
+	 */
+	public void simulate(WaitRegistrar registrar,
+			SimulationProfiler testProfiler) {
+		simulate(registrar, testProfiler, new PlatformThreadFactory());
+	}
+
+	/**
+	 * Begins simulation of the node on a Thread created by
+	 * <code>factory</code>. The setup method will first be called, followed by
+	 * execute.
+	 * 
+	 * @param registrar
+	 *            the location that the simulation threads will wait when in a
+	 *            blocking state.
+	 * @param testProfiler
+	 *            the profiler used to monitor node execution.
+	 * @param factory
+	 *            the factory of the Thread that executes the node.
+	 */
+	public void simulate(WaitRegistrar registrar,
+			SimulationProfiler testProfiler, ThreadFactory factory) {
+		final CountDownLatch started = new CountDownLatch(1);
+		simulate(registrar, testProfiler, factory, started);
+		try {
+			started.await();
+		} catch (InterruptedException e) {
+			throw new IllegalStateException();
+		}
+	}
+
+	/**
+	 * Begins simulation of the node on a Thread created by
+	 * <code>factory</code>, without waiting for the node to start. Many nodes
+	 * may then be started at once.
+	 * 
+	 * @param registrar
+	 *            the location that the simulation threads will wait when in a
+	 *            blocking state.
+	 * @param testProfiler
+	 *            the profiler used to monitor node execution.
+	 * @param factory
+	 *            the factory of the Thread that executes the node.
+	 * @param started
+	 *            a latch counted down once the node's setup method has
+	 *            returned or failed.
+	 */
+	public void simulate(WaitRegistrar registrar,
+			SimulationProfiler testProfiler, ThreadFactory factory,
+			CountDownLatch started) {
+		if (factory == null)
+			throw new IllegalArgumentException(
+					"Attempted to simulate node with a null ThreadFactory.");
+		if (started == null)
+			throw new IllegalArgumentException(
+					"Attempted to simulate node with a null latch.");
+
+		lock.lock();
+		try {
+			this.waitRegistrar = registrar;
+			this.profiler = testProfiler;
+			this.threadFactory = factory;
+			this.startLatch = started;
+			nodeThread = threadFactory.newThread(this);
+			nodeThread.start();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void run() {
+
+		try {
+			profiler.enterProcess(this);
+			setSimulationState(SimulationState.SETUP);
+			setup();
+			setSimulationState(SimulationState.SIMULATING);
+			markStarted();
+			profiler.checkProcess(this);
+
+			execute();
+			finish(SimulationState.COMPLETED, null);
+		} catch (InstructionBudgetExceededError e) {
+
+			// The script has timed itself out on its own Thread.
+			finish(SimulationState.TIMEOUT, new NodeFailureEvent(
+					ISimulationEvent.CURRENT_TIMESTEP, this,
+					new IllegalStateException("Node timeout.")));
+		} catch (ProcessKilledError e) {
+
+			// The node has been timed out from its own Thread.
+
+		} catch (SimulationRuntimeException e) {
+
+			// Unpack non-user code RuntimeExceptions, rethrow.
+			throw e.getException();
+		} catch (NodeHaltedException e) {
+
+			// Allow halted nodes to end simulation.
+
+		} catch (RuntimeException e) {
+
+			// User created RuntimeExceptions cause a failure event.
+			finish(SimulationState.NODE_ERROR, new NodeFailureEvent(
+					ISimulationEvent.CURRENT_TIMESTEP, this, e));
+		} finally {
+			markStarted();
+
+			// Released nodes keep their final state until halted. A node halted
+			// before it was released leaves simulation now, counting down the
+			// latches of its halt.
+			lock.lock();
+			try {
+				if (!released || !haltLatches.isEmpty())
+					setSimulationState(SimulationState.POST_SIMULATION);
+			} finally {
+				lock.unlock();
+			}
+		}
+
+	}
+
+	/*
+	 * Moves the node into the state in which its script ended, raising the
+	 * event that ended it if any, and releases its Thread. A node timed out or
+	 * halted in the meantime keeps that state, so the change and the release
+	 * are made together under the lock.
+	 */
+	private void finish(SimulationState endState, ISimulationEvent endEvent) {
+		lock.lock();
+		try {
+			if (released || simState == SimulationState.HALTED)
+				return;
+			if (endEvent != null)
+				raiseEvent(endEvent);
+			setSimulationState(endState);
+			releaseThread();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/*
+	 * Counts down the latch passed when simulation began, once only.
+	 */
+	private void markStarted() {
+		final CountDownLatch started = startLatch;
+		if (started != null) {
+			startLatch = null;
+			started.countDown();
+		}
+	}
+
+	/*
+	 * Ends the node's Thread once it will execute no further, rather than
+	 * leaving it to wait until simulation ends. Halting the node will then
+	 * only move it out of simulation. A Thread is released once only, and the
+	 * lock must be held.
+	 */
+	private void releaseThread() {
+		if (released)
+			return;
+		released = true;
+		waitRegistrar.releaseThread(nodeThread);
+	}
+
+	@Override
+	public void halt(CountDownLatch halted) {
+		if (halted == null)
+			throw new IllegalArgumentException(
+					"Attempted to halt node with a null latch.");
+
+		lock.lock();
+		try {
+			final SimulationState state = getSimulationState();
+			if (state == SimulationState.PRE_SIMULATION)
+				throw new IllegalStateException(
+						"Attempted to halt non-executing node.");
+
+			if (state == SimulationState.POST_SIMULATION) {
+				halted.countDown();
+				return;
+			}
+
+			// Counted down as the node moves to POST_SIMULATION.
+			haltLatches.add(halted);
+			if (released) {
+				setSimulationState(SimulationState.POST_SIMULATION);
+				return;
+			}
+
+			setSimulationState(SimulationState.HALTED);
+			nodeThread.interrupt();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void pause(long pauseSteps) {
+
+		if (getSimulationState() == SimulationState.SETUP)
+			throw new InvalidCallException("Called pause from setup.");
+
+		try {
+			enterPause(pauseSteps);
+			try {
+				waitRegistrar.waitThread();
+			} catch (InterruptedException e) {
+				throw new NodeHaltedException();
+			}
+			profiler.checkProcess(this);
+		} catch (NodeHaltedException e) {
+			throw e;
+		} catch (RuntimeException e) {
+			throw new SimulationRuntimeException(e);
+		}
+	}
+
+	@Override
+	public void unpause() {
+		try {
+			lock.lock();
+			try {
+
+				if (getSimulationState() != SimulationState.PAUSED)
+					throw new IllegalStateException("Unpaused non-paused Node.");
+
+				setSimulationState(SimulationState.SIMULATING);
+				waitRegistrar.notifyThread(nodeThread);
+			} finally {
+				lock.unlock();
+			}
+		} catch (RuntimeException e) {
+			throw new SimulationRuntimeException(e);
+		}
+	}
+
+	@Override
+	public void queueMessages(Collection<IMessageImpl<?>> messages) {
+		for (IMessageImpl<?> message : messages) {
+			if (message.getSentAt() == IMessageImpl.TIMESTEP_NOT_SENT)
+				throw new IllegalArgumentException(
+						"Queued unsent message at Node.");
+		}
+
+		try {
+			lock.lock();
+			try {
+				boolean isExpected = false;
+				for (IMessageImpl<?> message : messages) {
+					enqueueMessage(message);
+					if (expectedSender == null
+							|| message.source() == expectedSender)
+						isExpected = true;
+				}
+				if (getSimulationState() == SimulationState.RECEIVE_BLOCK
+						&& isExpected) {
+					expectedSender = null;
+					setSimulationState(SimulationState.SIMULATING);
+					waitRegistrar.notifyThread(nodeThread);
+				}
+			} finally {
+				lock.unlock();
+			}
+		} catch (RuntimeException e) {
+			throw new SimulationRuntimeException(e);
+		}
+	}
+
+	@SuppressWarnings("deprecation")
+	@Override
+	public void kill() {
+
+		NodeFailureEvent failureEvent = new NodeFailureEvent(
+				ISimulationEvent.CURRENT_TIMESTEP, this,
+				new IllegalStateException("Node timeout."));
+		lock.lock();
+		try {
+
+			// A node that has ended, or been halted, is not timed out.
+			if (released || simState == SimulationState.HALTED
+					|| simState == SimulationState.POST_SIMULATION)
+				return;
+			raiseEventImmediately(failureEvent);
+			setSimulationState(SimulationState.TIMEOUT);
+			releaseThread();
+
+			// A node timed out from its own Thread is left to unwind.
+			if (Thread.currentThread() == nodeThread)
+				return;
+
+			// An instrumented script is stopped at its next back edge by its
+			// revoked budget, or by the interrupt if it is waiting. Others
+			// can only be stopped with their Thread, which the runner ensures
+			// is possible before timing out a node.
+			synchronized (nodeThread) {
+				if (ScriptInstrumenter.isInstrumented(getScript().getClass())) {
+					nodeThread.interrupt();
+				} else {
+					try {
+						nodeThread.stop();
+					} catch (UnsupportedOperationException e) {
+						nodeThread.interrupt();
+					}
+				}
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * A node whose script is not instrumented is stopped with its Thread,
+	 * which must be possible in the mode.
+	 */
+	@Override
+	public void checkStoppable(ExecutionMode mode) {
+		if (ScriptInstrumenter.isInstrumented(getScript().getClass()))
+			return;
+		if (!mode.canStopThreads())
+			throw new UnsupportedOperationException("Cannot time out node "
+					+ getSimulationId() + ": its Thread cannot be stopped in "
+					+ mode + " execution on this Java runtime,"
+					+ " and its script does not count back edges.");
+	}
+
+}
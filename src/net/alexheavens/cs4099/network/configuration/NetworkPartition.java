@@ -0,0 +1,249 @@
+package net.alexheavens.cs4099.network.configuration;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * The division of the nodes of a network into partitions, together with
+ * measures of its quality.
+ *
+ * A link whose nodes lie in different partitions is cut. Each cut link is
+ * weighted by the inverse of its latency, as links of low latency carry
+ * messages soonest and most often, and bound how far partitions may run ahead
+ * of one another. A good partition has a low cut weight and partitions of
+ * near equal size.
+ *
+ * @author Alexander Heavens <alexander.heavens@gmail.com>
+ * @version 1.0
+ * @see NetworkPartitioner
+ */
+public class NetworkPartition {
+
+	private final int[] partitionOf;
+	private final int[] sizes;
+	private final int[][] members;
+	private final int linkCount;
+	private final int cutLinks;
+	private final double cutWeight;
+	private final long minimumCutLatency;
+	private final long[] partitionCutLatency;
+
+	/**
+	 * Measures a division of the nodes of a network into partitions.
+	 *
+	 * @param partitionCount
+	 *            the number of partitions.
+	 * @param assignment
+	 *            the partition of each node, by ID. Partitions are numbered
+	 *            from 0 and each must hold at least one node.
+	 * @param links
+	 *            the links between the nodes.
+	 * @throws IllegalArgumentException
+	 *             if a node is assigned no valid partition, a partition holds
+	 *             no nodes, or a link is of a node outside the network.
+	 */
+	public NetworkPartition(int partitionCount, int[] assignment,
+			Collection<? extends ILinkConfig> links) {
+		if (assignment == null || links == null)
+			throw new IllegalArgumentException(
+					"Cannot measure a partition of a null network.");
+		if (partitionCount < 1 || partitionCount > assignment.length)
+			throw new IllegalArgumentException("Cannot divide "
+					+ assignment.length + " nodes into " + partitionCount
+					+ " partitions.");
+
+		partitionOf = assignment.clone();
+		sizes = new int[partitionCount];
+		for (int node = 0; node < partitionOf.length; node++) {
+			final int partition = partitionOf[node];
+			if (partition < 0 || partition >= partitionCount)
+				throw new IllegalArgumentException("Node " + node
+						+ " is assigned invalid partition " + partition);
+			sizes[partition]++;
+		}
+		for (int partition = 0; partition < partitionCount; partition++) {
+			if (sizes[partition] == 0)
+				throw new IllegalArgumentException("Partition " + partition
+						+ " holds no nodes.");
+		}
+
+		members = new int[partitionCount][];
+		for (int partition = 0; partition < partitionCount; partition++)
+			members[partition] = new int[sizes[partition]];
+		final int[] filled = new int[partitionCount];
+		for (int node = 0; node < partitionOf.length; node++) {
+			final int partition = partitionOf[node];
+			members[partition][filled[partition]++] = node;
+		}
+
+		partitionCutLatency = new long[partitionCount];
+		Arrays.fill(partitionCutLatency, Long.MAX_VALUE);
+		int cut = 0;
+		double weight = 0;
+		long leastLatency = Long.MAX_VALUE;
+		for (ILinkConfig link : links) {
+			if (link.source() >= partitionOf.length)
+				throw new IllegalArgumentException(
+						INetworkConfig.UNKNOWN_LINK_SOURCE_MSG);
+			if (link.target() >= partitionOf.length)
+				throw new IllegalArgumentException(
+						INetworkConfig.UNKNOWN_LINK_TARGET_MSG);
+			final int sourcePartition = partitionOf[link.source()];
+			final int targetPartition = partitionOf[link.target()];
+			if (sourcePartition != targetPartition) {
+				cut++;
+				weight += 1.0 / link.latency();
+				leastLatency = Math.min(leastLatency, link.latency());
+				partitionCutLatency[sourcePartition] = Math.min(
+						partitionCutLatency[sourcePartition], link.latency());
+				partitionCutLatency[targetPartition] = Math.min(
+						partitionCutLatency[targetPartition], link.latency());
+			}
+		}
+		linkCount = links.size();
+		cutLinks = cut;
+		cutWeight = weight;
+		minimumCutLatency = leastLatency;
+	}
+
+	/**
+	 * Measures a division of the nodes of a network into as many partitions as
+	 * the given assignment numbers.
+	 *
+	 * @param nodeCount
+	 *            the number of nodes, identified from 0.
+	 * @param assignment
+	 *            the partition of each node, by ID. Partitions are numbered
+	 *            from 0 and each must hold at least one node.
+	 * @param links
+	 *            the links between the nodes.
+	 * @return The division of the nodes.
+	 * @throws IllegalArgumentException
+	 *             if the assignment does not give a valid partition for every
+	 *             node, a partition holds no nodes, or a link is of a node
+	 *             outside the network.
+	 */
+	public static NetworkPartition fromAssignment(int nodeCount,
+			int[] assignment, Collection<? extends ILinkConfig> links) {
+		if (assignment == null || assignment.length != nodeCount)
+			throw new IllegalArgumentException(
+					"Cannot divide a network without a partition for every node.");
+
+		int partitionCount = 0;
+		for (int partition : assignment)
+			partitionCount = Math.max(partitionCount, partition + 1);
+		return new NetworkPartition(partitionCount, assignment, links);
+	}
+
+	/**
+	 * @return The number of partitions.
+	 */
+	public int partitionCount() {
+		return sizes.length;
+	}
+
+	/**
+	 * @return The number of nodes divided.
+	 */
+	public int nodeCount() {
+		return partitionOf.length;
+	}
+
+	/**
+	 * @param node
+	 *            the ID of a node.
+	 * @return The partition of the node.
+	 */
+	public int partitionOf(int node) {
+		return partitionOf[node];
+	}
+
+	/**
+	 * @param partition
+	 *            a partition.
+	 * @return The IDs of the nodes of the partition, in ascending order.
+	 * @throws IllegalArgumentException
+	 *             if there is no such partition.
+	 */
+	public int[] members(int partition) {
+		checkPartition(partition);
+		return members[partition].clone();
+	}
+
+	/**
+	 * @return The partition of each node, by ID.
+	 */
+	public int[] assignment() {
+		return partitionOf.clone();
+	}
+
+	/**
+	 * @return The number of nodes in each partition.
+	 */
+	public int[] partitionSizes() {
+		return sizes.clone();
+	}
+
+	/**
+	 * @return The number of links cut between partitions.
+	 */
+	public int cutLinkCount() {
+		return cutLinks;
+	}
+
+	/**
+	 * @return The fraction of all links that are cut between partitions, or 0
+	 *         if there are no links.
+	 */
+	public double cutFraction() {
+		return linkCount == 0 ? 0 : (double) cutLinks / linkCount;
+	}
+
+	/**
+	 * @return The sum of the inverse latencies of the links cut between
+	 *         partitions.
+	 */
+	public double cutWeight() {
+		return cutWeight;
+	}
+
+	/**
+	 * @return The least latency of the links cut between partitions, or
+	 *         <code>Long.MAX_VALUE</code> if none are cut. This is the
+	 *         lookahead of a conservative simulation of the partitions.
+	 */
+	public long minimumCutLatency() {
+		return minimumCutLatency;
+	}
+
+	/**
+	 * @param partition
+	 *            a partition.
+	 * @return The least latency of the links cut between the partition and
+	 *         others, or <code>Long.MAX_VALUE</code> if none are cut. This is
+	 *         the lookahead of the partition in a conservative simulation.
+	 * @throws IllegalArgumentException
+	 *             if there is no such partition.
+	 */
+	public long minimumCutLatency(int partition) {
+		checkPartition(partition);
+		return partitionCutLatency[partition];
+	}
+
+	/**
+	 * @return The size of the largest partition relative to the mean size, 1
+	 *         if the partitions are of equal size.
+	 */
+	public double imbalance() {
+		int largest = 0;
+		for (int size : sizes)
+			largest = Math.max(largest, size);
+		return (double) largest * sizes.length / partitionOf.length;
+	}
+
+	private void checkPartition(int partition) {
+		if (partition < 0 || partition >= sizes.length)
+			throw new IllegalArgumentException("There is no partition "
+					+ partition + " of " + sizes.length + " partitions.");
+	}
+}
@@ -0,0 +1,509 @@
+package net.alexheavens.cs4099.network.configuration;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * The NetworkPartitioner divides the nodes of a network into partitions of
+ * near equal size, keeping nodes that communicate in the same partition. It
+ * minimises the weight of the links cut between partitions, each weighted by
+ * the inverse of its latency, as measured by a {@link NetworkPartition}.
+ *
+ * Partitioning is multilevel. The network is first coarsened, repeatedly
+ * merging each node with the unmatched neighbour it is most heavily linked to,
+ * until it is small. The coarsest network is divided by growing each partition
+ * in turn from a seed, always adding the node most heavily linked to it. The
+ * division is then projected back through each level, at which nodes on the
+ * boundary of partitions are moved wherever doing so lowers the cut weight
+ * without unbalancing the partitions.
+ *
+ * Partitioning is deterministic: the same network always gives the same
+ * partitions, whatever the order of its links.
+ *
+ * @author Alexander Heavens <alexander.heavens@gmail.com>
+ * @version 1.0
+ */
+public class NetworkPartitioner {
+
+	/**
+	 * The default fraction by which a partition may exceed the mean size.
+	 */
+	public static final double DEFAULT_IMBALANCE = 0.03;
+
+	// Coarsening stops once there are this many nodes per partition, or when
+	// a level shrinks the network by too little.
+	private static final int COARSEST_NODES_PER_PARTITION = 16;
+	private static final double LEAST_COARSENING = 0.95;
+
+	// The most passes over the boundary refining each level.
+	private static final int REFINEMENT_PASSES = 8;
+
+	// Gains smaller than this are treated as no gain.
+	private static final double EPSILON = 1e-12;
+
+	private final int partitions;
+	private final double imbalance;
+
+	/**
+	 * Creates a partitioner dividing networks into a number of partitions,
+	 * each no more than {@link #DEFAULT_IMBALANCE} larger than the mean.
+	 *
+	 * @param partitionCount
+	 *            the number of partitions.
+	 */
+	public NetworkPartitioner(int partitionCount) {
+		this(partitionCount, DEFAULT_IMBALANCE);
+	}
+
+	/**
+	 * Creates a partitioner dividing networks into a number of partitions.
+	 *
+	 * @param partitionCount
+	 *            the number of partitions.
+	 * @param maxImbalance
+	 *            the fraction by which a partition may exceed the mean size.
+	 *            Partitions may always hold the mean size rounded up.
+	 * @throws IllegalArgumentException
+	 *             if there are fewer than 1 partition, or the imbalance is
+	 *             negative.
+	 */
+	public NetworkPartitioner(int partitionCount, double maxImbalance) {
+		if (partitionCount < 1)
+			throw new IllegalArgumentException(
+					"Cannot divide a network into fewer than 1 partition.");
+		if (!(maxImbalance >= 0))
+			throw new IllegalArgumentException(
+					"Cannot divide a network with negative imbalance.");
+		partitions = partitionCount;
+		imbalance = maxImbalance;
+	}
+
+	/**
+	 * @return The number of partitions networks are divided into.
+	 */
+	public int partitionCount() {
+		return partitions;
+	}
+
+	/**
+	 * Divides the nodes of a network configuration into partitions.
+	 *
+	 * @param config
+	 *            the configuration of the network.
+	 * @return The partition of each node.
+	 * @throws IllegalArgumentException
+	 *             if the network has fewer nodes than partitions.
+	 */
+	public NetworkPartition partition(INetworkConfig config) {
+		if (config == null)
+			throw new IllegalArgumentException(
+					"Cannot divide a null network into partitions.");
+		return partition(config.nodeCount(), config.links());
+	}
+
+	/**
+	 * Divides the nodes of a network into partitions.
+	 *
+	 * @param nodeCount
+	 *            the number of nodes, identified from 0.
+	 * @param links
+	 *            the links between the nodes.
+	 * @return The partition of each node.
+	 * @throws IllegalArgumentException
+	 *             if there are fewer nodes than partitions, or a link is of a
+	 *             node outside the network.
+	 */
+	public NetworkPartition partition(int nodeCount,
+			Collection<? extends ILinkConfig> links) {
+		if (links == null)
+			throw new IllegalArgumentException(
+					"Cannot divide a network with null links into partitions.");
+		if (nodeCount < partitions)
+			throw new IllegalArgumentException("Cannot divide " + nodeCount
+					+ " nodes into " + partitions + " partitions.");
+
+		// Coarsen the network level by level.
+		final List<Level> levels = new ArrayList<Level>();
+		Level level = new Level(nodeCount, links);
+		levels.add(level);
+		final int coarsest = partitions * COARSEST_NODES_PER_PARTITION;
+		while (level.size() > coarsest) {
+			final Level coarser = level.coarsen(maxMergedWeight(nodeCount));
+			if (coarser.size() > level.size() * LEAST_COARSENING)
+				break;
+			levels.add(coarser);
+			level = coarser;
+		}
+
+		// Divide the coarsest level, then refine each level in turn.
+		int[] partitionOf = grow(level, nodeCount);
+		final int maxWeight = maxPartitionWeight(nodeCount);
+		for (int i = levels.size() - 1; i >= 0; i--) {
+			level = levels.get(i);
+			if (i < levels.size() - 1)
+				partitionOf = level.project(partitionOf);
+			refine(level, partitionOf, maxWeight);
+		}
+
+		return new NetworkPartition(partitions, partitionOf, links);
+	}
+
+	private int maxPartitionWeight(int nodeCount) {
+		final int mean = (nodeCount + partitions - 1) / partitions;
+		return Math.max(mean, (int) Math.floor((double) nodeCount / partitions
+				* (1 + imbalance)));
+	}
+
+	/*
+	 * Merged nodes are kept small enough that the coarsest level can still be
+	 * divided evenly.
+	 */
+	private int maxMergedWeight(int nodeCount) {
+		return Math.max(1, (int) Math.ceil(1.5 * nodeCount
+				/ (partitions * COARSEST_NODES_PER_PARTITION)));
+	}
+
+	/*
+	 * Grows each partition but the last from a seed, adding the node most
+	 * heavily linked to the partition until it holds its share of the total
+	 * weight. The last partition takes the nodes left over.
+	 */
+	private int[] grow(Level level, int totalWeight) {
+		final int size = level.size();
+		final int[] partitionOf = new int[size];
+		Arrays.fill(partitionOf, -1);
+		final double[] gain = new double[size];
+		int unassigned = size;
+		int remainingWeight = totalWeight;
+		int nextSeed = 0;
+
+		for (int partition = 0; partition < partitions - 1; partition++) {
+			final int target = Math.round((float) remainingWeight
+					/ (partitions - partition));
+			final PriorityQueue<Candidate> frontier = new PriorityQueue<Candidate>();
+			int weight = 0;
+
+			// Leave a node for each partition still to grow.
+			while (weight < target && unassigned > partitions - partition - 1) {
+				Candidate next = frontier.poll();
+				while (next != null
+						&& (partitionOf[next.node] != -1 || next.gain != gain[next.node]))
+					next = frontier.poll();
+				if (next == null) {
+					while (partitionOf[nextSeed] != -1)
+						nextSeed++;
+					next = new Candidate(nextSeed, 0);
+				}
+				if (weight > 0 && weight + level.weight[next.node] > target
+						&& weight + level.weight[next.node] - target > target
+								- weight)
+					break;
+
+				final int node = next.node;
+				partitionOf[node] = partition;
+				weight += level.weight[node];
+				unassigned--;
+				for (int e = level.start[node]; e < level.start[node + 1]; e++) {
+					final int neighbour = level.neighbour[e];
+					if (partitionOf[neighbour] == -1) {
+						gain[neighbour] += level.linkWeight[e];
+						frontier.add(new Candidate(neighbour, gain[neighbour]));
+					}
+				}
+			}
+			for (int node = 0; node < size; node++)
+				gain[node] = 0;
+			remainingWeight -= weight;
+		}
+
+		for (int node = 0; node < size; node++) {
+			if (partitionOf[node] == -1)
+				partitionOf[node] = partitions - 1;
+		}
+		return partitionOf;
+	}
+
+	/*
+	 * Moves nodes to the neighbouring partition they are most heavily linked
+	 * to, whenever this lowers the cut weight and keeps both partitions within
+	 * their bounds. Nodes of overweight partitions are moved even at a loss.
+	 */
+	private void refine(Level level, int[] partitionOf, int maxWeight) {
+		final int size = level.size();
+		final int[] partitionWeight = new int[partitions];
+		for (int node = 0; node < size; node++)
+			partitionWeight[partitionOf[node]] += level.weight[node];
+
+		final double[] connection = new double[partitions];
+		final int[] touched = new int[partitions];
+		for (int pass = 0; pass < REFINEMENT_PASSES; pass++) {
+			boolean moved = false;
+			for (int node = 0; node < size; node++) {
+				final int from = partitionOf[node];
+				final int weight = level.weight[node];
+				if (partitionWeight[from] - weight < 1)
+					continue;
+
+				int touchedCount = 0;
+				for (int e = level.start[node]; e < level.start[node + 1]; e++) {
+					final int partition = partitionOf[level.neighbour[e]];
+					if (connection[partition] == 0)
+						touched[touchedCount++] = partition;
+					connection[partition] += level.linkWeight[e];
+				}
+
+				final boolean overweight = partitionWeight[from] > maxWeight;
+				int best = -1;
+				double bestGain = overweight ? Double.NEGATIVE_INFINITY
+						: EPSILON;
+				for (int i = 0; i < touchedCount; i++) {
+					final int to = touched[i];
+					final double moveGain = connection[to] - connection[from];
+					if (to != from && partitionWeight[to] + weight <= maxWeight
+							&& (moveGain > bestGain || (moveGain == bestGain
+									&& best != -1 && to < best))) {
+						best = to;
+						bestGain = moveGain;
+					}
+				}
+				for (int i = 0; i < touchedCount; i++)
+					connection[touched[i]] = 0;
+
+				if (best == -1 && overweight)
+					best = lightest(partitionWeight, from, weight, maxWeight);
+				if (best != -1) {
+					partitionOf[node] = best;
+					partitionWeight[from] -= weight;
+					partitionWeight[best] += weight;
+					moved = true;
+				}
+			}
+			if (!moved)
+				break;
+		}
+	}
+
+	private int lightest(int[] partitionWeight, int from, int weight,
+			int maxWeight) {
+		int lightest = -1;
+		for (int partition = 0; partition < partitions; partition++) {
+			if (partition != from
+					&& partitionWeight[partition] + weight <= maxWeight
+					&& (lightest == -1 || partitionWeight[partition] < partitionWeight[lightest]))
+				lightest = partition;
+		}
+		return lightest;
+	}
+
+	/*
+	 * A node on the frontier of a growing partition, ordered by the weight of
+	 * its links into the partition, then by ID.
+	 */
+	private static class Candidate implements Comparable<Candidate> {
+
+		final int node;
+		final double gain;
+
+		Candidate(int node, double gain) {
+			this.node = node;
+			this.gain = gain;
+		}
+
+		public int compareTo(Candidate other) {
+			if (gain != other.gain)
+				return gain > other.gain ? -1 : 1;
+			return node < other.node ? -1 : (node == other.node ? 0 : 1);
+		}
+	}
+
+	/*
+	 * One level of a coarsened network, the links of each node held together
+	 * in adjacency arrays. Each node is weighted by the number of nodes of the
+	 * original network it stands for.
+	 */
+	private static class Level {
+
+		final int[] weight;
+		final int[] start;
+		final int[] neighbour;
+		final double[] linkWeight;
+
+		// The node of the next coarser level each node was merged into.
+		int[] coarseOf;
+
+		Level(int[] nodeWeight, int[] adjacencyStart, int[] adjacency,
+				double[] adjacencyWeight) {
+			weight = nodeWeight;
+			start = adjacencyStart;
+			neighbour = adjacency;
+			linkWeight = adjacencyWeight;
+		}
+
+		/*
+		 * Creates the finest level from the links of a network, merging
+		 * parallel links.
+		 */
+		Level(int nodeCount, Collection<? extends ILinkConfig> links) {
+			final int[] degree = new int[nodeCount];
+			for (ILinkConfig link : links) {
+				if (link.source() < 0 || link.source() >= nodeCount)
+					throw new IllegalArgumentException(
+							INetworkConfig.UNKNOWN_LINK_SOURCE_MSG);
+				if (link.target() < 0 || link.target() >= nodeCount)
+					throw new IllegalArgumentException(
+							INetworkConfig.UNKNOWN_LINK_TARGET_MSG);
+				degree[link.source()]++;
+				degree[link.target()]++;
+			}
+
+			final int[] rawStart = new int[nodeCount + 1];
+			for (int node = 0; node < nodeCount; node++)
+				rawStart[node + 1] = rawStart[node] + degree[node];
+			final long[] entries = new long[rawStart[nodeCount]];
+			final int[] fill = rawStart.clone();
+			final ILinkConfig[] linkArray = links.toArray(new ILinkConfig[links
+					.size()]);
+
+			// Sort the links of each node by neighbour, so that parallel links
+			// are adjacent and the order links were given in is lost.
+			for (int i = 0; i < linkArray.length; i++) {
+				final ILinkConfig link = linkArray[i];
+				entries[fill[link.source()]++] = ((long) link.target() << 32) | i;
+				entries[fill[link.target()]++] = ((long) link.source() << 32) | i;
+			}
+
+			weight = new int[nodeCount];
+			Arrays.fill(weight, 1);
+			start = new int[nodeCount + 1];
+			final int[] adjacency = new int[entries.length];
+			final double[] adjacencyWeight = new double[entries.length];
+			int count = 0;
+			for (int node = 0; node < nodeCount; node++) {
+				start[node] = count;
+				Arrays.sort(entries, rawStart[node], rawStart[node + 1]);
+				for (int e = rawStart[node]; e < rawStart[node + 1]; e++) {
+					final int other = (int) (entries[e] >>> 32);
+					final double inverse = 1.0 / linkArray[(int) entries[e]]
+							.latency();
+					if (count > start[node] && adjacency[count - 1] == other) {
+						adjacencyWeight[count - 1] += inverse;
+					} else {
+						adjacency[count] = other;
+						adjacencyWeight[count] = inverse;
+						count++;
+					}
+				}
+			}
+			start[nodeCount] = count;
+			neighbour = Arrays.copyOf(adjacency, count);
+			linkWeight = Arrays.copyOf(adjacencyWeight, count);
+		}
+
+		int size() {
+			return weight.length;
+		}
+
+		/*
+		 * Matches each node with the unmatched neighbour it is most heavily
+		 * linked to, visiting nodes of least degree first, and merges each
+		 * matched pair into one node of a coarser level.
+		 */
+		Level coarsen(int maxMergedWeight) {
+			final int size = size();
+			final Integer[] order = new Integer[size];
+			for (int node = 0; node < size; node++)
+				order[node] = node;
+			Arrays.sort(order, new Comparator<Integer>() {
+				public int compare(Integer a, Integer b) {
+					final int degreeA = start[a + 1] - start[a];
+					final int degreeB = start[b + 1] - start[b];
+					if (degreeA != degreeB)
+						return degreeA < degreeB ? -1 : 1;
+					return a.compareTo(b);
+				}
+			});
+
+			final int[] match = new int[size];
+			Arrays.fill(match, -1);
+			for (int node : order) {
+				if (match[node] != -1)
+					continue;
+				int best = node;
+				double bestWeight = 0;
+				for (int e = start[node]; e < start[node + 1]; e++) {
+					final int other = neighbour[e];
+					if (match[other] == -1 && other != node
+							&& weight[node] + weight[other] <= maxMergedWeight
+							&& linkWeight[e] > bestWeight) {
+						best = other;
+						bestWeight = linkWeight[e];
+					}
+				}
+				match[node] = best;
+				match[best] = node;
+			}
+
+			// Number coarse nodes in the order of their lowest fine node.
+			coarseOf = new int[size];
+			int coarseSize = 0;
+			for (int node = 0; node < size; node++) {
+				if (match[node] >= node)
+					coarseOf[node] = coarseSize++;
+				else
+					coarseOf[node] = coarseOf[match[node]];
+			}
+
+			final int[] coarseWeight = new int[coarseSize];
+			final int[] coarseStart = new int[coarseSize + 1];
+			final int[] adjacency = new int[neighbour.length];
+			final double[] adjacencyWeight = new double[neighbour.length];
+			final int[] position = new int[coarseSize];
+			Arrays.fill(position, -1);
+			int count = 0;
+			for (int node = 0; node < size; node++) {
+				if (match[node] < node)
+					continue;
+				final int coarse = coarseOf[node];
+				coarseStart[coarse] = count;
+				final int[] members = (match[node] == node) ? new int[] { node }
+						: new int[] { node, match[node] };
+				for (int member : members) {
+					coarseWeight[coarse] += weight[member];
+					for (int e = start[member]; e < start[member + 1]; e++) {
+						final int other = coarseOf[neighbour[e]];
+						if (other == coarse)
+							continue;
+						if (position[other] == -1) {
+							position[other] = count;
+							adjacency[count] = other;
+							adjacencyWeight[count] = 0;
+							count++;
+						}
+						adjacencyWeight[position[other]] += linkWeight[e];
+					}
+				}
+				for (int e = coarseStart[coarse]; e < count; e++)
+					position[adjacency[e]] = -1;
+			}
+			coarseStart[coarseSize] = count;
+
+			return new Level(coarseWeight, coarseStart, Arrays.copyOf(
+					adjacency, count), Arrays.copyOf(adjacencyWeight, count));
+		}
+
+		/*
+		 * Gives each node the partition of the coarser node it was merged
+		 * into.
+		 */
+		int[] project(int[] coarsePartitionOf) {
+			final int[] partitionOf = new int[size()];
+			for (int node = 0; node < partitionOf.length; node++)
+				partitionOf[node] = coarsePartitionOf[coarseOf[node]];
+			return partitionOf;
+		}
+	}
+}
@@ -0,0 +1,35 @@
+package net.alexheavens.cs4099.simulation;
+
+import java.util.List;
+
+import net.alexheavens.cs4099.network.ILinkEndpoint;
+import net.alexheavens.cs4099.network.IMessageImpl;
+
+/**
+ * Decides the order in which the messages arriving at a node in the same
+ * timestep are queued at it, and so the order in which it receives those sent
+ * at the same timestep. Without a scheduler, messages are queued in the order
+ * they were sent.
+ * 
+ * @author Alexander Heavens <alexander.heavens@gmail.com>
+ * @version 1.0
+ * @see EventController#setArrivalScheduler(ArrivalScheduler)
+ */
+public interface ArrivalScheduler {
+
+	/**
+	 * Orders the messages arriving at a node. Called once for each
+	 * {@link MessageArrivalBatchEvent} of more than one message, as it is
+	 * processed.
+	 * 
+	 * @param target
+	 *            the node at which the messages arrive.
+	 * @param timestep
+	 *            the timestep at which they arrive.
+	 * @param messages
+	 *            the messages, in the order they were sent.
+	 * @return The same messages, in the order they are to be queued.
+	 */
+	public List<IMessageImpl<?>> order(ILinkEndpoint target, long timestep,
+			List<IMessageImpl<?>> messages);
+}
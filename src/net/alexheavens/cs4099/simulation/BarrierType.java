@@ -0,0 +1,45 @@
+package net.alexheavens.cs4099.simulation;
+
+import net.alexheavens.cs4099.concurrent.LeaderBarrier;
+import net.alexheavens.cs4099.concurrent.ParkingBarrier;
+
+/**
+ * The implementation of the barrier at which the simulation waits for the
+ * Threads of Nodes to block.
+ *
+ * @author Alexander Heavens <alexander.heavens@gmail.com>
+ * @version 1.0
+ */
+public enum BarrierType {
+
+	/**
+	 * Threads wait on Conditions of a shared lock.
+	 */
+	LOCKING {
+		public LeaderBarrier createBarrier(Thread leader, int followerThreshold) {
+			return new LeaderBarrier(leader, followerThreshold);
+		}
+	},
+
+	/**
+	 * Threads spin briefly, then park, and are counted atomically without
+	 * locking.
+	 */
+	PARKING {
+		public LeaderBarrier createBarrier(Thread leader, int followerThreshold) {
+			return new ParkingBarrier(leader, followerThreshold);
+		}
+	};
+
+	/**
+	 * @param leader
+	 *            the Thread that waits for followers.
+	 * @param followerThreshold
+	 *            the number of waiting followers that allow the leader to
+	 *            continue.
+	 * @return A new barrier of this type.
+	 */
+	public abstract LeaderBarrier createBarrier(Thread leader,
+			int followerThreshold);
+
+}
@@ -0,0 +1,196 @@
+package net.alexheavens.cs4099.simulation;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * The DeadlineWheel is a hashed timing wheel of deadlines, each a time in
+ * nanoseconds at which an item expires.
+ *
+ * Time is divided into ticks of a fixed length, and the wheel into a ring of
+ * slots, one for each tick of a revolution. A deadline is placed in the slot
+ * of the tick in which it falls, noting that tick, so that scheduling and
+ * cancelling take constant time. Expiring the wheel visits only the slots of
+ * the ticks that have passed since it was last expired, and within them only
+ * the deadlines placed there; a deadline more than a revolution away is passed
+ * over until its tick comes round. Cancelled deadlines are dropped as their
+ * slot is visited.
+ *
+ * @author Alexander Heavens <alexander.heavens@gmail.com>
+ * @version 1.0
+ * @param <T>
+ *            the type of item given a deadline.
+ */
+public class DeadlineWheel<T> {
+
+	private final long tickLength;
+	private final long origin;
+	private final ArrayDeque<Deadline<T>>[] slots;
+	private long cursor;
+	private int size;
+
+	/**
+	 * Creates an empty wheel.
+	 *
+	 * @param tickLength
+	 *            the length of a tick in nanoseconds.
+	 * @param nSlots
+	 *            the number of ticks in a revolution of the wheel.
+	 * @param start
+	 *            the time in nanoseconds at which the first tick begins.
+	 * @throws IllegalArgumentException
+	 *             If the tick length or number of slots is less than 1.
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public DeadlineWheel(long tickLength, int nSlots, long start) {
+		if (tickLength < 1)
+			throw new IllegalArgumentException("Invalid tick length: "
+					+ tickLength);
+		if (nSlots < 1)
+			throw new IllegalArgumentException("Invalid number of slots: "
+					+ nSlots);
+		this.tickLength = tickLength;
+		origin = start;
+		slots = new ArrayDeque[nSlots];
+		for (int i = 0; i < nSlots; i++)
+			slots[i] = new ArrayDeque<Deadline<T>>();
+		cursor = 0;
+		size = 0;
+	}
+
+	/**
+	 * Gives an item a deadline. A deadline already passed expires when the
+	 * wheel is next expired.
+	 *
+	 * @param item
+	 *            the item.
+	 * @param time
+	 *            the time in nanoseconds at which it expires.
+	 * @return The deadline, by which it can be cancelled.
+	 * @throws IllegalArgumentException
+	 *             If the item is null.
+	 */
+	public synchronized Deadline<T> schedule(T item, long time) {
+		if (item == null)
+			throw new IllegalArgumentException(
+					"Attempted to schedule deadline of null item.");
+		final Deadline<T> deadline = new Deadline<T>(item, time, Math.max(
+				tickOf(time), cursor));
+		slots[slotOf(deadline.tick)].add(deadline);
+		size++;
+		return deadline;
+	}
+
+	/**
+	 * Cancels a deadline, so that it does not expire.
+	 *
+	 * @param deadline
+	 *            a deadline of this wheel.
+	 * @return Whether the deadline was pending, false if it had already
+	 *         expired or been cancelled.
+	 * @throws IllegalArgumentException
+	 *             If the deadline is null.
+	 */
+	public synchronized boolean cancel(Deadline<T> deadline) {
+		if (deadline == null)
+			throw new IllegalArgumentException(
+					"Attempted to cancel null deadline.");
+		if (deadline.state != Deadline.PENDING)
+			return false;
+		deadline.state = Deadline.CANCELLED;
+		size--;
+		return true;
+	}
+
+	/**
+	 * Removes every deadline that has passed.
+	 *
+	 * @param now
+	 *            the current time in nanoseconds, no earlier than that of the
+	 *            previous call.
+	 * @return The deadlines that have passed, earliest tick first.
+	 */
+	public synchronized List<Deadline<T>> expire(long now) {
+		final List<Deadline<T>> expired = new ArrayList<Deadline<T>>();
+		final long nowTick = Math.max(tickOf(now), cursor);
+
+		// Each slot need be visited at most once, however many revolutions
+		// have passed.
+		final long last = Math.min(nowTick, cursor + slots.length - 1);
+		for (long tick = cursor; tick <= last; tick++) {
+			final Iterator<Deadline<T>> deadlines = slots[slotOf(tick)]
+					.iterator();
+			while (deadlines.hasNext()) {
+				final Deadline<T> deadline = deadlines.next();
+				if (deadline.state == Deadline.CANCELLED) {
+					deadlines.remove();
+				} else if (deadline.tick <= nowTick && deadline.time <= now) {
+					deadlines.remove();
+					deadline.state = Deadline.EXPIRED;
+					size--;
+					expired.add(deadline);
+				}
+			}
+		}
+
+		// The current tick may still hold deadlines later within it.
+		cursor = nowTick;
+		return expired;
+	}
+
+	/**
+	 * @return The number of deadlines pending.
+	 */
+	public synchronized int size() {
+		return size;
+	}
+
+	private long tickOf(long time) {
+		return (time < origin) ? 0 : (time - origin) / tickLength;
+	}
+
+	private int slotOf(long tick) {
+		return (int) (tick % slots.length);
+	}
+
+	/**
+	 * The deadline of an item in a wheel.
+	 *
+	 * @param <T>
+	 *            the type of item.
+	 */
+	public static final class Deadline<T> {
+
+		private static final int PENDING = 0;
+		private static final int EXPIRED = 1;
+		private static final int CANCELLED = 2;
+
+		private final T item;
+		private final long time;
+		private final long tick;
+		private int state;
+
+		private Deadline(T item, long time, long tick) {
+			this.item = item;
+			this.time = time;
+			this.tick = tick;
+			state = PENDING;
+		}
+
+		/**
+		 * @return The item given the deadline.
+		 */
+		public T item() {
+			return item;
+		}
+
+		/**
+		 * @return The time in nanoseconds at which the item expires.
+		 */
+		public long time() {
+			return time;
+		}
+	}
+}
@@ -0,0 +1,232 @@
+package net.alexheavens.cs4099.simulation;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The DistributedCoordinator synchronises a simulation whose partitions are
+ * simulated by {@link DistributedSimulationWorker}s, typically each in a Java
+ * runtime of its own on the same host.
+ *
+ * Workers connect to the coordinator over loopback sockets. Simulation
+ * proceeds in windows of time as for a {@link PartitionedSimulationRunner}: at
+ * the end of each window every worker sends the arrivals of messages toward
+ * other partitions, followed by the earliest timestep of its own events. The
+ * coordinator forwards the arrivals to their partitions and opens the next
+ * window, up to the earliest timestep of any event or arrival plus the least
+ * latency of the links between partitions, until the simulation ends.
+ *
+ * @author Alexander Heavens <alexander.heavens@gmail.com>
+ * @version 1.0
+ */
+public class DistributedCoordinator {
+
+	// Sent by workers.
+	static final int HELLO = 1;
+	static final int ARRIVAL = 2;
+	static final int EARLIEST = 3;
+	static final int FAILED = 4;
+
+	// Sent by the coordinator, as well as ARRIVAL.
+	static final int WINDOW = 5;
+	static final int FINISH = 6;
+
+	private final ServerSocket serverSocket;
+	private final int partitions;
+	private final long length;
+	private long lookahead;
+	private int windows;
+	private boolean coordinated;
+
+	/**
+	 * Creates a coordinator listening on a loopback port.
+	 *
+	 * @param port
+	 *            the port to listen on, or 0 for any free port.
+	 * @param partitionCount
+	 *            the number of workers taking part.
+	 * @param simLength
+	 *            the number of timesteps to simulate.
+	 * @throws IOException
+	 *             if the port cannot be listened on.
+	 */
+	public DistributedCoordinator(int port, int partitionCount, long simLength)
+			throws IOException {
+		if (partitionCount < 1)
+			throw new IllegalArgumentException(
+					"Cannot coordinate fewer than 1 partition.");
+		if (simLength < 1)
+			throw new IllegalArgumentException(
+					"Cannot coordinate a simulation that is less than 1 timestep in length.");
+
+		serverSocket = new ServerSocket(port, partitionCount, InetAddress
+				.getByName(null));
+		partitions = partitionCount;
+		length = simLength;
+		lookahead = Long.MAX_VALUE;
+		windows = 0;
+		coordinated = false;
+	}
+
+	/**
+	 * @return The port on which the coordinator listens.
+	 */
+	public int port() {
+		return serverSocket.getLocalPort();
+	}
+
+	/**
+	 * Accepts a connection from the worker of every partition, then
+	 * synchronises their windows of time until the simulation ends.
+	 *
+	 * @throws IllegalStateException
+	 *             if the coordinator has already been run.
+	 * @throws SimulationRuntimeException
+	 *             if simulation of a partition failed.
+	 * @throws IOException
+	 *             if communication with a worker failed.
+	 */
+	public void coordinate() throws IOException {
+		synchronized (this) {
+			if (coordinated)
+				throw new IllegalStateException(
+						"Attempted to coordinate a simulation twice.");
+			coordinated = true;
+		}
+
+		final Socket[] sockets = new Socket[partitions];
+		final DataInputStream[] ins = new DataInputStream[partitions];
+		final DataOutputStream[] outs = new DataOutputStream[partitions];
+		try {
+			for (int accepted = 0; accepted < partitions; accepted++) {
+				final Socket socket = serverSocket.accept();
+				socket.setTcpNoDelay(true);
+				final DataInputStream in = new DataInputStream(
+						new BufferedInputStream(socket.getInputStream()));
+				if (in.readUnsignedByte() != HELLO)
+					throw new IOException("Expected a greeting from a worker.");
+				final int partition = in.readInt();
+				if (partition < 0 || partition >= partitions
+						|| sockets[partition] != null)
+					throw new IOException("Unexpected worker of partition "
+							+ partition);
+				synchronized (this) {
+					lookahead = Math.min(lookahead, in.readLong());
+				}
+				sockets[partition] = socket;
+				ins[partition] = in;
+				outs[partition] = new DataOutputStream(
+						new BufferedOutputStream(socket.getOutputStream()));
+			}
+			synchronise(ins, outs);
+		} finally {
+			for (Socket socket : sockets) {
+				if (socket != null)
+					socket.close();
+			}
+			serverSocket.close();
+		}
+	}
+
+	/**
+	 * @return The least latency of the links between partitions, or
+	 *         <code>Long.MAX_VALUE</code> if there are none, once every
+	 *         worker has connected.
+	 */
+	public synchronized long lookahead() {
+		return lookahead;
+	}
+
+	/**
+	 * @return The number of windows of time simulated so far.
+	 */
+	public synchronized int windowCount() {
+		return windows;
+	}
+
+	private void synchronise(DataInputStream[] ins, DataOutputStream[] outs)
+			throws IOException {
+		final long windowLookahead = lookahead();
+		final List<List<byte[]>> forwarded = new ArrayList<List<byte[]>>();
+		final List<List<Long>> forwardedTimesteps = new ArrayList<List<Long>>();
+		for (int i = 0; i < partitions; i++) {
+			forwarded.add(new ArrayList<byte[]>());
+			forwardedTimesteps.add(new ArrayList<Long>());
+		}
+
+		while (true) {
+			long earliest = Long.MAX_VALUE;
+			String failure = null;
+			for (int p = 0; p < partitions; p++) {
+				final DataInputStream in = ins[p];
+				boolean ended = false;
+				while (!ended) {
+					final int op = in.readUnsignedByte();
+					switch (op) {
+					case ARRIVAL:
+						final int target = in.readInt();
+						final long arrival = in.readLong();
+						final byte[] message = new byte[in.readInt()];
+						in.readFully(message);
+						forwarded.get(target).add(message);
+						forwardedTimesteps.get(target).add(arrival);
+						earliest = Math.min(earliest, arrival);
+						break;
+					case EARLIEST:
+						earliest = Math.min(earliest, in.readLong());
+						ended = true;
+						break;
+					case FAILED:
+						failure = "Partition " + p + " failed: " + in.readUTF();
+						ended = true;
+						break;
+					default:
+						throw new IOException("Unexpected operation " + op
+								+ " from partition " + p);
+					}
+				}
+			}
+
+			if (earliest >= length || failure != null) {
+				for (DataOutputStream out : outs) {
+					out.writeByte(FINISH);
+					out.flush();
+				}
+				if (failure != null)
+					throw new SimulationRuntimeException(
+							new IllegalStateException(failure));
+				return;
+			}
+
+			final long windowEnd = (windowLookahead >= length - earliest) ? length
+					: earliest + windowLookahead;
+			synchronized (this) {
+				windows++;
+			}
+			for (int p = 0; p < partitions; p++) {
+				final DataOutputStream out = outs[p];
+				final List<byte[]> messages = forwarded.get(p);
+				final List<Long> timesteps = forwardedTimesteps.get(p);
+				for (int i = 0; i < messages.size(); i++) {
+					out.writeByte(ARRIVAL);
+					out.writeLong(timesteps.get(i));
+					out.writeInt(messages.get(i).length);
+					out.write(messages.get(i));
+				}
+				messages.clear();
+				timesteps.clear();
+				out.writeByte(WINDOW);
+				out.writeLong(windowEnd);
+				out.flush();
+			}
+		}
+	}
+}
@@ -0,0 +1,350 @@
+package net.alexheavens.cs4099.simulation;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import net.alexheavens.cs4099.network.ILinkEndpoint;
+import net.alexheavens.cs4099.network.Network;
+import net.alexheavens.cs4099.network.Node;
+import net.alexheavens.cs4099.network.configuration.ILinkConfig;
+import net.alexheavens.cs4099.network.configuration.INetworkConfig;
+import net.alexheavens.cs4099.network.configuration.NetworkConfig;
+import net.alexheavens.cs4099.network.configuration.NetworkPartition;
+import net.alexheavens.cs4099.network.configuration.NetworkPartitioner;
+import net.alexheavens.cs4099.usercode.NodeScript;
+
+/**
+ * A DistributedSimulationWorker simulates one partition of a network for a
+ * {@link DistributedCoordinator}, typically in a Java runtime of its own.
+ *
+ * Each worker creates only the nodes of its partition, and a
+ * {@link RemoteNode} standing in for each of their neighbours in other
+ * partitions, so holds no script or state of the rest of the network. The
+ * partition is simulated by a LogicalProcess in the windows of time opened by
+ * the coordinator. Messages sent toward nodes of
+ * other partitions are encoded by a {@link MessageCodec}, after the place of
+ * their arrival in the order of events, and passed to the coordinator, which
+ * forwards them to the workers of their targets, where they are decoded as
+ * sent from the stand-ins for their sources. The
+ * sending of a message is logged by the worker of its source, and its arrival
+ * by the worker of its target.
+ *
+ * @author Alexander Heavens <alexander.heavens@gmail.com>
+ * @version 1.0
+ */
+public class DistributedSimulationWorker {
+
+	private final int nodeCount;
+	private final long length;
+	private final NetworkPartition division;
+	private final int partition;
+	private final int coordinatorPort;
+	private final LogicalProcess process;
+	private final MessageCodec codec;
+	private final long lookahead;
+	private DataInputStream in;
+	private DataOutputStream out;
+	private volatile long windowEnd;
+	private volatile RuntimeException failure;
+	private boolean simulated;
+
+	/**
+	 * Creates the worker of one partition, with the nodes of the partition.
+	 *
+	 * @param nodeClass
+	 *            the class of script that the nodes of the network execute.
+	 * @param config
+	 *            the configuration of the whole network, as given to every
+	 *            worker.
+	 * @param initiator
+	 *            the simulation ID of the initiator node.
+	 * @param scrambleCode
+	 *            the amount added to the simulation ID of each node to give
+	 *            its machine ID, or 0 if machine IDs are not scrambled.
+	 * @param simLength
+	 *            the number of timesteps to simulate.
+	 * @param partitionOf
+	 *            the partition of each node, by simulation ID, as given to
+	 *            every worker.
+	 * @param workerPartition
+	 *            the partition simulated by this worker.
+	 * @param port
+	 *            the loopback port on which the coordinator listens.
+	 * @throws InstantiationException
+	 *             if the node class cannot be instantiated.
+	 * @throws IllegalAccessException
+	 *             if a field cannot be accessed in the script class.
+	 */
+	public DistributedSimulationWorker(Class<? extends NodeScript> nodeClass,
+			INetworkConfig config, int initiator, int scrambleCode,
+			long simLength, int[] partitionOf, int workerPartition, int port)
+			throws InstantiationException, IllegalAccessException {
+		if (nodeClass == null)
+			throw new IllegalArgumentException(
+					"Cannot create a simulation worker with a null script class.");
+		if (config == null)
+			throw new IllegalArgumentException(
+					"Cannot create a simulation worker with a null network configuration.");
+		if (initiator < 0 || initiator >= config.nodeCount())
+			throw new IllegalArgumentException("Invalid initiator: "
+					+ initiator);
+		if (scrambleCode < 0)
+			throw new IllegalArgumentException("Invalid scramble code: "
+					+ scrambleCode);
+		if (simLength < 1)
+			throw new IllegalArgumentException(
+					"Cannot create a simulation worker that is less than 1 timestep in length.");
+
+		division = NetworkPartition.fromAssignment(config.nodeCount(),
+				partitionOf, config.links());
+		nodeCount = config.nodeCount();
+		length = simLength;
+		partition = workerPartition;
+		coordinatorPort = port;
+
+		final int[] members = division.members(partition);
+		final ILinkEndpoint[] nodes = new ILinkEndpoint[nodeCount];
+		final List<Node> partitionNodes = new ArrayList<Node>(members.length);
+		for (int id : members) {
+			final Node node = Network.createNode(nodeClass, id == initiator);
+			node.setSimulationId(id, scrambleCode);
+			nodes[id] = node;
+			partitionNodes.add(node);
+		}
+
+		// Link in the order of the configuration, as a Network does, so that
+		// each node holds its neighbours in the same order.
+		for (ILinkConfig link : config.links()) {
+			if (division.partitionOf(link.source()) != partition
+					&& division.partitionOf(link.target()) != partition)
+				continue;
+			final ILinkEndpoint source = held(nodes, link.source(), initiator,
+					scrambleCode);
+			final ILinkEndpoint target = held(nodes, link.target(), initiator,
+					scrambleCode);
+			source.addNeighbour(target, link.latency());
+		}
+
+		process = new LogicalProcess(partition, new Host(), partitionNodes,
+				ExecutionMode.PLATFORM_THREADS, BarrierType.LOCKING, 0);
+		codec = new MessageCodec(Arrays.asList(nodes), nodeClass
+				.getClassLoader());
+		lookahead = division.minimumCutLatency(partition);
+		failure = null;
+		simulated = false;
+	}
+
+	/*
+	 * Returns the node of the partition with the given ID, or the stand-in for
+	 * a node of another partition, created on first use.
+	 */
+	private static ILinkEndpoint held(ILinkEndpoint[] nodes, int simulationId,
+			int initiator, int scrambleCode) {
+		if (nodes[simulationId] == null) {
+			final RemoteNode standIn = new RemoteNode(
+					simulationId == initiator);
+			standIn.setSimulationId(simulationId, scrambleCode);
+			nodes[simulationId] = standIn;
+		}
+		return nodes[simulationId];
+	}
+
+	/**
+	 * Connects to the coordinator and simulates the worker's partition,
+	 * returning once the coordinator ends the simulation.
+	 *
+	 * @return A log of the events that occurred in the partition, and timing
+	 *         information of each of its nodes (id) to the time taken per
+	 *         timestep.
+	 * @throws IllegalStateException
+	 *             if the worker has already simulated.
+	 * @throws SimulationRuntimeException
+	 *             if simulation of the partition failed.
+	 * @throws IOException
+	 *             if the coordinator cannot be reached.
+	 */
+	public SimulationResults simulate() throws IOException {
+		if (simulated)
+			throw new IllegalStateException(
+					"Attempted to simulate a partition twice.");
+		simulated = true;
+
+		final Socket socket = new Socket(InetAddress.getByName(null),
+				coordinatorPort);
+		try {
+			socket.setTcpNoDelay(true);
+			in = new DataInputStream(new BufferedInputStream(socket
+					.getInputStream()));
+			out = new DataOutputStream(new BufferedOutputStream(socket
+					.getOutputStream()));
+			out.writeByte(DistributedCoordinator.HELLO);
+			out.writeInt(partition);
+			out.writeLong(lookahead);
+			out.flush();
+
+			process.thread().start();
+			try {
+				process.thread().join();
+			} catch (InterruptedException e) {
+				throw new IllegalStateException();
+			}
+			process.release();
+		} finally {
+			socket.close();
+		}
+		if (failure != null)
+			throw new SimulationRuntimeException(failure);
+
+		return new SimulationResults(process.eventLog(), process
+				.timeStepProcessIdMap());
+	}
+
+	/**
+	 * Simulates one partition of a network in a Java runtime of its own,
+	 * writing the events of the partition to a file as JSON.
+	 *
+	 * @param args
+	 *            the coordinator's port, the network configuration file, the
+	 *            name of the script class, the simulation length, the seed of
+	 *            the network, the partition simulated, the number of partitions
+	 *            and the file to write events to. As partitioning is
+	 *            deterministic, every worker divides the network alike.
+	 */
+	public static void main(String[] args) throws Exception {
+		if (args.length != 8) {
+			System.err.println("Usage: DistributedSimulationWorker <port> "
+					+ "<config file> <script class> <length> <seed> "
+					+ "<partition> <partitions> <log file>");
+			System.exit(1);
+		}
+
+		final int port = Integer.parseInt(args[0]);
+		final NetworkConfig config = new NetworkConfig(new File(args[1]));
+		final Class<? extends NodeScript> scriptClass = Class.forName(args[2])
+				.asSubclass(NodeScript.class);
+		final long simLength = Long.parseLong(args[3]);
+		final long seed = Long.parseLong(args[4]);
+		final int workerPartition = Integer.parseInt(args[5]);
+		final int partitions = Integer.parseInt(args[6]);
+
+		// Choose the initiator from the seed as a Network does, without
+		// scrambling machine IDs.
+		final int initiator = new Random(seed).nextInt(config.nodeCount());
+		final DistributedSimulationWorker worker = new DistributedSimulationWorker(
+				scriptClass, config, initiator, 0, simLength,
+				new NetworkPartitioner(partitions).partition(config)
+						.assignment(), workerPartition, port);
+		final SimulationResults results = worker.simulate();
+
+		final Writer writer = new FileWriter(args[7]);
+		try {
+			results.getEvents().toJSONObject().write(writer);
+		} finally {
+			writer.close();
+		}
+		System.exit(0);
+	}
+
+	/*
+	 * Opens windows and passes arrivals through the coordinator.
+	 */
+	private class Host implements PartitionHost {
+
+		public long simulationLength() {
+			return length;
+		}
+
+		public int nodeCount() {
+			return nodeCount;
+		}
+
+		public int partitionOf(int simulationId) {
+			return division.partitionOf(simulationId);
+		}
+
+		public boolean awaitWindow() {
+			try {
+				synchronized (out) {
+					if (failure != null) {
+						out.writeByte(DistributedCoordinator.FAILED);
+						out.writeUTF(String.valueOf(failure));
+					} else {
+						out.writeByte(DistributedCoordinator.EARLIEST);
+						out.writeLong(process.takeEarliestTimestep());
+					}
+					out.flush();
+				}
+
+				while (true) {
+					final int op = in.readUnsignedByte();
+					if (op == DistributedCoordinator.ARRIVAL) {
+						final long timestep = in.readLong();
+						in.readInt();
+						final long orderTimestep = in.readLong();
+						final int orderStage = in.readInt();
+						final long orderSource = in.readLong();
+						process.deliverAcross(new LogicalProcess.OrderedEvent(
+								new MessageArrivalEvent(codec.decode(in),
+										timestep), 0, orderTimestep,
+								orderStage, orderSource));
+					} else if (op == DistributedCoordinator.WINDOW) {
+						windowEnd = in.readLong();
+						return failure == null;
+					} else if (op == DistributedCoordinator.FINISH) {
+						return false;
+					} else {
+						throw new IOException("Unexpected operation " + op
+								+ " from coordinator.");
+					}
+				}
+			} catch (IOException e) {
+				if (failure == null)
+					failure = new IllegalStateException(e);
+				return false;
+			}
+		}
+
+		public long windowEnd() {
+			return windowEnd;
+		}
+
+		public void forward(int targetPartition,
+				LogicalProcess.OrderedEvent arrival) {
+			try {
+				final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+				final DataOutputStream encoded = new DataOutputStream(bytes);
+				encoded.writeLong(arrival.orderTimestep);
+				encoded.writeInt(arrival.orderStage);
+				encoded.writeLong(arrival.orderSource);
+				codec.encode(((MessageArrivalEvent) arrival.event).message(),
+						encoded);
+				synchronized (out) {
+					out.writeByte(DistributedCoordinator.ARRIVAL);
+					out.writeInt(targetPartition);
+					out.writeLong(arrival.event.getTimestep());
+					out.writeInt(bytes.size());
+					bytes.writeTo(out);
+				}
+			} catch (IOException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+
+		public void fail(RuntimeException e) {
+			failure = e;
+		}
+	}
+}
@@ -1,7 +1,16 @@
 package net.alexheavens.cs4099.simulation;
 
-import java.util.Observable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.alexheavens.cs4099.network.ILinkEndpoint;
+import net.alexheavens.cs4099.network.IMessageImpl;
 
 /**
  * Controls the processing of events during simulation.
@@ -9,12 +18,29 @@ import java.util.concurrent.PriorityBlockingQueue;
  * @author Alexander Heavens <alexander.heavens@gmail.com>
  * @version 1.0
  */
-public class EventController extends Observable implements IEventController {
+public class EventController implements IEventController {
+
+	/*
+	 * Events of the same timestep are processed in the order they were
+	 * queued.
+	 */
+	private static final Comparator<QueuedEvent> QUEUE_ORDER = new Comparator<QueuedEvent>() {
+		public int compare(QueuedEvent a, QueuedEvent b) {
+			final int byTimestep = Long.compare(a.event.getTimestep(), b.event
+					.getTimestep());
+			return (byTimestep != 0) ? byTimestep : Long.compare(a.sequence,
+					b.sequence);
+		}
+	};
 
-	protected PriorityBlockingQueue<ISimulationEvent> eventQueue;
+	private final PriorityBlockingQueue<QueuedEvent> eventQueue;
+	private final AtomicLong queuedEvents;
 	private IEventLog eventLog;
 	private long currentTimestep;
 	private long processLimitTimestep;
+	private final SimulationEventBus eventBus;
+	private final Map<ILinkEndpoint, List<MessageArrivalBatchEvent>> arrivals;
+	private volatile ArrivalScheduler arrivalScheduler;
 
 	/**
 	 * Creates an EventController with an empty event queue. A limit is
@@ -28,13 +54,66 @@ public class EventController extends Observable implements IEventController {
 	 *            greater than 0.
 	 */
 	public EventController(long processLimit) {
+		this(processLimit, new RecordEventLog());
+	}
+
+	/**
+	 * Creates an EventController with an empty event queue, logging processed
+	 * events to the given log.
+	 * 
+	 * @param processLimit
+	 *            the timestep at which no further events can occur. Must be
+	 *            greater than 0.
+	 * @param log
+	 *            the log of processed events.
+	 */
+	public EventController(long processLimit, IEventLog log) {
+		this(processLimit, log, QUEUE_ORDER);
+	}
+
+	/**
+	 * Creates an EventController with an empty event queue, logging processed
+	 * events to the given log and processing those of the same timestep in the
+	 * given order.
+	 * 
+	 * @param processLimit
+	 *            the timestep at which no further events can occur. Must be
+	 *            greater than 0.
+	 * @param log
+	 *            the log of processed events.
+	 * @param order
+	 *            the order of queued events, which must be that of their
+	 *            timesteps first.
+	 */
+	EventController(long processLimit, IEventLog log,
+			Comparator<QueuedEvent> order) {
+		if (log == null)
+			throw new IllegalArgumentException(
+					"Attempted to create controller with null event log.");
 		if (processLimit < 1)
 			throw new IllegalArgumentException("Invalid process limit: "
 					+ processLimit);
-		eventQueue = new PriorityBlockingQueue<ISimulationEvent>();
+		queuedEvents = new AtomicLong();
+		eventQueue = new PriorityBlockingQueue<QueuedEvent>(11, order);
 		currentTimestep = 0;
 		processLimitTimestep = processLimit;
-		eventLog = new EventLog();
+		eventLog = log;
+		eventBus = new SimulationEventBus();
+		arrivals = new IdentityHashMap<ILinkEndpoint, List<MessageArrivalBatchEvent>>();
+		arrivalScheduler = null;
+	}
+
+	/**
+	 * Sets the scheduler that orders the messages arriving at a node in the
+	 * same timestep. A controller that processes events concurrently may call
+	 * it from many Threads at once.
+	 * 
+	 * @param scheduler
+	 *            the scheduler, or null to queue messages in the order they
+	 *            were sent.
+	 */
+	public void setArrivalScheduler(ArrivalScheduler scheduler) {
+		arrivalScheduler = scheduler;
 	}
 
 	public void scheduleEvent(ISimulationEvent event) {
@@ -57,61 +136,315 @@ public class EventController extends Observable implements IEventController {
 		if (event.getTimestep() == currentTimestep && immediateProcess) {
 			processEvent(event);
 		} else {
-			eventQueue.add(event);
+			queueEvent(event);
+		}
+	}
+
+	public synchronized void scheduleArrival(IMessageImpl<?> message,
+			long arrivalTimestep) {
+		if (message == null)
+			throw new IllegalArgumentException(
+					"Attempted to schedule arrival of null message.");
+
+		// The batches waiting toward each node are kept until delivered, so
+		// that a message joins the batch of its timestep whatever the order
+		// in which arrivals are scheduled.
+		final ILinkEndpoint target = message.target();
+		List<MessageArrivalBatchEvent> waiting = arrivals.get(target);
+		if (waiting == null) {
+			waiting = new ArrayList<MessageArrivalBatchEvent>(2);
+			arrivals.put(target, waiting);
 		}
+		for (MessageArrivalBatchEvent batch : waiting) {
+			if (batch.getTimestep() == arrivalTimestep) {
+				batch.addMessage(message);
+				return;
+			}
+		}
+		final MessageArrivalBatchEvent newBatch = new MessageArrivalBatchEvent(
+				message, arrivalTimestep);
+		waiting.add(newBatch);
+		scheduleEvent(newBatch);
 	}
 
 	public void processEvent() {
-		if (eventQueue.size() == 0)
+		ISimulationEvent event = pollEvent();
+		if (event == null)
 			throw new IllegalStateException(
 					"Attempted to process event where none was waiting.");
-		ISimulationEvent event = eventQueue.poll();
 		processEvent(event);
 	}
 
-	private synchronized void processEvent(ISimulationEvent event) {
+	public void processTimestep() {
+		final long timestep = nextEventTimestep();
+		if (timestep == NO_EVENTS_TIMESTEP)
+			throw new IllegalStateException(
+					"Attempted to process timestep where no event was waiting.");
+		do {
+			processEvent();
+		} while (nextEventTimestep() == timestep);
+	}
+
+	/**
+	 * Adds an event to the queue of those waiting to be processed. Events of
+	 * the same timestep are processed in the order they were queued.
+	 * 
+	 * @param event
+	 *            the event to queue.
+	 */
+	protected void queueEvent(ISimulationEvent event) {
+		eventQueue.add(queueEntry(event, queuedEvents.getAndIncrement()));
+	}
+
+	/**
+	 * Creates the entry by which an event waits in the queue.
+	 * 
+	 * @param event
+	 *            the event to queue.
+	 * @param sequence
+	 *            the number of events queued before it.
+	 * @return The entry of the event.
+	 */
+	QueuedEvent queueEntry(ISimulationEvent event, long sequence) {
+		return new QueuedEvent(event, sequence);
+	}
+
+	/**
+	 * Removes the earliest event from the queue of those waiting to be
+	 * processed.
+	 * 
+	 * @return The earliest event, or null if none is waiting.
+	 */
+	protected ISimulationEvent pollEvent() {
+		final QueuedEvent next = pollEntry();
+		return (next != null) ? next.event : null;
+	}
+
+	/**
+	 * Removes the entry of the earliest event from the queue.
+	 * 
+	 * @return The entry of the earliest event, or null if none is waiting.
+	 */
+	QueuedEvent pollEntry() {
+		return eventQueue.poll();
+	}
+
+	/**
+	 * Removes every event from the queue of those waiting to be processed.
+	 */
+	protected void clearEvents() {
+		eventQueue.clear();
+	}
+
+	/**
+	 * @return The events waiting to be processed, in the order they will be
+	 *         processed. The queue is unchanged.
+	 */
+	protected List<ISimulationEvent> waitingEvents() {
+		final List<QueuedEvent> queued = new ArrayList<QueuedEvent>(eventQueue);
+		Collections.sort(queued, eventQueue.comparator());
+		final List<ISimulationEvent> events = new ArrayList<ISimulationEvent>(
+				queued.size());
+		for (QueuedEvent entry : queued)
+			events.add(entry.event);
+		return events;
+	}
+
+	/**
+	 * Replaces the events waiting to be processed with those of another
+	 * simulation, continuing it from the given timestep.
+	 * 
+	 * @param timestep
+	 *            the timestep of the last event processed.
+	 * @param events
+	 *            the events waiting to be processed, ordered by timestep.
+	 */
+	synchronized void restoreEvents(long timestep,
+			List<? extends ISimulationEvent> events) {
+		clearEvents();
+		arrivals.clear();
+		currentTimestep = timestep;
+		for (ISimulationEvent event : events) {
+			queueEvent(event);
+			if (event instanceof MessageArrivalBatchEvent) {
+				final ILinkEndpoint target = ((MessageArrivalBatchEvent) event)
+						.message().target();
+				if (!arrivals.containsKey(target))
+					arrivals.put(target,
+							new ArrayList<MessageArrivalBatchEvent>(2));
+				arrivals.get(target).add((MessageArrivalBatchEvent) event);
+			}
+		}
+	}
+
+	/**
+	 * Processes an event removed from the queue, logging it and passing it on
+	 * to listeners if it is important.
+	 * 
+	 * @param event
+	 *            the event to process.
+	 */
+	protected synchronized void processEvent(ISimulationEvent event) {
+		enterTimestep(event.getTimestep());
+		if (enactEvent(event))
+			recordEvent(event);
+	}
 
-		currentTimestep = event.getTimestep();
+	/**
+	 * Moves the controller to the timestep of the events about to be
+	 * processed.
+	 * 
+	 * @param timestep
+	 *            the timestep of the events.
+	 * @throws IllegalStateException
+	 *             if the timestep is at or past the process limit.
+	 */
+	protected synchronized void enterTimestep(long timestep) {
+		currentTimestep = timestep;
 		if (currentTimestep >= processLimitTimestep)
 			throw new IllegalStateException(
 					"Attempted to process event past process limit.");
+	}
 
+	/**
+	 * Enacts an event's behaviour upon the system, without recording it.
+	 * 
+	 * @param event
+	 *            the event to enact, of the current timestep.
+	 * @return Whether the event occurred, false if its node had already left
+	 *         simulation.
+	 */
+	protected boolean enactEvent(ISimulationEvent event) {
+		final ArrivalScheduler scheduler = arrivalScheduler;
+		if (scheduler != null && event instanceof MessageArrivalBatchEvent) {
+			final MessageArrivalBatchEvent batch = (MessageArrivalBatchEvent) event;
+			if (batch.messages().size() > 1)
+				batch.reorder(scheduler.order(batch.message().target(),
+						batch.getTimestep(), batch.messages()));
+		}
 		try {
 			event.process(this);
-			eventLog.addEvent(event);
+			return true;
+		} catch (DeadNodeException e) {
+			return false;
+		} finally {
+			if (event instanceof MessageArrivalBatchEvent)
+				forgetArrival((MessageArrivalBatchEvent) event);
+		}
+	}
 
-			// If the event is important, pass it on to any observers.
-			if (event.priority() <= EVENT_NOTIFY_THRESHOLD) {
-				setChanged();
-				notifyObservers(event);
+	/*
+	 * Stops waiting on a batch of arrivals that has been delivered, forgetting
+	 * its target once no other batch waits toward it.
+	 */
+	private synchronized void forgetArrival(MessageArrivalBatchEvent batch) {
+		final ILinkEndpoint target = batch.message().target();
+		final List<MessageArrivalBatchEvent> waiting = arrivals.get(target);
+		if (waiting == null)
+			return;
+		for (int i = 0; i < waiting.size(); i++) {
+			if (waiting.get(i) == batch) {
+				waiting.remove(i);
+				break;
 			}
-		} catch (DeadNodeException e) {
 		}
+		if (waiting.isEmpty())
+			arrivals.remove(target);
+	}
+
+	/**
+	 * Logs an event that has occurred, passing it on to listeners if it is
+	 * important.
+	 * 
+	 * @param event
+	 *            the event that occurred.
+	 */
+	protected synchronized void recordEvent(ISimulationEvent event) {
+		logEvent(event);
+
+		// If the event is important, pass it on to any listeners.
+		if (event.priority() <= EVENT_NOTIFY_THRESHOLD)
+			eventBus.publish(event);
+	}
+
+	/**
+	 * @return The number of nodes toward which batches of arrivals wait to be
+	 *         delivered.
+	 */
+	synchronized int arrivalTargetCount() {
+		return arrivals.size();
+	}
+
+	/**
+	 * Adds an event that has occurred to the log.
+	 * 
+	 * @param event
+	 *            the event that occurred.
+	 */
+	void logEvent(ISimulationEvent event) {
+		eventLog.addEvent(event);
 	}
 
 	public long nextEventTimestep() {
-		return (eventQueue.size() > 0) ? eventQueue.peek().getTimestep()
-				: NO_EVENTS_TIMESTEP;
+		final QueuedEvent next = eventQueue.peek();
+		return (next != null) ? next.event.getTimestep() : NO_EVENTS_TIMESTEP;
 	}
 
 	public long currentTimestep() {
 		return currentTimestep;
 	}
 
-	public void update(Observable sender, Object eventUpdate) {
-		if (!(eventUpdate instanceof ISimulationEvent))
-			throw new IllegalArgumentException(
-					"Non ISimulationEvent passed as update to EventController.");
-		ISimulationEvent event = (ISimulationEvent) eventUpdate;
+	public void eventRaised(ISimulationEvent event) {
 		if (event.getTimestep() == ISimulationEvent.CURRENT_TIMESTEP)
 			event.markWithTimestep(currentTimestep);
 		scheduleEvent(event);
 	}
 
+	/**
+	 * Adds a listener to be passed every processed event that meets the
+	 * <code>EVENT_NOTIFY_THRESHOLD</code>.
+	 * 
+	 * @param listener
+	 *            the listener to add.
+	 */
+	public void addEventListener(ISimulationEventListener listener) {
+		eventBus.addListener(listener);
+	}
+
+	/**
+	 * @param listener
+	 *            the listener to no longer pass processed events.
+	 */
+	public void removeEventListener(ISimulationEventListener listener) {
+		eventBus.removeListener(listener);
+	}
+
+	/**
+	 * @return The number of listeners passed processed events.
+	 */
+	public int eventListenerCount() {
+		return eventBus.listenerCount();
+	}
+
 	/**
 	 * @return the log of events that controller keeps track of.
 	 */
 	public IEventLog getEventLog() {
 		return eventLog;
 	}
+
+	/*
+	 * An event waiting in the queue, with the sequence number it was queued
+	 * under.
+	 */
+	static class QueuedEvent {
+
+		final ISimulationEvent event;
+		final long sequence;
+
+		QueuedEvent(ISimulationEvent event, long sequence) {
+			this.event = event;
+			this.sequence = sequence;
+		}
+	}
 }
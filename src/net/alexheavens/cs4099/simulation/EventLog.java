@@ -31,6 +31,12 @@ public class EventLog implements IEventLog {
 	public synchronized void addEvent(ISimulationEvent event) {
 		if (event == null)
 			throw new IllegalArgumentException("Attempted to log null event.");
+		if (event instanceof MessageArrivalBatchEvent) {
+			for (IMessageImpl<?> message : ((MessageArrivalBatchEvent) event)
+					.messages())
+				addEvent(new MessageArrivalEvent(message, event.getTimestep()));
+			return;
+		}
 		if (events.contains(event))
 			throw new IllegalArgumentException(
 					"Attempted to add an event to a log twice.");
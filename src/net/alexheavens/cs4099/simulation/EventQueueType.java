@@ -0,0 +1,63 @@
+package net.alexheavens.cs4099.simulation;
+
+/**
+ * The implementation of the queue in which events wait to be processed during
+ * simulation.
+ *
+ * @author Alexander Heavens <alexander.heavens@gmail.com>
+ * @version 1.0
+ */
+public enum EventQueueType {
+
+	/**
+	 * Events wait in a priority queue ordered by timestep.
+	 */
+	PRIORITY_QUEUE {
+		public EventController createEventController(long processLimit) {
+			return new EventController(processLimit);
+		}
+	},
+
+	/**
+	 * Events wait in a hierarchical timing wheel of timestep buckets.
+	 */
+	TIMING_WHEEL {
+		public EventController createEventController(long processLimit) {
+			return new TimingWheelEventController(processLimit);
+		}
+	},
+
+	/**
+	 * Events wait in a timing wheel, and the independent events of each
+	 * timestep are processed concurrently, grouped by the node they act upon.
+	 * Every event of a timestep is therefore processed before any node made
+	 * runnable by them executes, whatever the execution mode. Unsupported by
+	 * cooperative execution.
+	 */
+	PARALLEL_TIMING_WHEEL {
+		public EventController createEventController(long processLimit) {
+			return new ParallelEventController(processLimit);
+		}
+
+		public boolean batchesTimesteps() {
+			return true;
+		}
+	};
+
+	/**
+	 * @param processLimit
+	 *            the timestep at which no further events can occur.
+	 * @return A new controller whose events wait in a queue of this type.
+	 */
+	public abstract EventController createEventController(long processLimit);
+
+	/**
+	 * @return Whether the events of a timestep are processed together, as
+	 *         for an {@link ExecutionMode} that batches timesteps.
+	 * @see ExecutionMode#batchesTimesteps()
+	 */
+	public boolean batchesTimesteps() {
+		return false;
+	}
+
+}
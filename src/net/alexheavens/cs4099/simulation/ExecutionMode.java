@@ -0,0 +1,127 @@
+package net.alexheavens.cs4099.simulation;
+
+import java.util.concurrent.ThreadFactory;
+
+import net.alexheavens.cs4099.concurrent.CooperativeScheduler;
+import net.alexheavens.cs4099.concurrent.PlatformThreadFactory;
+import net.alexheavens.cs4099.concurrent.VirtualThreadFactory;
+
+/**
+ * The manner in which the Threads executing Node scripts are created during
+ * simulation.
+ *
+ * Unless stated otherwise, event-driven scripts are invoked on a worker Thread
+ * for each processor, each keeping to the nodes given it by a partition of the
+ * network's topology.
+ *
+ * @author Alexander Heavens <alexander.heavens@gmail.com>
+ * @version 1.0
+ */
+public enum ExecutionMode {
+
+	/**
+	 * Each Node executes on its own platform Thread.
+	 */
+	PLATFORM_THREADS {
+		public ThreadFactory createThreadFactory() {
+			return new PlatformThreadFactory();
+		}
+	},
+
+	/**
+	 * Each Node executes on its own virtual Thread, sharing a bounded pool of
+	 * carrier Threads. Requires a Java 21 runtime.
+	 */
+	VIRTUAL_THREADS {
+		public ThreadFactory createThreadFactory() {
+			return new VirtualThreadFactory();
+		}
+
+		public boolean canStopThreads() {
+			return false;
+		}
+	},
+
+	/**
+	 * Only one Node executes at a time. Control is handed directly between
+	 * Nodes in a fixed order by a {@link CooperativeScheduler}, making
+	 * simulation deterministic.
+	 *
+	 * This is not single-carrier scheduling: each Node still has a Thread of
+	 * its own, and the scheduler only serialises them. Where the Java runtime
+	 * supports them, Nodes execute on virtual Threads, otherwise on platform
+	 * Threads. Virtual Threads are run by the runtime's shared scheduler,
+	 * which may mount successive Nodes on different carrier Threads, so each
+	 * hand over still costs an unpark and a reschedule.
+	 */
+	COOPERATIVE {
+		public ThreadFactory createThreadFactory() {
+			if (VirtualThreadFactory.isSupported())
+				return new VirtualThreadFactory();
+			return new PlatformThreadFactory();
+		}
+
+		public boolean canStopThreads() {
+			return !VirtualThreadFactory.isSupported()
+					&& PlatformThreadFactory.canStopThreads();
+		}
+	},
+
+	/**
+	 * Every event of a timestep is processed first, then every Node made
+	 * runnable by them is released at once, so that they execute in parallel
+	 * in one step with a single wait for them all per timestep.
+	 *
+	 * Event-driven scripts are invoked on a work-stealing ForkJoinPool, which
+	 * balances uneven work between processors but cannot keep a node to one
+	 * worker. Other Nodes execute on virtual Threads where the Java runtime
+	 * supports them, whose carrier Threads are themselves a work-stealing
+	 * ForkJoinPool, and on platform Threads scheduled by the operating system
+	 * otherwise.
+	 */
+	WORK_STEALING {
+		public ThreadFactory createThreadFactory() {
+			if (VirtualThreadFactory.isSupported())
+				return new VirtualThreadFactory();
+			return new PlatformThreadFactory();
+		}
+
+		public boolean canStopThreads() {
+			return !VirtualThreadFactory.isSupported()
+					&& PlatformThreadFactory.canStopThreads();
+		}
+
+		public boolean batchesTimesteps() {
+			return true;
+		}
+	};
+
+	/**
+	 * @return Whether every event of a timestep is processed before any Node
+	 *         made runnable by them executes, so that they execute together
+	 *         and are waited for once. Otherwise the simulation Thread waits
+	 *         for Nodes after each event, and a Node sees only the events
+	 *         processed before it was made runnable.
+	 */
+	public boolean batchesTimesteps() {
+		return false;
+	}
+
+	/**
+	 * @return A factory of the Threads that Nodes will execute on.
+	 * @throws UnsupportedOperationException
+	 *             if the mode is not supported by the Java runtime.
+	 */
+	public abstract ThreadFactory createThreadFactory();
+
+	/**
+	 * @return Whether the Threads created can be stopped part way through a
+	 *         script on this Java runtime, so that a script that is not
+	 *         instrumented can be timed out.
+	 * @see net.alexheavens.cs4099.usercode.ScriptInstrumenter
+	 */
+	public boolean canStopThreads() {
+		return PlatformThreadFactory.canStopThreads();
+	}
+
+}
@@ -0,0 +1,94 @@
+package net.alexheavens.cs4099.simulation;
+
+/**
+ * The outcome of exploring the schedules of a simulation with a
+ * {@link ScheduleExplorer}.
+ * 
+ * @author Alexander Heavens <alexander.heavens@gmail.com>
+ * @version 1.0
+ */
+public final class ExplorationResult {
+
+	private final long schedulesRun;
+	private final long schedulesPruned;
+	private final boolean exhaustive;
+	private final Schedule failingSchedule;
+	private final Throwable failure;
+
+	/**
+	 * @param run
+	 *            the number of schedules simulated to the end and checked.
+	 * @param pruned
+	 *            the number of schedules abandoned on reaching a state
+	 *            already explored.
+	 * @param complete
+	 *            whether every distinct schedule was explored.
+	 * @param failing
+	 *            a schedule that failed the assertion, or null.
+	 * @param error
+	 *            the failure of that schedule, or null.
+	 */
+	ExplorationResult(long run, long pruned, boolean complete,
+			Schedule failing, Throwable error) {
+		schedulesRun = run;
+		schedulesPruned = pruned;
+		exhaustive = complete;
+		failingSchedule = failing;
+		failure = error;
+	}
+
+	/**
+	 * @return The number of schedules simulated to the end and checked
+	 *         against the assertion.
+	 */
+	public long schedulesRun() {
+		return schedulesRun;
+	}
+
+	/**
+	 * @return The number of schedules abandoned on reaching a state that
+	 *         another schedule had already reached, with the same choices yet
+	 *         to make.
+	 */
+	public long schedulesPruned() {
+		return schedulesPruned;
+	}
+
+	/**
+	 * @return Whether every distinct schedule was explored, false if
+	 *         exploration stopped at a failure or the limit on schedules.
+	 */
+	public boolean isExhaustive() {
+		return exhaustive;
+	}
+
+	/**
+	 * @return Whether a schedule failed the assertion.
+	 */
+	public boolean hasFailed() {
+		return failingSchedule != null;
+	}
+
+	/**
+	 * @return A schedule that failed the assertion, which
+	 *         {@link ScheduleExplorer#simulate(Schedule)} reproduces, or null
+	 *         if none did.
+	 */
+	public Schedule failingSchedule() {
+		return failingSchedule;
+	}
+
+	/**
+	 * @return The failure of the failing schedule, or null if none failed.
+	 */
+	public Throwable failure() {
+		return failure;
+	}
+
+	@Override
+	public String toString() {
+		return schedulesRun + " schedules run, " + schedulesPruned
+				+ " pruned" + (exhaustive ? " (exhaustive)" : "")
+				+ (hasFailed() ? ", failed " + failingSchedule : "");
+	}
+}
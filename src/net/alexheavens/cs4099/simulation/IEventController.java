@@ -1,6 +1,6 @@
 package net.alexheavens.cs4099.simulation;
 
-import java.util.Observer;
+import net.alexheavens.cs4099.network.IMessageImpl;
 
 /**
  * The IEventController interface specifies the required functionality to
@@ -9,16 +9,16 @@ import java.util.Observer;
  * and processing of events. As many Node threads may be running at once, any
  * data structure used to maintain these events must allow concurrent access.
  * 
- * The controller is
- * <code>Observable<code> and will notify <code>Observers</code> of any
- * <code>ISimulationEvent</code> that has at least a priority of
- * <code>EVENT_NOTIFY_THRESHOLD</code> on the processing of that event.
+ * The controller listens for the events raised by Nodes, and will pass on to
+ * its own listeners any <code>ISimulationEvent</code> that has at least a
+ * priority of <code>EVENT_NOTIFY_THRESHOLD</code> on the processing of that
+ * event.
  * 
  * @author Alexander Heavens
  * @version 1.0
  * @see java.util.concurrent.PriorityBlockingQueue
  */
-public interface IEventController extends Observer {
+public interface IEventController extends ISimulationEventListener {
 
 	/**
 	 * The value returned for the next time-step if there are no existing events
@@ -28,7 +28,7 @@ public interface IEventController extends Observer {
 
 	/**
 	 * The minimum level of priority required for the controller to notify any
-	 * observers of an event on the processing of the event.
+	 * listeners of an event on the processing of the event.
 	 */
 	public static final int EVENT_NOTIFY_THRESHOLD = 3;
 
@@ -48,6 +48,15 @@ public interface IEventController extends Observer {
 	 */
 	public void processEvent();
 
+	/**
+	 * Removes and processes every event of the earliest timestep in the event
+	 * queue, including those queued for that timestep whilst processing.
+	 * 
+	 * @throws IllegalStateException
+	 *             if no event is waiting.
+	 */
+	public void processTimestep();
+
 	/**
 	 * @return The time-step of occurrence for the earliest event in the event
 	 *         queue if their is a remaining event, otherwise
@@ -73,4 +82,15 @@ public interface IEventController extends Observer {
 	 */
 	public void scheduleEvent(ISimulationEvent event, boolean immediateProcess);
 
+	/**
+	 * Schedules the arrival of a sent message, joining it to any batch already
+	 * scheduled for messages toward the same node at the same timestep.
+	 * 
+	 * @param message
+	 *            the message that has been sent.
+	 * @param arrivalTimestep
+	 *            the timestep at which the message arrives.
+	 */
+	public void scheduleArrival(IMessageImpl<?> message, long arrivalTimestep);
+
 }
@@ -0,0 +1,20 @@
+package net.alexheavens.cs4099.simulation;
+
+/**
+ * The ISimulationEventListener interface is implemented by those wishing to be
+ * passed the ISimulationEvents raised by a {@link SimulationEventBus}.
+ * 
+ * @author Alexander Heavens <alexander.heavens@gmail.com>
+ * @version 1.0
+ */
+public interface ISimulationEventListener {
+
+	/**
+	 * Handles an event raised to the listener.
+	 * 
+	 * @param event
+	 *            the raised event.
+	 */
+	public void eventRaised(ISimulationEvent event);
+
+}
@@ -0,0 +1,475 @@
+package net.alexheavens.cs4099.simulation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.alexheavens.cs4099.concurrent.CallbackDispatcher;
+import net.alexheavens.cs4099.concurrent.CooperativeScheduler;
+import net.alexheavens.cs4099.concurrent.DeferringRegistrar;
+import net.alexheavens.cs4099.concurrent.LeaderBarrier;
+import net.alexheavens.cs4099.network.EventNode;
+import net.alexheavens.cs4099.network.IMessageImpl;
+import net.alexheavens.cs4099.network.Node;
+import net.alexheavens.cs4099.network.ThreadedNode;
+
+/**
+ * A LogicalProcess simulates one partition of a network on a Thread of its
+ * own, for a {@link PartitionHost} such as a
+ * {@link PartitionedSimulationRunner}.
+ *
+ * It keeps its own EventController, barrier and profiler, and processes the
+ * timesteps of its nodes in the same manner as a SimulationRunner, but only
+ * within the windows of time opened by the host. The arrivals of messages
+ * sent toward nodes of other partitions are forwarded by the host, to be
+ * scheduled at the start of the next window.
+ *
+ * Events are processed, and logged, in the order they would be in a
+ * SimulationRunner that batches timesteps. Each queued event waits in an
+ * {@link OrderedEvent} with the timestep and stage at which it was queued,
+ * stages alternating between processing a batch of events and merging
+ * outboxes, and with the node and outbox position it was raised from, or that
+ * of the event processed when it was scheduled. The log records the same place
+ * for every event. A message arriving at or after the end of the window is
+ * held back with those from other partitions, so that the arrivals toward each
+ * node and timestep are scheduled in that order and batched as they would be.
+ *
+ * @author Alexander Heavens <alexander.heavens@gmail.com>
+ * @version 1.0
+ */
+class LogicalProcess implements Runnable {
+
+	/*
+	 * Orders the events of a partition as they would be ordered by the
+	 * EventController of a SimulationRunner.
+	 */
+	private static final Comparator<EventController.QueuedEvent> PARTITION_ORDER = new Comparator<EventController.QueuedEvent>() {
+		public int compare(EventController.QueuedEvent a,
+				EventController.QueuedEvent b) {
+			final OrderedEvent first = (OrderedEvent) a;
+			final OrderedEvent second = (OrderedEvent) b;
+			int order = Long.compare(first.event.getTimestep(), second.event
+					.getTimestep());
+			if (order == 0)
+				order = Long.compare(first.orderTimestep, second.orderTimestep);
+			if (order == 0)
+				order = Integer.compare(first.orderStage, second.orderStage);
+			if (order == 0)
+				order = Long.compare(first.orderSource, second.orderSource);
+			return (order != 0) ? order : Long.compare(first.sequence,
+					second.sequence);
+		}
+	};
+
+	private final int partition;
+	private final PartitionHost runner;
+	private final List<Node> nodes;
+	private final RecordEventLog eventLog;
+	private final PartitionController eventController;
+	private final SimulationProfiler profiler;
+	private final Thread thread;
+	private final ThreadFactory nodeThreadFactory;
+	private final LeaderBarrier pauseBarrier;
+	private final DeferringRegistrar deferringBarrier;
+	private final CallbackDispatcher dispatcher;
+	private final int threadedNodes;
+	private final ConcurrentLinkedQueue<OrderedEvent> inbox;
+	private final AtomicLong inboxEarliest;
+	private long profiledTimestep;
+
+	/**
+	 * Creates the process of one partition.
+	 *
+	 * @param partition
+	 *            the index of the partition.
+	 * @param runner
+	 *            the host coordinating the processes.
+	 * @param partitionNodes
+	 *            the nodes of the partition.
+	 * @param mode
+	 *            the manner in which node Threads are created.
+	 * @param barrier
+	 *            the type of barrier at which nodes wait.
+	 * @param nodeTimeout
+	 *            the time a node can execute for in one timestep before being
+	 *            timed out, or 0 for no timeout.
+	 */
+	LogicalProcess(int partition, PartitionHost runner,
+			List<Node> partitionNodes, ExecutionMode mode, BarrierType barrier,
+			long nodeTimeout) {
+		this.partition = partition;
+		this.runner = runner;
+		nodes = new ArrayList<Node>(partitionNodes);
+		eventLog = new RecordEventLog(true);
+		eventController = new PartitionController(runner.simulationLength(),
+				eventLog);
+		profiler = new SimulationProfiler(runner.nodeCount(),
+				nodeTimeout);
+		thread = new Thread(this, "LogicalProcess-" + partition);
+		nodeThreadFactory = mode.createThreadFactory();
+		inbox = new ConcurrentLinkedQueue<OrderedEvent>();
+		inboxEarliest = new AtomicLong(Long.MAX_VALUE);
+		profiledTimestep = -1;
+
+		int eventNodes = 0;
+		for (Node node : nodes) {
+			if (node instanceof EventNode)
+				eventNodes++;
+			node.addEventListener(eventController);
+		}
+		threadedNodes = nodes.size() - eventNodes;
+		dispatcher = (eventNodes == 0) ? null : SimulationRunner
+				.createDispatcher(mode, nodes, runner.nodeCount());
+
+		if (mode == ExecutionMode.COOPERATIVE)
+			pauseBarrier = new CooperativeScheduler(thread);
+		else
+			pauseBarrier = barrier.createBarrier(thread, Math.max(1,
+					threadedNodes));
+		deferringBarrier = new DeferringRegistrar(pauseBarrier);
+	}
+
+	public void run() {
+		try {
+			setupNodes();
+			long windowEnd = 0;
+			while (runner.awaitWindow()) {
+				drainInbox(windowEnd);
+				windowEnd = runner.windowEnd();
+				simulateUntil(windowEnd);
+			}
+		} catch (RuntimeException e) {
+			// Join the other processes at the barrier so that all end there.
+			runner.fail(e);
+			runner.awaitWindow();
+		}
+	}
+
+	/**
+	 * @return The Thread on which the process runs.
+	 */
+	Thread thread() {
+		return thread;
+	}
+
+	/**
+	 * @return The nodes of the partition.
+	 */
+	List<Node> nodes() {
+		return nodes;
+	}
+
+	/**
+	 * @return The log of events processed by the partition.
+	 */
+	RecordEventLog eventLog() {
+		return eventLog;
+	}
+
+	/**
+	 * @return The timesteps each node of the partition has executed for.
+	 */
+	Map<Integer, Map<Long, Long>> timeStepProcessIdMap() {
+		return profiler.getTimeStepProcessIdMap();
+	}
+
+	/**
+	 * Returns the earliest timestep at which an event of the partition can
+	 * occur, and forgets the earliest arrival waiting in the inbox, which must
+	 * then be drained. Called only whilst the process waits between windows.
+	 *
+	 * @return The earliest timestep of a waiting event or arrival, or
+	 *         <code>Long.MAX_VALUE</code> if there is none.
+	 */
+	long takeEarliestTimestep() {
+		final long next = eventController.nextEventTimestep();
+		final long arrival = inboxEarliest.getAndSet(Long.MAX_VALUE);
+		return (next == IEventController.NO_EVENTS_TIMESTEP) ? arrival : Math
+				.min(next, arrival);
+	}
+
+	/**
+	 * Passes the arrival of a message from another partition to this one. May
+	 * be called by any Thread.
+	 *
+	 * @param arrival
+	 *            the arrival of a message sent toward a node of this
+	 *            partition, with its place in the order of events.
+	 */
+	void deliverAcross(OrderedEvent arrival) {
+		final long arrivalTimestep = arrival.event.getTimestep();
+		inbox.add(arrival);
+		long earliest = inboxEarliest.get();
+		while (arrivalTimestep < earliest
+				&& !inboxEarliest.compareAndSet(earliest, arrivalTimestep))
+			earliest = inboxEarliest.get();
+	}
+
+	/**
+	 * Releases the nodes of the partition once simulation has ended.
+	 */
+	void release() {
+		SimulationRunner.haltNodes(nodes);
+		pauseBarrier.resumeAll();
+		if (dispatcher != null)
+			dispatcher.shutdown();
+	}
+
+	private void setupNodes() {
+		ThreadFactory factory = nodeThreadFactory;
+		final boolean cooperative = pauseBarrier instanceof CooperativeScheduler;
+		if (cooperative)
+			factory = ((CooperativeScheduler) pauseBarrier)
+					.memberFactory(factory);
+
+		profileTimestep(0);
+		final CountDownLatch started = new CountDownLatch(cooperative ? 0
+				: threadedNodes);
+		for (Node node : nodes) {
+			node.holdEvents();
+			if (node instanceof EventNode)
+				((EventNode) node).simulate(dispatcher, profiler);
+			else if (cooperative)
+				((ThreadedNode) node).simulate(deferringBarrier, profiler,
+						factory);
+			else
+				((ThreadedNode) node).simulate(deferringBarrier, profiler,
+						factory, started);
+		}
+		try {
+			started.await();
+		} catch (InterruptedException e) {
+			throw new IllegalStateException();
+		}
+		awaitNodes();
+		mergeOutboxes();
+	}
+
+	/*
+	 * Schedules the arrivals held back during the last window, in the order
+	 * they were sent. Those already passed by processes in the current window
+	 * were sent after them, so are left for the next.
+	 */
+	private void drainInbox(long lastWindowEnd) {
+		final List<OrderedEvent> arrivals = new ArrayList<OrderedEvent>();
+		final List<OrderedEvent> later = new ArrayList<OrderedEvent>();
+		OrderedEvent arrival;
+		while ((arrival = inbox.poll()) != null) {
+			if (arrival.orderTimestep < lastWindowEnd)
+				arrivals.add(arrival);
+			else
+				later.add(arrival);
+		}
+		inbox.addAll(later);
+		Collections.sort(arrivals, PARTITION_ORDER);
+		for (OrderedEvent held : arrivals)
+			eventController.scheduleHeldArrival(held);
+	}
+
+	/*
+	 * Processes every timestep of the partition's events before the end of
+	 * the window.
+	 */
+	private void simulateUntil(long windowEnd) {
+		long timestep = eventController.nextEventTimestep();
+		while (timestep != IEventController.NO_EVENTS_TIMESTEP
+				&& timestep < windowEnd) {
+			profileTimestep(timestep);
+			do {
+				processEvents();
+				awaitNodes();
+				mergeOutboxes();
+			} while (eventController.nextEventTimestep() == timestep);
+			timestep = eventController.nextEventTimestep();
+		}
+	}
+
+	private void profileTimestep(long timestep) {
+		if (timestep > profiledTimestep) {
+			profiler.incrementTimestep(timestep);
+			profiledTimestep = timestep;
+		}
+	}
+
+	private void processEvents() {
+		deferringBarrier.holdNotifications();
+		if (dispatcher != null)
+			dispatcher.holdTasks();
+		try {
+			eventController.processTimestep();
+		} finally {
+			deferringBarrier.releaseNotifications();
+			if (dispatcher != null)
+				dispatcher.releaseTasks();
+		}
+	}
+
+	private void mergeOutboxes() {
+		eventController.beginMerge();
+		for (Node node : nodes) {
+			ISimulationEvent event;
+			int index = 0;
+			while ((event = node.pollOutbox()) != null) {
+				eventController.queueFrom(node.getSimulationId(), index++);
+				eventController.scheduleEvent(event, false);
+			}
+		}
+	}
+
+	private void awaitNodes() {
+		if (threadedNodes > 0)
+			pauseBarrier.waitThreadUnInterruptedly();
+		if (dispatcher != null)
+			dispatcher.awaitIdle();
+	}
+
+	/*
+	 * Marks and orders the events of the partition, schedules the arrivals of
+	 * messages toward its nodes within the window, and holds back the rest or
+	 * passes them to the processes of other partitions.
+	 */
+	private class PartitionController extends EventController {
+
+		private long stageTimestep;
+		private int stage;
+		private long queueTimestep;
+		private int queueStage;
+		private long queueSource;
+		private OrderedEvent polled;
+
+		PartitionController(long processLimit, IEventLog log) {
+			super(processLimit, log, PARTITION_ORDER);
+			stageTimestep = -1;
+			stage = 0;
+			polled = null;
+		}
+
+		@Override
+		public void processTimestep() {
+			beginStage(nextEventTimestep());
+			super.processTimestep();
+		}
+
+		/*
+		 * Begins queueing the events held in the outboxes of nodes.
+		 */
+		void beginMerge() {
+			beginStage(currentTimestep());
+			queueTimestep = currentTimestep();
+			queueStage = stage;
+		}
+
+		/*
+		 * Marks the events queued next as raised by a node, at a position in
+		 * its outbox.
+		 */
+		void queueFrom(int nodeId, int index) {
+			queueSource = ((long) nodeId << 32) | index;
+		}
+
+		/*
+		 * Schedules an arrival held back until the start of the window, in
+		 * the place it was held with.
+		 */
+		void scheduleHeldArrival(OrderedEvent held) {
+			queueTimestep = held.orderTimestep;
+			queueStage = held.orderStage;
+			queueSource = held.orderSource;
+			super.scheduleArrival(((MessageArrivalEvent) held.event).message(),
+					held.event.getTimestep());
+		}
+
+		@Override
+		public synchronized void scheduleArrival(IMessageImpl<?> message,
+				long arrivalTimestep) {
+			if (message != null) {
+				final int targetPartition = runner.partitionOf(message
+						.target().getSimulationId());
+				if (targetPartition != partition
+						|| arrivalTimestep >= runner.windowEnd()) {
+					final OrderedEvent arrival = new OrderedEvent(
+							new MessageArrivalEvent(message, arrivalTimestep),
+							0, queueTimestep, queueStage, queueSource);
+					if (targetPartition != partition)
+						runner.forward(targetPartition, arrival);
+					else
+						deliverAcross(arrival);
+					return;
+				}
+			}
+			super.scheduleArrival(message, arrivalTimestep);
+		}
+
+		@Override
+		OrderedEvent queueEntry(ISimulationEvent event, long sequence) {
+			return new OrderedEvent(event, sequence, queueTimestep, queueStage,
+					queueSource);
+		}
+
+		@Override
+		OrderedEvent pollEntry() {
+			polled = (OrderedEvent) super.pollEntry();
+			if (polled != null) {
+				queueTimestep = polled.event.getTimestep();
+				queueStage = stage;
+				queueSource = polled.orderSource;
+			}
+			return polled;
+		}
+
+		/*
+		 * Events take the place of the event last removed from the queue,
+		 * which is either the event itself or the event that scheduled it to
+		 * be processed at once.
+		 */
+		@Override
+		void logEvent(ISimulationEvent event) {
+			final RecordEventLog log = LogicalProcess.this.eventLog;
+			if (polled == null)
+				log.addEvent(event, 0, 0, 0);
+			else
+				log.addEvent(event, polled.orderTimestep, polled.orderStage,
+						polled.orderSource);
+		}
+
+		/*
+		 * Stages are numbered from 0 in each timestep, so that they match
+		 * across partitions.
+		 */
+		private void beginStage(long timestep) {
+			if (timestep != stageTimestep) {
+				stageTimestep = timestep;
+				stage = 0;
+			} else {
+				stage++;
+			}
+		}
+	}
+
+	/**
+	 * An event of a partition with its place in the order of events: the
+	 * timestep and stage at which it was queued, and the node and outbox
+	 * position it was raised from, or those of the event processed when it
+	 * was scheduled.
+	 */
+	static class OrderedEvent extends EventController.QueuedEvent {
+
+		final long orderTimestep;
+		final int orderStage;
+		final long orderSource;
+
+		OrderedEvent(ISimulationEvent event, long sequence,
+				long orderTimestep, int orderStage, long orderSource) {
+			super(event, sequence);
+			this.orderTimestep = orderTimestep;
+			this.orderStage = orderStage;
+			this.orderSource = orderSource;
+		}
+	}
+}
@@ -0,0 +1,123 @@
+package net.alexheavens.cs4099.simulation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+import net.alexheavens.cs4099.network.IMessageImpl;
+import net.alexheavens.cs4099.network.INodeImpl;
+
+/**
+ * Marks the arrival of every message sent toward the same node that arrives at
+ * the same timestep, across any of its links.
+ *
+ * The messages of a batch are queued at their target together, taking its lock
+ * and waking it at most once. Event logs record the batch as the arrival of
+ * each of its messages.
+ *
+ * @author Alexander Heavens <alexander.heavens@gmail.com>
+ * @version 1.0
+ */
+public class MessageArrivalBatchEvent extends MessageArrivalEvent {
+
+	private final List<IMessageImpl<?>> messages;
+	private boolean delivered;
+
+	/**
+	 * Creates a batch holding a single message.
+	 *
+	 * @param message
+	 *            the first message of the batch.
+	 * @param eventTime
+	 *            the timestep at which the messages arrive.
+	 */
+	public MessageArrivalBatchEvent(IMessageImpl<?> message, long eventTime) {
+		super(message, eventTime);
+		messages = new ArrayList<IMessageImpl<?>>();
+		messages.add(message);
+		delivered = false;
+	}
+
+	/**
+	 * Adds a message to the batch.
+	 *
+	 * @param message
+	 *            a message sent toward the same node as the first of the
+	 *            batch.
+	 * @throws IllegalArgumentException
+	 *             If the message is null, unsent, or sent toward a different
+	 *             node.
+	 * @throws IllegalStateException
+	 *             If the batch has already been delivered.
+	 */
+	public void addMessage(IMessageImpl<?> message) {
+		if (message == null)
+			throw new IllegalArgumentException(
+					"Attempted to add null message to arrival batch.");
+		if (message.getSentAt() == IMessageImpl.TIMESTEP_NOT_SENT)
+			throw new IllegalArgumentException(
+					"Attempted to add unsent message to arrival batch.");
+		if (message.target() != eventMessage.target())
+			throw new IllegalArgumentException(
+					"Attempted to add message of another target to arrival batch.");
+		if (delivered)
+			throw new IllegalStateException(
+					"Attempted to add message to delivered arrival batch.");
+		messages.add(message);
+	}
+
+	/**
+	 * Changes the order in which the messages of the batch are queued at
+	 * their target.
+	 * 
+	 * @param ordered
+	 *            the messages of the batch, each once, in their new order.
+	 * @throws IllegalArgumentException
+	 *             If the messages are not those of the batch.
+	 * @throws IllegalStateException
+	 *             If the batch has already been delivered.
+	 */
+	public void reorder(List<IMessageImpl<?>> ordered) {
+		if (ordered == null || ordered.size() != messages.size())
+			throw new IllegalArgumentException(
+					"Attempted to reorder arrival batch with other messages.");
+		final Set<IMessageImpl<?>> remaining = Collections
+				.newSetFromMap(new IdentityHashMap<IMessageImpl<?>, Boolean>());
+		remaining.addAll(messages);
+		for (IMessageImpl<?> message : ordered) {
+			if (!remaining.remove(message))
+				throw new IllegalArgumentException(
+						"Attempted to reorder arrival batch with other messages.");
+		}
+		if (delivered)
+			throw new IllegalStateException(
+					"Attempted to reorder delivered arrival batch.");
+		messages.clear();
+		messages.addAll(ordered);
+	}
+
+	/**
+	 * @return The messages of the batch, in the order they are queued.
+	 */
+	public List<IMessageImpl<?>> messages() {
+		return Collections.unmodifiableList(messages);
+	}
+
+	/**
+	 * @return Whether the messages of the batch have been queued at their
+	 *         target.
+	 */
+	public boolean isDelivered() {
+		return delivered;
+	}
+
+	@Override
+	public void process(IEventController controller) {
+		delivered = true;
+		for (IMessageImpl<?> message : messages)
+			message.markAsArrived(controller.currentTimestep());
+		((INodeImpl) eventMessage.target()).queueMessages(messages);
+	}
+}
@@ -0,0 +1,387 @@
+package net.alexheavens.cs4099.simulation;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.Serializable;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.alexheavens.cs4099.network.ILinkEndpoint;
+import net.alexheavens.cs4099.network.IMessageImpl;
+import net.alexheavens.cs4099.network.Network;
+
+/**
+ * Encodes sent messages into a compact binary form, to be passed between Java
+ * runtimes that each hold the nodes of the same network, or stand-ins for them,
+ * and decodes them into messages between the nodes held by the receiver.
+ *
+ * A message is encoded as its class name, the simulation IDs of its source and
+ * target, the timestep it was sent, its tag and its data. Integers are written
+ * in a variable number of bytes, and data of the Java primitive wrapper types
+ * are written directly. String data is written as its length followed by its
+ * UTF-8 bytes, so is not limited in length; other Serializable data is written
+ * by Java serialisation. Messages are recreated through a public constructor of
+ * their class taking a tag and data, or data alone, as MessageImpl does.
+ *
+ * @author Alexander Heavens <alexander.heavens@gmail.com>
+ * @version 1.0
+ */
+class MessageCodec {
+
+	private static final int STRING = 0;
+	private static final int INTEGER = 1;
+	private static final int LONG = 2;
+	private static final int DOUBLE = 3;
+	private static final int FLOAT = 4;
+	private static final int SHORT = 5;
+	private static final int BYTE = 6;
+	private static final int BOOLEAN = 7;
+	private static final int CHARACTER = 8;
+	private static final int SERIALIZED = 9;
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private final List<? extends ILinkEndpoint> nodes;
+	private final ClassLoader loader;
+	private final Map<String, Class<?>> classes;
+
+	/**
+	 * Creates a codec for the messages of a network.
+	 *
+	 * @param net
+	 *            the copy of the network whose nodes decoded messages are
+	 *            between.
+	 * @param classLoader
+	 *            the loader of the message classes.
+	 */
+	MessageCodec(Network net, ClassLoader classLoader) {
+		this(net.nodes(), classLoader);
+	}
+
+	/**
+	 * Creates a codec for the messages between some nodes of a network.
+	 *
+	 * @param networkNodes
+	 *            the nodes that decoded messages are between, by simulation
+	 *            ID, or null for nodes not held.
+	 * @param classLoader
+	 *            the loader of the message classes.
+	 */
+	MessageCodec(List<? extends ILinkEndpoint> networkNodes,
+			ClassLoader classLoader) {
+		nodes = networkNodes;
+		loader = classLoader;
+		classes = new HashMap<String, Class<?>>();
+	}
+
+	/**
+	 * Writes a sent message.
+	 *
+	 * @param message
+	 *            the message.
+	 * @param out
+	 *            the output written to.
+	 * @throws IllegalArgumentException
+	 *             if the message has not been sent, or holds data that cannot
+	 *             be encoded.
+	 * @throws IOException
+	 *             if the message cannot be written.
+	 */
+	void encode(IMessageImpl<?> message, DataOutput out) throws IOException {
+		if (message.getSentAt() == IMessageImpl.TIMESTEP_NOT_SENT)
+			throw new IllegalArgumentException(
+					"Attempted to encode an unsent message.");
+
+		out.writeUTF(message.getClass().getName());
+		writeVarLong(out, message.getSourceId());
+		writeVarLong(out, message.getTargetId());
+		writeVarLong(out, message.getSentAt());
+		final String tag = message.getTag();
+		out.writeBoolean(tag != null);
+		if (tag != null)
+			out.writeUTF(tag);
+		writeData(out, message.getData());
+	}
+
+	/**
+	 * Reads a message, recreating it as sent between the nodes held by the
+	 * codec.
+	 *
+	 * @param in
+	 *            the input read from.
+	 * @return The message.
+	 * @throws IOException
+	 *             if the message cannot be read or recreated, or is not
+	 *             between nodes held by the codec.
+	 */
+	IMessageImpl<?> decode(DataInput in) throws IOException {
+		final String className = in.readUTF();
+		final int sourceId = (int) readVarLong(in);
+		final int targetId = (int) readVarLong(in);
+		final long sentAt = readVarLong(in);
+		final String tag = in.readBoolean() ? in.readUTF() : null;
+		final Object data = readData(in);
+
+		final IMessageImpl<?> message = create(className, tag, data);
+		message.attachSendData(node(sourceId), node(targetId));
+		message.markAsSent(sentAt);
+		return message;
+	}
+
+	/**
+	 * Writes a message as held in the state of a simulation, whether or not it
+	 * has been sent, together with the timestep at which it arrived.
+	 *
+	 * @param message
+	 *            the message.
+	 * @param out
+	 *            the output written to.
+	 * @throws IllegalArgumentException
+	 *             if the message holds data that cannot be encoded.
+	 * @throws IOException
+	 *             if the message cannot be written.
+	 */
+	void encodeState(IMessageImpl<?> message, DataOutput out)
+			throws IOException {
+		final boolean sent = message.getSentAt() != IMessageImpl.TIMESTEP_NOT_SENT;
+		out.writeBoolean(sent);
+		if (sent) {
+			encode(message, out);
+			writeVarLong(out, message.getArrivedAt()
+					- IMessageImpl.TIMESTEP_NOT_SENT);
+		} else {
+			out.writeUTF(message.getClass().getName());
+			final String tag = message.getTag();
+			out.writeBoolean(tag != null);
+			if (tag != null)
+				out.writeUTF(tag);
+			writeData(out, message.getData());
+		}
+	}
+
+	/**
+	 * Reads a message written by {@link #encodeState(IMessageImpl, DataOutput)},
+	 * recreating it as sent, and arrived, between the nodes held by the codec.
+	 *
+	 * @param in
+	 *            the input read from.
+	 * @return The message.
+	 * @throws IOException
+	 *             if the message cannot be read or recreated.
+	 */
+	IMessageImpl<?> decodeState(DataInput in) throws IOException {
+		if (in.readBoolean()) {
+			final IMessageImpl<?> message = decode(in);
+			final long arrivedAt = readVarLong(in)
+					+ IMessageImpl.TIMESTEP_NOT_SENT;
+			if (arrivedAt != IMessageImpl.TIMESTEP_NOT_SENT)
+				message.markAsArrived(arrivedAt);
+			return message;
+		}
+
+		final String className = in.readUTF();
+		final String tag = in.readBoolean() ? in.readUTF() : null;
+		return create(className, tag, readData(in));
+	}
+
+	/**
+	 * Writes a non-negative integer in seven bit groups, least significant
+	 * first, the last group of which has its top bit clear.
+	 */
+	static void writeVarLong(DataOutput out, long value) throws IOException {
+		if (value < 0)
+			throw new IllegalArgumentException("Cannot encode negative value "
+					+ value);
+		while ((value & ~0x7fL) != 0) {
+			out.writeByte((int) ((value & 0x7f) | 0x80));
+			value >>>= 7;
+		}
+		out.writeByte((int) value);
+	}
+
+	static long readVarLong(DataInput in) throws IOException {
+		long value = 0;
+		int shift = 0;
+		int group;
+		do {
+			if (shift > 63)
+				throw new IOException("Malformed variable length integer.");
+			group = in.readUnsignedByte();
+			value |= (long) (group & 0x7f) << shift;
+			shift += 7;
+		} while ((group & 0x80) != 0);
+		return value;
+	}
+
+	/*
+	 * Writes a String as its length and UTF-8 bytes, as writeUTF() cannot
+	 * write Strings of more than 65535 bytes.
+	 */
+	private static void writeString(DataOutput out, String value)
+			throws IOException {
+		final byte[] bytes = value.getBytes(UTF_8);
+		writeVarLong(out, bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(DataInput in) throws IOException {
+		final long length = readVarLong(in);
+		if (length > Integer.MAX_VALUE)
+			throw new IOException("Malformed string length " + length);
+		final byte[] bytes = new byte[(int) length];
+		in.readFully(bytes);
+		return new String(bytes, UTF_8);
+	}
+
+	private ILinkEndpoint node(int simulationId) throws IOException {
+		final ILinkEndpoint node = (simulationId < nodes.size()) ? nodes
+				.get(simulationId) : null;
+		if (node == null)
+			throw new IOException("Node " + simulationId
+					+ " is not held by the codec.");
+		return node;
+	}
+
+	private static void writeData(DataOutput out, Object data)
+			throws IOException {
+		if (data instanceof String) {
+			out.writeByte(STRING);
+			writeString(out, (String) data);
+		} else if (data instanceof Integer) {
+			out.writeByte(INTEGER);
+			out.writeInt((Integer) data);
+		} else if (data instanceof Long) {
+			out.writeByte(LONG);
+			out.writeLong((Long) data);
+		} else if (data instanceof Double) {
+			out.writeByte(DOUBLE);
+			out.writeDouble((Double) data);
+		} else if (data instanceof Float) {
+			out.writeByte(FLOAT);
+			out.writeFloat((Float) data);
+		} else if (data instanceof Short) {
+			out.writeByte(SHORT);
+			out.writeShort((Short) data);
+		} else if (data instanceof Byte) {
+			out.writeByte(BYTE);
+			out.writeByte((Byte) data);
+		} else if (data instanceof Boolean) {
+			out.writeByte(BOOLEAN);
+			out.writeBoolean((Boolean) data);
+		} else if (data instanceof Character) {
+			out.writeByte(CHARACTER);
+			out.writeChar((Character) data);
+		} else if (data instanceof Serializable) {
+			final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			final ObjectOutputStream objectOut = new ObjectOutputStream(bytes);
+			objectOut.writeObject(data);
+			objectOut.close();
+			out.writeByte(SERIALIZED);
+			writeVarLong(out, bytes.size());
+			out.write(bytes.toByteArray());
+		} else {
+			throw new IllegalArgumentException("Cannot encode message data of "
+					+ data.getClass());
+		}
+	}
+
+	private Object readData(DataInput in) throws IOException {
+		final int type = in.readUnsignedByte();
+		switch (type) {
+		case STRING:
+			return readString(in);
+		case INTEGER:
+			return in.readInt();
+		case LONG:
+			return in.readLong();
+		case DOUBLE:
+			return in.readDouble();
+		case FLOAT:
+			return in.readFloat();
+		case SHORT:
+			return in.readShort();
+		case BYTE:
+			return in.readByte();
+		case BOOLEAN:
+			return in.readBoolean();
+		case CHARACTER:
+			return in.readChar();
+		case SERIALIZED:
+			final byte[] bytes = new byte[(int) readVarLong(in)];
+			in.readFully(bytes);
+			final ObjectInputStream objectIn = new LoaderObjectInputStream(
+					new ByteArrayInputStream(bytes));
+			try {
+				return objectIn.readObject();
+			} catch (ClassNotFoundException e) {
+				throw new IOException(e.getMessage());
+			} finally {
+				objectIn.close();
+			}
+		default:
+			throw new IOException("Unrecognised message data type " + type);
+		}
+	}
+
+	private IMessageImpl<?> create(String className, String tag, Object data)
+			throws IOException {
+		try {
+			Class<?> messageClass = classes.get(className);
+			if (messageClass == null) {
+				messageClass = Class.forName(className, true, loader);
+				classes.put(className, messageClass);
+			}
+
+			for (Constructor<?> constructor : messageClass.getConstructors()) {
+				final Class<?>[] parameters = constructor.getParameterTypes();
+				if (parameters.length == 2 && parameters[0] == String.class
+						&& parameters[1].isInstance(data))
+					return (IMessageImpl<?>) constructor.newInstance(tag, data);
+			}
+			if (tag == null) {
+				for (Constructor<?> constructor : messageClass
+						.getConstructors()) {
+					final Class<?>[] parameters = constructor
+							.getParameterTypes();
+					if (parameters.length == 1 && parameters[0].isInstance(data))
+						return (IMessageImpl<?>) constructor.newInstance(data);
+				}
+			}
+			throw new IOException("No constructor of " + className
+					+ " takes a tag and data of " + data.getClass());
+		} catch (ClassNotFoundException e) {
+			throw new IOException("Message class not found: " + className);
+		} catch (InstantiationException e) {
+			throw new IOException(e.getMessage());
+		} catch (IllegalAccessException e) {
+			throw new IOException(e.getMessage());
+		} catch (InvocationTargetException e) {
+			throw new IOException(e.getCause().toString());
+		}
+	}
+
+	/*
+	 * Resolves the classes of serialised data through the codec's loader.
+	 */
+	private class LoaderObjectInputStream extends ObjectInputStream {
+
+		LoaderObjectInputStream(ByteArrayInputStream in) throws IOException {
+			super(in);
+		}
+
+		@Override
+		protected Class<?> resolveClass(ObjectStreamClass desc)
+				throws IOException, ClassNotFoundException {
+			return Class.forName(desc.getName(), false, loader);
+		}
+	}
+}
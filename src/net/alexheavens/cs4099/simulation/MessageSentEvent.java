@@ -29,9 +29,7 @@ public class MessageSentEvent extends MessageEvent {
 		ILink link = message().link();
 		message().markAsSent(controller.currentTimestep());
 		long arrivalTime = controller.currentTimestep() + link.latency();
-		MessageArrivalEvent arrivalEvent = new MessageArrivalEvent(message(),
-				arrivalTime);
-		controller.scheduleEvent(arrivalEvent);
+		controller.scheduleArrival(message(), arrivalTime);
 	}
 
 	public SimEventType getEventType() {
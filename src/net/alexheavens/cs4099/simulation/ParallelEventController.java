@@ -0,0 +1,184 @@
+package net.alexheavens.cs4099.simulation;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * A TimingWheelEventController that processes the independent events of a
+ * timestep concurrently.
+ *
+ * The arrival of messages, the unpausing of nodes and the killing of nodes
+ * each act upon a single node alone, and schedule no further events. Each run
+ * of such events within a timestep is divided into groups by the node acted
+ * upon, and the groups are processed concurrently, the events of each group in
+ * the order they were scheduled. Any other event is processed alone, once all
+ * events scheduled before it have been.
+ *
+ * Events are logged and passed on to listeners by the calling Thread once
+ * their run has been processed, in the order they were scheduled, so that the
+ * event log is the same as were they processed one at a time. Only the order
+ * in which nodes are made runnable within a timestep may differ.
+ *
+ * @author Alexander Heavens <alexander.heavens@gmail.com>
+ * @version 1.0
+ */
+public class ParallelEventController extends TimingWheelEventController {
+
+	/**
+	 * The least number of nodes a run of independent events must act upon to
+	 * be processed concurrently.
+	 */
+	public static final int MIN_PARALLEL_GROUPS = 2;
+
+	private static final int NO_NODE = -1;
+
+	private final ExecutorService workers;
+	private int parallelRuns;
+
+	/**
+	 * Creates a ParallelEventController with no waiting events, processing
+	 * events in the common ForkJoinPool.
+	 *
+	 * @param processLimit
+	 *            the timestep at which no further events can occur. Must be
+	 *            greater than 0.
+	 * @see EventController#EventController(long)
+	 */
+	public ParallelEventController(long processLimit) {
+		this(processLimit, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Creates a ParallelEventController with no waiting events.
+	 *
+	 * @param processLimit
+	 *            the timestep at which no further events can occur. Must be
+	 *            greater than 0.
+	 * @param executor
+	 *            the workers by which groups of events are processed.
+	 */
+	public ParallelEventController(long processLimit, ExecutorService executor) {
+		super(processLimit);
+		if (executor == null)
+			throw new IllegalArgumentException(
+					"Attempted to create controller with null executor.");
+		workers = executor;
+		parallelRuns = 0;
+	}
+
+	@Override
+	protected void processBucket(Queue<ISimulationEvent> bucket) {
+		final List<ISimulationEvent> events = new ArrayList<ISimulationEvent>(
+				bucket);
+		int start = 0;
+		while (start < events.size()) {
+			if (nodeOf(events.get(start)) == NO_NODE) {
+				processEvent(events.get(start));
+				start++;
+				continue;
+			}
+
+			int end = start + 1;
+			while (end < events.size() && nodeOf(events.get(end)) != NO_NODE)
+				end++;
+			processRun(events.subList(start, end));
+			start = end;
+		}
+	}
+
+	/**
+	 * @return The number of runs of events that have been processed
+	 *         concurrently.
+	 */
+	public synchronized int parallelRunCount() {
+		return parallelRuns;
+	}
+
+	/*
+	 * Processes a run of independent events of the same timestep, grouped by
+	 * the node each acts upon, then records those that occurred in order.
+	 */
+	private void processRun(final List<ISimulationEvent> run) {
+		final Map<Integer, List<Integer>> groups = new LinkedHashMap<Integer, List<Integer>>();
+		for (int i = 0; i < run.size(); i++) {
+			final int node = nodeOf(run.get(i));
+			List<Integer> group = groups.get(node);
+			if (group == null) {
+				group = new ArrayList<Integer>();
+				groups.put(node, group);
+			}
+			group.add(i);
+		}
+		if (groups.size() < MIN_PARALLEL_GROUPS) {
+			for (ISimulationEvent event : run)
+				processEvent(event);
+			return;
+		}
+
+		enterTimestep(run.get(0).getTimestep());
+		synchronized (this) {
+			parallelRuns++;
+		}
+
+		final boolean[] occurred = new boolean[run.size()];
+		final List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+		for (final List<Integer> group : groups.values()) {
+			tasks.add(new Callable<Void>() {
+				public Void call() {
+					for (int i : group)
+						occurred[i] = enactEvent(run.get(i));
+					return null;
+				}
+			});
+		}
+
+		final List<Future<Void>> results;
+		try {
+			results = workers.invokeAll(tasks);
+		} catch (InterruptedException e) {
+			throw new IllegalStateException();
+		}
+
+		for (int i = 0; i < run.size(); i++) {
+			if (occurred[i])
+				recordEvent(run.get(i));
+		}
+
+		// Failures are raised in the order of their groups, once every event
+		// that occurred has been recorded.
+		for (Future<Void> result : results) {
+			try {
+				result.get();
+			} catch (InterruptedException e) {
+				throw new IllegalStateException();
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof RuntimeException)
+					throw (RuntimeException) e.getCause();
+				throw new IllegalStateException(e.getCause());
+			}
+		}
+	}
+
+	/*
+	 * The ID of the single node an event acts upon if it is independent of
+	 * other events, or NO_NODE if it must be processed alone.
+	 */
+	private static int nodeOf(ISimulationEvent event) {
+		if (event instanceof MessageArrivalEvent)
+			return ((MessageArrivalEvent) event).message().target()
+					.getSimulationId();
+		if (event instanceof NodeUnpauseEvent)
+			return ((NodeUnpauseEvent) event).getNodeId();
+		if (event instanceof NodeKillEvent)
+			return ((NodeKillEvent) event).getNodeId();
+		return NO_NODE;
+	}
+}
@@ -0,0 +1,65 @@
+package net.alexheavens.cs4099.simulation;
+
+/**
+ * The coordinator of the {@link LogicalProcess} simulating a partition of a
+ * network, which opens the windows of time in which it simulates and passes
+ * arrivals to the other partitions.
+ *
+ * @author Alexander Heavens <alexander.heavens@gmail.com>
+ * @version 1.0
+ */
+interface PartitionHost {
+
+	/**
+	 * @return The number of timesteps to simulate.
+	 */
+	long simulationLength();
+
+	/**
+	 * @return The number of nodes in the network being simulated, in every
+	 *         partition.
+	 */
+	int nodeCount();
+
+	/**
+	 * @param simulationId
+	 *            the simulation ID of a node.
+	 * @return The partition holding the node.
+	 */
+	int partitionOf(int simulationId);
+
+	/**
+	 * Blocks the calling process until every process has finished the current
+	 * window, then opens the next.
+	 *
+	 * @return False if the simulation has ended, or failed, and there is no
+	 *         next window.
+	 */
+	boolean awaitWindow();
+
+	/**
+	 * @return The timestep before which processes simulate in the current
+	 *         window.
+	 */
+	long windowEnd();
+
+	/**
+	 * Passes the arrival of a message toward a node of another partition to
+	 * the process of that partition, before the next window opens.
+	 *
+	 * @param partition
+	 *            the partition of the message's target.
+	 * @param arrival
+	 *            the arrival of the message, with its place in the order of
+	 *            events.
+	 */
+	void forward(int partition, LogicalProcess.OrderedEvent arrival);
+
+	/**
+	 * Records the failure of a process, so that no further window is opened.
+	 *
+	 * @param e
+	 *            the cause of the failure.
+	 */
+	void fail(RuntimeException e);
+}
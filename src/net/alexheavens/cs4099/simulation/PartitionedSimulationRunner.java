@@ -0,0 +1,366 @@
+package net.alexheavens.cs4099.simulation;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+
+import net.alexheavens.cs4099.network.ILinkImpl;
+import net.alexheavens.cs4099.network.Network;
+import net.alexheavens.cs4099.network.Node;
+import net.alexheavens.cs4099.network.configuration.ILinkConfig;
+import net.alexheavens.cs4099.network.configuration.LinkConfig;
+import net.alexheavens.cs4099.network.configuration.NetworkPartition;
+import net.alexheavens.cs4099.network.configuration.NetworkPartitioner;
+
+/**
+ * The PartitionedSimulationRunner simulates a network split into partitions,
+ * each simulated by a logical process on a Thread of its own.
+ *
+ * Processes are synchronised conservatively in windows of time. Every link
+ * has a latency of at least <code>ILink.MIN_LATENCY</code>, so a message sent
+ * in one partition cannot arrive in another sooner than the least latency of
+ * the links between partitions, the lookahead. At each window, the earliest
+ * timestep at which any event can occur is found, and every process simulates
+ * the timesteps of its partition up to that timestep plus the lookahead
+ * independently, as no message sent within the window can arrive within it.
+ * Arrivals passed between partitions are scheduled at the start of the next
+ * window.
+ *
+ * Each process batches the events of each timestep, and marks its events with
+ * their place in the order of a sequential SimulationRunner that does the
+ * same, by which the logs of the processes are merged. This gives the same log
+ * as sequential simulation in an {@link ExecutionMode} that batches
+ * timesteps. Prescribed events are not supported.
+ *
+ * @author Alexander Heavens <alexander.heavens@gmail.com>
+ * @version 1.0
+ */
+public class PartitionedSimulationRunner {
+
+	private final Network network;
+	private final long length;
+	private final NetworkPartition partition;
+	private final LogicalProcess[] processes;
+	private final PartitionHost host;
+	private final long lookahead;
+	private final CyclicBarrier windowBarrier;
+	private volatile long windowEnd;
+	private volatile boolean finished;
+	private volatile RuntimeException failure;
+	private int windows;
+	private boolean simulated;
+
+	/**
+	 * Creates a runner that simulates a network split into partitions of near
+	 * equal size, keeping nodes joined by links of low latency together.
+	 *
+	 * @param net
+	 *            the network to simulate.
+	 * @param simLength
+	 *            the number of timesteps to simulate.
+	 * @param partitions
+	 *            the number of partitions. Must be between 1 and the number of
+	 *            nodes.
+	 */
+	public PartitionedSimulationRunner(Network net, long simLength,
+			int partitions) {
+		this(net, simLength, topologyAssignment(net, partitions), 0,
+				ExecutionMode.PLATFORM_THREADS, BarrierType.LOCKING);
+	}
+
+	/**
+	 * Creates a runner that simulates a network split into the given
+	 * partitions.
+	 *
+	 * @param net
+	 *            the network to simulate.
+	 * @param simLength
+	 *            the number of timesteps to simulate.
+	 * @param partitionOf
+	 *            the partition of each node, by simulation ID. Partitions are
+	 *            numbered from 0 and each must hold at least one node.
+	 * @param nodeTimeout
+	 *            the time a node can execute for in one timestep before being
+	 *            timed out, or 0 for no timeout.
+	 * @param mode
+	 *            the manner in which node Threads are created.
+	 * @param barrier
+	 *            the type of barrier at which the nodes of each partition wait.
+	 * @throws UnsupportedOperationException
+	 *             if the mode is not supported by the Java runtime, or nodes
+	 *             are timed out but cannot be stopped.
+	 */
+	public PartitionedSimulationRunner(Network net, long simLength,
+			int[] partitionOf, long nodeTimeout, ExecutionMode mode,
+			BarrierType barrier) {
+		if (simLength < 1)
+			throw new IllegalArgumentException(
+					"Cannot create a simulation runner that is less than 1 timestep in length.");
+		if (mode == null)
+			throw new IllegalArgumentException(
+					"Cannot create a simulation runner with a null execution mode.");
+		if (barrier == null)
+			throw new IllegalArgumentException(
+					"Cannot create a simulation runner with a null barrier type.");
+
+		partition = divide(net, partitionOf);
+		if (nodeTimeout > 0)
+			SimulationRunner.checkStoppable(net, mode);
+		network = net;
+		length = simLength;
+		host = new Host();
+
+		processes = new LogicalProcess[partition.partitionCount()];
+		for (int i = 0; i < processes.length; i++) {
+			final List<Node> partitionNodes = new ArrayList<Node>();
+			for (int id : partition.members(i))
+				partitionNodes.add(network.nodes().get(id));
+			processes[i] = new LogicalProcess(i, host, partitionNodes, mode,
+					barrier, nodeTimeout);
+		}
+		lookahead = partition.minimumCutLatency();
+
+		windowBarrier = new CyclicBarrier(processes.length, new Runnable() {
+			public void run() {
+				openWindow();
+			}
+		});
+		finished = false;
+		failure = null;
+		windows = 0;
+		simulated = false;
+	}
+
+	/**
+	 * Divides the nodes of a network into partitions of consecutive simulation
+	 * IDs, differing in size by at most one node.
+	 *
+	 * @param net
+	 *            the network to divide.
+	 * @param partitions
+	 *            the number of partitions.
+	 * @return The partition of each node, by simulation ID.
+	 */
+	public static int[] blockAssignment(Network net, int partitions) {
+		if (net == null)
+			throw new IllegalArgumentException(
+					"Cannot divide a null network into partitions.");
+		final int nodeCount = net.nodeCount();
+		if (partitions < 1 || partitions > nodeCount)
+			throw new IllegalArgumentException("Cannot divide " + nodeCount
+					+ " nodes into " + partitions + " partitions.");
+
+		final int[] partitionOf = new int[nodeCount];
+		for (int id = 0; id < nodeCount; id++)
+			partitionOf[id] = (int) ((long) id * partitions / nodeCount);
+		return partitionOf;
+	}
+
+	/**
+	 * Divides the nodes of a network into partitions of near equal size,
+	 * minimising the links cut between partitions weighted by their inverse
+	 * latency. Nodes that communicate then share a partition, and the lookahead
+	 * between partitions is kept long.
+	 *
+	 * @param net
+	 *            the network to divide.
+	 * @param partitions
+	 *            the number of partitions.
+	 * @return The partition of each node, by simulation ID.
+	 * @see NetworkPartitioner
+	 */
+	public static int[] topologyAssignment(Network net, int partitions) {
+		if (net == null)
+			throw new IllegalArgumentException(
+					"Cannot divide a null network into partitions.");
+
+		return new NetworkPartitioner(partitions).partition(net.nodeCount(),
+				linkConfigs(net)).assignment();
+	}
+
+	/**
+	 * Measures the division of a network by the given partition of each node.
+	 *
+	 * @param net
+	 *            the network to divide.
+	 * @param partitionOf
+	 *            the partition of each node, by simulation ID. Partitions are
+	 *            numbered from 0 and each must hold at least one node.
+	 * @return The division of the network.
+	 * @throws IllegalArgumentException
+	 *             if the network is null, or the assignment does not give a
+	 *             valid partition for every node.
+	 */
+	static NetworkPartition divide(Network net, int[] partitionOf) {
+		if (net == null)
+			throw new IllegalArgumentException(
+					"Cannot divide a null network into partitions.");
+		return NetworkPartition.fromAssignment(net.nodeCount(), partitionOf,
+				linkConfigs(net));
+	}
+
+	private static List<ILinkConfig> linkConfigs(Network net) {
+		final List<ILinkConfig> links = new ArrayList<ILinkConfig>(net
+				.linkCount());
+		for (ILinkImpl link : net.links()) {
+			links.add(new LinkConfig(link.getSource().getSimulationId(), link
+					.getTarget().getSimulationId(), link.latency()));
+		}
+		return links;
+	}
+
+	/**
+	 * Simulates the network, returning once every partition has reached the
+	 * end of the simulation.
+	 *
+	 * @return A log of the events that occurred during simulation, merged from
+	 *         all partitions, and timing information of each node (id) to the
+	 *         time taken per timestep.
+	 * @throws IllegalStateException
+	 *             if the network has already been simulated.
+	 * @throws SimulationRuntimeException
+	 *             if simulation of a partition failed.
+	 */
+	public SimulationResults simulate() {
+		if (simulated)
+			throw new IllegalStateException(
+					"Attempted to simulate a partitioned network twice.");
+		simulated = true;
+
+		for (LogicalProcess process : processes)
+			process.thread().start();
+		try {
+			for (LogicalProcess process : processes)
+				process.thread().join();
+		} catch (InterruptedException e) {
+			throw new IllegalStateException();
+		}
+
+		for (LogicalProcess process : processes)
+			process.release();
+		if (failure != null)
+			throw new SimulationRuntimeException(failure);
+
+		final List<RecordEventLog> logs = new ArrayList<RecordEventLog>();
+		for (LogicalProcess process : processes)
+			logs.add(process.eventLog());
+		return new SimulationResults(RecordEventLog.merge(logs),
+				mergeProcessTimes());
+	}
+
+	/**
+	 * @return The number of partitions the network is split into.
+	 */
+	public int partitionCount() {
+		return processes.length;
+	}
+
+	/**
+	 * @param simulationId
+	 *            the simulation ID of a node.
+	 * @return The partition holding the node.
+	 */
+	public int partitionOf(int simulationId) {
+		return partition.partitionOf(simulationId);
+	}
+
+	/**
+	 * @return The least latency of the links between partitions, or
+	 *         <code>Long.MAX_VALUE</code> if there are none.
+	 */
+	public long lookahead() {
+		return lookahead;
+	}
+
+	/**
+	 * @return The number of windows of time simulated so far.
+	 */
+	public synchronized int windowCount() {
+		return windows;
+	}
+
+	public long simulationLength() {
+		return length;
+	}
+
+	public Network network() {
+		return network;
+	}
+
+	/*
+	 * Run by the last process to reach the window barrier, whilst the others
+	 * wait.
+	 */
+	private synchronized void openWindow() {
+		long earliest = Long.MAX_VALUE;
+		for (LogicalProcess process : processes)
+			earliest = Math.min(earliest, process.takeEarliestTimestep());
+
+		if (earliest >= length || failure != null) {
+			finished = true;
+		} else {
+			windowEnd = (lookahead >= length - earliest) ? length : earliest
+					+ lookahead;
+			windows++;
+		}
+	}
+
+	private Map<Integer, Map<Long, Long>> mergeProcessTimes() {
+		final Map<Integer, Map<Long, Long>> processTimes = new HashMap<Integer, Map<Long, Long>>(
+				network.nodeCount());
+		for (LogicalProcess process : processes) {
+			final Map<Integer, Map<Long, Long>> partitionTimes = process
+					.timeStepProcessIdMap();
+			for (Node node : process.nodes()) {
+				final int id = node.getSimulationId();
+				processTimes.put(id, partitionTimes.get(id));
+			}
+		}
+		return processTimes;
+	}
+
+	/*
+	 * Coordinates the processes of the runner, which share its Java runtime.
+	 */
+	private class Host implements PartitionHost {
+
+		public long simulationLength() {
+			return length;
+		}
+
+		public int nodeCount() {
+			return network.nodeCount();
+		}
+
+		public int partitionOf(int simulationId) {
+			return partition.partitionOf(simulationId);
+		}
+
+		public boolean awaitWindow() {
+			try {
+				windowBarrier.await();
+			} catch (InterruptedException e) {
+				return false;
+			} catch (BrokenBarrierException e) {
+				return false;
+			}
+			return !finished && failure == null;
+		}
+
+		public long windowEnd() {
+			return windowEnd;
+		}
+
+		public void forward(int partition,
+				LogicalProcess.OrderedEvent arrival) {
+			processes[partition].deliverAcross(arrival);
+		}
+
+		public void fail(RuntimeException e) {
+			failure = e;
+		}
+	}
+}
@@ -0,0 +1,15 @@
+package net.alexheavens.cs4099.simulation;
+
+/**
+ * Thrown through the script of a process that has been killed from its own
+ * Thread, unwinding the script so that its Thread can end. As an Error, it
+ * passes through the handlers of a script that catches Exceptions.
+ * 
+ * @author Alexander Heavens <alexander.heavens@gmail.com>
+ * @version 1.0
+ */
+public class ProcessKilledError extends Error {
+
+	private static final long serialVersionUID = 3094275961178253407L;
+
+}
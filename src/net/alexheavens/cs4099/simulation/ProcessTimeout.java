@@ -0,0 +1,86 @@
+package net.alexheavens.cs4099.simulation;
+
+/**
+ * The timing out of a process by a {@link SimulationProfiler}, noted so that
+ * it can be enacted again when a simulation is replayed.
+ *
+ * A process is timed out at some point while it executes, so is identified by
+ * the timestep in which it was timed out and the number of events it had
+ * raised. No event is raised between that point and the last event before it,
+ * so timing the process out at either gives the same simulation.
+ *
+ * @author Alexander Heavens <alexander.heavens@gmail.com>
+ * @version 1.0
+ */
+public final class ProcessTimeout {
+
+	private final int simulationId;
+	private final long timestep;
+	private final long raisedEvents;
+
+	/**
+	 * @param simulationId
+	 *            the simulation ID of the process timed out.
+	 * @param timestep
+	 *            the timestep in which it was timed out.
+	 * @param raisedEvents
+	 *            the number of events the process had raised when it was timed
+	 *            out.
+	 */
+	public ProcessTimeout(int simulationId, long timestep, long raisedEvents) {
+		if (simulationId < 0)
+			throw new IllegalArgumentException("Invalid simulation ID: "
+					+ simulationId);
+		if (timestep < 0)
+			throw new IllegalArgumentException("Invalid timestep: " + timestep);
+		if (raisedEvents < 0)
+			throw new IllegalArgumentException(
+					"Invalid number of raised events: " + raisedEvents);
+		this.simulationId = simulationId;
+		this.timestep = timestep;
+		this.raisedEvents = raisedEvents;
+	}
+
+	/**
+	 * @return The simulation ID of the process timed out.
+	 */
+	public int simulationId() {
+		return simulationId;
+	}
+
+	/**
+	 * @return The timestep in which the process was timed out.
+	 */
+	public long timestep() {
+		return timestep;
+	}
+
+	/**
+	 * @return The number of events the process had raised when it was timed
+	 *         out.
+	 */
+	public long raisedEvents() {
+		return raisedEvents;
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		if (!(other instanceof ProcessTimeout))
+			return false;
+		final ProcessTimeout timeout = (ProcessTimeout) other;
+		return simulationId == timeout.simulationId
+				&& timestep == timeout.timestep
+				&& raisedEvents == timeout.raisedEvents;
+	}
+
+	@Override
+	public int hashCode() {
+		return (int) ((simulationId * 31 + timestep) * 31 + raisedEvents);
+	}
+
+	@Override
+	public String toString() {
+		return "timeout of " + simulationId + " at " + timestep + " after "
+				+ raisedEvents + " events";
+	}
+}
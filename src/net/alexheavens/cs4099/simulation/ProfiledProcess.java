@@ -7,4 +7,10 @@ public interface ProfiledProcess {
 	public Thread getThread();
 	
 	public int getSimulationId();
+
+	/**
+	 * @return The number of events the process has raised since simulation
+	 *         began.
+	 */
+	public long raisedEventCount();
 }
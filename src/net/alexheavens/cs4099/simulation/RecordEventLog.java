@@ -0,0 +1,487 @@
+package net.alexheavens.cs4099.simulation;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import net.alexheavens.cs4099.network.IMessageImpl;
+import net.alexheavens.cs4099.network.INodeImpl;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONException;
+import net.sf.json.JSONObject;
+import net.sf.json.JSONSerializer;
+
+/**
+ * The RecordEventLog keeps the events of a simulation as fixed-width records
+ * of primitives, rather than retaining an object for every event.
+ *
+ * Each record holds the type, timestep and node ID of an event, and a payload
+ * that is the ID of its message, the duration of a pause or a colour. Records
+ * are appended to segments of preallocated arrays, so that logging an event
+ * allocates nothing but an occasional segment. Nodes and messages are stored
+ * once, however many events refer to them. Events of types without a record
+ * form are kept as objects.
+ *
+ * Event objects are recreated from records only when they are requested, or
+ * the log is converted to JSON. These are equivalent to, but not the same
+ * objects as, the events that were logged. Each is recreated once and kept,
+ * so that every request returns the same object for a record. As in
+ * {@link EventLog}, adding an event twice is rejected. Only the events of the
+ * timestep last logged are remembered for this, so an event is found again
+ * only within the run of events of its timestep, which holds every duplicate
+ * where events are logged in timestep order, as they are by an
+ * EventController.
+ *
+ * The logs of the partitions of a simulation may also record the place of
+ * each event in the order of sequential simulation, by which they are merged.
+ * This is held only in their records, never on the events.
+ *
+ * @author Alexander Heavens <alexander.heavens@gmail.com>
+ * @version 1.0
+ */
+public class RecordEventLog implements IEventLog {
+
+	/**
+	 * The number of records held by each segment of the log.
+	 */
+	public static final int SEGMENT_RECORDS = 1 << 12;
+
+	private static final int RECORD_WIDTH = 3;
+	private static final int ORDERED_RECORD_WIDTH = 6;
+	private static final int TYPE_NODE = 0;
+	private static final int TIMESTEP = 1;
+	private static final int PAYLOAD = 2;
+	private static final int ORDER_TIMESTEP = 3;
+	private static final int ORDER_STAGE = 4;
+	private static final int ORDER_SOURCE = 5;
+	private static final int OBJECT_RECORD = -1;
+	private static final SimEventType[] TYPES = SimEventType.values();
+
+	private final List<long[]> segments;
+	private final List<ISimulationEvent[]> materialised;
+	private final Map<ISimulationEvent, Boolean> lastLogged;
+	private final List<ISimulationEvent> objects;
+	private final List<IMessageImpl<?>> messages;
+	private final Map<IMessageImpl<?>, Integer> messageIds;
+	private final int recordWidth;
+	private INodeImpl[] nodes;
+	private long[] segment;
+	private int segmentRecords;
+	private int size;
+	private long lastTimestep;
+	private boolean ordered;
+
+	/**
+	 * Creates an empty RecordEventLog.
+	 */
+	public RecordEventLog() {
+		this(false);
+	}
+
+	/**
+	 * Creates an empty RecordEventLog, which may record the place of each
+	 * event in the order of sequential simulation.
+	 *
+	 * @param recordOrder
+	 *            whether to record the place of each event, as given by a
+	 *            {@link LogicalProcess}.
+	 */
+	RecordEventLog(boolean recordOrder) {
+		recordWidth = recordOrder ? ORDERED_RECORD_WIDTH : RECORD_WIDTH;
+		segments = new ArrayList<long[]>();
+		materialised = new ArrayList<ISimulationEvent[]>();
+		lastLogged = new IdentityHashMap<ISimulationEvent, Boolean>();
+		objects = new ArrayList<ISimulationEvent>();
+		messages = new ArrayList<IMessageImpl<?>>();
+		messageIds = new HashMap<IMessageImpl<?>, Integer>();
+		nodes = new INodeImpl[0];
+		segment = null;
+		segmentRecords = SEGMENT_RECORDS;
+		size = 0;
+		lastTimestep = 0;
+		ordered = true;
+	}
+
+	public synchronized void addEvent(ISimulationEvent event) {
+		addEvent(event, 0, 0, 0);
+	}
+
+	/**
+	 * Logs an event with its place in the order of sequential simulation,
+	 * which is recorded only if the log records order.
+	 * 
+	 * @param event
+	 *            an event that has occurred during simulation.
+	 * @param orderTimestep
+	 *            the timestep at which the event was queued.
+	 * @param orderStage
+	 *            the stage of the timestep at which the event was queued.
+	 * @param orderSource
+	 *            the node and outbox position the event was raised from.
+	 * @see LogicalProcess.OrderedEvent
+	 */
+	synchronized void addEvent(ISimulationEvent event, long orderTimestep,
+			int orderStage, long orderSource) {
+		if (event == null)
+			throw new IllegalArgumentException("Attempted to log null event.");
+		if (event.getTimestep() != lastTimestep)
+			lastLogged.clear();
+		if (lastLogged.put(event, Boolean.TRUE) != null)
+			throw new IllegalArgumentException(
+					"Attempted to add an event to a log twice.");
+
+		final Class<?> eventClass = event.getClass();
+		int nodeId = 0;
+		long payload;
+		if (eventClass == MessageSentEvent.class
+				|| eventClass == MessageArrivalEvent.class
+				|| eventClass == MessageReadEvent.class) {
+			payload = messageId(((MessageEvent) event).message());
+		} else if (eventClass == MessageArrivalBatchEvent.class) {
+			final int arrivalType = SimEventType.MESSAGE_ARRIVAL.ordinal();
+			for (IMessageImpl<?> message : ((MessageArrivalBatchEvent) event)
+					.messages())
+				append(arrivalType, 0, event.getTimestep(), messageId(message),
+						orderTimestep, orderStage, orderSource);
+			return;
+		} else if (eventClass == NodeReceiveBlockEvent.class
+				|| eventClass == NodeReceiveBlockResumeEvent.class
+				|| eventClass == NodeUnpauseEvent.class) {
+			nodeId = storeNode((NodeEvent) event);
+			payload = 0;
+		} else if (eventClass == NodePauseEvent.class) {
+			nodeId = storeNode((NodeEvent) event);
+			payload = ((NodePauseEvent) event).getPauseTime();
+		} else if (eventClass == ColourChangeEvent.class) {
+			nodeId = storeNode((NodeEvent) event);
+			payload = ((ColourChangeEvent) event).getColour();
+		} else if (eventClass == NodeKillEvent.class) {
+			nodeId = ((NodeKillEvent) event).getNodeId();
+			payload = 0;
+		} else {
+			payload = objects.size();
+			objects.add(event);
+			append(OBJECT_RECORD, 0, event.getTimestep(), payload,
+					orderTimestep, orderStage, orderSource);
+			return;
+		}
+		append(event.getEventType().ordinal(), nodeId, event.getTimestep(),
+				payload, orderTimestep, orderStage, orderSource);
+	}
+
+	/**
+	 * Merges the logs of the partitions of a simulation, copying their records
+	 * rather than recreating their events. Events are taken in timestep order,
+	 * and within a timestep by their place in the order of sequential
+	 * simulation where both logs record it, or otherwise in the order of the
+	 * logs.
+	 *
+	 * @param logs
+	 *            the log of each partition, in partition order. These must no
+	 *            longer be added to.
+	 * @return The merged log.
+	 */
+	static RecordEventLog merge(List<RecordEventLog> logs) {
+		final RecordEventLog merged = new RecordEventLog();
+		final List<List<Integer>> orders = new ArrayList<List<Integer>>(logs
+				.size());
+		for (RecordEventLog log : logs)
+			orders.add(log.recordOrder());
+		final int[] next = new int[logs.size()];
+
+		while (true) {
+			int from = -1;
+			for (int i = 0; i < logs.size(); i++) {
+				if (next[i] < orders.get(i).size()
+						&& (from < 0 || logs.get(i).precedes(
+								orders.get(i).get(next[i]), logs.get(from),
+								orders.get(from).get(next[from]))))
+					from = i;
+			}
+			if (from < 0)
+				return merged;
+			merged.copyRecord(logs.get(from), orders.get(from).get(
+					next[from]++));
+		}
+	}
+
+	/**
+	 * @return The number of events in the log.
+	 */
+	public synchronized int size() {
+		return size;
+	}
+
+	/**
+	 * @return The number of distinct messages referred to by logged events.
+	 */
+	public synchronized int messageCount() {
+		return messages.size();
+	}
+
+	/**
+	 * @return The events of the log, recreated from their records, in
+	 *         timestep order and in the order they were logged within a
+	 *         timestep.
+	 */
+	public synchronized List<ISimulationEvent> events() {
+		final List<ISimulationEvent> events = new ArrayList<ISimulationEvent>(
+				size);
+		for (int record : recordOrder())
+			events.add(materialise(record));
+		return events;
+	}
+
+	public synchronized JSONObject toJSONObject() throws JSONException {
+		JSONArray eventJSONArray = new JSONArray();
+		for (int record : recordOrder()) {
+			ISimulationEvent event = materialise(record);
+			JSONObject eventObj = (JSONObject) JSONSerializer.toJSON(event);
+			if (event instanceof MessageEvent) {
+				MessageEvent messageEvent = (MessageEvent) event;
+				eventObj.element(MessageEvent.MESSAGE_ID_TAG, messageIds.get(
+						messageEvent.message()).intValue());
+			}
+			eventJSONArray.add(eventObj);
+		}
+
+		JSONArray messagesJSONArray = new JSONArray();
+		for (IMessageImpl<?> message : messages)
+			messagesJSONArray.add(JSONSerializer.toJSON(message));
+
+		JSONObject bean = new JSONObject();
+		bean.element("events", eventJSONArray);
+		bean.element("messages", messagesJSONArray);
+		return bean;
+	}
+
+	@Override
+	public synchronized Set<ISimulationEvent> getEventsInTimestep(long timestep) {
+		if (timestep < 0)
+			throw new IllegalArgumentException(
+					"Attempted to get events in a negative timestep: "
+							+ timestep);
+
+		Set<ISimulationEvent> timestepEvents = new HashSet<ISimulationEvent>();
+		int record = ordered ? firstRecordAt(timestep) : 0;
+		for (; record < size; record++) {
+			final long recordTimestep = field(record, TIMESTEP);
+			if (recordTimestep == timestep)
+				timestepEvents.add(materialise(record));
+			else if (ordered && recordTimestep > timestep)
+				break;
+		}
+		return timestepEvents;
+	}
+
+	private void append(int type, int nodeId, long timestep, long payload,
+			long orderTimestep, int orderStage, long orderSource) {
+		if (segmentRecords == SEGMENT_RECORDS) {
+			segment = new long[SEGMENT_RECORDS * recordWidth];
+			segments.add(segment);
+			segmentRecords = 0;
+		}
+
+		final int offset = segmentRecords * recordWidth;
+		segment[offset + TYPE_NODE] = ((long) type << 32)
+				| (nodeId & 0xffffffffL);
+		segment[offset + TIMESTEP] = timestep;
+		segment[offset + PAYLOAD] = payload;
+		if (recordWidth == ORDERED_RECORD_WIDTH) {
+			segment[offset + ORDER_TIMESTEP] = orderTimestep;
+			segment[offset + ORDER_STAGE] = orderStage;
+			segment[offset + ORDER_SOURCE] = orderSource;
+		}
+		segmentRecords++;
+		size++;
+
+		if (timestep < lastTimestep)
+			ordered = false;
+		lastTimestep = timestep;
+	}
+
+	private long field(int record, int field) {
+		return segments.get(record / SEGMENT_RECORDS)[(record % SEGMENT_RECORDS)
+				* recordWidth + field];
+	}
+
+	/*
+	 * Returns whether a record of this log comes before one of another log
+	 * once merged.
+	 */
+	private boolean precedes(int record, RecordEventLog other, int otherRecord) {
+		final long timestep = field(record, TIMESTEP);
+		final long otherTimestep = other.field(otherRecord, TIMESTEP);
+		if (timestep != otherTimestep)
+			return timestep < otherTimestep;
+		if (recordWidth != ORDERED_RECORD_WIDTH
+				|| other.recordWidth != ORDERED_RECORD_WIDTH)
+			return false;
+		for (int field = ORDER_TIMESTEP; field <= ORDER_SOURCE; field++) {
+			final long order = field(record, field);
+			final long otherOrder = other.field(otherRecord, field);
+			if (order != otherOrder)
+				return order < otherOrder;
+		}
+		return false;
+	}
+
+	/*
+	 * Appends a record of another log, storing the node or message it refers
+	 * to.
+	 */
+	private void copyRecord(RecordEventLog from, int record) {
+		final long typeNode = from.field(record, TYPE_NODE);
+		final int type = (int) (typeNode >> 32);
+		final int nodeId = (int) typeNode;
+		long payload = from.field(record, PAYLOAD);
+
+		if (type == OBJECT_RECORD) {
+			objects.add(from.objects.get((int) payload));
+			payload = objects.size() - 1;
+		} else {
+			switch (TYPES[type]) {
+			case MESSAGE_SENT:
+			case MESSAGE_ARRIVAL:
+			case MESSAGE_READ:
+				payload = messageId(from.messages.get((int) payload));
+				break;
+			case NODE_REMOTE_KILL:
+				break;
+			default:
+				storeNode(nodeId, from.nodes[nodeId]);
+			}
+		}
+		append(type, nodeId, from.field(record, TIMESTEP), payload, 0, 0, 0);
+	}
+
+	private int messageId(IMessageImpl<?> message) {
+		Integer id = messageIds.get(message);
+		if (id == null) {
+			id = messages.size();
+			messages.add(message);
+			messageIds.put(message, id);
+		}
+		return id.intValue();
+	}
+
+	private int storeNode(NodeEvent event) {
+		return storeNode(event.getNodeId(), event.node());
+	}
+
+	private int storeNode(int nodeId, INodeImpl node) {
+		if (nodeId >= nodes.length) {
+			INodeImpl[] grown = new INodeImpl[Math.max(nodeId + 1,
+					nodes.length * 2)];
+			System.arraycopy(nodes, 0, grown, 0, nodes.length);
+			nodes = grown;
+		}
+		nodes[nodeId] = node;
+		return nodeId;
+	}
+
+	/*
+	 * Returns the index of the first record at or after a timestep, where
+	 * records are in timestep order.
+	 */
+	private int firstRecordAt(long timestep) {
+		int low = 0;
+		int high = size;
+		while (low < high) {
+			final int middle = (low + high) >>> 1;
+			if (field(middle, TIMESTEP) < timestep)
+				low = middle + 1;
+			else
+				high = middle;
+		}
+		return low;
+	}
+
+	/*
+	 * Returns the indices of all records, stably ordered by timestep.
+	 */
+	private List<Integer> recordOrder() {
+		final List<Integer> order = new ArrayList<Integer>(size);
+		for (int record = 0; record < size; record++)
+			order.add(record);
+		if (!ordered) {
+			Collections.sort(order, new Comparator<Integer>() {
+				public int compare(Integer a, Integer b) {
+					final long difference = field(a, TIMESTEP)
+							- field(b, TIMESTEP);
+					return difference < 0 ? -1 : (difference > 0 ? 1 : 0);
+				}
+			});
+		}
+		return order;
+	}
+
+	/*
+	 * Returns the event held by a record, recreating it the first time it is
+	 * requested.
+	 */
+	private ISimulationEvent materialise(int record) {
+		final int segmentIndex = record / SEGMENT_RECORDS;
+		while (materialised.size() <= segmentIndex)
+			materialised.add(null);
+		ISimulationEvent[] events = materialised.get(segmentIndex);
+		if (events == null) {
+			events = new ISimulationEvent[SEGMENT_RECORDS];
+			materialised.set(segmentIndex, events);
+		}
+		final int index = record % SEGMENT_RECORDS;
+		if (events[index] == null)
+			events[index] = recreate(record);
+		return events[index];
+	}
+
+	/*
+	 * Recreates the event held by a record.
+	 */
+	private ISimulationEvent recreate(int record) {
+		final long typeNode = field(record, TYPE_NODE);
+		final int type = (int) (typeNode >> 32);
+		final int nodeId = (int) typeNode;
+		final long timestep = field(record, TIMESTEP);
+		final long payload = field(record, PAYLOAD);
+
+		if (type == OBJECT_RECORD)
+			return objects.get((int) payload);
+
+		switch (TYPES[type]) {
+		case MESSAGE_SENT:
+			return new MessageSentEvent(messages.get((int) payload), timestep);
+		case MESSAGE_ARRIVAL:
+			return new MessageArrivalEvent(messages.get((int) payload),
+					timestep);
+		case MESSAGE_READ:
+			return new MessageReadEvent(messages.get((int) payload), timestep);
+		case NODE_RECEIVE_BLOCK:
+			return new NodeReceiveBlockEvent(timestep, nodes[nodeId]);
+		case NODE_RECEIVE_UNBLOCK:
+			return new NodeReceiveBlockResumeEvent(timestep, nodes[nodeId]);
+		case NODE_UNPAUSE:
+			return new NodeUnpauseEvent(timestep, nodes[nodeId]);
+		case NODE_PAUSE:
+			NodePauseEvent pauseEvent = new NodePauseEvent(payload,
+					nodes[nodeId]);
+			pauseEvent.markWithTimestep(timestep);
+			return pauseEvent;
+		case COLOUR_CHANGE_EVENT:
+			return new ColourChangeEvent(new Color((int) payload, true),
+					nodes[nodeId], timestep);
+		case NODE_REMOTE_KILL:
+			return new NodeKillEvent(timestep, nodeId);
+		default:
+			throw new IllegalStateException("Unrecognised event record type: "
+					+ TYPES[type]);
+		}
+	}
+}
@@ -0,0 +1,99 @@
+package net.alexheavens.cs4099.simulation;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import net.alexheavens.cs4099.network.ILink;
+import net.alexheavens.cs4099.network.ILinkEndpoint;
+import net.alexheavens.cs4099.network.ILinkImpl;
+import net.alexheavens.cs4099.network.INodeImpl;
+import net.alexheavens.cs4099.network.Link;
+
+/**
+ * A stand-in for a node simulated by another {@link DistributedSimulationWorker},
+ * held by a worker in place of the neighbours of its own nodes that lie in
+ * other partitions.
+ *
+ * A RemoteNode has no script, Thread or messages, so is only a link endpoint
+ * rather than a node. It holds the identity of the node and its links to the
+ * nodes of the worker, so that messages may be sent toward it, to be forwarded
+ * to the node's worker, and messages decoded by a {@link MessageCodec} may
+ * appear to have been sent from it.
+ *
+ * @author Alexander Heavens <alexander.heavens@gmail.com>
+ * @version 1.0
+ */
+class RemoteNode implements ILinkEndpoint {
+
+	private final Map<ILinkEndpoint, ILinkImpl> links;
+	private final boolean isInitiator;
+	private int simulationId;
+	private int scrambleCode;
+
+	/**
+	 * Creates a stand-in for a node of another partition.
+	 *
+	 * @param isInitiator
+	 *            whether the node is an initiator.
+	 */
+	RemoteNode(boolean isInitiator) {
+		this.isInitiator = isInitiator;
+		links = new LinkedHashMap<ILinkEndpoint, ILinkImpl>();
+		simulationId = INodeImpl.INIT_MACHINE_ID;
+	}
+
+	public ILinkImpl addNeighbour(ILinkEndpoint n, long latency) {
+		if (n == null)
+			throw new IllegalArgumentException(INodeImpl.NULL_NEIGHBOUR_MSG);
+		if (n.getSimulationId() == INodeImpl.INIT_MACHINE_ID)
+			throw new IllegalArgumentException(INodeImpl.UNINIT_NEIGHBOUR_MSG);
+		if (isNeighbour(n))
+			throw new IllegalArgumentException(INodeImpl.DUP_NEIGHBOUR_MSG);
+
+		if (n.isNeighbour(this)) {
+			links.put(n, (ILinkImpl) n.neighbourLink(this));
+		} else {
+			links.put(n, new Link(this, n, latency));
+			n.addNeighbour(this, latency);
+		}
+		return links.get(n);
+	}
+
+	public boolean isNeighbour(ILinkEndpoint n) {
+		return links.containsKey(n);
+	}
+
+	public ILink neighbourLink(ILinkEndpoint n) {
+		return links.get(n);
+	}
+
+	/**
+	 * Gives the stand-in the identity of the node it stands in for.
+	 *
+	 * @param id
+	 *            the simulation ID of the node.
+	 * @param scrambleCode
+	 *            the offset of the node's machine ID from its simulation ID.
+	 */
+	void setSimulationId(int id, int scrambleCode) {
+		if (simulationId != INodeImpl.INIT_MACHINE_ID)
+			throw new IllegalStateException(INodeImpl.ID_SET_TWICE_MSG);
+		if (id < 0)
+			throw new IllegalArgumentException(INodeImpl.INVALID_ID_MSG);
+
+		simulationId = id;
+		this.scrambleCode = scrambleCode;
+	}
+
+	public int getSimulationId() {
+		return simulationId;
+	}
+
+	public int getMachineId() {
+		return simulationId + scrambleCode;
+	}
+
+	public boolean isInitiator() {
+		return isInitiator;
+	}
+}
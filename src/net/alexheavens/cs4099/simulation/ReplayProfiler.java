@@ -0,0 +1,83 @@
+package net.alexheavens.cs4099.simulation;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The profiler of a replayed simulation. Processes are not timed, and none is
+ * timed out for the time it takes: instead, each process timed out in the
+ * recorded simulation is killed by its own Thread as soon as it executes in
+ * the same timestep having raised the same number of events. Processes are
+ * charged to any instruction budget of the recorded simulation, which they
+ * exhaust at the same points.
+ *
+ * @author Alexander Heavens <alexander.heavens@gmail.com>
+ * @version 1.0
+ */
+class ReplayProfiler extends SimulationProfiler {
+
+	private final List<ProcessTimeout> recordedTimeouts;
+	private final Map<Integer, ProcessTimeout> pendingTimeouts;
+
+	/**
+	 * @param nProcesses
+	 *            the number of processes simulated.
+	 * @param timeouts
+	 *            the processes timed out in the recorded simulation.
+	 * @param instructionBudget
+	 *            the instruction budget of the recorded simulation, or 0 if
+	 *            it had none.
+	 */
+	ReplayProfiler(int nProcesses, Collection<ProcessTimeout> timeouts,
+			long instructionBudget) {
+		super(nProcesses, 0);
+		if (instructionBudget > 0)
+			setInstructionBudget(instructionBudget);
+		recordedTimeouts = new ArrayList<ProcessTimeout>(timeouts);
+		pendingTimeouts = new HashMap<Integer, ProcessTimeout>();
+		for (ProcessTimeout timeout : timeouts)
+			pendingTimeouts.put(timeout.simulationId(), timeout);
+	}
+
+	@Override
+	public void trackProcessSimulation(ProfiledProcess process) {
+		if (process == null)
+			throw new IllegalArgumentException(
+					"Attempted to track null process.");
+	}
+
+	@Override
+	public void untrackNodeSimulation(ProfiledProcess process) {
+		if (process == null)
+			throw new IllegalArgumentException(
+					"Attempted to track null process.");
+	}
+
+	@Override
+	public void checkProcess(ProfiledProcess process) {
+		enterProcess(process);
+		synchronized (this) {
+			final ProcessTimeout timeout = pendingTimeouts.get(process
+					.getSimulationId());
+			if (timeout == null || timeout.timestep() != timestep()
+					|| timeout.raisedEvents() != process.raisedEventCount())
+				return;
+			pendingTimeouts.remove(process.getSimulationId());
+		}
+
+		// The process is killed from its own Thread, which is then unwound.
+		process.kill();
+		throw new ProcessKilledError();
+	}
+
+	/**
+	 * @return The processes timed out in the recorded simulation.
+	 */
+	@Override
+	public synchronized List<ProcessTimeout> timeouts() {
+		return new ArrayList<ProcessTimeout>(recordedTimeouts);
+	}
+}
@@ -0,0 +1,88 @@
+package net.alexheavens.cs4099.simulation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The orders in which a {@link ScheduleExplorer} delivered the messages
+ * arriving together at nodes during a simulation.
+ * 
+ * Each point at which messages from more than one neighbour arrive at a node
+ * in the same timestep is a choice, numbered in the order the choices are
+ * made. The messages from each neighbour keep the order in which they were
+ * sent, so a choice is one of the interleavings of those neighbours' messages,
+ * numbered from 0, the order in which they were sent. Choices beyond those of
+ * a schedule are 0.
+ * 
+ * @author Alexander Heavens <alexander.heavens@gmail.com>
+ * @version 1.0
+ */
+public final class Schedule {
+
+	private final long[] choices;
+
+	/**
+	 * @param choices
+	 *            the interleaving chosen at each choice, in order.
+	 * @throws IllegalArgumentException
+	 *             if a choice is negative.
+	 */
+	public Schedule(long... choices) {
+		for (long choice : choices) {
+			if (choice < 0)
+				throw new IllegalArgumentException("Invalid choice: " + choice);
+		}
+		this.choices = choices.clone();
+	}
+
+	/**
+	 * @return The number of choices made by the schedule.
+	 */
+	public int length() {
+		return choices.length;
+	}
+
+	/**
+	 * @param index
+	 *            the number of the choice.
+	 * @return The interleaving chosen, 0 if the schedule does not make the
+	 *         choice.
+	 * @throws IllegalArgumentException
+	 *             if the index is negative.
+	 */
+	public long choice(int index) {
+		if (index < 0)
+			throw new IllegalArgumentException("Invalid choice index: "
+					+ index);
+		return (index < choices.length) ? choices[index] : 0;
+	}
+
+	/**
+	 * @return The interleaving chosen at each choice, in order.
+	 */
+	public List<Long> choices() {
+		final List<Long> list = new ArrayList<Long>(choices.length);
+		for (long choice : choices)
+			list.add(choice);
+		return Collections.unmodifiableList(list);
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		if (!(other instanceof Schedule))
+			return false;
+		return Arrays.equals(choices, ((Schedule) other).choices);
+	}
+
+	@Override
+	public int hashCode() {
+		return Arrays.hashCode(choices);
+	}
+
+	@Override
+	public String toString() {
+		return "schedule " + Arrays.toString(choices);
+	}
+}
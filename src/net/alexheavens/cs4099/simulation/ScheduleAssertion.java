@@ -0,0 +1,25 @@
+package net.alexheavens.cs4099.simulation;
+
+import net.alexheavens.cs4099.network.Network;
+
+/**
+ * A property of a simulation checked by a {@link ScheduleExplorer} against
+ * every schedule it explores.
+ * 
+ * @author Alexander Heavens <alexander.heavens@gmail.com>
+ * @version 1.0
+ */
+public interface ScheduleAssertion {
+
+	/**
+	 * Checks a simulation once it has ended. The assertion fails by throwing
+	 * an AssertionError or RuntimeException. It may be checked by many
+	 * Threads at once, each with a network of its own.
+	 * 
+	 * @param network
+	 *            the network simulated, holding the scripts as they ended.
+	 * @param results
+	 *            the results of simulation.
+	 */
+	public void check(Network network, SimulationResults results);
+}
@@ -0,0 +1,487 @@
+package net.alexheavens.cs4099.simulation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.alexheavens.cs4099.network.EventNode;
+import net.alexheavens.cs4099.network.ILinkEndpoint;
+import net.alexheavens.cs4099.network.IMessageImpl;
+import net.alexheavens.cs4099.network.Network;
+import net.alexheavens.cs4099.network.Node;
+import net.alexheavens.cs4099.network.configuration.INetworkConfig;
+import net.alexheavens.cs4099.usercode.NodeScript;
+
+/**
+ * Explores the orders in which messages arriving at a node in the same
+ * timestep can be delivered to it, simulating each distinct {@link Schedule}
+ * and checking an assertion against it, rather than relying on repeated
+ * simulation to happen upon an order that fails.
+ *
+ * Exploration is a depth-first search of the choices made by schedules, run
+ * on many Threads at once: each simulation makes the first choice at every
+ * point past those it was given, and the other choices of those points are
+ * explored by simulations of their own. Two reductions keep the search small.
+ * Messages arriving at different nodes are independent, so only the order of
+ * those arriving at the same node is chosen; and messages from the same
+ * neighbour keep the order in which they were sent, so only the interleavings
+ * of neighbours are chosen. Where every node is event-driven, the state of
+ * simulation is also hashed between timesteps, and a simulation that reaches a
+ * state already reached, with its remaining choices free, is abandoned: it can
+ * end no differently. Hashing assumes that the assertion judges the state in
+ * which simulation ends, rather than the order of its event log, and can be
+ * turned off where it does not.
+ *
+ * Each simulation is of a new network created with the same initiator and
+ * machine IDs, so that only the order of delivery differs between them.
+ *
+ * @author Alexander Heavens <alexander.heavens@gmail.com>
+ * @version 1.0
+ */
+public class ScheduleExplorer {
+
+	/**
+	 * The number of schedules explored, by default, before exploration stops.
+	 */
+	public static final long DEFAULT_SCHEDULE_LIMIT = 10000;
+
+	private final Class<? extends NodeScript> nodeClass;
+	private final INetworkConfig config;
+	private final int initiator;
+	private final int scrambleCode;
+	private final long length;
+	private final ScheduleAssertion assertion;
+	private final int threads;
+	private final long scheduleLimit;
+	private final boolean hashStates;
+
+	/**
+	 * Creates an explorer that runs a Thread for each processor, hashing
+	 * states where it can, and stops after
+	 * <code>DEFAULT_SCHEDULE_LIMIT</code> schedules.
+	 *
+	 * @param nodeClass
+	 *            the class of script simulated.
+	 * @param config
+	 *            the configuration of the network simulated.
+	 * @param initiator
+	 *            the simulation ID of the initiator.
+	 * @param simLength
+	 *            the number of timesteps simulated.
+	 * @param assertion
+	 *            the assertion checked against each schedule.
+	 * @throws IllegalArgumentException
+	 *             if an argument is null or invalid.
+	 * @throws InstantiationException
+	 *             if the node class cannot be instantiated.
+	 * @throws IllegalAccessException
+	 *             if a field cannot be accessed in the script class.
+	 */
+	public ScheduleExplorer(Class<? extends NodeScript> nodeClass,
+			INetworkConfig config, int initiator, long simLength,
+			ScheduleAssertion assertion) throws InstantiationException,
+			IllegalAccessException {
+		this(nodeClass, config, initiator, 0, simLength, assertion, Runtime
+				.getRuntime().availableProcessors(), DEFAULT_SCHEDULE_LIMIT,
+				true);
+	}
+
+	/**
+	 * @param nodeClass
+	 *            the class of script simulated.
+	 * @param config
+	 *            the configuration of the network simulated.
+	 * @param initiator
+	 *            the simulation ID of the initiator.
+	 * @param scrambleCode
+	 *            the amount added to the simulation ID of each node to give
+	 *            its machine ID.
+	 * @param simLength
+	 *            the number of timesteps simulated.
+	 * @param assertion
+	 *            the assertion checked against each schedule.
+	 * @param nThreads
+	 *            the number of schedules simulated at once.
+	 * @param limit
+	 *            the number of schedules explored before exploration stops.
+	 * @param stateHashing
+	 *            whether to abandon schedules that reach a state already
+	 *            reached, where every node is event-driven.
+	 * @throws IllegalArgumentException
+	 *             if an argument is null or invalid.
+	 * @throws InstantiationException
+	 *             if the node class cannot be instantiated.
+	 * @throws IllegalAccessException
+	 *             if a field cannot be accessed in the script class.
+	 */
+	public ScheduleExplorer(Class<? extends NodeScript> nodeClass,
+			INetworkConfig config, int initiator, int scrambleCode,
+			long simLength, ScheduleAssertion assertion, int nThreads,
+			long limit, boolean stateHashing) throws InstantiationException,
+			IllegalAccessException {
+		if (nodeClass == null)
+			throw new IllegalArgumentException(
+					"Cannot explore schedules of a null script class.");
+		if (config == null)
+			throw new IllegalArgumentException(
+					"Cannot explore schedules of a null network configuration.");
+		if (assertion == null)
+			throw new IllegalArgumentException(
+					"Cannot explore schedules against a null assertion.");
+		if (simLength < 1)
+			throw new IllegalArgumentException(
+					"Cannot explore schedules less than 1 timestep in length.");
+		if (nThreads < 1)
+			throw new IllegalArgumentException("Invalid number of Threads: "
+					+ nThreads);
+		if (limit < 1)
+			throw new IllegalArgumentException("Invalid schedule limit: "
+					+ limit);
+
+		this.nodeClass = nodeClass;
+		this.config = config;
+		this.initiator = initiator;
+		this.scrambleCode = scrambleCode;
+		this.length = simLength;
+		this.assertion = assertion;
+		this.threads = nThreads;
+		this.scheduleLimit = limit;
+
+		// Creating a network checks the initiator and scrambling of IDs, and
+		// shows whether its state can be hashed.
+		boolean eventNodes = true;
+		for (Node node : new Network(nodeClass, config, initiator,
+				scrambleCode).nodes()) {
+			if (!(node instanceof EventNode))
+				eventNodes = false;
+		}
+		this.hashStates = stateHashing && eventNodes;
+	}
+
+	/**
+	 * Explores the schedules of the simulation until every distinct schedule
+	 * has been checked, one fails the assertion or the limit on schedules is
+	 * reached.
+	 *
+	 * @return The outcome of exploration.
+	 */
+	public ExplorationResult explore() {
+		final Search search = new Search();
+		search.submit(new long[0]);
+		return search.await();
+	}
+
+	/**
+	 * Simulates a single schedule, such as one that failed during
+	 * exploration, and checks the assertion against it.
+	 *
+	 * @param schedule
+	 *            the schedule to simulate.
+	 * @return The results of simulation.
+	 * @throws IllegalArgumentException
+	 *             if the schedule is null, or makes a choice that the
+	 *             simulation does not offer.
+	 * @throws AssertionError
+	 *             if the schedule fails the assertion.
+	 */
+	public SimulationResults simulate(Schedule schedule) {
+		if (schedule == null)
+			throw new IllegalArgumentException(
+					"Attempted to simulate a null schedule.");
+		final long[] choices = new long[schedule.length()];
+		for (int i = 0; i < choices.length; i++)
+			choices[i] = schedule.choice(i);
+
+		final Execution execution = new Execution(choices);
+		final Network network = createNetwork();
+		final SimulationRunner runner = new SimulationRunner(network, length);
+		runner.setArrivalScheduler(execution);
+		final SimulationResults results = runner.simulate();
+		if (execution.invalidChoice >= 0)
+			throw new IllegalArgumentException("Choice "
+					+ execution.invalidChoice + " of " + schedule
+					+ " is not offered by the simulation.");
+		assertion.check(network, results);
+		return results;
+	}
+
+	private Network createNetwork() {
+		try {
+			return new Network(nodeClass, config, initiator, scrambleCode);
+		} catch (InstantiationException e) {
+			throw new IllegalStateException(e);
+		} catch (IllegalAccessException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Counts the interleavings of sequences of the given lengths, or gives
+	 * Long.MAX_VALUE if there are more.
+	 */
+	private static long interleavings(int[] lengths) {
+		long count = 1;
+		long total = 0;
+		for (int length : lengths) {
+			for (int k = 1; k <= length; k++) {
+				total++;
+				if (count > Long.MAX_VALUE / total)
+					return Long.MAX_VALUE;
+				count = count * total / k;
+			}
+		}
+		return count;
+	}
+
+	/*
+	 * Makes the choices of a single simulation, following a prefix of choices
+	 * and choosing the first interleaving at every point past it. The
+	 * scheduler is called only by the simulation Thread, as the runner
+	 * processes events in turn.
+	 */
+	private static final class Execution implements ArrivalScheduler {
+
+		private final long[] prefix;
+		private final List<Long> alternatives;
+		private int invalidChoice;
+
+		Execution(long[] choices) {
+			prefix = choices;
+			alternatives = new ArrayList<Long>();
+			invalidChoice = -1;
+		}
+
+		public List<IMessageImpl<?>> order(ILinkEndpoint target, long timestep,
+				List<IMessageImpl<?>> messages) {
+
+			// Messages from the same neighbour keep the order they were sent.
+			final Map<ILinkEndpoint, List<IMessageImpl<?>>> bySource = new LinkedHashMap<ILinkEndpoint, List<IMessageImpl<?>>>();
+			for (IMessageImpl<?> message : messages) {
+				List<IMessageImpl<?>> sent = bySource.get(message.source());
+				if (sent == null) {
+					sent = new ArrayList<IMessageImpl<?>>();
+					bySource.put(message.source(), sent);
+				}
+				sent.add(message);
+			}
+			if (bySource.size() < 2)
+				return messages;
+
+			final List<List<IMessageImpl<?>>> sources = new ArrayList<List<IMessageImpl<?>>>(
+					bySource.values());
+			final int[] remaining = new int[sources.size()];
+			for (int i = 0; i < remaining.length; i++)
+				remaining[i] = sources.get(i).size();
+			final long count = interleavings(remaining);
+			final int point = alternatives.size();
+			long choice = (point < prefix.length) ? prefix[point] : 0;
+			if (choice >= count) {
+				if (invalidChoice < 0)
+					invalidChoice = point;
+				choice = 0;
+			}
+			alternatives.add(count);
+
+			// Take the interleaving numbered by the choice, counting those
+			// that begin with each neighbour in turn.
+			final List<IMessageImpl<?>> ordered = new ArrayList<IMessageImpl<?>>(
+					messages.size());
+			final int[] next = new int[remaining.length];
+			for (int position = 0; position < messages.size(); position++) {
+				for (int i = 0; i < remaining.length; i++) {
+					if (remaining[i] == 0)
+						continue;
+					remaining[i]--;
+					final long following = interleavings(remaining);
+					if (choice < following) {
+						ordered.add(sources.get(i).get(next[i]++));
+						break;
+					}
+					remaining[i]++;
+					choice -= following;
+				}
+			}
+			return ordered;
+		}
+
+		/**
+		 * @return The number of choices made so far.
+		 */
+		int choicesMade() {
+			return alternatives.size();
+		}
+
+		/**
+		 * @return The number of interleavings offered at a choice.
+		 */
+		long alternatives(int point) {
+			return alternatives.get(point);
+		}
+
+		/**
+		 * @return The choices made, up to and including a point.
+		 */
+		long[] choicesTo(int point) {
+			final long[] choices = new long[point + 1];
+			System.arraycopy(prefix, 0, choices, 0,
+					Math.min(prefix.length, choices.length));
+			return choices;
+		}
+
+		Schedule schedule() {
+			return new Schedule(choicesTo(alternatives.size() - 1));
+		}
+	}
+
+	/*
+	 * A single exploration, whose schedules are simulated by a pool of
+	 * Threads. Each simulation submits the schedules that differ from it at a
+	 * free choice, so exploration has ended once no schedule is pending.
+	 */
+	private final class Search {
+
+		private final ExecutorService executor;
+		private final Set<String> reachedStates;
+		private final AtomicLong submitted;
+		private final AtomicLong run;
+		private final AtomicLong pruned;
+		private final AtomicInteger pending;
+		private final CountDownLatch finished;
+		private volatile boolean hashing;
+		private volatile boolean truncated;
+		private Schedule failingSchedule;
+		private Throwable failure;
+
+		Search() {
+			executor = Executors.newFixedThreadPool(threads);
+			reachedStates = Collections
+					.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+			submitted = new AtomicLong();
+			run = new AtomicLong();
+			pruned = new AtomicLong();
+			pending = new AtomicInteger();
+			finished = new CountDownLatch(1);
+			hashing = hashStates;
+			truncated = false;
+			failingSchedule = null;
+			failure = null;
+		}
+
+		void submit(final long[] prefix) {
+			if (submitted.incrementAndGet() > scheduleLimit) {
+				truncated = true;
+				return;
+			}
+			pending.incrementAndGet();
+			executor.execute(new Runnable() {
+				public void run() {
+					try {
+						if (!hasFailed())
+							explore(prefix);
+					} catch (RuntimeException e) {
+						fail(new Schedule(prefix), e);
+					} finally {
+						if (pending.decrementAndGet() == 0)
+							finished.countDown();
+					}
+				}
+			});
+		}
+
+		ExplorationResult await() {
+			try {
+				finished.await();
+			} catch (InterruptedException e) {
+				throw new IllegalStateException(e);
+			} finally {
+				executor.shutdownNow();
+			}
+			synchronized (this) {
+				return new ExplorationResult(run.get(), pruned.get(),
+						!truncated && failingSchedule == null,
+						failingSchedule, failure);
+			}
+		}
+
+		private synchronized boolean hasFailed() {
+			return failingSchedule != null;
+		}
+
+		private synchronized void fail(Schedule schedule, Throwable error) {
+			if (failingSchedule != null)
+				return;
+			failingSchedule = schedule;
+			failure = error;
+		}
+
+		private void explore(long[] prefix) {
+			final Execution execution = new Execution(prefix);
+			final Network network = createNetwork();
+			final SimulationRunner runner = new SimulationRunner(network,
+					length);
+			runner.setArrivalScheduler(execution);
+
+			// Step through the simulation a timestep at a time, abandoning it
+			// if it reaches a state already reached with its choices free.
+			int freeChoices = -1;
+			if (hashing) {
+				while (runner.terminationReason() == null
+						&& runner.getVisibleTimestep() < length) {
+					runner.simulateUntil(Math.min(Math.max(runner
+							.getVisibleTimestep(), 0) + 1, length));
+					if (execution.choicesMade() < prefix.length)
+						continue;
+					final String state;
+					try {
+						state = runner.checkpoint().fingerprint();
+					} catch (UnsupportedOperationException e) {
+						hashing = false;
+						break;
+					}
+					if (!reachedStates.add(state)) {
+						freeChoices = execution.choicesMade();
+						break;
+					}
+				}
+			}
+
+			if (freeChoices >= 0) {
+				runner.abandon();
+				pruned.incrementAndGet();
+			} else {
+				final SimulationResults results = runner.simulate();
+				run.incrementAndGet();
+				try {
+					assertion.check(network, results);
+				} catch (AssertionError e) {
+					fail(execution.schedule(), e);
+					return;
+				} catch (RuntimeException e) {
+					fail(execution.schedule(), e);
+					return;
+				}
+				freeChoices = execution.choicesMade();
+			}
+
+			// Explore every other interleaving of the choices made freely.
+			for (int point = prefix.length; point < freeChoices; point++) {
+				for (long choice = 1; choice < execution.alternatives(point); choice++) {
+					if (hasFailed() || truncated)
+						return;
+					final long[] branch = execution.choicesTo(point);
+					branch[point] = choice;
+					submit(branch);
+				}
+			}
+		}
+	}
+}
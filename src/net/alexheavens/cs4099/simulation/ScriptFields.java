@@ -0,0 +1,144 @@
+package net.alexheavens.cs4099.simulation;
+
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import net.alexheavens.cs4099.usercode.EventNodeScript;
+import net.alexheavens.cs4099.usercode.NodeScript;
+
+/**
+ * The fields of an event-driven script class that hold the state of its
+ * instances, which are copied and restored when a {@link TimeWarpProcess}
+ * rolls a node back.
+ *
+ * The fields copied are the state fields of the script class, as given by
+ * {@link #stateFields(Class)}, which also gives the fields captured by a
+ * {@link SimulationCheckpoint}. Arrays, and objects with a public clone method
+ * such as the Java collections, are copied one level deep; other objects are
+ * shared between the script and its copies, so should not be changed by the
+ * script once created.
+ *
+ * @author Alexander Heavens <alexander.heavens@gmail.com>
+ * @version 1.0
+ */
+class ScriptFields {
+
+	private final Field[] fields;
+
+	/**
+	 * Finds the state-holding fields of a script class.
+	 *
+	 * @param scriptClass
+	 *            the class of the scripts to copy.
+	 */
+	ScriptFields(Class<? extends EventNodeScript> scriptClass) {
+		final List<Field> found = stateFields(scriptClass);
+		fields = found.toArray(new Field[found.size()]);
+	}
+
+	/**
+	 * Finds the fields that hold the state of a script: the instance fields
+	 * declared by its class and superclasses, up to NodeScript or
+	 * EventNodeScript. Transient fields, which a script declares for state it
+	 * can do without, and synthetic fields, which the compiler declares, are
+	 * left out. The fields of each class are ordered by name, from the script
+	 * class up, so that every JVM finds them in the same order.
+	 *
+	 * @param scriptClass
+	 *            the class of a script.
+	 * @return The state fields of the class, made accessible.
+	 */
+	static List<Field> stateFields(Class<?> scriptClass) {
+		final List<Field> found = new ArrayList<Field>();
+		for (Class<?> type = scriptClass; type != null
+				&& type != NodeScript.class && type != EventNodeScript.class; type = type
+				.getSuperclass()) {
+			final Field[] declared = type.getDeclaredFields();
+			Arrays.sort(declared, new Comparator<Field>() {
+				public int compare(Field a, Field b) {
+					return a.getName().compareTo(b.getName());
+				}
+			});
+			for (Field field : declared) {
+				final int modifiers = field.getModifiers();
+				if (Modifier.isStatic(modifiers)
+						|| Modifier.isTransient(modifiers)
+						|| field.isSynthetic())
+					continue;
+				found.add(field);
+			}
+		}
+		AccessibleObject.setAccessible(found.toArray(new Field[found.size()]),
+				true);
+		return found;
+	}
+
+	/**
+	 * @param script
+	 *            a script of the class.
+	 * @return A copy of the values of the script's fields.
+	 */
+	Object[] copy(EventNodeScript script) {
+		final Object[] values = new Object[fields.length];
+		try {
+			for (int i = 0; i < fields.length; i++)
+				values[i] = copyValue(fields[i].get(script));
+		} catch (IllegalAccessException e) {
+			throw new IllegalStateException(e);
+		}
+		return values;
+	}
+
+	/**
+	 * Sets the fields of a script to values previously copied from it. The
+	 * values are taken by the script, and must not be restored again.
+	 *
+	 * @param script
+	 *            a script of the class.
+	 * @param values
+	 *            the values copied from the script.
+	 */
+	void restore(EventNodeScript script, Object[] values) {
+		try {
+			for (int i = 0; i < fields.length; i++)
+				fields[i].set(script, values[i]);
+		} catch (IllegalAccessException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static Object copyValue(Object value) {
+		if (value == null)
+			return null;
+
+		final Class<?> valueClass = value.getClass();
+		if (valueClass.isArray()) {
+			final int length = Array.getLength(value);
+			final Object copy = Array.newInstance(valueClass
+					.getComponentType(), length);
+			System.arraycopy(value, 0, copy, 0, length);
+			return copy;
+		}
+		if (value instanceof Cloneable) {
+			try {
+				final Method clone = valueClass.getMethod("clone");
+				return clone.invoke(value);
+			} catch (NoSuchMethodException e) {
+				return value;
+			} catch (IllegalAccessException e) {
+				return value;
+			} catch (InvocationTargetException e) {
+				throw new IllegalStateException(e.getCause());
+			}
+		}
+		return value;
+	}
+}
@@ -0,0 +1,513 @@
+package net.alexheavens.cs4099.simulation;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.lang.reflect.Field;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.alexheavens.cs4099.concurrent.CallbackDispatcher;
+import net.alexheavens.cs4099.network.EventNode;
+import net.alexheavens.cs4099.network.ILinkEndpoint;
+import net.alexheavens.cs4099.network.IMessageImpl;
+import net.alexheavens.cs4099.network.INodeImpl;
+import net.alexheavens.cs4099.network.Network;
+import net.alexheavens.cs4099.network.Node;
+import net.alexheavens.cs4099.usercode.NodeScript;
+
+/**
+ * The state of a simulation between timesteps, from which other simulations of
+ * the same network can continue, rather than simulating again from timestep 0.
+ *
+ * A checkpoint holds the state in which each node waits, the messages that
+ * have arrived at it and the fields of its script, together with the events
+ * waiting to be processed. A node with a Thread of its own keeps its state on
+ * the stack of that Thread, which cannot be captured, so only simulations of
+ * event-driven nodes can be checkpointed: these wait between invocations with
+ * nothing on the stack.
+ *
+ * Messages are captured as by a {@link MessageCodec}, and the state fields of
+ * scripts, as given by {@link ScriptFields#stateFields(Class)}, by Java
+ * serialisation, so must be Serializable. References to nodes,
+ * scripts and messages held by scripts are recreated in the network that
+ * continues. As the captured state is independent of the simulation it was
+ * taken from, a checkpoint can be restored any number of times.
+ *
+ * @author Alexander Heavens <alexander.heavens@gmail.com>
+ * @version 1.0
+ * @see SimulationRunner#checkpoint()
+ */
+public class SimulationCheckpoint {
+
+	// Kinds of waiting event.
+	private static final int ARRIVAL = 0;
+	private static final int UNPAUSE = 1;
+	private static final int KILL = 2;
+
+	private static final SimulationState[] STATES = SimulationState.values();
+
+	private final Class<?>[] scriptClasses;
+	private final long timestep;
+	private final long visibleTimestep;
+	private final long eventTimestep;
+	private final long terminationTimestep;
+	private final TerminationReason terminationReason;
+	private final byte[] state;
+
+	/**
+	 * Captures the state of a simulation in which every node is blocked and
+	 * every raised event has been queued.
+	 *
+	 * @param network
+	 *            the network simulated, whose nodes are all event-driven.
+	 * @param runnerTimestep
+	 *            the timestep of the simulation.
+	 * @param visible
+	 *            the timestep that the simulation appears to have.
+	 * @param terminationStep
+	 *            the timestep at which simulation ended, if it has.
+	 * @param reason
+	 *            the reason simulation ended, or null.
+	 * @param controller
+	 *            the controller of the simulation's events.
+	 * @throws UnsupportedOperationException
+	 *             if a node is not event-driven, or the state of a script or
+	 *             waiting event cannot be captured.
+	 */
+	SimulationCheckpoint(Network network, long runnerTimestep, long visible,
+			long terminationStep, TerminationReason reason,
+			EventController controller) {
+		final List<Node> nodes = network.nodes();
+		scriptClasses = new Class<?>[nodes.size()];
+		for (int i = 0; i < scriptClasses.length; i++) {
+			if (!(nodes.get(i) instanceof EventNode))
+				throw new UnsupportedOperationException(
+						"Only simulations of event-driven nodes can be checkpointed.");
+			scriptClasses[i] = nodes.get(i).getScript().getClass();
+		}
+		timestep = runnerTimestep;
+		visibleTimestep = visible;
+		eventTimestep = controller.currentTimestep();
+		terminationTimestep = terminationStep;
+		terminationReason = reason;
+
+		final MessageCodec codec = new MessageCodec(network, loaderOf(network));
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final DataOutputStream out = new DataOutputStream(bytes);
+		try {
+			for (Node node : nodes) {
+				out.writeByte(node.getSimulationState().ordinal());
+				final Collection<IMessageImpl<?>> inbox = ((EventNode) node)
+						.inbox();
+				MessageCodec.writeVarLong(out, inbox.size());
+				for (IMessageImpl<?> message : inbox)
+					codec.encodeState(message, out);
+			}
+
+			final List<ISimulationEvent> events = controller.waitingEvents();
+			MessageCodec.writeVarLong(out, events.size());
+			for (ISimulationEvent event : events)
+				writeEvent(codec, event, out);
+
+			writeScripts(network, codec, out);
+			out.close();
+		} catch (IOException e) {
+			throw new UnsupportedOperationException(
+					"Cannot checkpoint simulation: " + e, e);
+		} catch (IllegalArgumentException e) {
+			throw new UnsupportedOperationException(
+					"Cannot checkpoint simulation: " + e.getMessage(), e);
+		}
+		state = bytes.toByteArray();
+	}
+
+	/**
+	 * @return The timestep at which the checkpoint was taken.
+	 */
+	public long timestep() {
+		return visibleTimestep;
+	}
+
+	/**
+	 * @return The number of nodes in the network simulated.
+	 */
+	public int nodeCount() {
+		return scriptClasses.length;
+	}
+
+	/**
+	 * @return The size in bytes of the captured state.
+	 */
+	public int size() {
+		return state.length;
+	}
+
+	/**
+	 * @return The timestep of the simulation, which may be later than the
+	 *         timestep at which it appears to be.
+	 */
+	long simulationTimestep() {
+		return timestep;
+	}
+
+	/**
+	 * @return The timestep at which simulation ended, if it had.
+	 */
+	long terminationTimestep() {
+		return terminationTimestep;
+	}
+
+	/**
+	 * @return The reason simulation ended, or null if it had not.
+	 */
+	TerminationReason terminationReason() {
+		return terminationReason;
+	}
+
+	/**
+	 * Digests the captured state, so that simulations reaching the same state
+	 * can be recognised without holding every checkpoint. Checkpoints of equal
+	 * state have equal fingerprints.
+	 * 
+	 * @return The SHA-256 digest of the checkpoint, in hexadecimal.
+	 */
+	String fingerprint() {
+		final MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+		final ByteArrayOutputStream header = new ByteArrayOutputStream();
+		final DataOutputStream out = new DataOutputStream(header);
+		try {
+			for (Class<?> scriptClass : scriptClasses)
+				out.writeUTF(scriptClass.getName());
+			out.writeLong(timestep);
+			out.writeLong(visibleTimestep);
+			out.writeLong(eventTimestep);
+			out.writeLong(terminationTimestep);
+			out.writeUTF(String.valueOf(terminationReason));
+			out.close();
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+		digest.update(header.toByteArray());
+		digest.update(state);
+		final StringBuilder hex = new StringBuilder();
+		for (byte b : digest.digest())
+			hex.append(String.format("%02x", b));
+		return hex.toString();
+	}
+
+	/**
+	 * Restores the captured state to the nodes and events of a simulation that
+	 * has yet to begin.
+	 *
+	 * @param runner
+	 *            the runner of the simulation.
+	 * @param controller
+	 *            the controller of the simulation's events.
+	 * @param dispatcher
+	 *            the dispatcher that will invoke the nodes' scripts.
+	 * @param profiler
+	 *            the profiler used to monitor node execution.
+	 * @throws IllegalArgumentException
+	 *             if the runner's network does not have the nodes and scripts
+	 *             of the network checkpointed.
+	 */
+	void restore(SimulationRunner runner, EventController controller,
+			CallbackDispatcher dispatcher, SimulationProfiler profiler) {
+		final Network network = runner.network();
+		final List<Node> nodes = network.nodes();
+		if (nodes.size() != scriptClasses.length)
+			throw new IllegalArgumentException(
+					"Cannot restore a checkpoint of a network of "
+							+ scriptClasses.length + " nodes to one of "
+							+ nodes.size() + ".");
+		for (int i = 0; i < scriptClasses.length; i++) {
+			if (nodes.get(i).getScript().getClass() != scriptClasses[i])
+				throw new IllegalArgumentException(
+						"Cannot restore a checkpoint of node " + i + " to a "
+								+ nodes.get(i).getScript().getClass());
+		}
+
+		final MessageCodec codec = new MessageCodec(network, loaderOf(network));
+		final DataInputStream in = new DataInputStream(
+				new ByteArrayInputStream(state));
+		final SimulationState[] states = new SimulationState[nodes.size()];
+		final List<List<IMessageImpl<?>>> inboxes = new ArrayList<List<IMessageImpl<?>>>();
+		final List<ISimulationEvent> events = new ArrayList<ISimulationEvent>();
+		final Object[][] scriptValues;
+		try {
+			for (int i = 0; i < states.length; i++) {
+				states[i] = STATES[in.readUnsignedByte()];
+				final int inboxSize = (int) MessageCodec.readVarLong(in);
+				final List<IMessageImpl<?>> inbox = new ArrayList<IMessageImpl<?>>(
+						inboxSize);
+				for (int m = 0; m < inboxSize; m++)
+					inbox.add(codec.decodeState(in));
+				inboxes.add(inbox);
+			}
+
+			final long eventCount = MessageCodec.readVarLong(in);
+			for (long e = 0; e < eventCount; e++)
+				events.add(readEvent(runner, codec, in));
+
+			scriptValues = readScripts(network, codec, in);
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+
+		for (int i = 0; i < states.length; i++) {
+			((EventNode) nodes.get(i)).restore(dispatcher, profiler,
+					states[i], inboxes.get(i));
+			final NodeScript script = nodes.get(i).getScript();
+			final List<Field> fields = ScriptFields.stateFields(script
+					.getClass());
+			try {
+				for (int f = 0; f < fields.size(); f++)
+					fields.get(f).set(script, scriptValues[i][f]);
+			} catch (IllegalAccessException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+		controller.restoreEvents(eventTimestep, events);
+	}
+
+	private static void writeEvent(MessageCodec codec, ISimulationEvent event,
+			DataOutputStream out) throws IOException {
+		if (event instanceof MessageArrivalEvent) {
+			final List<IMessageImpl<?>> messages;
+			if (event instanceof MessageArrivalBatchEvent)
+				messages = ((MessageArrivalBatchEvent) event).messages();
+			else
+				messages = Collections
+						.<IMessageImpl<?>> singletonList(((MessageArrivalEvent) event)
+								.message());
+			out.writeByte(ARRIVAL);
+			MessageCodec.writeVarLong(out, event.getTimestep());
+			MessageCodec.writeVarLong(out, messages.size());
+			for (IMessageImpl<?> message : messages)
+				codec.encodeState(message, out);
+		} else if (event instanceof NodeUnpauseEvent) {
+			out.writeByte(UNPAUSE);
+			MessageCodec.writeVarLong(out, event.getTimestep());
+			MessageCodec.writeVarLong(out, ((NodeUnpauseEvent) event)
+					.getNodeId());
+		} else if (event instanceof NodeKillEvent) {
+			out.writeByte(KILL);
+			MessageCodec.writeVarLong(out, event.getTimestep());
+			MessageCodec.writeVarLong(out, ((NodeKillEvent) event).getNodeId());
+		} else {
+			throw new UnsupportedOperationException(
+					"Cannot checkpoint waiting event of " + event.getClass());
+		}
+	}
+
+	private static ISimulationEvent readEvent(SimulationRunner runner,
+			MessageCodec codec, DataInputStream in) throws IOException {
+		final int kind = in.readUnsignedByte();
+		final long eventTimestep = MessageCodec.readVarLong(in);
+		switch (kind) {
+		case ARRIVAL:
+			final long messageCount = MessageCodec.readVarLong(in);
+			final MessageArrivalBatchEvent batch = new MessageArrivalBatchEvent(
+					codec.decodeState(in), eventTimestep);
+			for (long m = 1; m < messageCount; m++)
+				batch.addMessage(codec.decodeState(in));
+			return batch;
+		case UNPAUSE:
+			return new NodeUnpauseEvent(eventTimestep, (INodeImpl) runner
+					.network().nodes().get((int) MessageCodec.readVarLong(in)));
+		case KILL:
+			final NodeKillEvent kill = new NodeKillEvent(eventTimestep,
+					(int) MessageCodec.readVarLong(in));
+			kill.prepare(runner);
+			return kill;
+		default:
+			throw new IOException("Unrecognised waiting event " + kind);
+		}
+	}
+
+	private static void writeScripts(Network network, MessageCodec codec,
+			DataOutputStream out) throws IOException {
+		final List<Node> nodes = network.nodes();
+		final Map<Object, Integer> scriptIds = new IdentityHashMap<Object, Integer>();
+		final Object[][] values = new Object[nodes.size()][];
+		for (int i = 0; i < values.length; i++) {
+			final NodeScript script = nodes.get(i).getScript();
+			scriptIds.put(script, i);
+			final List<Field> fields = ScriptFields.stateFields(script
+					.getClass());
+			values[i] = new Object[fields.size()];
+			try {
+				for (int f = 0; f < fields.size(); f++)
+					values[i][f] = fields.get(f).get(script);
+			} catch (IllegalAccessException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final ObjectOutputStream objectOut = new StateOutputStream(bytes,
+				codec, scriptIds);
+		objectOut.writeObject(values);
+		objectOut.close();
+		MessageCodec.writeVarLong(out, bytes.size());
+		bytes.writeTo(out);
+	}
+
+	private static Object[][] readScripts(Network network, MessageCodec codec,
+			DataInputStream in) throws IOException {
+		final byte[] bytes = new byte[(int) MessageCodec.readVarLong(in)];
+		in.readFully(bytes);
+		final ObjectInputStream objectIn = new StateInputStream(
+				new ByteArrayInputStream(bytes), network, codec,
+				loaderOf(network));
+		try {
+			return (Object[][]) objectIn.readObject();
+		} catch (ClassNotFoundException e) {
+			throw new IOException(e.getMessage());
+		} finally {
+			objectIn.close();
+		}
+	}
+
+	private static ClassLoader loaderOf(Network network) {
+		if (network.nodeCount() == 0)
+			return SimulationCheckpoint.class.getClassLoader();
+		return network.nodes().get(0).getScript().getClass().getClassLoader();
+	}
+
+	/*
+	 * Stands in for a node of the network within the state of a script.
+	 */
+	private static final class NodeReference implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+		private final int id;
+
+		NodeReference(int nodeId) {
+			id = nodeId;
+		}
+	}
+
+	/*
+	 * Stands in for the script of a node within the state of a script.
+	 */
+	private static final class ScriptReference implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+		private final int id;
+
+		ScriptReference(int nodeId) {
+			id = nodeId;
+		}
+	}
+
+	/*
+	 * Stands in for a message within the state of a script, holding it as
+	 * encoded by a MessageCodec.
+	 */
+	private static final class MessageReference implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+		private final byte[] encoded;
+
+		MessageReference(byte[] encodedMessage) {
+			encoded = encodedMessage;
+		}
+	}
+
+	/*
+	 * Writes the state of scripts, replacing the nodes, scripts and messages of
+	 * the network with stand-ins.
+	 */
+	private static class StateOutputStream extends ObjectOutputStream {
+
+		private final MessageCodec codec;
+		private final Map<Object, Integer> scriptIds;
+
+		StateOutputStream(OutputStream out, MessageCodec messageCodec,
+				Map<Object, Integer> ids) throws IOException {
+			super(out);
+			codec = messageCodec;
+			scriptIds = ids;
+			enableReplaceObject(true);
+		}
+
+		@Override
+		protected Object replaceObject(Object obj) throws IOException {
+			if (obj instanceof NodeScript && scriptIds.containsKey(obj))
+				return new ScriptReference(scriptIds.get(obj));
+			if (obj instanceof ILinkEndpoint)
+				return new NodeReference(((ILinkEndpoint) obj).getSimulationId());
+			if (obj instanceof IMessageImpl<?>) {
+				final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+				codec.encodeState((IMessageImpl<?>) obj, new DataOutputStream(
+						bytes));
+				return new MessageReference(bytes.toByteArray());
+			}
+			return obj;
+		}
+	}
+
+	/*
+	 * Reads the state of scripts, resolving stand-ins to the nodes, scripts and
+	 * messages of the network that continues.
+	 */
+	private static class StateInputStream extends ObjectInputStream {
+
+		private final Network network;
+		private final MessageCodec codec;
+		private final ClassLoader loader;
+
+		StateInputStream(InputStream in, Network net, MessageCodec messageCodec,
+				ClassLoader classLoader) throws IOException {
+			super(in);
+			network = net;
+			codec = messageCodec;
+			loader = classLoader;
+			enableResolveObject(true);
+		}
+
+		@Override
+		protected Class<?> resolveClass(ObjectStreamClass desc)
+				throws IOException, ClassNotFoundException {
+			try {
+				return Class.forName(desc.getName(), false, loader);
+			} catch (ClassNotFoundException e) {
+				return super.resolveClass(desc);
+			}
+		}
+
+		@Override
+		protected Object resolveObject(Object obj) throws IOException {
+			if (obj instanceof NodeReference)
+				return network.nodes().get(((NodeReference) obj).id);
+			if (obj instanceof ScriptReference)
+				return network.nodes().get(((ScriptReference) obj).id)
+						.getScript();
+			if (obj instanceof MessageReference)
+				return codec.decodeState(new DataInputStream(
+						new ByteArrayInputStream(((MessageReference) obj).encoded)));
+			return obj;
+		}
+	}
+}
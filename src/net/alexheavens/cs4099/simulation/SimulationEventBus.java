@@ -0,0 +1,90 @@
+package net.alexheavens.cs4099.simulation;
+
+/**
+ * The SimulationEventBus passes ISimulationEvents to a set of typed listeners.
+ * 
+ * Listeners are held in an array that is replaced whenever a listener is added
+ * or removed. As listeners are rarely changed once simulation begins,
+ * publishing an event requires no locking, no bookkeeping and no casts, only a
+ * read of the current array.
+ * 
+ * @author Alexander Heavens <alexander.heavens@gmail.com>
+ * @version 1.0
+ */
+public class SimulationEventBus {
+
+	private static final ISimulationEventListener[] NO_LISTENERS = new ISimulationEventListener[0];
+
+	private volatile ISimulationEventListener[] listeners;
+
+	/**
+	 * Creates a SimulationEventBus with no listeners.
+	 */
+	public SimulationEventBus() {
+		listeners = NO_LISTENERS;
+	}
+
+	/**
+	 * Adds a listener to be passed every following event. A listener may only
+	 * be added once.
+	 * 
+	 * @param listener
+	 *            the listener to add.
+	 * @throws IllegalArgumentException
+	 *             If the listener is null.
+	 */
+	public synchronized void addListener(ISimulationEventListener listener) {
+		if (listener == null)
+			throw new IllegalArgumentException(
+					"Attempted to add a null listener to an event bus.");
+
+		final ISimulationEventListener[] current = listeners;
+		for (ISimulationEventListener existing : current) {
+			if (existing == listener)
+				return;
+		}
+
+		final ISimulationEventListener[] updated = new ISimulationEventListener[current.length + 1];
+		System.arraycopy(current, 0, updated, 0, current.length);
+		updated[current.length] = listener;
+		listeners = updated;
+	}
+
+	/**
+	 * Removes a listener, which will not be passed any following events.
+	 * 
+	 * @param listener
+	 *            the listener to remove.
+	 */
+	public synchronized void removeListener(ISimulationEventListener listener) {
+		final ISimulationEventListener[] current = listeners;
+		for (int i = 0; i < current.length; i++) {
+			if (current[i] == listener) {
+				final ISimulationEventListener[] updated = new ISimulationEventListener[current.length - 1];
+				System.arraycopy(current, 0, updated, 0, i);
+				System.arraycopy(current, i + 1, updated, i, updated.length - i);
+				listeners = updated;
+				return;
+			}
+		}
+	}
+
+	/**
+	 * @return The number of listeners passed events.
+	 */
+	public int listenerCount() {
+		return listeners.length;
+	}
+
+	/**
+	 * Passes an event to every listener, in the order they were added.
+	 * 
+	 * @param event
+	 *            the event to pass on.
+	 */
+	public void publish(ISimulationEvent event) {
+		final ISimulationEventListener[] current = listeners;
+		for (int i = 0; i < current.length; i++)
+			current[i].eventRaised(event);
+	}
+}
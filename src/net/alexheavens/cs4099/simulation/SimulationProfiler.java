@@ -3,35 +3,72 @@ package net.alexheavens.cs4099.simulation;
 import java.lang.management.ManagementFactory;
 
 import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.Iterator;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.Timer;
 import java.util.TimerTask;
 import java.util.concurrent.ConcurrentHashMap;
 
+import net.alexheavens.cs4099.concurrent.VirtualThreadFactory;
 import net.alexheavens.cs4099.network.Node;
+import net.alexheavens.cs4099.usercode.InstructionBudget;
 
 /**
  * Tracks that time of simulation processes.
  * 
+ * The time of a process is taken as the CPU time of its Thread. As the CPU
+ * time of a virtual Thread is not available, processes executing on virtual
+ * Threads are timed by the wall-clock time they spend tracked instead.
+ * 
+ * Each process timed out is noted, with the number of events it had raised,
+ * so that a replay of the simulation can time it out at the same point.
+ * 
+ * Timeouts are enforced by a wheel of deadlines, one for each tracked process,
+ * set the timeout after it was tracked. A process can use no more time than
+ * has passed, so only a process whose deadline has passed is timed: if it has
+ * not yet used its timeout, it is given a new deadline at which it could
+ * have. Processes whose deadlines have not passed cost nothing to check.
+ * 
+ * A process timed out is stopped by revoking the {@link InstructionBudget}
+ * entered on its Thread, which an instrumented script charges at each back
+ * edge and method entry, so that its Thread need not be stopped. Scripts that
+ * are not instrumented can only be stopped with their Thread.
+ * 
+ * Processes may also be limited by an instruction budget, which an
+ * instrumented script exhausts at the same point in every simulation. A
+ * timeout given alongside a budget is kept as a backstop, timing out a
+ * process that spends its time outside its own code, where it is not charged.
+ * 
  * @author Alexander Heavens <alexander.heavens@gmail.com>
  * @version 1.0
  */
 public class SimulationProfiler {
 
-	// The number of times the sweep task tests for timed out node per threshold
-	// time.
+	// The number of ticks of the deadline wheel per timeout, and so the number
+	// of times per timeout that passed deadlines are checked.
 	private final static int TIME_CHECKS_PER_TIMEOUT = 5;
 
+	// The number of slots of the deadline wheel.
+	private final static int DEADLINE_SLOTS = 64;
+
 	private final long timeout;
-	private final TimerTask sweepProcessesTask;
+	private final TimerTask expireDeadlinesTask;
+	private final DeadlineWheel<ProfiledProcess> deadlineWheel;
 	private final Map<ProfiledProcess, Long> startTimes = new ConcurrentHashMap<ProfiledProcess, Long>();
+	private final Map<ProfiledProcess, DeadlineWheel.Deadline<ProfiledProcess>> deadlines = new HashMap<ProfiledProcess, DeadlineWheel.Deadline<ProfiledProcess>>();
 	protected final Map<Integer, Map<Long, Long>> processSimTimes;
+	private final List<ProcessTimeout> timeouts = new ArrayList<ProcessTimeout>();
+	private final Set<ProfiledProcess> killed = new HashSet<ProfiledProcess>();
+	private final Map<ProfiledProcess, InstructionBudget> budgets = new ConcurrentHashMap<ProfiledProcess, InstructionBudget>();
 	protected final ThreadMXBean threadInterface = ManagementFactory
 			.getThreadMXBean();
 
-	private long timestep = -1;
+	private volatile long instructionBudget = 0;
+	private volatile long timestep = -1;
 
 	public SimulationProfiler(final int nProcesses) {
 		this(nProcesses, 0);
@@ -49,9 +86,12 @@ public class SimulationProfiler {
 			processSimTimes.put(i, new HashMap<Long, Long>());
 		}
 
-		// Only create a sweep task if a timeout is specified.
+		// Only create a wheel of deadlines if a timeout is specified.
 		if (timeout > 0) {
-			sweepProcessesTask = new TimerTask() {
+			final long killDelay = ((nodeTimeout / 1000000) / TIME_CHECKS_PER_TIMEOUT) + 1;
+			deadlineWheel = new DeadlineWheel<ProfiledProcess>(
+					killDelay * 1000000, DEADLINE_SLOTS, System.nanoTime());
+			expireDeadlinesTask = new TimerTask() {
 
 				@Override
 				public void run() {
@@ -59,12 +99,12 @@ public class SimulationProfiler {
 				}
 			};
 
-			final long killDelay = ((nodeTimeout / 1000000) / TIME_CHECKS_PER_TIMEOUT) + 1;
 			final Timer killTimer = new Timer();
-			killTimer.scheduleAtFixedRate(sweepProcessesTask, killDelay,
+			killTimer.scheduleAtFixedRate(expireDeadlinesTask, killDelay,
 					killDelay);
 		} else {
-			sweepProcessesTask = null;
+			deadlineWheel = null;
+			expireDeadlinesTask = null;
 		}
 	}
 
@@ -91,6 +131,82 @@ public class SimulationProfiler {
 		this.timestep = timestep;
 	}
 
+	/**
+	 * @return The timestep for which processes are tracked, or -1 if none has
+	 *         been given.
+	 */
+	protected synchronized long timestep() {
+		return timestep;
+	}
+
+	/**
+	 * Called by a process as it resumes execution and after each event it
+	 * raises, from the Thread on which it executes. Processes are timed out
+	 * by the sweep of tracked processes, so this only enters the budget by
+	 * which it is stopped, as its Thread may have changed.
+	 * 
+	 * @param process
+	 *            the executing process.
+	 */
+	public void checkProcess(ProfiledProcess process) {
+		enterProcess(process);
+	}
+
+	/**
+	 * Called by a process as it begins executing on a Thread, before its
+	 * script is set up or invoked, from that Thread. If processes are timed
+	 * out or limited by an instruction budget, enters the budget by which the
+	 * process is charged and stopped, refilled if the timestep has changed.
+	 * 
+	 * @param process
+	 *            the process about to execute.
+	 */
+	public void enterProcess(ProfiledProcess process) {
+		if (timeout == 0 && instructionBudget == 0)
+			return;
+		InstructionBudget budget = budgets.get(process);
+		if (budget == null) {
+			final long limit = (instructionBudget > 0) ? instructionBudget
+					: InstructionBudget.UNLIMITED;
+			budget = new InstructionBudget(limit);
+			budgets.put(process, budget);
+		}
+		budget.refill(timestep);
+		InstructionBudget.enter(budget);
+	}
+
+	/**
+	 * Limits each process to a number of back edges and method entries per
+	 * timestep. This must be called before any process executes.
+	 * 
+	 * @param budget
+	 *            the number of charges each process may make per timestep.
+	 * @throws IllegalArgumentException
+	 *             if the budget is less than 1.
+	 */
+	synchronized void setInstructionBudget(long budget) {
+		if (budget < 1)
+			throw new IllegalArgumentException("Invalid instruction budget: "
+					+ budget);
+		instructionBudget = budget;
+	}
+
+	/**
+	 * @return The number of back edges and method entries each process may
+	 *         make per timestep, or 0 if processes are not limited.
+	 */
+	long instructionBudget() {
+		return instructionBudget;
+	}
+
+	/**
+	 * @return The time in nanoseconds a process may execute per timestep
+	 *         before it is timed out, or 0 if processes are not timed out.
+	 */
+	public long nodeTimeout() {
+		return timeout;
+	}
+
 	/**
 	 * Resumes tracking the time that a node is executing in this timestep.
 	 * 
@@ -115,8 +231,10 @@ public class SimulationProfiler {
 		if (startTimes.containsKey(process))
 			throw new IllegalStateException(
 					"Attempted to track an already tracked process.");
-		startTimes.put(process,
-				threadInterface.getThreadCpuTime(process.getThread().getId()));
+		startTimes.put(process, processTime(process));
+		if (deadlineWheel != null)
+			deadlines.put(process, deadlineWheel.schedule(process,
+					System.nanoTime() + timeout));
 	}
 
 	/**
@@ -137,12 +255,16 @@ public class SimulationProfiler {
 			throw new IllegalArgumentException(
 					"Attempted to track null process.");
 
-		if (!startTimes.containsKey(process))
+		if (!startTimes.containsKey(process)) {
+
+			// A process timed out may untrack itself before it is killed.
+			if (killed.contains(process))
+				return;
 			throw new IllegalStateException(
 					"Attempted to untrack process without first tracking it.");
+		}
 
-		final long currentTime = threadInterface.getThreadCpuTime(process
-				.getThread().getId());
+		final long currentTime = processTime(process);
 		final long simTime = currentTime - startTimes.get(process);
 
 		final int processId = process.getSimulationId();
@@ -152,6 +274,8 @@ public class SimulationProfiler {
 				.get(timestep) : 0l;
 		timestepMap.put(timestep, previousTime + simTime);
 		startTimes.remove(process);
+		if (deadlineWheel != null)
+			deadlineWheel.cancel(deadlines.remove(process));
 	}
 
 	/**
@@ -162,17 +286,58 @@ public class SimulationProfiler {
 		return processSimTimes;
 	}
 
-	private synchronized void killUnresponsiveNodes() {
-		final Iterator<ProfiledProcess> nodes = startTimes.keySet().iterator();
-		while (nodes.hasNext()) {
-			final ProfiledProcess node = nodes.next();
-			long currentTime = threadInterface.getThreadCpuTime(node
-					.getThread().getId());
+	/**
+	 * @return The processes timed out, in the order they were timed out.
+	 */
+	public synchronized List<ProcessTimeout> timeouts() {
+		return new ArrayList<ProcessTimeout>(timeouts);
+	}
+
+	/*
+	 * Times each process whose deadline has passed, killing those that have
+	 * used more than the timeout. The wheel is expired, and processes killed,
+	 * outside of the monitor: a process untracks itself while holding its own
+	 * lock, which killing it takes.
+	 */
+	private void killUnresponsiveNodes() {
+		final long now = System.nanoTime();
+		final List<ProfiledProcess> overdue = new ArrayList<ProfiledProcess>();
+		for (DeadlineWheel.Deadline<ProfiledProcess> deadline : deadlineWheel
+				.expire(now)) {
+			synchronized (this) {
+
+				// The process may have been untracked, or tracked again, since
+				// its deadline expired.
+				final ProfiledProcess node = deadline.item();
+				if (deadlines.get(node) != deadline)
+					continue;
+				final long startTime = startTimes.get(node);
 
-			if (currentTime - startTimes.get(node) > timeout) {
-				node.kill();
-				nodes.remove();
+				final long usedTime = processTime(node) - startTime;
+				if (usedTime > timeout) {
+					final InstructionBudget budget = budgets.get(node);
+					if (budget != null)
+						budget.revoke();
+					startTimes.remove(node);
+					deadlines.remove(node);
+					killed.add(node);
+					timeouts.add(new ProcessTimeout(node.getSimulationId(),
+							timestep, node.raisedEventCount()));
+					overdue.add(node);
+				} else {
+					deadlines.put(node, deadlineWheel.schedule(node, now
+							+ timeout - usedTime));
+				}
 			}
 		}
+		for (ProfiledProcess node : overdue)
+			node.kill();
+	}
+
+	private long processTime(ProfiledProcess process) {
+		final Thread thread = process.getThread();
+		if (VirtualThreadFactory.isVirtual(thread))
+			return System.nanoTime();
+		return threadInterface.getThreadCpuTime(thread.getId());
 	}
 }
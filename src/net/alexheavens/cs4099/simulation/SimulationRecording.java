@@ -0,0 +1,341 @@
+package net.alexheavens.cs4099.simulation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import net.alexheavens.cs4099.network.Network;
+import net.alexheavens.cs4099.network.Node;
+import net.alexheavens.cs4099.network.configuration.INetworkConfig;
+import net.alexheavens.cs4099.usercode.NodeScript;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONException;
+import net.sf.json.JSONObject;
+
+/**
+ * The decisions made during a simulation that are not determined by its
+ * network, script and settings, from which the simulation can be replayed by
+ * a {@link SimulationRunner} without profiling or timeouts.
+ *
+ * Events raised by nodes together are processed in the order of the nodes,
+ * rather than the order in which their Threads happened to run, so the
+ * interleaving of nodes at the barrier does not change a simulation. What
+ * does is the initiator and scrambling of machine IDs chosen at random by the
+ * network, the order in which prescribed events were scheduled, which
+ * decides the order of those of the same timestep, and the points at which
+ * nodes were timed out by the profiler, or the instruction budget by which
+ * they timed themselves out. Each of these is recorded.
+ *
+ * @author Alexander Heavens <alexander.heavens@gmail.com>
+ * @version 1.0
+ */
+public class SimulationRecording {
+
+	/**
+	 * The initiator of a network of nodes none of which is an initiator.
+	 */
+	public static final int NO_INITIATOR = -1;
+
+	public static final String LENGTH_TAG = "length";
+	public static final String MODE_TAG = "mode";
+	public static final String BARRIER_TAG = "barrier";
+	public static final String QUEUE_TAG = "queue";
+	public static final String NODES_TAG = "nodes";
+	public static final String INITIATOR_TAG = "initiator";
+	public static final String SCRAMBLE_TAG = "scrambleCode";
+	public static final String PRESCRIBED_TAG = "prescribed";
+	public static final String TIMEOUTS_TAG = "timeouts";
+	public static final String INSTRUCTION_BUDGET_TAG = "instructionBudget";
+
+	private final long length;
+	private final ExecutionMode executionMode;
+	private final BarrierType barrierType;
+	private final EventQueueType eventQueueType;
+	private final int nodeCount;
+	private final int initiator;
+	private final int scrambleCode;
+	private final List<PrescribedEvent> prescribedEvents;
+	private final List<ProcessTimeout> timeouts;
+	private final long instructionBudget;
+
+	/**
+	 * Records a simulation.
+	 *
+	 * @param net
+	 *            the network simulated.
+	 * @param simLength
+	 *            the number of timesteps simulated.
+	 * @param mode
+	 *            the manner in which node Threads were created.
+	 * @param barrier
+	 *            the type of barrier at which nodes waited.
+	 * @param queue
+	 *            the type of queue in which events waited.
+	 * @param prescribed
+	 *            the prescribed events, in the order they were scheduled.
+	 * @param timedOut
+	 *            the processes timed out, in the order they were timed out.
+	 * @param budget
+	 *            the instruction budget of each node per timestep, or 0 if
+	 *            nodes were not limited by one.
+	 */
+	SimulationRecording(Network net, long simLength, ExecutionMode mode,
+			BarrierType barrier, EventQueueType queue,
+			List<PrescribedEvent> prescribed, List<ProcessTimeout> timedOut,
+			long budget) {
+		length = simLength;
+		executionMode = mode;
+		barrierType = barrier;
+		eventQueueType = queue;
+		nodeCount = net.nodeCount();
+		initiator = initiatorOf(net);
+		scrambleCode = (nodeCount == 0) ? 0 : scrambleCodeOf(net.nodes()
+				.get(0));
+		prescribedEvents = new ArrayList<PrescribedEvent>(prescribed);
+		timeouts = new ArrayList<ProcessTimeout>(timedOut);
+		instructionBudget = budget;
+	}
+
+	/**
+	 * Reads a recording written by {@link #toJSONObject()}.
+	 *
+	 * @param json
+	 *            the recording as JSON.
+	 * @throws JSONException
+	 *             if the JSON is malformed.
+	 * @throws IllegalArgumentException
+	 *             if a recorded value is invalid.
+	 */
+	public SimulationRecording(JSONObject json) throws JSONException {
+		length = json.getLong(LENGTH_TAG);
+		executionMode = ExecutionMode.valueOf(json.getString(MODE_TAG));
+		barrierType = BarrierType.valueOf(json.getString(BARRIER_TAG));
+		eventQueueType = EventQueueType.valueOf(json.getString(QUEUE_TAG));
+		nodeCount = json.getInt(NODES_TAG);
+		initiator = json.getInt(INITIATOR_TAG);
+		scrambleCode = json.getInt(SCRAMBLE_TAG);
+		if (length < 1)
+			throw new IllegalArgumentException("Invalid recorded length: "
+					+ length);
+		if (nodeCount < 0)
+			throw new IllegalArgumentException(
+					"Invalid recorded number of nodes: " + nodeCount);
+		if (initiator < NO_INITIATOR || initiator >= nodeCount)
+			throw new IllegalArgumentException("Invalid recorded initiator: "
+					+ initiator);
+
+		prescribedEvents = new ArrayList<PrescribedEvent>();
+		final JSONArray prescribedJson = json.getJSONArray(PRESCRIBED_TAG);
+		for (int i = 0; i < prescribedJson.size(); i++) {
+			final JSONObject eventJson = prescribedJson.getJSONObject(i);
+			final SimEventType type = SimEventType.valueOf(eventJson
+					.getString(SimulationEvent.TYPE_TAG));
+			if (type != SimEventType.NODE_REMOTE_KILL)
+				throw new IllegalArgumentException(
+						"Unknown prescribed event type: " + type);
+			prescribedEvents.add(new NodeKillEvent(eventJson
+					.getLong(SimulationEvent.TIME_TAG), eventJson
+					.getInt(NodeEvent.NODE_ID_TAG)));
+		}
+
+		timeouts = new ArrayList<ProcessTimeout>();
+		final JSONArray timeoutsJson = json.getJSONArray(TIMEOUTS_TAG);
+		for (int i = 0; i < timeoutsJson.size(); i++) {
+			final JSONArray timeoutJson = timeoutsJson.getJSONArray(i);
+			timeouts.add(new ProcessTimeout(timeoutJson.getInt(0), timeoutJson
+					.getLong(1), timeoutJson.getLong(2)));
+		}
+
+		// Recordings written before instruction budgets have none.
+		instructionBudget = json.optLong(INSTRUCTION_BUDGET_TAG, 0);
+		if (instructionBudget < 0)
+			throw new IllegalArgumentException("Invalid instruction budget: "
+					+ instructionBudget);
+	}
+
+	/**
+	 * Writes the recording as JSON.
+	 *
+	 * @return The recording as a JSONObject.
+	 * @throws UnsupportedOperationException
+	 *             if a prescribed event is not a {@link NodeKillEvent}, the
+	 *             only prescribed event that can be written.
+	 */
+	public JSONObject toJSONObject() {
+		final JSONObject json = new JSONObject();
+		json.element(LENGTH_TAG, length);
+		json.element(MODE_TAG, executionMode.name());
+		json.element(BARRIER_TAG, barrierType.name());
+		json.element(QUEUE_TAG, eventQueueType.name());
+		json.element(NODES_TAG, nodeCount);
+		json.element(INITIATOR_TAG, initiator);
+		json.element(SCRAMBLE_TAG, scrambleCode);
+
+		final JSONArray prescribedJson = new JSONArray();
+		for (PrescribedEvent event : prescribedEvents) {
+			if (!(event instanceof NodeKillEvent))
+				throw new UnsupportedOperationException(
+						"Cannot write prescribed event of " + event.getClass()
+								+ " as JSON.");
+			final JSONObject eventJson = new JSONObject();
+			eventJson.element(SimulationEvent.TYPE_TAG, event.getEventType()
+					.name());
+			eventJson.element(SimulationEvent.TIME_TAG, event.getTimestep());
+			eventJson.element(NodeEvent.NODE_ID_TAG, ((NodeKillEvent) event)
+					.getNodeId());
+			prescribedJson.add(eventJson);
+		}
+		json.element(PRESCRIBED_TAG, prescribedJson);
+
+		final JSONArray timeoutsJson = new JSONArray();
+		for (ProcessTimeout timeout : timeouts) {
+			final JSONArray timeoutJson = new JSONArray();
+			timeoutJson.add(0, timeout.simulationId());
+			timeoutJson.add(1, timeout.timestep());
+			timeoutJson.add(2, timeout.raisedEvents());
+			timeoutsJson.add(timeoutJson);
+		}
+		json.element(TIMEOUTS_TAG, timeoutsJson);
+		json.element(INSTRUCTION_BUDGET_TAG, instructionBudget);
+		return json;
+	}
+
+	/**
+	 * Creates a network like that recorded, with the same initiator and
+	 * scrambling of machine IDs.
+	 *
+	 * @param nodeClass
+	 *            the class of script recorded.
+	 * @param config
+	 *            the configuration of the network recorded.
+	 * @return The network.
+	 * @throws IllegalArgumentException
+	 *             if the configuration is of a different number of nodes.
+	 * @throws IllegalStateException
+	 *             if the network recorded had no initiator, so was not created
+	 *             from a configuration.
+	 * @throws InstantiationException
+	 *             if the node class cannot be instantiated.
+	 * @throws IllegalAccessException
+	 *             if a field cannot be accessed in the script class.
+	 */
+	public Network createNetwork(Class<? extends NodeScript> nodeClass,
+			INetworkConfig config) throws InstantiationException,
+			IllegalAccessException {
+		if (config.nodeCount() != nodeCount)
+			throw new IllegalArgumentException("Recorded network of "
+					+ nodeCount + " nodes, not " + config.nodeCount() + ".");
+		if (initiator == NO_INITIATOR)
+			throw new IllegalStateException(
+					"Cannot create a network recorded without an initiator.");
+		return new Network(nodeClass, config, initiator, scrambleCode);
+	}
+
+	/**
+	 * Checks that a network has the initiator and machine IDs recorded.
+	 *
+	 * @param net
+	 *            the network to replay.
+	 * @throws IllegalArgumentException
+	 *             if the network differs from that recorded.
+	 */
+	void checkNetwork(Network net) {
+		if (net.nodeCount() != nodeCount)
+			throw new IllegalArgumentException("Recorded network of "
+					+ nodeCount + " nodes, not " + net.nodeCount() + ".");
+		if (initiatorOf(net) != initiator)
+			throw new IllegalArgumentException("Recorded initiator "
+					+ initiator + ", not " + initiatorOf(net) + ".");
+		for (Node node : net.nodes()) {
+			if (scrambleCodeOf(node) != scrambleCode)
+				throw new IllegalArgumentException("Node "
+						+ node.getSimulationId()
+						+ " has a machine ID other than that recorded.");
+		}
+	}
+
+	/**
+	 * @return The number of timesteps simulated.
+	 */
+	public long simulationLength() {
+		return length;
+	}
+
+	/**
+	 * @return The manner in which node Threads were created.
+	 */
+	public ExecutionMode executionMode() {
+		return executionMode;
+	}
+
+	/**
+	 * @return The type of barrier at which nodes waited.
+	 */
+	public BarrierType barrierType() {
+		return barrierType;
+	}
+
+	/**
+	 * @return The type of queue in which events waited.
+	 */
+	public EventQueueType eventQueueType() {
+		return eventQueueType;
+	}
+
+	/**
+	 * @return The number of nodes in the network simulated.
+	 */
+	public int nodeCount() {
+		return nodeCount;
+	}
+
+	/**
+	 * @return The simulation ID of the initiator, or <code>NO_INITIATOR</code>
+	 *         if no node was an initiator.
+	 */
+	public int initiator() {
+		return initiator;
+	}
+
+	/**
+	 * @return The amount added to the simulation ID of each node to give its
+	 *         machine ID.
+	 */
+	public int scrambleCode() {
+		return scrambleCode;
+	}
+
+	/**
+	 * @return The prescribed events, in the order they were scheduled.
+	 */
+	public List<PrescribedEvent> prescribedEvents() {
+		return Collections.unmodifiableList(prescribedEvents);
+	}
+
+	/**
+	 * @return The nodes timed out, in the order they were timed out.
+	 */
+	public List<ProcessTimeout> timeouts() {
+		return Collections.unmodifiableList(timeouts);
+	}
+
+	/**
+	 * @return The instruction budget of each node per timestep, or 0 if nodes
+	 *         were not limited by one.
+	 */
+	public long instructionBudget() {
+		return instructionBudget;
+	}
+
+	private static int initiatorOf(Network net) {
+		for (Node node : net.nodes()) {
+			if (node.isInitiator())
+				return node.getSimulationId();
+		}
+		return NO_INITIATOR;
+	}
+
+	private static int scrambleCodeOf(Node node) {
+		return node.getMachineId() - node.getSimulationId();
+	}
+}
@@ -5,19 +5,97 @@ import java.util.Map;
 
 public class SimulationResults {
 
+	/**
+	 * The value of a time that was not recorded.
+	 */
+	public static final long TIME_NOT_RECORDED = -1;
+
 	private final IEventLog events;
 	private final Map<Integer, Map<Long, Long>> timeMap;
+	private final long terminationTimestep;
+	private final TerminationReason terminationReason;
+	private final long setupTime;
+	private final long teardownTime;
 
+	/**
+	 * Creates the results of a simulation that did not record how it ended.
+	 * 
+	 * @param iEventLog
+	 *            the events that occurred during simulation.
+	 * @param nodeTimes
+	 *            the time taken per timestep by each node (id).
+	 */
 	public SimulationResults(IEventLog iEventLog,
 			Map<Integer, Map<Long, Long>> nodeTimes) {
+		this(iEventLog, nodeTimes, SimulationRunner.TIMESTEP_END, null,
+				TIME_NOT_RECORDED, TIME_NOT_RECORDED);
+	}
+
+	/**
+	 * Creates the results of a simulation.
+	 * 
+	 * @param iEventLog
+	 *            the events that occurred during simulation.
+	 * @param nodeTimes
+	 *            the time taken per timestep by each node (id).
+	 * @param endTimestep
+	 *            the timestep at which simulation ended.
+	 * @param reason
+	 *            the reason simulation ended.
+	 * @param setupNanos
+	 *            the time in nanoseconds taken to start every node and set up
+	 *            those with Threads of their own.
+	 * @param teardownNanos
+	 *            the time in nanoseconds taken to halt every node once
+	 *            simulation ended.
+	 */
+	public SimulationResults(IEventLog iEventLog,
+			Map<Integer, Map<Long, Long>> nodeTimes, long endTimestep,
+			TerminationReason reason, long setupNanos, long teardownNanos) {
 		this.events = iEventLog;
 		this.timeMap = nodeTimes;
+		this.terminationTimestep = endTimestep;
+		this.terminationReason = reason;
+		this.setupTime = setupNanos;
+		this.teardownTime = teardownNanos;
 	}
 
 	public IEventLog getEvents() {
 		return events;
 	}
 
+	/**
+	 * @return The timestep at which simulation ended, or
+	 *         <code>SimulationRunner.TIMESTEP_END</code> if not recorded.
+	 */
+	public long getTerminationTimestep() {
+		return terminationTimestep;
+	}
+
+	/**
+	 * @return The reason simulation ended, or null if not recorded.
+	 */
+	public TerminationReason getTerminationReason() {
+		return terminationReason;
+	}
+
+	/**
+	 * @return The time in nanoseconds taken to start every node and set up
+	 *         those with Threads of their own, or
+	 *         <code>TIME_NOT_RECORDED</code>.
+	 */
+	public long getSetupTime() {
+		return setupTime;
+	}
+
+	/**
+	 * @return The time in nanoseconds taken to halt every node once simulation
+	 *         ended, or <code>TIME_NOT_RECORDED</code>.
+	 */
+	public long getTeardownTime() {
+		return teardownTime;
+	}
+
 	public Map<String, Map<String, Long>> getJSONTimeMap() {
 		final Map<String, Map<String, Long>> stringTimeMap = new HashMap<String, Map<String,Long>>(timeMap.size());
 		for(Integer id : timeMap.keySet()){
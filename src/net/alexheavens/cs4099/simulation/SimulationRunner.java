@@ -1,15 +1,31 @@
 package net.alexheavens.cs4099.simulation;
 
-import java.util.Observable;
-
-import java.util.Observer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadFactory;
 
+import net.alexheavens.cs4099.concurrent.CallbackDispatcher;
+import net.alexheavens.cs4099.concurrent.CooperativeScheduler;
+import net.alexheavens.cs4099.concurrent.DeferringRegistrar;
 import net.alexheavens.cs4099.concurrent.LeaderBarrier;
+import net.alexheavens.cs4099.network.EventNode;
+import net.alexheavens.cs4099.network.ILinkEndpoint;
 import net.alexheavens.cs4099.network.Network;
 import net.alexheavens.cs4099.network.Node;
+import net.alexheavens.cs4099.network.ThreadedNode;
+import net.alexheavens.cs4099.network.configuration.ILinkConfig;
+import net.alexheavens.cs4099.network.configuration.LinkConfig;
+import net.alexheavens.cs4099.network.configuration.NetworkPartitioner;
 
-public class SimulationRunner implements Observer {
+public class SimulationRunner implements ISimulationEventListener {
 
 	/**
 	 * The value of the time step before the simulation has run.
@@ -25,7 +41,21 @@ public class SimulationRunner implements Observer {
 	private final long length;
 	private final Network network;
 	private final Thread simThread;
-	private final SimulationProfiler profiler;
+	private SimulationProfiler profiler;
+	private final ExecutionMode executionMode;
+	private final BarrierType barrierType;
+	private final EventQueueType eventQueueType;
+	private final boolean batchTimesteps;
+	private final ThreadFactory nodeThreadFactory;
+	private final int threadedNodes;
+	private final CallbackDispatcher dispatcher;
+	private final List<PrescribedEvent> prescribedEvents;
+	private DeferringRegistrar deferringBarrier;
+	private boolean restored;
+	private long terminationTimestep;
+	private TerminationReason terminationReason;
+	private long setupTime;
+	private long teardownTime;
 
 	public SimulationRunner(Network net, long simLength) {
 		this(net, simLength, null, 0);
@@ -33,14 +63,159 @@ public class SimulationRunner implements Observer {
 
 	public SimulationRunner(Network net, long simLength,
 			Set<? extends PrescribedEvent> events, long nodeTimeout) {
+		this(net, simLength, events, nodeTimeout,
+				ExecutionMode.PLATFORM_THREADS);
+	}
+
+	/**
+	 * Creates a runner that simulates a network, executing its nodes in the
+	 * given mode.
+	 * 
+	 * @param net
+	 *            the network to simulate.
+	 * @param simLength
+	 *            the number of timesteps to simulate.
+	 * @param events
+	 *            the events prescribed to occur during simulation, or null.
+	 * @param nodeTimeout
+	 *            the time a node can execute for in one timestep before being
+	 *            timed out, or 0 for no timeout.
+	 * @param mode
+	 *            the manner in which node Threads are created.
+	 * @throws UnsupportedOperationException
+	 *             if the mode is not supported by the Java runtime, or nodes
+	 *             are timed out but cannot be stopped.
+	 */
+	public SimulationRunner(Network net, long simLength,
+			Set<? extends PrescribedEvent> events, long nodeTimeout,
+			ExecutionMode mode) {
+		this(net, simLength, events, nodeTimeout, mode, BarrierType.LOCKING);
+	}
+
+	/**
+	 * Creates a runner that simulates a network, executing its nodes in the
+	 * given mode and waiting for them at the given type of barrier.
+	 * 
+	 * @param net
+	 *            the network to simulate.
+	 * @param simLength
+	 *            the number of timesteps to simulate.
+	 * @param events
+	 *            the events prescribed to occur during simulation, or null.
+	 * @param nodeTimeout
+	 *            the time a node can execute for in one timestep before being
+	 *            timed out, or 0 for no timeout.
+	 * @param mode
+	 *            the manner in which node Threads are created.
+	 * @param barrier
+	 *            the type of barrier at which nodes wait. Unused in cooperative
+	 *            execution, which has a barrier of its own.
+	 * @throws UnsupportedOperationException
+	 *             if the mode is not supported by the Java runtime, or nodes
+	 *             are timed out but cannot be stopped.
+	 */
+	public SimulationRunner(Network net, long simLength,
+			Set<? extends PrescribedEvent> events, long nodeTimeout,
+			ExecutionMode mode, BarrierType barrier) {
+		this(net, simLength, events, nodeTimeout, mode, barrier,
+				EventQueueType.PRIORITY_QUEUE);
+	}
+
+	/**
+	 * Creates a runner that simulates a network, executing its nodes in the
+	 * given mode, waiting for them at the given type of barrier and keeping
+	 * events in the given type of queue.
+	 * 
+	 * @param net
+	 *            the network to simulate.
+	 * @param simLength
+	 *            the number of timesteps to simulate.
+	 * @param events
+	 *            the events prescribed to occur during simulation, or null.
+	 * @param nodeTimeout
+	 *            the time a node can execute for in one timestep before being
+	 *            timed out, or 0 for no timeout.
+	 * @param mode
+	 *            the manner in which node Threads are created.
+	 * @param barrier
+	 *            the type of barrier at which nodes wait. Unused in cooperative
+	 *            execution, which has a barrier of its own.
+	 * @param queue
+	 *            the type of queue in which events wait to be processed.
+	 * @throws IllegalArgumentException
+	 *             if events are to be processed concurrently in cooperative
+	 *             execution, whose order of execution they would disturb.
+	 * @throws UnsupportedOperationException
+	 *             if the mode is not supported by the Java runtime, or nodes
+	 *             are timed out but cannot be stopped.
+	 */
+	public SimulationRunner(Network net, long simLength,
+			Set<? extends PrescribedEvent> events, long nodeTimeout,
+			ExecutionMode mode, BarrierType barrier, EventQueueType queue) {
+		this(net, simLength, events, nodeTimeout, mode, barrier, queue, null);
+	}
+
+	/**
+	 * Creates a runner that replays a recorded simulation, re-executing it
+	 * deterministically. Nodes are not profiled, and are timed out only where
+	 * they were in the recorded simulation.
+	 * 
+	 * @param net
+	 *            the network to simulate, with the initiator and machine IDs of
+	 *            that recorded.
+	 * @param recording
+	 *            the recording of the simulation.
+	 * @throws IllegalArgumentException
+	 *             if the recording is null, or the network differs from that
+	 *             recorded.
+	 * @see SimulationRecording#createNetwork(Class,
+	 *      net.alexheavens.cs4099.network.configuration.INetworkConfig)
+	 */
+	public SimulationRunner(Network net, SimulationRecording recording) {
+		this(net, requireRecording(recording).simulationLength(),
+				new LinkedHashSet<PrescribedEvent>(recording
+						.prescribedEvents()), 0, recording.executionMode(),
+				recording.barrierType(), recording.eventQueueType(), recording);
+	}
+
+	private SimulationRunner(Network net, long simLength,
+			Set<? extends PrescribedEvent> events, long nodeTimeout,
+			ExecutionMode mode, BarrierType barrier, EventQueueType queue,
+			SimulationRecording replayed) {
 		if (net == null)
 			throw new IllegalArgumentException(
 					"Cannot create a simulation runner with a null network.");
 		if (simLength < 1)
 			throw new IllegalArgumentException(
 					"Cannot create a simulation runner that is less than 1 timestep in length.");
-
-		profiler = new SimulationProfiler(net.nodeCount(), nodeTimeout);
+		if (mode == null)
+			throw new IllegalArgumentException(
+					"Cannot create a simulation runner with a null execution mode.");
+		if (barrier == null)
+			throw new IllegalArgumentException(
+					"Cannot create a simulation runner with a null barrier type.");
+		if (queue == null)
+			throw new IllegalArgumentException(
+					"Cannot create a simulation runner with a null event queue type.");
+		if (mode == ExecutionMode.COOPERATIVE
+				&& queue == EventQueueType.PARALLEL_TIMING_WHEEL)
+			throw new IllegalArgumentException(
+					"Cannot process events concurrently in cooperative execution.");
+		if (replayed != null)
+			replayed.checkNetwork(net);
+		if (nodeTimeout > 0)
+			checkStoppable(net, mode);
+
+		executionMode = mode;
+		barrierType = barrier;
+		eventQueueType = queue;
+		batchTimesteps = mode.batchesTimesteps() || queue.batchesTimesteps();
+		nodeThreadFactory = mode.createThreadFactory();
+		if (replayed == null)
+			profiler = new SimulationProfiler(net.nodeCount(), nodeTimeout);
+		else
+			profiler = new ReplayProfiler(net.nodeCount(), replayed.timeouts(),
+					replayed.instructionBudget());
 
 		timestep = TIMESTEP_NOT_START;
 		length = simLength;
@@ -51,25 +226,52 @@ public class SimulationRunner implements Observer {
 			}
 		};
 		simState = SimulationState.PRE_SIMULATION;
-		pauseBarrier = new LeaderBarrier(simThread, network.nodeCount());
+		terminationTimestep = TIMESTEP_END;
+		terminationReason = null;
+		setupTime = SimulationResults.TIME_NOT_RECORDED;
+		teardownTime = SimulationResults.TIME_NOT_RECORDED;
+		restored = false;
+
+		// Event-driven nodes are invoked by the dispatcher rather than waiting
+		// at the barrier on Threads of their own.
+		int eventNodes = 0;
+		for (Node node : network.nodes()) {
+			if (node instanceof EventNode)
+				eventNodes++;
+		}
+		threadedNodes = network.nodeCount() - eventNodes;
+		dispatcher = (eventNodes == 0) ? null : createDispatcher(mode, network
+				.nodes(), network.nodeCount());
+		pauseBarrier = createBarrier(simThread);
 
-		// Have the EventController observe events from Nodes and observe
+		// Have the EventController listen for events from Nodes and listen for
 		// priority events from it.
-		eventController = new EventController(simLength);
-		eventController.addObserver(this);
+		eventController = queue.createEventController(simLength);
+		eventController.addEventListener(this);
 		for (Node node : network.nodes()) {
-			node.addObserver(eventController);
+			node.addEventListener(eventController);
 		}
 
-		// Prepare all prescribed events and add to the event controller.
+		// Prepare all prescribed events and add to the event controller,
+		// noting the order in which they were scheduled.
+		prescribedEvents = new ArrayList<PrescribedEvent>();
 		if (events != null) {
 			for (PrescribedEvent event : events) {
 				event.prepare(this);
 				eventController.scheduleEvent(event, false);
+				prescribedEvents.add(event);
 			}
 		}
 	}
 
+	private static SimulationRecording requireRecording(
+			SimulationRecording recording) {
+		if (recording == null)
+			throw new IllegalArgumentException(
+					"Cannot replay a null recording.");
+		return recording;
+	}
+
 	/**
 	 * @return The timestep that the simulation is currently at, 0 if simulation
 	 *         has not started, -1 if simulation has ended.
@@ -125,25 +327,233 @@ public class SimulationRunner implements Observer {
 			throw new IllegalStateException();
 		}
 
-		for (Node node : network.nodes()) {
-			node.halt();
-		}
-
+		final long teardownStart = System.nanoTime();
+		haltNodes(network.nodes());
 		pauseBarrier.resumeAll();
-		
+		if (dispatcher != null)
+			dispatcher.shutdown();
+		teardownTime = System.nanoTime() - teardownStart;
+
+		if (terminationReason == null) {
+			terminationTimestep = length;
+			terminationReason = TerminationReason.LENGTH_REACHED;
+		}
 		timestep = TIMESTEP_END;
 		simState = SimulationState.POST_SIMULATION;
 
 		return new SimulationResults(eventController.getEventLog(),
-				profiler.getTimeStepProcessIdMap());
+				profiler.getTimeStepProcessIdMap(), terminationTimestep,
+				terminationReason, setupTime, teardownTime);
 	}
 
+	/**
+	 * Halts many nodes at once. Every node is interrupted in a single pass,
+	 * after which the calling Thread waits for all of them to leave
+	 * simulation, rather than for each in turn, and then for the Thread of
+	 * each node that has one of its own to end.
+	 * 
+	 * @param nodes
+	 *            the nodes to halt, all of which have begun simulation.
+	 * @throws IllegalStateException
+	 *             if the calling Thread is interrupted while waiting.
+	 */
+	static void haltNodes(List<? extends Node> nodes) {
+		final CountDownLatch halted = new CountDownLatch(nodes.size());
+		for (Node node : nodes) {
+			node.halt(halted);
+		}
+		try {
+			halted.await();
+			for (Node node : nodes) {
+				if (node instanceof ThreadedNode && node.getThread() != null)
+					node.getThread().join();
+			}
+		} catch (InterruptedException e) {
+			throw new IllegalStateException();
+		}
+	}
+
+	/**
+	 * Creates the dispatcher that invokes event-driven nodes. Cooperative
+	 * simulation invokes them on a single worker, and work-stealing simulation
+	 * on a ForkJoinPool, which cannot keep a node to one worker.
+	 * Otherwise there is a worker for each available processor, and the nodes
+	 * are divided among the workers by {@link #workerAssignment(List, int, int)}.
+	 * 
+	 * @param mode
+	 *            the manner in which nodes are executed.
+	 * @param nodes
+	 *            the nodes simulated.
+	 * @param nodeCount
+	 *            the number of nodes in the network.
+	 * @return The dispatcher.
+	 */
+	static CallbackDispatcher createDispatcher(ExecutionMode mode,
+			List<? extends Node> nodes, int nodeCount) {
+		if (mode == ExecutionMode.COOPERATIVE)
+			return new CallbackDispatcher(1);
+		if (mode == ExecutionMode.WORK_STEALING)
+			return new CallbackDispatcher(new ForkJoinPool());
+		return new CallbackDispatcher(workerAssignment(nodes, nodeCount,
+				Runtime.getRuntime().availableProcessors()));
+	}
+
+	/**
+	 * Divides the event-driven nodes among workers with a
+	 * {@link NetworkPartitioner}, so that nodes joined by links of low latency
+	 * share a worker and the messages between them are not passed between
+	 * processors.
+	 * 
+	 * @param nodes
+	 *            the nodes simulated.
+	 * @param nodeCount
+	 *            the number of nodes in the network.
+	 * @param workers
+	 *            the number of workers.
+	 * @return The worker of each node, by simulation ID, or -1 for nodes that
+	 *         are not event-driven or not simulated.
+	 */
+	static int[] workerAssignment(List<? extends Node> nodes, int nodeCount,
+			int workers) {
+		final int[] workerOf = new int[nodeCount];
+		Arrays.fill(workerOf, -1);
+
+		final Map<ILinkEndpoint, Integer> indices = new HashMap<ILinkEndpoint, Integer>();
+		final List<EventNode> eventNodes = new ArrayList<EventNode>();
+		for (Node node : nodes) {
+			if (node instanceof EventNode) {
+				indices.put(node, eventNodes.size());
+				eventNodes.add((EventNode) node);
+			}
+		}
+		final int partitions = Math.min(workers, eventNodes.size());
+		if (partitions <= 1) {
+			for (EventNode node : eventNodes)
+				workerOf[node.getSimulationId()] = 0;
+			return workerOf;
+		}
+
+		// Partition the links between the event-driven nodes alone.
+		final List<ILinkConfig> links = new ArrayList<ILinkConfig>();
+		for (int i = 0; i < eventNodes.size(); i++) {
+			final EventNode node = eventNodes.get(i);
+			final Iterator<ILinkEndpoint> neighbours = node.neighbours();
+			while (neighbours.hasNext()) {
+				final ILinkEndpoint neighbour = neighbours.next();
+				final Integer j = indices.get(neighbour);
+				if (j != null && j > i)
+					links.add(new LinkConfig(i, j, node.neighbourLink(
+							neighbour).latency()));
+			}
+		}
+		final int[] partitionOf = new NetworkPartitioner(partitions).partition(
+				eventNodes.size(), links).assignment();
+		for (int i = 0; i < eventNodes.size(); i++)
+			workerOf[eventNodes.get(i).getSimulationId()] = partitionOf[i];
+		return workerOf;
+	}
+
+	/**
+	 * Creates the barrier at which the simulation Thread waits for the Threads
+	 * of all nodes to block.
+	 * 
+	 * @param leader
+	 *            the simulation Thread.
+	 * @return The barrier used to pause nodes during simulation.
+	 */
+	protected LeaderBarrier createBarrier(Thread leader) {
+		if (executionMode == ExecutionMode.COOPERATIVE)
+			return new CooperativeScheduler(leader);
+		return barrierType.createBarrier(leader, Math.max(1, threadedNodes));
+	}
+
+	/*
+	 * Starts every node at once, then waits for the setup methods of those
+	 * with Threads of their own to return. Members of a CooperativeScheduler
+	 * are ranked in the order they begin, so are instead started in turn to
+	 * keep simulation deterministic.
+	 */
 	private void setupNodes() {
+		final long setupStart = System.nanoTime();
+		ThreadFactory factory = nodeThreadFactory;
+		final boolean cooperative = pauseBarrier instanceof CooperativeScheduler;
+		if (cooperative)
+			factory = ((CooperativeScheduler) pauseBarrier)
+					.memberFactory(factory);
+
+		// Nodes are notified through a registrar that can hold back their
+		// notifications until all events of a timestep are processed.
+		deferringBarrier = new DeferringRegistrar(pauseBarrier);
+
+		final CountDownLatch started = new CountDownLatch(cooperative ? 0
+				: threadedNodes);
+		for (Node node : network.nodes()) {
+			node.holdEvents();
+			if (node instanceof EventNode)
+				((EventNode) node).simulate(dispatcher, profiler);
+			else if (cooperative)
+				((ThreadedNode) node).simulate(deferringBarrier, profiler,
+						factory);
+			else
+				((ThreadedNode) node).simulate(deferringBarrier, profiler,
+						factory, started);
+		}
+		try {
+			started.await();
+		} catch (InterruptedException e) {
+			throw new IllegalStateException();
+		}
+		setupTime = System.nanoTime() - setupStart;
+	}
+
+	/*
+	 * Processes the next event or, where the execution mode or event queue
+	 * batches timesteps, every event of the current timestep, holding back nodes made runnable
+	 * until all have been processed so that they execute together and the
+	 * simulation Thread waits for them only once.
+	 */
+	private void processEvents() {
+		if (!batchTimesteps) {
+			eventController.processEvent();
+			return;
+		}
+
+		deferringBarrier.holdNotifications();
+		if (dispatcher != null)
+			dispatcher.holdTasks();
+		try {
+			eventController.processTimestep();
+		} finally {
+			deferringBarrier.releaseNotifications();
+			if (dispatcher != null)
+				dispatcher.releaseTasks();
+		}
+	}
+
+	/*
+	 * Queues the events held in the outboxes of blocked nodes, in the order of
+	 * the nodes, to be processed in the next batch. Events raised in the
+	 * current timestep are queued for it, continuing the timestep.
+	 */
+	private void mergeOutboxes() {
 		for (Node node : network.nodes()) {
-			node.simulate(pauseBarrier, profiler);
+			ISimulationEvent event;
+			while ((event = node.pollOutbox()) != null)
+				eventController.scheduleEvent(event, false);
 		}
 	}
 
+	/*
+	 * Blocks the simulation Thread until every node is blocked, whether waiting
+	 * at the barrier or between invocations of an event-driven script.
+	 */
+	private void awaitNodes() {
+		if (threadedNodes > 0)
+			pauseBarrier.waitThreadUnInterruptedly();
+		if (dispatcher != null)
+			dispatcher.awaitIdle();
+	}
+
 	protected synchronized void simulateUntil(long stopStep) {
 
 		if (simState == SimulationState.PRE_SIMULATION) {
@@ -151,25 +561,258 @@ public class SimulationRunner implements Observer {
 			profiler.incrementTimestep(0);
 			setupNodes();
 			simState = SimulationState.SIMULATING;
-			pauseBarrier.waitThreadUnInterruptedly();
-			advanceTimestepTo(eventController.nextEventTimestep());
+			awaitNodes();
+			mergeOutboxes();
+			if (!detectQuiescence())
+				advanceTimestepTo(eventController.nextEventTimestep());
 		}
 
 		long nextTimestep = eventController.nextEventTimestep();
-		while (timestep < stopStep) {
+		while (timestep < stopStep && terminationReason == null) {
 			do {
-				eventController.processEvent();
-				pauseBarrier.waitThreadUnInterruptedly();
+				processEvents();
+				awaitNodes();
+				mergeOutboxes();
 				nextTimestep = eventController.nextEventTimestep();
 			} while (nextTimestep == timestep);
 
+			if (detectQuiescence())
+				break;
 			advanceTimestepTo(nextTimestep);
 			if (nextTimestep != TIMESTEP_END)
 				profiler.incrementTimestep(nextTimestep);
 		}
 
-		pauseBarrier.waitThreadUnInterruptedly();
+		awaitNodes();
+
+	}
+
+	/*
+	 * Ends simulation once no event waits to be processed. This is checked only
+	 * once every node has blocked, waiting at the barrier or between
+	 * invocations, and every raised event has been queued, so that nothing can
+	 * happen again: a single look at the event queue suffices.
+	 */
+	private boolean detectQuiescence() {
+		if (eventController.nextEventTimestep() != IEventController.NO_EVENTS_TIMESTEP)
+			return false;
+		terminationTimestep = Math.max(timestep, 0);
+		terminationReason = TerminationReason.QUIESCENT;
+		return true;
+	}
+
+	/**
+	 * Sets the scheduler that orders the messages arriving at a node in the
+	 * same timestep.
+	 * 
+	 * @param scheduler
+	 *            the scheduler, or null to queue messages in the order they
+	 *            were sent.
+	 * @throws IllegalStateException
+	 *             if simulation has begun.
+	 */
+	public synchronized void setArrivalScheduler(ArrivalScheduler scheduler) {
+		if (simState != SimulationState.PRE_SIMULATION)
+			throw new IllegalStateException(
+					"Attempted to set the arrival scheduler of a simulation that has begun.");
+		eventController.setArrivalScheduler(scheduler);
+	}
+
+	/**
+	 * Limits each node to a number of loop iterations and method calls per
+	 * timestep, so that a node spinning or recursing in its script is timed
+	 * out at the same point in every simulation, whatever the load on the
+	 * machine. Only scripts loaded by a
+	 * {@link net.alexheavens.cs4099.usercode.DynamicClassLoader} that counts
+	 * back edges are charged; others run unlimited. Any timeout is kept as a
+	 * backstop, for nodes that spend their time outside their own code.
+	 * 
+	 * @param budget
+	 *            the number of back edges and method entries each node may
+	 *            make per timestep.
+	 * @throws IllegalArgumentException
+	 *             if the budget is less than 1.
+	 * @throws IllegalStateException
+	 *             if simulation has begun, or is replayed from a recording.
+	 * @see net.alexheavens.cs4099.usercode.ScriptInstrumenter
+	 */
+	public synchronized void setInstructionBudget(long budget) {
+		if (budget < 1)
+			throw new IllegalArgumentException("Invalid instruction budget: "
+					+ budget);
+		if (simState != SimulationState.PRE_SIMULATION)
+			throw new IllegalStateException(
+					"Attempted to set the instruction budget of a simulation that has begun.");
+		if (profiler instanceof ReplayProfiler)
+			throw new IllegalStateException(
+					"Cannot set the instruction budget of a replayed simulation.");
+		profiler.setInstructionBudget(budget);
+	}
+
+	/**
+	 * Checks that every node can be stopped once timed out: by revoking its
+	 * budget if its script is instrumented, or otherwise in the manner of its
+	 * kind of node.
+	 * 
+	 * @param net
+	 *            the network to be simulated.
+	 * @param mode
+	 *            the manner in which node Threads are created.
+	 * @throws UnsupportedOperationException
+	 *             if a node cannot be stopped.
+	 */
+	static void checkStoppable(Network net, ExecutionMode mode) {
+		for (Node node : net.nodes())
+			node.checkStoppable(mode);
+	}
+
+	/**
+	 * Ends a simulation between calls to <code>simulateUntil</code> without
+	 * completing it, halting every node.
+	 */
+	synchronized void abandon() {
+		haltNodes(network.nodes());
+		pauseBarrier.resumeAll();
+		if (dispatcher != null)
+			dispatcher.shutdown();
+		timestep = TIMESTEP_END;
+		simState = SimulationState.POST_SIMULATION;
+	}
 
+	/**
+	 * Captures the state of simulation at the timestep it has reached, from
+	 * which simulations of the same network can continue. Simulation must be
+	 * between calls to <code>simulateUntil</code>.
+	 * 
+	 * @return The state of simulation.
+	 * @throws IllegalStateException
+	 *             if simulation has not begun, or has ended.
+	 * @throws UnsupportedOperationException
+	 *             if a node is not event-driven, or the state of a script or
+	 *             waiting event cannot be captured.
+	 * @see SimulationCheckpoint
+	 */
+	public synchronized SimulationCheckpoint checkpoint() {
+		if (simState != SimulationState.SIMULATING
+				&& simState != SimulationState.PAUSED)
+			throw new IllegalStateException(
+					"Attempted to checkpoint a simulation in state " + simState
+							+ ".");
+		return new SimulationCheckpoint(network, timestep,
+				getVisibleTimestep(), terminationTimestep, terminationReason,
+				eventController);
+	}
+
+	/**
+	 * Continues simulation from a checkpoint of another simulation of the same
+	 * network, rather than from timestep 0. Nodes are not set up again. The
+	 * event log holds only the events that follow the checkpoint.
+	 * 
+	 * @param checkpoint
+	 *            the state from which to continue.
+	 * @throws IllegalArgumentException
+	 *             if the checkpoint is null, or of a network of other nodes or
+	 *             scripts.
+	 * @throws IllegalStateException
+	 *             if simulation has already begun.
+	 */
+	public synchronized void restore(SimulationCheckpoint checkpoint) {
+		if (checkpoint == null)
+			throw new IllegalArgumentException(
+					"Attempted to restore a null checkpoint.");
+		if (simState != SimulationState.PRE_SIMULATION)
+			throw new IllegalStateException(
+					"Attempted to restore a checkpoint to a simulation that has begun.");
+
+		checkpoint.restore(this, eventController, dispatcher, profiler);
+		restored = true;
+		for (Node node : network.nodes())
+			node.holdEvents();
+		deferringBarrier = new DeferringRegistrar(pauseBarrier);
+		timestep = checkpoint.simulationTimestep();
+		terminationTimestep = checkpoint.terminationTimestep();
+		terminationReason = checkpoint.terminationReason();
+		if (timestep >= 0)
+			profiler.incrementTimestep(timestep);
+		simState = SimulationState.SIMULATING;
+	}
+
+	/**
+	 * Records the decisions made so far in simulation that are not determined
+	 * by its network and settings, from which it can be replayed. Recording
+	 * costs nothing while simulating, so every simulation is recorded.
+	 * 
+	 * @return The recording of simulation.
+	 * @throws IllegalStateException
+	 *             if simulation has not begun, or was continued from a
+	 *             checkpoint.
+	 * @see SimulationRunner#SimulationRunner(Network, SimulationRecording)
+	 */
+	public synchronized SimulationRecording recording() {
+		if (simState == SimulationState.PRE_SIMULATION)
+			throw new IllegalStateException(
+					"Attempted to record a simulation that has not begun.");
+		if (restored)
+			throw new IllegalStateException(
+					"Cannot record a simulation continued from a checkpoint.");
+		return new SimulationRecording(network, length, executionMode,
+				barrierType, eventQueueType, prescribedEvents, profiler
+						.timeouts(), profiler.instructionBudget());
+	}
+
+	/**
+	 * @return The timestep at which simulation ended, or
+	 *         <code>TIMESTEP_END</code> if it has not ended.
+	 */
+	public long terminationTimestep() {
+		return terminationTimestep;
+	}
+
+	/**
+	 * @return The reason simulation ended, or null if it has not ended.
+	 */
+	public TerminationReason terminationReason() {
+		return terminationReason;
+	}
+
+	/**
+	 * @return The time in nanoseconds taken to start every node and for those
+	 *         with Threads of their own to be set up, or
+	 *         <code>SimulationResults.TIME_NOT_RECORDED</code> if simulation
+	 *         has not started.
+	 */
+	public long setupTime() {
+		return setupTime;
+	}
+
+	/**
+	 * @return The time in nanoseconds taken to halt every node once simulation
+	 *         ended, or <code>SimulationResults.TIME_NOT_RECORDED</code> if it
+	 *         has not ended.
+	 */
+	public long teardownTime() {
+		return teardownTime;
+	}
+
+	/**
+	 * @return The manner in which node Threads are created.
+	 */
+	public ExecutionMode executionMode() {
+		return executionMode;
+	}
+
+	/**
+	 * @return The type of barrier at which nodes wait.
+	 */
+	public BarrierType barrierType() {
+		return barrierType;
+	}
+
+	/**
+	 * @return The type of queue in which events wait to be processed.
+	 */
+	public EventQueueType eventQueueType() {
+		return eventQueueType;
 	}
 
 	public long simulationLength() {
@@ -180,11 +823,7 @@ public class SimulationRunner implements Observer {
 		return network;
 	}
 
-	public void update(Observable trigger, Object eventObject) {
-		if (!(eventObject instanceof ISimulationEvent))
-			throw new IllegalArgumentException(
-					"Passed a non event to SimulationRunner in update.");
-		ISimulationEvent event = (ISimulationEvent) eventObject;
+	public void eventRaised(ISimulationEvent event) {
 		if (event.getTimestep() != timestep && timestep != TIMESTEP_NOT_START)
 			throw new IllegalStateException(
 					"ISimulationEvent with a timestep other than the current passed to SimulationRunner.");
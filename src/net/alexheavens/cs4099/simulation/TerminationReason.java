@@ -0,0 +1,21 @@
+package net.alexheavens.cs4099.simulation;
+
+/**
+ * The reason a simulation ended.
+ *
+ * @author Alexander Heavens <alexander.heavens@gmail.com>
+ * @version 1.0
+ */
+public enum TerminationReason {
+
+	/**
+	 * Simulation reached its length.
+	 */
+	LENGTH_REACHED,
+
+	/**
+	 * Every node was blocked with no event waiting to be processed, so that
+	 * nothing could happen again before the simulation's length.
+	 */
+	QUIESCENT
+}
@@ -0,0 +1,78 @@
+package net.alexheavens.cs4099.simulation;
+
+import net.alexheavens.cs4099.network.IMessageImpl;
+
+/**
+ * An invocation of the script of a node, scheduled by a
+ * {@link TimeWarpProcess}: the start of the node, its waking from a pause or
+ * the arrival of a message.
+ *
+ * Events are ordered by timestep, then by kind, sender and the number of
+ * events the sender had scheduled before. This order depends only on the
+ * execution of the nodes, not on the order in which partitions happened to
+ * process their events, so each node processes its events in the same order
+ * however often it is rolled back.
+ *
+ * The processed and cancelled flags are only accessed by the process of the
+ * target node.
+ *
+ * @author Alexander Heavens <alexander.heavens@gmail.com>
+ * @version 1.0
+ */
+class TimeWarpEvent implements Comparable<TimeWarpEvent> {
+
+	static final int START = 0;
+	static final int WAKE = 1;
+	static final int ARRIVAL = 2;
+
+	final long timestep;
+	final int kind;
+	final int target;
+	final int sender;
+	final long sequence;
+	final IMessageImpl<?> message;
+	boolean processed;
+	boolean cancelled;
+
+	/**
+	 * Creates an event.
+	 *
+	 * @param timestep
+	 *            the timestep at which the event occurs.
+	 * @param kind
+	 *            START, WAKE or ARRIVAL.
+	 * @param target
+	 *            the simulation ID of the node invoked.
+	 * @param sender
+	 *            the simulation ID of the node that scheduled the event.
+	 * @param sequence
+	 *            the number of events scheduled by the sender before this.
+	 * @param message
+	 *            the message arriving, or null.
+	 */
+	TimeWarpEvent(long timestep, int kind, int target, int sender,
+			long sequence, IMessageImpl<?> message) {
+		this.timestep = timestep;
+		this.kind = kind;
+		this.target = target;
+		this.sender = sender;
+		this.sequence = sequence;
+		this.message = message;
+		processed = false;
+		cancelled = false;
+	}
+
+	public int compareTo(TimeWarpEvent other) {
+		if (timestep != other.timestep)
+			return timestep < other.timestep ? -1 : 1;
+		if (kind != other.kind)
+			return kind < other.kind ? -1 : 1;
+		if (sender != other.sender)
+			return sender < other.sender ? -1 : 1;
+		if (sequence != other.sequence)
+			return sequence < other.sequence ? -1 : 1;
+		if (target != other.target)
+			return target < other.target ? -1 : 1;
+		return 0;
+	}
+}
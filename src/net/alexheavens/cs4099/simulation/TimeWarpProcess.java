@@ -0,0 +1,506 @@
+package net.alexheavens.cs4099.simulation;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import net.alexheavens.cs4099.network.EventNode;
+import net.alexheavens.cs4099.network.IMessageImpl;
+import net.alexheavens.cs4099.usercode.EventNodeScript;
+
+/**
+ * A TimeWarpProcess optimistically simulates one partition of a network of
+ * event-driven nodes, for a {@link TimeWarpSimulationRunner}.
+ *
+ * The process invokes the scripts of its nodes on its own Thread, taking its
+ * events in order without waiting for other partitions. Before each event the
+ * state of the node invoked is saved. Should a message arrive for a node with
+ * an earlier timestep than events it has already processed, the node is
+ * rolled back: its state is restored from before the earliest of them, and
+ * every event they scheduled is cancelled by an anti-message, which may in
+ * turn roll back its target. Nodes only interact through messages, so each is
+ * rolled back alone.
+ *
+ * At each round of the runner, events before the global virtual time can no
+ * longer be rolled back. Their saved states are discarded, and the events they
+ * caused are committed to the process's log. Errors of the simulation raised
+ * by a script are only reported once the event raising them is committed, as
+ * they may be caused by a state that is later rolled back.
+ *
+ * @author Alexander Heavens <alexander.heavens@gmail.com>
+ * @version 1.0
+ */
+class TimeWarpProcess implements Runnable {
+
+	private static final long NOT_PAUSED = -1;
+
+	private final TimeWarpSimulationRunner runner;
+	private final List<EventNode> nodes;
+	private final NodeRecord[] records;
+	private final PriorityQueue<TimeWarpEvent> pending;
+	private final ConcurrentLinkedQueue<Transit> inbox;
+	private final RecordEventLog eventLog;
+	private final SimulationProfiler profiler;
+	private final Thread thread;
+	private final long length;
+	private long processedCount;
+	private long rolledBackCount;
+	private long antiMessageCount;
+
+	/**
+	 * Creates the process of one partition.
+	 *
+	 * @param partition
+	 *            the index of the partition.
+	 * @param runner
+	 *            the runner coordinating the processes.
+	 * @param partitionNodes
+	 *            the nodes of the partition.
+	 */
+	TimeWarpProcess(int partition, TimeWarpSimulationRunner runner,
+			List<EventNode> partitionNodes) {
+		this.runner = runner;
+		nodes = new ArrayList<EventNode>(partitionNodes);
+		records = new NodeRecord[runner.network().nodeCount()];
+		pending = new PriorityQueue<TimeWarpEvent>();
+		inbox = new ConcurrentLinkedQueue<Transit>();
+		eventLog = new RecordEventLog();
+		profiler = new SimulationProfiler(runner.network().nodeCount());
+		thread = new Thread(this, "TimeWarpProcess-" + partition);
+		length = runner.simulationLength();
+		processedCount = 0;
+		rolledBackCount = 0;
+		antiMessageCount = 0;
+
+		final Map<Class<?>, ScriptFields> scriptFields = new HashMap<Class<?>, ScriptFields>();
+		for (EventNode node : nodes) {
+			final EventNodeScript script = (EventNodeScript) node.getScript();
+			ScriptFields fields = scriptFields.get(script.getClass());
+			if (fields == null) {
+				fields = new ScriptFields(script.getClass());
+				scriptFields.put(script.getClass(), fields);
+			}
+			records[node.getSimulationId()] = new NodeRecord(node, script,
+					fields);
+		}
+	}
+
+	public void run() {
+		try {
+			for (EventNode node : nodes) {
+				node.simulateDirectly(profiler);
+				final int id = node.getSimulationId();
+				pending.add(new TimeWarpEvent(0, TimeWarpEvent.START, id, id,
+						0, null));
+			}
+
+			final int roundEvents = runner.roundEvents();
+			int sinceRound = 0;
+			while (true) {
+				drainInbox();
+				final TimeWarpEvent next = nextEvent();
+				if (next == null || next.timestep >= length
+						|| sinceRound >= roundEvents) {
+					final boolean more = runner.awaitRound();
+					collectFossils(runner.globalVirtualTime());
+					if (!more)
+						break;
+					sinceRound = 0;
+				} else {
+					pending.poll();
+					process(next);
+					sinceRound++;
+				}
+			}
+		} catch (RuntimeException e) {
+			// Join the other processes at the next round so that all end there.
+			runner.fail(e);
+			if (!runner.isFinished())
+				runner.awaitRound();
+		}
+	}
+
+	/**
+	 * @return The Thread on which the process runs.
+	 */
+	Thread thread() {
+		return thread;
+	}
+
+	/**
+	 * @return The nodes of the partition.
+	 */
+	List<EventNode> nodes() {
+		return nodes;
+	}
+
+	/**
+	 * @return The log of events committed by the partition.
+	 */
+	RecordEventLog eventLog() {
+		return eventLog;
+	}
+
+	/**
+	 * @return The number of events processed, including those later rolled
+	 *         back.
+	 */
+	long processedCount() {
+		return processedCount;
+	}
+
+	/**
+	 * @return The number of processed events that have been rolled back.
+	 */
+	long rolledBackCount() {
+		return rolledBackCount;
+	}
+
+	/**
+	 * @return The number of anti-messages sent by the process.
+	 */
+	long antiMessageCount() {
+		return antiMessageCount;
+	}
+
+	/**
+	 * Returns the earliest timestep of an event of the partition that has not
+	 * been processed, or of an event or anti-message waiting in the inbox.
+	 * Called only whilst every process waits between rounds.
+	 *
+	 * @return The earliest timestep, or <code>Long.MAX_VALUE</code> if there
+	 *         is none.
+	 */
+	long earliestTimestep() {
+		long earliest = Long.MAX_VALUE;
+		final TimeWarpEvent next = pending.peek();
+		if (next != null)
+			earliest = next.timestep;
+		for (Transit transit : inbox)
+			earliest = Math.min(earliest, transit.event.timestep);
+		return earliest;
+	}
+
+	/**
+	 * Passes an event scheduled by a node of another partition, or an
+	 * anti-message cancelling one, to this process.
+	 *
+	 * @param event
+	 *            the event toward a node of this partition.
+	 * @param anti
+	 *            whether the event is cancelled.
+	 */
+	void post(TimeWarpEvent event, boolean anti) {
+		inbox.add(new Transit(event, anti));
+	}
+
+	/**
+	 * Ends simulation of the nodes of the partition.
+	 */
+	void release() {
+		final List<EventNode> started = new ArrayList<EventNode>(nodes.size());
+		for (EventNode node : nodes) {
+			if (node.getSimulationState() != SimulationState.PRE_SIMULATION)
+				started.add(node);
+		}
+		SimulationRunner.haltNodes(started);
+	}
+
+	/*
+	 * Takes events and anti-messages from the inbox, in the order they were
+	 * posted, so that an anti-message follows the event it cancels.
+	 */
+	private void drainInbox() {
+		Transit transit;
+		while ((transit = inbox.poll()) != null) {
+			if (transit.anti)
+				cancel(transit.event);
+			else
+				receive(transit.event);
+		}
+	}
+
+	private TimeWarpEvent nextEvent() {
+		TimeWarpEvent next;
+		while ((next = pending.peek()) != null && next.cancelled)
+			pending.poll();
+		return next;
+	}
+
+	/*
+	 * Schedules an event toward a node of this partition, first rolling the
+	 * node back if it has processed a later event.
+	 */
+	private void receive(TimeWarpEvent event) {
+		final NodeRecord record = records[event.target];
+		final HistoryEntry last = record.history.peekLast();
+		if (last != null && event.compareTo(last.event) < 0)
+			rollback(record, event);
+		pending.add(event);
+	}
+
+	/*
+	 * Cancels an event toward a node of this partition, rolling the node back
+	 * if it has been processed.
+	 */
+	private void cancel(TimeWarpEvent event) {
+		if (event.processed)
+			rollback(records[event.target], event);
+		event.cancelled = true;
+	}
+
+	/*
+	 * Restores a node to its state before an event, returning every event it
+	 * has processed since to be processed again and cancelling the events they
+	 * scheduled.
+	 */
+	private void rollback(NodeRecord record, TimeWarpEvent straggler) {
+		HistoryEntry entry;
+		while ((entry = record.history.peekLast()) != null
+				&& entry.event.compareTo(straggler) >= 0) {
+			record.history.removeLast();
+			record.restore(entry.before);
+			entry.event.processed = false;
+			pending.add(entry.event);
+			for (TimeWarpEvent scheduled : entry.scheduled)
+				unschedule(scheduled);
+			rolledBackCount++;
+		}
+	}
+
+	private void schedule(HistoryEntry entry, TimeWarpEvent event) {
+		entry.scheduled.add(event);
+		if (event.timestep >= length)
+			return;
+		if (records[event.target] != null)
+			receive(event);
+		else
+			runner.process(runner.partitionOf(event.target)).post(event, false);
+	}
+
+	private void unschedule(TimeWarpEvent event) {
+		if (event.timestep >= length)
+			return;
+		antiMessageCount++;
+		if (records[event.target] != null)
+			cancel(event);
+		else
+			runner.process(runner.partitionOf(event.target)).post(event, true);
+	}
+
+	private void process(TimeWarpEvent event) {
+		final NodeRecord record = records[event.target];
+		final HistoryEntry entry = new HistoryEntry(event, record.save());
+		event.processed = true;
+		processedCount++;
+
+		final long timestep = event.timestep;
+		switch (event.kind) {
+		case TimeWarpEvent.START:
+			invoke(record, entry, null, true);
+			break;
+		case TimeWarpEvent.WAKE:
+			entry.logged.add(new NodeUnpauseEvent(timestep, record.node));
+			record.pausedUntil = NOT_PAUSED;
+			if (!record.stopped)
+				invoke(record, entry, null, false);
+			while (!record.stopped && record.pausedUntil == NOT_PAUSED
+					&& !record.buffered.isEmpty()) {
+				final IMessageImpl<?> message = record.buffered.remove(0);
+				entry.logged.add(new MessageReadEvent(message, timestep));
+				invoke(record, entry, message, false);
+			}
+			break;
+		default:
+			entry.logged.add(new MessageArrivalEvent(event.message, timestep));
+			if (record.stopped) {
+				break;
+			} else if (record.pausedUntil != NOT_PAUSED) {
+				record.buffered.add(event.message);
+			} else {
+				entry.logged
+						.add(new MessageReadEvent(event.message, timestep));
+				invoke(record, entry, event.message, false);
+			}
+		}
+		record.history.addLast(entry);
+	}
+
+	/*
+	 * Invokes one callback of a node's script, in the manner of an EventNode,
+	 * and schedules the events it raised.
+	 */
+	private void invoke(NodeRecord record, HistoryEntry entry,
+			IMessageImpl<?> message, boolean starting) {
+		final EventNode node = record.node;
+		final long timestep = entry.event.timestep;
+		RuntimeException userFailure = null;
+		try {
+			if (starting) {
+				node.setSimulationState(SimulationState.SETUP);
+				node.setup();
+				node.setSimulationState(SimulationState.SIMULATING);
+				record.script.onStart();
+			} else {
+				node.setSimulationState(SimulationState.SIMULATING);
+				if (message == null)
+					record.script.onWake();
+				else
+					record.script.onMessage(message, message.sourceIndex());
+			}
+		} catch (SimulationRuntimeException e) {
+			entry.error = e.getException();
+			record.stopped = true;
+		} catch (RuntimeException e) {
+			userFailure = e;
+			record.stopped = true;
+		}
+		if (node.getSimulationState() == SimulationState.SIMULATING)
+			node.setSimulationState(SimulationState.RECEIVE_BLOCK);
+
+		final int id = node.getSimulationId();
+		ISimulationEvent raised;
+		while ((raised = node.pollOutbox()) != null) {
+			if (raised.getTimestep() == ISimulationEvent.CURRENT_TIMESTEP)
+				raised.markWithTimestep(timestep);
+			if (raised instanceof MessageSentEvent) {
+				final IMessageImpl<?> sent = ((MessageSentEvent) raised)
+						.message();
+				sent.markAsSent(timestep);
+				schedule(entry, new TimeWarpEvent(timestep
+						+ sent.link().latency(), TimeWarpEvent.ARRIVAL,
+						sent.target().getSimulationId(), id,
+						record.sequence++, sent));
+			} else if (raised instanceof NodePauseEvent) {
+				record.pausedUntil = timestep
+						+ ((NodePauseEvent) raised).getPauseTime();
+				schedule(entry, new TimeWarpEvent(record.pausedUntil,
+						TimeWarpEvent.WAKE, id, id, record.sequence++, null));
+			}
+			entry.logged.add(raised);
+		}
+		if (userFailure != null)
+			entry.logged.add(new NodeFailureEvent(timestep, node, userFailure));
+	}
+
+	/*
+	 * Commits the events of every node before the global virtual time, which
+	 * can no longer be rolled back.
+	 */
+	private void collectFossils(long globalVirtualTime) {
+		for (EventNode node : nodes) {
+			final NodeRecord record = records[node.getSimulationId()];
+			HistoryEntry entry;
+			while ((entry = record.history.peekFirst()) != null
+					&& entry.event.timestep < globalVirtualTime) {
+				record.history.removeFirst();
+				if (entry.error != null)
+					throw entry.error;
+				if (entry.event.kind == TimeWarpEvent.ARRIVAL)
+					entry.event.message.markAsArrived(entry.event.timestep);
+				for (ISimulationEvent event : entry.logged)
+					eventLog.addEvent(event);
+			}
+		}
+	}
+
+	/*
+	 * The simulation state of a node kept by the process, beyond that of its
+	 * script.
+	 */
+	private static class NodeRecord {
+
+		final EventNode node;
+		final EventNodeScript script;
+		final ScriptFields fields;
+		final ArrayDeque<HistoryEntry> history;
+		List<IMessageImpl<?>> buffered;
+		long pausedUntil;
+		long sequence;
+		boolean stopped;
+
+		NodeRecord(EventNode node, EventNodeScript script, ScriptFields fields) {
+			this.node = node;
+			this.script = script;
+			this.fields = fields;
+			history = new ArrayDeque<HistoryEntry>();
+			buffered = new ArrayList<IMessageImpl<?>>();
+			pausedUntil = NOT_PAUSED;
+			sequence = 0;
+			stopped = false;
+		}
+
+		Snapshot save() {
+			return new Snapshot(fields.copy(script),
+					new ArrayList<IMessageImpl<?>>(buffered), pausedUntil,
+					sequence, stopped);
+		}
+
+		void restore(Snapshot snapshot) {
+			fields.restore(script, snapshot.scriptValues);
+			buffered = snapshot.buffered;
+			pausedUntil = snapshot.pausedUntil;
+			sequence = snapshot.sequence;
+			stopped = snapshot.stopped;
+		}
+	}
+
+	/*
+	 * The state of a node before an event.
+	 */
+	private static class Snapshot {
+
+		final Object[] scriptValues;
+		final List<IMessageImpl<?>> buffered;
+		final long pausedUntil;
+		final long sequence;
+		final boolean stopped;
+
+		Snapshot(Object[] scriptValues, List<IMessageImpl<?>> buffered,
+				long pausedUntil, long sequence, boolean stopped) {
+			this.scriptValues = scriptValues;
+			this.buffered = buffered;
+			this.pausedUntil = pausedUntil;
+			this.sequence = sequence;
+			this.stopped = stopped;
+		}
+	}
+
+	/*
+	 * A processed event, the state of its node before it, and what it caused.
+	 */
+	private static class HistoryEntry {
+
+		final TimeWarpEvent event;
+		final Snapshot before;
+		final List<TimeWarpEvent> scheduled;
+		final List<ISimulationEvent> logged;
+		RuntimeException error;
+
+		HistoryEntry(TimeWarpEvent event, Snapshot before) {
+			this.event = event;
+			this.before = before;
+			scheduled = new ArrayList<TimeWarpEvent>(2);
+			logged = new ArrayList<ISimulationEvent>(4);
+			error = null;
+		}
+	}
+
+	/*
+	 * An event, or anti-message, passed between processes.
+	 */
+	private static class Transit {
+
+		final TimeWarpEvent event;
+		final boolean anti;
+
+		Transit(TimeWarpEvent event, boolean anti) {
+			this.event = event;
+			this.anti = anti;
+		}
+	}
+}
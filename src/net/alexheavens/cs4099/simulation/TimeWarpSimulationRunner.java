@@ -0,0 +1,304 @@
+package net.alexheavens.cs4099.simulation;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+
+import net.alexheavens.cs4099.network.EventNode;
+import net.alexheavens.cs4099.network.Network;
+import net.alexheavens.cs4099.network.Node;
+import net.alexheavens.cs4099.network.configuration.NetworkPartition;
+
+/**
+ * The TimeWarpSimulationRunner simulates a network of event-driven nodes split
+ * into partitions, each simulated optimistically by a {@link TimeWarpProcess}
+ * on a Thread of its own.
+ *
+ * Unlike the {@link PartitionedSimulationRunner}, processes do not wait for
+ * each other at every window of time. Each runs ahead through the events of
+ * its partition, and rolls back any node that receives a message in its past.
+ * Processes meet in rounds, once each has processed a number of events or run
+ * out of events to process, to find the global virtual time: the earliest
+ * timestep of any event not yet processed or still passing between processes.
+ * No node can be rolled back to before it, so the events before it are
+ * committed, and simulation ends once it reaches the simulation length.
+ *
+ * Nodes are rolled back by restoring the fields of their scripts, as described
+ * by {@link ScriptFields}. The events committed by each process are merged in
+ * timestep order, giving the same events in each timestep as the sequential
+ * SimulationRunner. Nodes are not timed, as their callbacks may be invoked more
+ * than once, and prescribed events are not supported.
+ *
+ * @author Alexander Heavens <alexander.heavens@gmail.com>
+ * @version 1.0
+ */
+public class TimeWarpSimulationRunner {
+
+	/**
+	 * The default number of events each process handles between rounds.
+	 */
+	public static final int DEFAULT_ROUND_EVENTS = 256;
+
+	private final Network network;
+	private final long length;
+	private final NetworkPartition partition;
+	private final int roundEvents;
+	private final TimeWarpProcess[] processes;
+	private final CyclicBarrier roundBarrier;
+	private volatile long globalVirtualTime;
+	private volatile boolean finished;
+	private volatile RuntimeException failure;
+	private int rounds;
+	private boolean simulated;
+
+	/**
+	 * Creates a runner that simulates a network split into partitions of near
+	 * equal size, keeping nodes joined by links of low latency together.
+	 *
+	 * @param net
+	 *            the network of event-driven nodes to simulate.
+	 * @param simLength
+	 *            the number of timesteps to simulate.
+	 * @param partitions
+	 *            the number of partitions. Must be between 1 and the number of
+	 *            nodes.
+	 */
+	public TimeWarpSimulationRunner(Network net, long simLength, int partitions) {
+		this(net, simLength, PartitionedSimulationRunner.topologyAssignment(
+				net, partitions), DEFAULT_ROUND_EVENTS);
+	}
+
+	/**
+	 * Creates a runner that simulates a network split into the given
+	 * partitions.
+	 *
+	 * @param net
+	 *            the network of event-driven nodes to simulate.
+	 * @param simLength
+	 *            the number of timesteps to simulate.
+	 * @param partitionOf
+	 *            the partition of each node, by simulation ID. Partitions are
+	 *            numbered from 0 and each must hold at least one node.
+	 * @param eventsPerRound
+	 *            the number of events each process handles between rounds.
+	 */
+	public TimeWarpSimulationRunner(Network net, long simLength,
+			int[] partitionOf, int eventsPerRound) {
+		if (simLength < 1)
+			throw new IllegalArgumentException(
+					"Cannot create a simulation runner that is less than 1 timestep in length.");
+		if (eventsPerRound < 1)
+			throw new IllegalArgumentException(
+					"Cannot create a simulation runner with fewer than 1 event per round.");
+
+		partition = PartitionedSimulationRunner.divide(net, partitionOf);
+		network = net;
+		length = simLength;
+		roundEvents = eventsPerRound;
+
+		processes = new TimeWarpProcess[partition.partitionCount()];
+		for (int i = 0; i < processes.length; i++) {
+			final List<EventNode> partitionNodes = new ArrayList<EventNode>();
+			for (int id : partition.members(i)) {
+				final Node node = network.nodes().get(id);
+				if (!(node instanceof EventNode))
+					throw new IllegalArgumentException(
+							"Cannot simulate a node without an event-driven script optimistically.");
+				partitionNodes.add((EventNode) node);
+			}
+			processes[i] = new TimeWarpProcess(i, this, partitionNodes);
+		}
+
+		roundBarrier = new CyclicBarrier(processes.length, new Runnable() {
+			public void run() {
+				endRound();
+			}
+		});
+		globalVirtualTime = 0;
+		finished = false;
+		failure = null;
+		rounds = 0;
+		simulated = false;
+	}
+
+	/**
+	 * Simulates the network, returning once the global virtual time has
+	 * reached the end of the simulation.
+	 *
+	 * @return A log of the events committed during simulation, merged from all
+	 *         partitions, and an empty map of times for each node (id).
+	 * @throws IllegalStateException
+	 *             if the network has already been simulated.
+	 * @throws SimulationRuntimeException
+	 *             if simulation of a partition failed.
+	 */
+	public SimulationResults simulate() {
+		if (simulated)
+			throw new IllegalStateException(
+					"Attempted to simulate a network optimistically twice.");
+		simulated = true;
+
+		for (TimeWarpProcess process : processes)
+			process.thread().start();
+		try {
+			for (TimeWarpProcess process : processes)
+				process.thread().join();
+		} catch (InterruptedException e) {
+			throw new IllegalStateException();
+		}
+
+		for (TimeWarpProcess process : processes)
+			process.release();
+		if (failure != null)
+			throw new SimulationRuntimeException(failure);
+
+		final List<RecordEventLog> logs = new ArrayList<RecordEventLog>();
+		for (TimeWarpProcess process : processes)
+			logs.add(process.eventLog());
+		final Map<Integer, Map<Long, Long>> processTimes = new HashMap<Integer, Map<Long, Long>>(
+				network.nodeCount());
+		for (Node node : network.nodes())
+			processTimes.put(node.getSimulationId(), new HashMap<Long, Long>());
+		return new SimulationResults(RecordEventLog.merge(logs), processTimes);
+	}
+
+	/**
+	 * @return The number of partitions the network is split into.
+	 */
+	public int partitionCount() {
+		return processes.length;
+	}
+
+	/**
+	 * @param simulationId
+	 *            the simulation ID of a node.
+	 * @return The partition holding the node.
+	 */
+	public int partitionOf(int simulationId) {
+		return partition.partitionOf(simulationId);
+	}
+
+	/**
+	 * @return The number of rounds held so far.
+	 */
+	public synchronized int roundCount() {
+		return rounds;
+	}
+
+	/**
+	 * @return The number of events processed by all partitions, including
+	 *         those rolled back. Valid once simulation has ended.
+	 */
+	public long processedCount() {
+		long processed = 0;
+		for (TimeWarpProcess process : processes)
+			processed += process.processedCount();
+		return processed;
+	}
+
+	/**
+	 * @return The number of processed events rolled back by all partitions.
+	 *         Valid once simulation has ended.
+	 */
+	public long rolledBackCount() {
+		long rolledBack = 0;
+		for (TimeWarpProcess process : processes)
+			rolledBack += process.rolledBackCount();
+		return rolledBack;
+	}
+
+	/**
+	 * @return The number of anti-messages sent by all partitions. Valid once
+	 *         simulation has ended.
+	 */
+	public long antiMessageCount() {
+		long antiMessages = 0;
+		for (TimeWarpProcess process : processes)
+			antiMessages += process.antiMessageCount();
+		return antiMessages;
+	}
+
+	public long simulationLength() {
+		return length;
+	}
+
+	public Network network() {
+		return network;
+	}
+
+	/**
+	 * @return The number of events each process handles between rounds.
+	 */
+	int roundEvents() {
+		return roundEvents;
+	}
+
+	/**
+	 * Blocks the calling process until every process has reached the round,
+	 * then finds the global virtual time.
+	 *
+	 * @return False if the simulation has ended, or failed, and there is no
+	 *         next round.
+	 */
+	boolean awaitRound() {
+		try {
+			roundBarrier.await();
+		} catch (InterruptedException e) {
+			return false;
+		} catch (BrokenBarrierException e) {
+			return false;
+		}
+		return !finished;
+	}
+
+	/**
+	 * @return The global virtual time found at the latest round.
+	 */
+	long globalVirtualTime() {
+		return globalVirtualTime;
+	}
+
+	/**
+	 * @return Whether the latest round ended simulation.
+	 */
+	boolean isFinished() {
+		return finished;
+	}
+
+	/**
+	 * @param partition
+	 *            the index of a partition.
+	 * @return The process simulating the partition.
+	 */
+	TimeWarpProcess process(int partition) {
+		return processes[partition];
+	}
+
+	/**
+	 * Records the failure of a process, so that no further round is held.
+	 *
+	 * @param e
+	 *            the cause of the failure.
+	 */
+	void fail(RuntimeException e) {
+		failure = e;
+	}
+
+	/*
+	 * Run by the last process to reach the round barrier, whilst the others
+	 * wait.
+	 */
+	private synchronized void endRound() {
+		long earliest = Long.MAX_VALUE;
+		for (TimeWarpProcess process : processes)
+			earliest = Math.min(earliest, process.earliestTimestep());
+
+		globalVirtualTime = earliest;
+		rounds++;
+		if (earliest >= length || failure != null)
+			finished = true;
+	}
+}
@@ -0,0 +1,226 @@
+package net.alexheavens.cs4099.simulation;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Queue;
+
+/**
+ * The TimingWheel is a hierarchical timing wheel of ISimulationEvents, keyed by
+ * the timestep at which they occur.
+ *
+ * Each level of the wheel has 64 buckets, with a bucket at the lowest level
+ * holding the events of a single timestep and a bucket at each higher level
+ * covering 64 times the timesteps of one below. An event is placed at the
+ * lowest level that can distinguish its timestep from the wheel's cursor, so
+ * that scheduling takes constant time however distant the event. When the
+ * lowest level empties, the earliest bucket of the next level is cascaded
+ * down, each event being moved at most once per level.
+ *
+ * Events of the same timestep are removed in the order they were added.
+ *
+ * @author Alexander Heavens <alexander.heavens@gmail.com>
+ * @version 1.0
+ */
+public class TimingWheel {
+
+	private static final int LEVEL_BITS = 6;
+	private static final int SLOTS = 1 << LEVEL_BITS;
+	private static final int SLOT_MASK = SLOTS - 1;
+	private static final int LEVELS = (Long.SIZE + LEVEL_BITS - 1) / LEVEL_BITS;
+
+	private final ArrayDeque<ISimulationEvent>[][] buckets;
+	private final long[][] earliest;
+	private final long[] occupied;
+	private long cursor;
+	private int size;
+
+	/**
+	 * Creates an empty TimingWheel, accepting events from timestep 0.
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public TimingWheel() {
+		buckets = new ArrayDeque[LEVELS][SLOTS];
+		earliest = new long[LEVELS][SLOTS];
+		occupied = new long[LEVELS];
+		cursor = 0;
+		size = 0;
+	}
+
+	/**
+	 * Adds an event to the wheel.
+	 *
+	 * @param event
+	 *            the event to add.
+	 * @throws IllegalArgumentException
+	 *             If the event is null.
+	 * @throws IllegalStateException
+	 *             If the event occurs before an event already removed from the
+	 *             wheel.
+	 */
+	public synchronized void add(ISimulationEvent event) {
+		if (event == null)
+			throw new IllegalArgumentException(
+					"Attempted to add null event to timing wheel.");
+		final long eventTimestep = event.getTimestep();
+		if (eventTimestep < cursor)
+			throw new IllegalStateException(
+					"Attempted to add event before the timing wheel's current timestep.");
+
+		place(event);
+		size++;
+	}
+
+	/**
+	 * @return The timestep of the earliest event in the wheel, or
+	 *         <code>IEventController.NO_EVENTS_TIMESTEP</code> if it is empty.
+	 */
+	public synchronized long nextTimestep() {
+		if (size == 0)
+			return IEventController.NO_EVENTS_TIMESTEP;
+
+		if (occupied[0] != 0)
+			return (cursor & ~(long) SLOT_MASK)
+					| Long.numberOfTrailingZeros(occupied[0]);
+		for (int level = 1; level < LEVELS; level++) {
+			if (occupied[level] != 0)
+				return earliest[level][Long
+						.numberOfTrailingZeros(occupied[level])];
+		}
+		throw new IllegalStateException("Timing wheel lost track of events.");
+	}
+
+	/**
+	 * Removes the earliest event from the wheel.
+	 *
+	 * @return The earliest event, or null if the wheel is empty.
+	 */
+	public synchronized ISimulationEvent poll() {
+		if (size == 0)
+			return null;
+
+		final int slot = advance();
+		final ArrayDeque<ISimulationEvent> bucket = buckets[0][slot];
+		final ISimulationEvent event = bucket.poll();
+		if (bucket.isEmpty())
+			occupied[0] &= ~(1L << slot);
+		size--;
+		return event;
+	}
+
+	/**
+	 * Removes every event of the earliest timestep from the wheel at once.
+	 *
+	 * @return The events of the earliest timestep, in the order they were
+	 *         added, or an empty queue if the wheel is empty.
+	 */
+	public synchronized Queue<ISimulationEvent> pollTimestep() {
+		if (size == 0)
+			return new ArrayDeque<ISimulationEvent>();
+
+		final int slot = advance();
+		final ArrayDeque<ISimulationEvent> bucket = buckets[0][slot];
+		buckets[0][slot] = null;
+		occupied[0] &= ~(1L << slot);
+		size -= bucket.size();
+		return bucket;
+	}
+
+	/**
+	 * @return Every event in the wheel, ordered by timestep, those of the same
+	 *         timestep in the order they will be removed. The wheel is
+	 *         unchanged.
+	 */
+	public synchronized List<ISimulationEvent> events() {
+		final List<ISimulationEvent> events = new ArrayList<ISimulationEvent>(
+				size);
+
+		// Events of higher levels are added behind those of lower levels as
+		// they cascade down, so are removed after them.
+		for (ArrayDeque<ISimulationEvent>[] level : buckets) {
+			for (ArrayDeque<ISimulationEvent> bucket : level) {
+				if (bucket != null)
+					events.addAll(bucket);
+			}
+		}
+		Collections.sort(events, new Comparator<ISimulationEvent>() {
+			public int compare(ISimulationEvent a, ISimulationEvent b) {
+				return Long.compare(a.getTimestep(), b.getTimestep());
+			}
+		});
+		return events;
+	}
+
+	/**
+	 * Removes every event from the wheel, which again accepts events from
+	 * timestep 0.
+	 */
+	public synchronized void clear() {
+		for (ArrayDeque<ISimulationEvent>[] level : buckets)
+			Arrays.fill(level, null);
+		Arrays.fill(occupied, 0);
+		cursor = 0;
+		size = 0;
+	}
+
+	/**
+	 * @return The number of events in the wheel.
+	 */
+	public synchronized int size() {
+		return size;
+	}
+
+	/*
+	 * Cascades higher levels down until the lowest is occupied, then moves the
+	 * cursor to its earliest bucket, returning that bucket's slot. The wheel
+	 * must not be empty.
+	 */
+	private int advance() {
+		while (occupied[0] == 0) {
+			int level = 1;
+			while (occupied[level] == 0)
+				level++;
+			final int slot = Long.numberOfTrailingZeros(occupied[level]);
+			final ArrayDeque<ISimulationEvent> bucket = buckets[level][slot];
+			buckets[level][slot] = null;
+			occupied[level] &= ~(1L << slot);
+
+			// No event remains before the earliest in the bucket, so the cursor
+			// moves to it and the bucket's events spread over lower levels.
+			cursor = earliest[level][slot];
+			for (ISimulationEvent event : bucket)
+				place(event);
+		}
+
+		final int slot = Long.numberOfTrailingZeros(occupied[0]);
+		cursor = (cursor & ~(long) SLOT_MASK) | slot;
+		return slot;
+	}
+
+	/*
+	 * Places an event in the bucket of the lowest level distinguishing its
+	 * timestep from the cursor.
+	 */
+	private void place(ISimulationEvent event) {
+		final long eventTimestep = event.getTimestep();
+		final long difference = eventTimestep ^ cursor;
+		final int level = (difference == 0) ? 0
+				: (Long.SIZE - 1 - Long.numberOfLeadingZeros(difference))
+						/ LEVEL_BITS;
+		final int slot = (int) (eventTimestep >>> (level * LEVEL_BITS))
+				& SLOT_MASK;
+
+		ArrayDeque<ISimulationEvent> bucket = buckets[level][slot];
+		if (bucket == null) {
+			bucket = new ArrayDeque<ISimulationEvent>();
+			buckets[level][slot] = bucket;
+		}
+		if (bucket.isEmpty() || eventTimestep < earliest[level][slot])
+			earliest[level][slot] = eventTimestep;
+		bucket.add(event);
+		occupied[level] |= 1L << slot;
+	}
+}
@@ -0,0 +1,88 @@
+package net.alexheavens.cs4099.simulation;
+
+import java.util.List;
+import java.util.Queue;
+
+/**
+ * An EventController that keeps waiting events in a {@link TimingWheel} rather
+ * than a priority queue.
+ * 
+ * Events are scheduled in constant time, and the events of a timestep are
+ * removed from the wheel as a single bucket when the timestep is processed.
+ * Events of the same timestep are processed in the order they were scheduled.
+ * 
+ * @author Alexander Heavens <alexander.heavens@gmail.com>
+ * @version 1.0
+ */
+public class TimingWheelEventController extends EventController {
+
+	private final TimingWheel wheel;
+
+	/**
+	 * Creates a TimingWheelEventController with no waiting events.
+	 * 
+	 * @param processLimit
+	 *            the timestep at which no further events can occur. Must be
+	 *            greater than 0.
+	 * @see EventController#EventController(long)
+	 */
+	public TimingWheelEventController(long processLimit) {
+		super(processLimit);
+		wheel = new TimingWheel();
+	}
+
+	@Override
+	public void processTimestep() {
+		final long timestep = nextEventTimestep();
+		if (timestep == NO_EVENTS_TIMESTEP)
+			throw new IllegalStateException(
+					"Attempted to process timestep where no event was waiting.");
+		do {
+			processBucket(wheel.pollTimestep());
+		} while (nextEventTimestep() == timestep);
+	}
+
+	/**
+	 * Processes the events of a timestep removed from the wheel together, in
+	 * the order they were scheduled.
+	 * 
+	 * @param bucket
+	 *            the events of the timestep.
+	 */
+	protected void processBucket(Queue<ISimulationEvent> bucket) {
+		for (ISimulationEvent event : bucket)
+			processEvent(event);
+	}
+
+	@Override
+	public long nextEventTimestep() {
+		return wheel.nextTimestep();
+	}
+
+	@Override
+	protected void queueEvent(ISimulationEvent event) {
+		wheel.add(event);
+	}
+
+	@Override
+	protected ISimulationEvent pollEvent() {
+		return wheel.poll();
+	}
+
+	@Override
+	protected void clearEvents() {
+		wheel.clear();
+	}
+
+	@Override
+	protected List<ISimulationEvent> waitingEvents() {
+		return wheel.events();
+	}
+
+	/**
+	 * @return The number of events waiting to be processed.
+	 */
+	public int waitingEventCount() {
+		return wheel.size();
+	}
+}
@@ -17,6 +17,7 @@ import javax.swing.SpinnerNumberModel;
 
 import net.alexheavens.cs4099.ApplicationController;
 import net.alexheavens.cs4099.ApplicationModel;
+import net.alexheavens.cs4099.simulation.ExecutionMode;
 import net.miginfocom.swing.MigLayout;
 
 public class PreSimPanel extends JPanel {
@@ -48,6 +49,11 @@ public class PreSimPanel extends JPanel {
 	private final SpinnerNumberModel timeoutField = new SpinnerNumberModel(
 			1000l, 1l, Long.MAX_VALUE / 1000000l, 1l);
 
+	private final JLabel budgetLabel = new JLabel("Instruction budget:");
+	private final JCheckBox budgetCheck = new JCheckBox();
+	private final SpinnerNumberModel budgetField = new SpinnerNumberModel(
+			1000000l, 1l, Long.MAX_VALUE, 1000l);
+
 	private final LimitationCheckBox limitations = new LimitationCheckBox();
 
 	private final JButton simButton = new AppGeneralButton("Simulate");
@@ -114,6 +120,15 @@ public class PreSimPanel extends JPanel {
 		timeoutPanel.add(new JSpinner(timeoutField));
 		add(timeoutPanel, "right, span, growx");
 
+		add(budgetLabel);
+		JPanel budgetPanel = new JPanel();
+		budgetPanel.setLayout(new MigLayout("left"));
+		budgetPanel.setBackground(Color.WHITE);
+		budgetCheck.setSelected(false);
+		budgetPanel.add(budgetCheck);
+		budgetPanel.add(new JSpinner(budgetField));
+		add(budgetPanel, "right, span, growx");
+
 		add(simButton, "span");
 
 		simButton.addActionListener(new ActionListener() {
@@ -134,9 +149,12 @@ public class PreSimPanel extends JPanel {
 				final long length = timeField.getNumber().longValue();
 				final long timeout = (timeoutCheck.isSelected()) ? 1000000l * timeoutField
 						.getNumber().longValue() : 0l;
+				final long budget = (budgetCheck.isSelected()) ? budgetField
+						.getNumber().longValue() : 0l;
 				controller.simulate(netFile, length, userCode,
 						limitations.generateLimitation(), output, timeout,
-						limitations.isScramblingIds());
+						limitations.isScramblingIds(),
+						ExecutionMode.PLATFORM_THREADS, budget);
 				if (PreSimPanel.this.model.getSimulationException() == null)
 					JOptionPane.showMessageDialog(PreSimPanel.this,
 							"Simulation was Successful!",
@@ -15,9 +15,25 @@ public class ClassFileManager extends
 		ForwardingJavaFileManager<JavaFileManager> {
 
 	private JavaClassFileObject classObject;
+	private String className;
+	private final boolean countBackEdges;
 
 	protected ClassFileManager(JavaFileManager fileManager) {
+		this(fileManager, false);
+	}
+
+	/**
+	 * @param fileManager
+	 *            the manager of the compiler's other files.
+	 * @param countBackEdges
+	 *            whether the compiled class is instrumented to charge an
+	 *            {@link InstructionBudget}.
+	 * @see ScriptInstrumenter
+	 */
+	protected ClassFileManager(JavaFileManager fileManager,
+			boolean countBackEdges) {
 		super(fileManager);
+		this.countBackEdges = countBackEdges;
 	}
 
 	public ClassLoader getClassLoader(Location location){
@@ -31,11 +47,28 @@ public class ClassFileManager extends
 									throws ClassNotFoundException {
 								if (classObject == null)
 									return null;
-								final byte[] classBytes = classObject
-										.getBytes();
-								return super.defineClass(name,
-										classObject.getBytes(), 0,
-										classBytes.length);
+								final byte[] classBytes = countBackEdges ? ScriptInstrumenter
+										.instrument(classObject.getBytes())
+										: classObject.getBytes();
+								return super.defineClass(name, classBytes,
+										0, classBytes.length);
+							}
+
+							// An instrumented class is defined here even if
+							// the class path holds one of the same name.
+							protected Class<?> loadClass(String name,
+									boolean resolve)
+									throws ClassNotFoundException {
+								if (!countBackEdges || !name.equals(className))
+									return super.loadClass(name, resolve);
+								synchronized (getClassLoadingLock(name)) {
+									Class<?> loaded = findLoadedClass(name);
+									if (loaded == null)
+										loaded = findClass(name);
+									if (resolve)
+										resolveClass(loaded);
+									return loaded;
+								}
 							}
 						};
 					}
@@ -46,6 +79,7 @@ public class ClassFileManager extends
 	public JavaFileObject getJavaFileForOutput(Location location,
 			String className, Kind kind, FileObject sibling) throws IOException {
 		classObject = new JavaClassFileObject(className, kind);
+		this.className = className;
 		return classObject;
 	}
 }
@@ -19,6 +19,27 @@ import javax.tools.ToolProvider;
  */
 public class DynamicClassLoader {
 
+	private final boolean countBackEdges;
+
+	/**
+	 * Creates a loader of classes as compiled.
+	 */
+	public DynamicClassLoader() {
+		this(false);
+	}
+
+	/**
+	 * @param countBackEdges
+	 *            whether loaded classes are instrumented to charge the
+	 *            {@link InstructionBudget} of the node they execute on for
+	 *            every loop iteration, so that runaway scripts are timed out
+	 *            deterministically.
+	 * @see ScriptInstrumenter
+	 */
+	public DynamicClassLoader(boolean countBackEdges) {
+		this.countBackEdges = countBackEdges;
+	}
+
 	/**
 	 * Loads the Class type of the Node specified in <code>file</code>
 	 * 
@@ -44,7 +65,8 @@ public class DynamicClassLoader {
 					"No default system compiler provided.");
 
 		JavaFileManager fileManager = new ClassFileManager(
-				compiler.getStandardFileManager(null, null, null));
+				compiler.getStandardFileManager(null, null, null),
+				countBackEdges);
 
 		List<JavaFileObject> jfiles = new LinkedList<JavaFileObject>();
 		jfiles.add(new JavaSourceFileObject(file.toURI()));
@@ -0,0 +1,87 @@
+package net.alexheavens.cs4099.usercode;
+
+import net.alexheavens.cs4099.network.IMessage;
+import net.alexheavens.cs4099.simulation.InvalidCallException;
+
+/**
+ * An EventNodeScript is a script of execution that reacts to simulation events
+ * rather than running as a blocking loop.
+ *
+ * Instead of executing on a Thread of its own, the Node of an EventNodeScript
+ * is invoked by the simulation only when something happens to it: once at the
+ * start of simulation, once for each message that arrives and once each time it
+ * wakes from a pause. Each invocation must return promptly, as no other
+ * invocation on the same Node can take place until it does.
+ *
+ * As an EventNodeScript is never blocked, it cannot call receive(). Calling
+ * pause() stops the delivery of messages to the Node for the given number of
+ * timesteps, after which onWake() is called and any messages that arrived in
+ * the meantime are delivered.
+ *
+ * @author Alexander Heavens <alexander.heavens@gmail.com>
+ * @version 1.0
+ *
+ * @see NodeScript
+ */
+public abstract class EventNodeScript extends NodeScript {
+
+	/**
+	 * Called once for all Nodes at timestep 0, after setup().
+	 */
+	public void onStart() {
+
+	}
+
+	/**
+	 * Called for each message that arrives at the Node, in the order that
+	 * receive() would have returned them.
+	 *
+	 * @param message
+	 *            the message that has arrived.
+	 * @param fromIndex
+	 *            the index of the neighbour that sent the message.
+	 */
+	public abstract void onMessage(IMessage<?> message, int fromIndex);
+
+	/**
+	 * Called when a pause made by the Node has elapsed, before any message
+	 * that arrived during the pause is delivered.
+	 */
+	public void onWake() {
+
+	}
+
+	/**
+	 * Event-driven scripts are not executed as a blocking loop.
+	 *
+	 * @throws InvalidCallException
+	 *             always.
+	 */
+	public final void execute() {
+		throw new InvalidCallException(
+				"Event-driven scripts are not executed as a loop.");
+	}
+
+	/**
+	 * Event-driven scripts are delivered messages through onMessage().
+	 *
+	 * @throws InvalidCallException
+	 *             always.
+	 */
+	public final <MsgType extends IMessage<?>> MsgType receive() {
+		throw new InvalidCallException(
+				"Receive call in an event-driven script.");
+	}
+
+	/**
+	 * Event-driven scripts are delivered messages through onMessage().
+	 *
+	 * @throws InvalidCallException
+	 *             always.
+	 */
+	public final <MsgType extends IMessage<?>> MsgType receive(int neighbour) {
+		throw new InvalidCallException(
+				"Receive call in an event-driven script.");
+	}
+
+}
@@ -0,0 +1,142 @@
+package net.alexheavens.cs4099.usercode;
+
+/**
+ * The number of loop iterations and method calls that a script may make in a
+ * timestep, counted by scripts instrumented by a {@link ScriptInstrumenter}.
+ * 
+ * An instrumented script calls {@link #backEdge()} before every jump back to
+ * an earlier instruction, and {@link #methodEntry()} on entering each of its
+ * methods, charging the budget of the node it executes on. Every loop and
+ * every recursion is so charged once per iteration or call. The count depends
+ * only on the path taken through the script, so a script that exhausts its
+ * budget does so at the same point however fast it executes, unlike a timeout
+ * measured by the clock. Once exhausted, every further charge throws an
+ * {@link InstructionBudgetExceededError}, even if the script catches the
+ * first.
+ * 
+ * Only the script's own code is charged: a script may still spend any time
+ * in a single call to code that is not instrumented, such as the class
+ * library, so a budget does not replace a timeout.
+ * 
+ * A budget is charged on the Thread it was last entered on, so must be
+ * entered whenever its node begins or resumes executing. A budget can be
+ * revoked from any Thread, stopping the script that charges it at its next
+ * charge, so that a script can be stopped without stopping its Thread.
+ * 
+ * @author Alexander Heavens <alexander.heavens@gmail.com>
+ * @version 1.0
+ */
+public final class InstructionBudget {
+
+	/**
+	 * The limit of a budget that only stops its script once revoked.
+	 */
+	public static final long UNLIMITED = Long.MAX_VALUE;
+
+	private static final ThreadLocal<InstructionBudget> CURRENT = new ThreadLocal<InstructionBudget>();
+
+	private final long limit;
+	private long remaining;
+	private long timestep;
+	private volatile boolean revoked;
+
+	/**
+	 * @param limit
+	 *            the number of charges allowed per timestep.
+	 * @throws IllegalArgumentException
+	 *             if the limit is less than 1.
+	 */
+	public InstructionBudget(long limit) {
+		if (limit < 1)
+			throw new IllegalArgumentException("Invalid instruction budget: "
+					+ limit);
+		this.limit = limit;
+		remaining = limit;
+		timestep = -1;
+		revoked = false;
+	}
+
+	/**
+	 * Charges the budget entered on the calling Thread for a single back edge,
+	 * if any has been entered.
+	 * 
+	 * @throws InstructionBudgetExceededError
+	 *             if the budget is exhausted or revoked.
+	 */
+	public static void backEdge() {
+		charge();
+	}
+
+	/**
+	 * Charges the budget entered on the calling Thread for a single method
+	 * entry, if any has been entered.
+	 * 
+	 * @throws InstructionBudgetExceededError
+	 *             if the budget is exhausted or revoked.
+	 */
+	public static void methodEntry() {
+		charge();
+	}
+
+	private static void charge() {
+		final InstructionBudget budget = CURRENT.get();
+		if (budget != null && (--budget.remaining < 0 || budget.revoked))
+			throw new InstructionBudgetExceededError(budget.limit,
+					budget.timestep);
+	}
+
+	/**
+	 * Charges this budget for the back edges and method entries of the
+	 * calling Thread.
+	 * 
+	 * @param budget
+	 *            the budget to charge, or null to charge none.
+	 */
+	public static void enter(InstructionBudget budget) {
+		CURRENT.set(budget);
+	}
+
+	/**
+	 * Restores the budget in full if the timestep has changed since it was
+	 * last restored.
+	 * 
+	 * @param currentTimestep
+	 *            the timestep of simulation.
+	 */
+	public void refill(long currentTimestep) {
+		if (currentTimestep != timestep) {
+			timestep = currentTimestep;
+			remaining = limit;
+		}
+	}
+
+	/**
+	 * Exhausts the budget for good, whichever Thread charges it, so that its
+	 * script is stopped at its next charge.
+	 */
+	public void revoke() {
+		revoked = true;
+	}
+
+	/**
+	 * @return Whether the budget has been revoked.
+	 */
+	public boolean isRevoked() {
+		return revoked;
+	}
+
+	/**
+	 * @return The number of charges allowed per timestep.
+	 */
+	public long limit() {
+		return limit;
+	}
+
+	/**
+	 * @return The number of charges left in this timestep, negative once
+	 *         exhausted.
+	 */
+	public long remaining() {
+		return remaining;
+	}
+}
@@ -0,0 +1,26 @@
+package net.alexheavens.cs4099.usercode;
+
+/**
+ * Thrown through a script that has exhausted its {@link InstructionBudget}, so
+ * that its node is timed out on its own Thread. As an Error, it passes through
+ * the handlers of a script that catches Exceptions.
+ * 
+ * @author Alexander Heavens <alexander.heavens@gmail.com>
+ * @version 1.0
+ */
+public class InstructionBudgetExceededError extends Error {
+
+	private static final long serialVersionUID = -4718529044926138561L;
+
+	/**
+	 * @param limit
+	 *            the number of charges allowed per timestep.
+	 * @param timestep
+	 *            the timestep in which the budget was exhausted.
+	 */
+	public InstructionBudgetExceededError(long limit, long timestep) {
+		super("Exceeded budget of " + limit
+				+ " back edges and method entries in timestep " + timestep
+				+ ".");
+	}
+}
@@ -0,0 +1,13 @@
+package net.alexheavens.cs4099.usercode;
+
+/**
+ * Implemented by every class instrumented by a {@link ScriptInstrumenter}, so
+ * that a script that charges an {@link InstructionBudget} can be told from one
+ * that does not. A script instrumented so can be stopped on whatever Thread it
+ * executes, by revoking its budget.
+ * 
+ * @author Alexander Heavens <alexander.heavens@gmail.com>
+ * @version 1.0
+ */
+public interface InstrumentedScript {
+}
@@ -2,6 +2,7 @@ package net.alexheavens.cs4099.usercode;
 
 import java.awt.Color;
 
+import net.alexheavens.cs4099.network.ILinkEndpoint;
 import net.alexheavens.cs4099.network.IMessage;
 import net.alexheavens.cs4099.network.INode;
 import net.alexheavens.cs4099.simulation.InvalidCallException;
@@ -105,7 +106,7 @@ public abstract class NodeScript {
 	 *            either a Numeric or String message.
 	 */
 	public void send(int recipient, IMessage<?> message) {
-		INode recipientNode = node.getNeighbour(recipient);
+		ILinkEndpoint recipientNode = node.getNeighbour(recipient);
 		node.send(recipientNode, message);
 	}
 
@@ -146,7 +147,7 @@ public abstract class NodeScript {
 	 *         are attached to this Node.
 	 */
 	public <MsgType extends IMessage<?>> MsgType receive(int neighbour) {
-		INode senderNode = node.getNeighbour(neighbour);
+		ILinkEndpoint senderNode = node.getNeighbour(neighbour);
 		return node.receive(senderNode);
 	}
 
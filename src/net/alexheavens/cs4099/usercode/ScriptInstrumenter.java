@@ -0,0 +1,168 @@
+package net.alexheavens.cs4099.usercode;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * Instruments the bytecode of a script so that it charges its node's
+ * {@link InstructionBudget} for every loop iteration and method call it makes.
+ * 
+ * A call to {@link InstructionBudget#backEdge()} is inserted before every jump
+ * or switch to an instruction earlier in its method, which every loop must
+ * make once per iteration, and a call to
+ * {@link InstructionBudget#methodEntry()} at the start of every method, which
+ * every recursion must make once per call. Other code is left as it is, so
+ * the cost of instrumentation is a single call per iteration or method call.
+ * The inserted calls take and leave nothing on the stack, and are not the
+ * target of any jump, so the stack map frames of the method remain valid.
+ * 
+ * @author Alexander Heavens <alexander.heavens@gmail.com>
+ * @version 1.0
+ */
+public final class ScriptInstrumenter {
+
+	private static final String BUDGET_CLASS = InstructionBudget.class
+			.getName().replace('.', '/');
+	private static final String BACK_EDGE_METHOD = "backEdge";
+	private static final String METHOD_ENTRY_METHOD = "methodEntry";
+	private static final String MARKER_INTERFACE = InstrumentedScript.class
+			.getName().replace('.', '/');
+
+	private ScriptInstrumenter() {
+	}
+
+	/**
+	 * Instruments a compiled class.
+	 * 
+	 * @param classBytes
+	 *            the class file.
+	 * @return The class file with every back edge and method entry counted,
+	 *         implementing
+	 *         {@link InstrumentedScript}.
+	 * @throws IllegalArgumentException
+	 *             if the class file is null or malformed.
+	 */
+	public static byte[] instrument(byte[] classBytes) {
+		if (classBytes == null)
+			throw new IllegalArgumentException(
+					"Attempted to instrument a null class.");
+		try {
+			final ClassReader reader = new ClassReader(classBytes);
+			final ClassWriter writer = new ClassWriter(reader, 0);
+			reader.accept(new ClassVisitor(Opcodes.ASM9, writer) {
+				@Override
+				public void visit(int version, int access, String name,
+						String signature, String superName,
+						String[] interfaces) {
+					final String[] marked = new String[interfaces.length + 1];
+					System.arraycopy(interfaces, 0, marked, 0,
+							interfaces.length);
+					marked[interfaces.length] = MARKER_INTERFACE;
+					super.visit(version, access, name,
+							(signature == null) ? null : signature + "L"
+									+ MARKER_INTERFACE + ";", superName,
+							marked);
+				}
+
+				@Override
+				public MethodVisitor visitMethod(int access, String name,
+						String descriptor, String signature,
+						String[] exceptions) {
+					return new BudgetCharger(super.visitMethod(access, name,
+							descriptor, signature, exceptions));
+				}
+			}, 0);
+			return writer.toByteArray();
+		} catch (RuntimeException e) {
+
+			// ASM reports a truncated or corrupt class file by whatever
+			// exception it meets while reading past its end.
+			throw new IllegalArgumentException("Malformed class file.", e);
+		}
+	}
+
+	/**
+	 * @param scriptClass
+	 *            a class.
+	 * @return Whether the class was instrumented, so charges an
+	 *         {@link InstructionBudget}.
+	 */
+	public static boolean isInstrumented(Class<?> scriptClass) {
+		return InstrumentedScript.class.isAssignableFrom(scriptClass);
+	}
+
+	/*
+	 * Counts the entry to the method, and each jump to a label already
+	 * visited, which lies earlier in the method.
+	 */
+	private static final class BudgetCharger extends MethodVisitor {
+
+		private final Set<Label> visited;
+
+		BudgetCharger(MethodVisitor methodVisitor) {
+			super(Opcodes.ASM9, methodVisitor);
+			visited = new HashSet<Label>();
+		}
+
+		@Override
+		public void visitCode() {
+			super.visitCode();
+			charge(METHOD_ENTRY_METHOD);
+		}
+
+		@Override
+		public void visitLabel(Label label) {
+			visited.add(label);
+			super.visitLabel(label);
+		}
+
+		@Override
+		public void visitJumpInsn(int opcode, Label label) {
+			if (visited.contains(label))
+				countBackEdge();
+			super.visitJumpInsn(opcode, label);
+		}
+
+		@Override
+		public void visitTableSwitchInsn(int min, int max, Label dflt,
+				Label... labels) {
+			if (jumpsBack(dflt, labels))
+				countBackEdge();
+			super.visitTableSwitchInsn(min, max, dflt, labels);
+		}
+
+		@Override
+		public void visitLookupSwitchInsn(Label dflt, int[] keys,
+				Label[] labels) {
+			if (jumpsBack(dflt, labels))
+				countBackEdge();
+			super.visitLookupSwitchInsn(dflt, keys, labels);
+		}
+
+		private boolean jumpsBack(Label dflt, Label[] labels) {
+			if (visited.contains(dflt))
+				return true;
+			for (Label label : labels) {
+				if (visited.contains(label))
+					return true;
+			}
+			return false;
+		}
+
+		private void countBackEdge() {
+			charge(BACK_EDGE_METHOD);
+		}
+
+		private void charge(String chargeMethod) {
+			super.visitMethodInsn(Opcodes.INVOKESTATIC, BUDGET_CLASS,
+					chargeMethod, "()V", false);
+		}
+	}
+}
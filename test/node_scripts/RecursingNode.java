@@ -0,0 +1,20 @@
+import net.alexheavens.cs4099.network.NumericMessage;
+import net.alexheavens.cs4099.usercode.NodeScript;
+
+public class RecursingNode extends NodeScript {
+
+	public long depth = 0;
+
+	public void execute() {
+		sendAll(new NumericMessage(machineId()));
+		if (isInitiator())
+			recurse();
+		for (int i = 0; i < neighbourCount(); i++)
+			receive();
+	}
+
+	private void recurse() {
+		depth++;
+		recurse();
+	}
+}
@@ -0,0 +1,15 @@
+import net.alexheavens.cs4099.network.NumericMessage;
+import net.alexheavens.cs4099.usercode.NodeScript;
+
+public class SpinningNode extends NodeScript {
+
+	public long spins = 0;
+
+	public void execute() {
+		sendAll(new NumericMessage(machineId()));
+		while (isInitiator())
+			spins++;
+		for (int i = 0; i < neighbourCount(); i++)
+			receive();
+	}
+}
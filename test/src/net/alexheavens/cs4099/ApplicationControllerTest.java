@@ -10,6 +10,8 @@ import java.io.IOException;
 import net.alexheavens.cs4099.examples.TreeLeaderNode;
 import net.alexheavens.cs4099.network.configuration.INetworkConfig;
 import net.alexheavens.cs4099.network.configuration.NetworkConfigFactory;
+import net.alexheavens.cs4099.simulation.ExecutionMode;
+import net.alexheavens.cs4099.simulation.SimulationRecording;
 import net.alexheavens.cs4099.usercode.ClassLimitation;
 import net.sf.json.JSONObject;
 import net.sf.json.JSONSerializer;
@@ -67,6 +69,30 @@ public class ApplicationControllerTest {
 		assertEquals(SIM_LENGTH, simResults.getLong("length"));
 	}
 
+	@Test
+	/**
+	 * Tests that the instruction budget a simulation is given is recorded.
+	 */
+	public void testSimulateWithBudget() throws IOException {
+
+		testController.simulate(testNet, SIM_LENGTH, TreeLeaderNode.class,
+				testLimit, testOutputFile, 0, false,
+				ExecutionMode.PLATFORM_THREADS, 1000000);
+
+		StringBuilder sb = new StringBuilder();
+		BufferedReader br = new BufferedReader(new FileReader(testOutputFile));
+		String line;
+		while((line = br.readLine()) != null){
+			sb.append(line + "\n");
+		}
+		br.close();
+
+		JSONObject simResults = (JSONObject) JSONSerializer.toJSON(sb.toString());
+		SimulationRecording recording = new SimulationRecording(simResults
+				.getJSONObject("recording"));
+		assertEquals(1000000, recording.instructionBudget());
+	}
+
 	@Test
 	/**
 	 * Tests that a null <code>NetworkConfig</code> is not a valid parameter,
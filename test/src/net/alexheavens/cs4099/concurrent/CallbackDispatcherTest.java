@@ -0,0 +1,113 @@
+package net.alexheavens.cs4099.concurrent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class CallbackDispatcherTest {
+
+	private static final int N_TASKS = 200;
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNullAssignment() {
+		new CallbackDispatcher((int[]) null);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidAssignment() {
+		new CallbackDispatcher(new int[] { 0, -2 });
+	}
+
+	@Test(timeout = 5000)
+	/**
+	 * Tests that every task of a key executes on the worker of that key, in
+	 * the order dispatched, and keys of different workers execute apart.
+	 */
+	public void testTasksKeptToWorker() {
+		final CallbackDispatcher dispatcher = new CallbackDispatcher(new int[] {
+				0, 1, 0, 1 });
+		assertEquals(2, dispatcher.keyWorkerCount());
+
+		final ConcurrentHashMap<Integer, Thread> threads = new ConcurrentHashMap<Integer, Thread>();
+		final List<List<Integer>> orders = new ArrayList<List<Integer>>();
+		for (int key = 0; key < 4; key++)
+			orders.add(Collections.synchronizedList(new ArrayList<Integer>()));
+
+		dispatcher.holdTasks();
+		for (int i = 0; i < N_TASKS; i++) {
+			final int key = i % 4;
+			final int index = i;
+			dispatcher.dispatch(new Runnable() {
+				public void run() {
+					final Thread previous = threads.putIfAbsent(key, Thread
+							.currentThread());
+					if (previous != null && previous != Thread.currentThread())
+						throw new IllegalStateException();
+					orders.get(key).add(index);
+				}
+			}, key);
+		}
+		dispatcher.releaseTasks();
+		dispatcher.awaitIdle();
+		dispatcher.shutdown();
+
+		assertSame(threads.get(0), threads.get(2));
+		assertSame(threads.get(1), threads.get(3));
+		assertNotSame(threads.get(0), threads.get(1));
+		for (int key = 0; key < 4; key++) {
+			assertEquals(N_TASKS / 4, orders.get(key).size());
+			for (int i = 0; i < N_TASKS / 4; i++)
+				assertEquals(key + 4 * i, orders.get(key).get(i).intValue());
+		}
+	}
+
+	@Test(timeout = 5000)
+	/**
+	 * Tests that tasks without an assigned worker are still executed.
+	 */
+	public void testUnassignedTasks() {
+		final CallbackDispatcher dispatcher = new CallbackDispatcher(new int[] {
+				-1, 2 });
+		assertEquals(3, dispatcher.keyWorkerCount());
+
+		final AtomicInteger executed = new AtomicInteger();
+		final Runnable task = new Runnable() {
+			public void run() {
+				executed.incrementAndGet();
+			}
+		};
+		for (int i = 0; i < N_TASKS; i++) {
+			dispatcher.dispatch(task);
+			dispatcher.dispatch(task, 0);
+			dispatcher.dispatch(task, 5);
+		}
+		dispatcher.awaitIdle();
+		dispatcher.shutdown();
+		assertEquals(3 * N_TASKS, executed.get());
+	}
+
+	@Test
+	public void testSharedWorkersIgnoreKeys() {
+		final CallbackDispatcher dispatcher = new CallbackDispatcher(2);
+		assertEquals(0, dispatcher.keyWorkerCount());
+		final AtomicInteger executed = new AtomicInteger();
+		for (int i = 0; i < N_TASKS; i++) {
+			dispatcher.dispatch(new Runnable() {
+				public void run() {
+					executed.incrementAndGet();
+				}
+			}, i);
+		}
+		dispatcher.awaitIdle();
+		dispatcher.shutdown();
+		assertEquals(N_TASKS, executed.get());
+	}
+}
@@ -0,0 +1,133 @@
+package net.alexheavens.cs4099.concurrent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class CooperativeSchedulerTest {
+
+	private static final int N_MEMBERS = 20;
+	private CooperativeScheduler scheduler;
+	private ThreadFactory memberFactory;
+	private List<Integer> resumed;
+	private AtomicInteger executing;
+	private volatile int maxExecuting;
+
+	@Before
+	public void setup() {
+		resumed = new ArrayList<Integer>();
+		executing = new AtomicInteger(0);
+		maxExecuting = 0;
+	}
+
+	/*
+	 * Tests with a timeout run on a Thread of their own, so the scheduler must
+	 * be created by the test itself to make it the leader.
+	 */
+	private void createScheduler() {
+		scheduler = new CooperativeScheduler(Thread.currentThread());
+		memberFactory = scheduler.memberFactory(new PlatformThreadFactory());
+	}
+
+	@Test(expected = NullPointerException.class)
+	/**
+	 * Test that a scheduler cannot be created without a leader.
+	 */
+	public void testNullLeader() {
+		new CooperativeScheduler(null);
+	}
+
+	@Test(timeout = 1000)
+	/**
+	 * Test that the leader passes through the scheduler when it has no
+	 * members.
+	 */
+	public void testLeaderPassesWithoutMembers() {
+		createScheduler();
+		scheduler.waitThreadUnInterruptedly();
+		assertEquals(0, scheduler.getNumberOfFollowers());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	/**
+	 * Test that a Thread that is not waiting cannot be notified.
+	 */
+	public void testNotifyNonWaiting() {
+		createScheduler();
+		scheduler.notifyThread(new Thread());
+	}
+
+	@Test(timeout = 5000)
+	/**
+	 * Test that notified members resume one at a time in the order they began,
+	 * regardless of the order of notification.
+	 */
+	public void testMembersResumeInRankOrder() {
+		createScheduler();
+		final Thread[] members = new Thread[N_MEMBERS];
+		for (int i = 0; i < N_MEMBERS; i++) {
+			members[i] = memberFactory.newThread(new MockMember(i));
+			members[i].start();
+			while (!scheduler.containsThread(members[i])) {
+			}
+		}
+		scheduler.waitThreadUnInterruptedly();
+		assertEquals(N_MEMBERS, scheduler.getNumberOfFollowers());
+
+		for (int i = N_MEMBERS - 1; i >= 0; i--)
+			scheduler.notifyThread(members[i]);
+		scheduler.waitThreadUnInterruptedly();
+
+		assertEquals(0, scheduler.getNumberOfFollowers());
+		assertEquals(1, maxExecuting);
+		for (int i = 0; i < N_MEMBERS; i++)
+			assertEquals(i, resumed.get(i).intValue());
+	}
+
+	@Test(timeout = 5000)
+	/**
+	 * Test that a member interrupted while waiting leaves the scheduler.
+	 */
+	public void testInterruptMember() throws InterruptedException {
+		createScheduler();
+		final Thread member = memberFactory.newThread(new MockMember(0));
+		member.start();
+		while (!scheduler.containsThread(member)) {
+		}
+
+		member.interrupt();
+		member.join();
+		assertTrue(!scheduler.containsThread(member));
+		assertTrue(resumed.isEmpty());
+	}
+
+	private class MockMember implements Runnable {
+
+		private final int id;
+
+		public MockMember(int id) {
+			this.id = id;
+		}
+
+		public void run() {
+			try {
+				scheduler.waitThread();
+			} catch (InterruptedException e) {
+				return;
+			}
+
+			final int nowExecuting = executing.incrementAndGet();
+			if (nowExecuting > maxExecuting)
+				maxExecuting = nowExecuting;
+			resumed.add(id);
+			executing.decrementAndGet();
+		}
+	}
+}
@@ -0,0 +1,59 @@
+package net.alexheavens.cs4099.concurrent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class DeferringRegistrarTest {
+
+	private static final int N_FOLLOWERS = 10;
+
+	@Test(expected = IllegalArgumentException.class)
+	/**
+	 * Test that a registrar cannot defer to a null registrar.
+	 */
+	public void testNullRegistrar() {
+		new DeferringRegistrar(null);
+	}
+
+	@Test(timeout = 5000)
+	/**
+	 * Test that held notifications leave Threads waiting until released.
+	 */
+	public void testHoldNotifications() throws InterruptedException {
+		final MockLeaderBarrierThread leader = new MockLeaderBarrierThread();
+		final LeaderBarrier barrier = new LeaderBarrier(leader, N_FOLLOWERS);
+		final DeferringRegistrar registrar = new DeferringRegistrar(barrier);
+
+		final Thread[] followers = new Thread[N_FOLLOWERS];
+		for (int i = 0; i < N_FOLLOWERS; i++) {
+			followers[i] = new Thread() {
+				public void run() {
+					try {
+						registrar.waitThread();
+					} catch (InterruptedException e) {
+					}
+				}
+			};
+			followers[i].start();
+		}
+		while (barrier.getNumberOfFollowers() < N_FOLLOWERS) {
+		}
+
+		registrar.holdNotifications();
+		for (Thread follower : followers)
+			registrar.notifyThread(follower);
+		assertEquals(N_FOLLOWERS, registrar.deferredCount());
+		for (Thread follower : followers)
+			assertTrue(registrar.containsThread(follower));
+
+		registrar.releaseNotifications();
+		assertEquals(0, registrar.deferredCount());
+		for (Thread follower : followers) {
+			follower.join();
+			assertFalse(registrar.containsThread(follower));
+		}
+	}
+}
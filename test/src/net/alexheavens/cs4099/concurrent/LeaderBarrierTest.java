@@ -186,4 +186,49 @@ public class LeaderBarrierTest {
 		
 		assertTrue(barrier.containsThread(follower));
 	}
+
+	@Test(timeout = 5000)
+	/**
+	 * Tests that releasing followers lowers the follower threshold, resuming
+	 * a leader once enough of the remaining followers are waiting.
+	 */
+	public void testReleaseThread() throws InterruptedException {
+		leader.start();
+		while (!barrier.containsThread(leader)) {
+		}
+
+		for (int i = 0; i < FOLLOWER_THRESHOLD - 2; i++) {
+			otherThreads[i].start();
+		}
+		while (barrier.getNumberOfFollowers() < FOLLOWER_THRESHOLD - 2) {
+		}
+
+		barrier.releaseThread(otherThreads[FOLLOWER_THRESHOLD - 2]);
+		assertEquals(FOLLOWER_THRESHOLD - 1, barrier.getFollowerThreshold());
+		assertFalse(leader.hasPassedBarrier());
+
+		barrier.releaseThread(otherThreads[FOLLOWER_THRESHOLD - 1]);
+		assertEquals(FOLLOWER_THRESHOLD - 2, barrier.getFollowerThreshold());
+		leader.join();
+		assertTrue(leader.hasPassedBarrier());
+	}
+
+	@Test(timeout = 5000, expected = IllegalArgumentException.class)
+	/**
+	 * Tests that a follower waiting at the barrier cannot be released.
+	 */
+	public void testReleaseWaitingThread() {
+		otherThreads[0].start();
+		while (!barrier.containsThread(otherThreads[0])) {
+		}
+		barrier.releaseThread(otherThreads[0]);
+	}
+
+	@Test(timeout = 1000, expected = IllegalArgumentException.class)
+	/**
+	 * Tests that the leader cannot be released from the barrier.
+	 */
+	public void testReleaseLeader() {
+		barrier.releaseThread(leader);
+	}
 }
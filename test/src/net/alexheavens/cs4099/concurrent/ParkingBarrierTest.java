@@ -0,0 +1,242 @@
+package net.alexheavens.cs4099.concurrent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class ParkingBarrierTest {
+
+	private MockLeaderBarrierThread[] otherThreads;
+	private MockLeaderBarrierThread leader;
+	private ParkingBarrier barrier;
+	private static final int FOLLOWER_THRESHOLD = 200;
+	private static final int TOTAL_THREADS = FOLLOWER_THRESHOLD + 100;
+
+	@Before
+	public void setup() {
+		leader = new MockLeaderBarrierThread();
+		barrier = new ParkingBarrier(leader, FOLLOWER_THRESHOLD);
+		leader.setBarrier(barrier);
+		otherThreads = new MockLeaderBarrierThread[TOTAL_THREADS];
+		for (int i = 0; i < otherThreads.length; i++) {
+			otherThreads[i] = new MockLeaderBarrierThread();
+			otherThreads[i].setBarrier(barrier);
+		}
+	}
+
+	@Test
+	/**
+	 * Test that the constructor of the barrier correctly initialises its state.
+	 */
+	public void testCreationValid() {
+		assertEquals(leader, barrier.getLeader());
+		assertEquals(FOLLOWER_THRESHOLD, barrier.getFollowerThreshold());
+		assertEquals(0, barrier.getNumberOfFollowers());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	/**
+	 * Tests that we cannot create a ParkingBarrier with a follower threshold
+	 * less than one.
+	 */
+	public void testInvalidFollowerThreshold() {
+		new ParkingBarrier(leader, 0);
+	}
+
+	@Test(timeout = 5000)
+	/**
+	 * Tests that followers can be resumed one at a time, each decrementing the
+	 * follower count.
+	 */
+	public void testFollowerResume() throws InterruptedException {
+		for (int i = 0; i < otherThreads.length; i++) {
+			otherThreads[i].start();
+		}
+
+		while (barrier.getNumberOfFollowers() < otherThreads.length) {
+		}
+		for (int i = 0; i < otherThreads.length; i++) {
+			assertTrue(barrier.containsThread(otherThreads[i]));
+		}
+
+		for (int i = 0; i < otherThreads.length; i++) {
+			barrier.notifyThread(otherThreads[i]);
+			assertEquals(otherThreads.length - i - 1,
+					barrier.getNumberOfFollowers());
+			otherThreads[i].join();
+			assertTrue(otherThreads[i].hasPassedBarrier());
+		}
+	}
+
+	@Test(timeout = 1000, expected = IllegalArgumentException.class)
+	/**
+	 * Test that we cannot attempt to resume the leader through notifyThread.
+	 */
+	public void testFollowerLeaderResume() {
+		barrier.notifyThread(leader);
+	}
+
+	@Test(timeout = 10000)
+	/**
+	 * Tests that a leader resumes only once the follower threshold is met.
+	 */
+	public void testLeaderResume() throws InterruptedException {
+		leader.start();
+		while (!barrier.containsThread(leader)) {
+		}
+
+		for (int i = 0; i < FOLLOWER_THRESHOLD - 1; i++) {
+			otherThreads[i].start();
+		}
+		while (barrier.getNumberOfFollowers() < FOLLOWER_THRESHOLD - 1) {
+		}
+		assertFalse(leader.hasPassedBarrier());
+
+		otherThreads[FOLLOWER_THRESHOLD - 1].start();
+		leader.join();
+		assertTrue(leader.hasPassedBarrier());
+	}
+
+	@Test(timeout = 5000)
+	/**
+	 * Tests that an interrupted follower leaves the barrier, and that it is
+	 * not resumed afterwards.
+	 */
+	public void testFollowerInterrupt() throws InterruptedException {
+		final MockLeaderBarrierThread follower = otherThreads[0];
+		follower.start();
+		while (!barrier.containsThread(follower)) {
+		}
+
+		follower.interrupt();
+		follower.join();
+		assertFalse(barrier.containsThread(follower));
+		assertEquals(0, barrier.getNumberOfFollowers());
+		barrier.notifyThread(follower);
+	}
+
+	@Test(timeout = 5000)
+	/**
+	 * Tests that a follower Thread that makes a call to
+	 * waitThreadUninterruptedly, cannot be interrupted.
+	 */
+	public void testFollowerWaitUninterruptedly() throws InterruptedException {
+		MockLeaderBarrierThread follower = new MockLeaderBarrierThread() {
+			public void run() {
+				barrier.waitThreadUnInterruptedly();
+				passedBarrier = true;
+			}
+		};
+		follower.setBarrier(barrier);
+		follower.start();
+		while (!barrier.containsThread(follower)) {
+		}
+
+		follower.interrupt();
+		Thread.sleep(50);
+		assertTrue(barrier.containsThread(follower));
+
+		barrier.notifyThread(follower);
+		follower.join();
+		assertTrue(follower.hasPassedBarrier());
+	}
+
+	@Test(timeout = 5000)
+	/**
+	 * Tests that all waiting followers can be resumed at once.
+	 */
+	public void testResumeAll() throws InterruptedException {
+		for (int i = 0; i < otherThreads.length; i++) {
+			otherThreads[i].start();
+		}
+		while (barrier.getNumberOfFollowers() < otherThreads.length) {
+		}
+
+		barrier.resumeAll();
+		assertEquals(0, barrier.getNumberOfFollowers());
+		for (int i = 0; i < otherThreads.length; i++) {
+			otherThreads[i].join();
+		}
+	}
+
+	@Test(timeout = 5000)
+	/**
+	 * Tests that releasing followers lowers the follower threshold, resuming
+	 * a leader once enough of the remaining followers are waiting.
+	 */
+	public void testReleaseThread() throws InterruptedException {
+		leader.start();
+		while (!barrier.containsThread(leader)) {
+		}
+
+		for (int i = 0; i < FOLLOWER_THRESHOLD - 2; i++) {
+			otherThreads[i].start();
+		}
+		while (barrier.getNumberOfFollowers() < FOLLOWER_THRESHOLD - 2) {
+		}
+
+		barrier.releaseThread(otherThreads[FOLLOWER_THRESHOLD - 2]);
+		assertEquals(FOLLOWER_THRESHOLD - 1, barrier.getFollowerThreshold());
+		assertFalse(leader.hasPassedBarrier());
+
+		barrier.releaseThread(otherThreads[FOLLOWER_THRESHOLD - 1]);
+		assertEquals(FOLLOWER_THRESHOLD - 2, barrier.getFollowerThreshold());
+		leader.join();
+		assertTrue(leader.hasPassedBarrier());
+	}
+
+	@Test(timeout = 5000, expected = IllegalArgumentException.class)
+	/**
+	 * Tests that a follower waiting at the barrier cannot be released.
+	 */
+	public void testReleaseWaitingThread() {
+		otherThreads[0].start();
+		while (!barrier.containsThread(otherThreads[0])) {
+		}
+		barrier.releaseThread(otherThreads[0]);
+	}
+
+	@Test(timeout = 5000)
+	/**
+	 * Tests that a follower resumed before it arrives at the barrier is
+	 * handed the resume once it waits.
+	 */
+	public void testNotifyBeforeWait() throws InterruptedException {
+		final MockLeaderBarrierThread follower = otherThreads[0];
+		Thread resumer = new Thread() {
+			public void run() {
+				barrier.notifyThread(follower);
+			}
+		};
+		resumer.start();
+		while (resumer.getState() != Thread.State.WAITING) {
+		}
+
+		follower.start();
+		resumer.join();
+		follower.join();
+		assertTrue(follower.hasPassedBarrier());
+		assertEquals(0, barrier.getNumberOfFollowers());
+	}
+
+	@Test(timeout = 5000)
+	/**
+	 * Tests that a released follower no longer holds a slot at the barrier.
+	 */
+	public void testReleaseForgetsSlot() throws InterruptedException {
+		final MockLeaderBarrierThread follower = otherThreads[0];
+		follower.start();
+		while (!barrier.containsThread(follower)) {
+		}
+		barrier.notifyThread(follower);
+		follower.join();
+		assertEquals(1, barrier.slotCount());
+
+		barrier.releaseThread(follower);
+		assertEquals(0, barrier.slotCount());
+		assertEquals(FOLLOWER_THRESHOLD - 1, barrier.getFollowerThreshold());
+	}
+}
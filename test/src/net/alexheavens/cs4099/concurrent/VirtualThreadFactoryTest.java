@@ -0,0 +1,60 @@
+package net.alexheavens.cs4099.concurrent;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import org.junit.Test;
+
+public class VirtualThreadFactoryTest {
+
+	@Test
+	/**
+	 * Test that platform Threads are never identified as virtual.
+	 */
+	public void testPlatformThreadNotVirtual() {
+		assertFalse(VirtualThreadFactory.isVirtual(new PlatformThreadFactory()
+				.newThread(new MockRunnable())));
+		assertFalse(VirtualThreadFactory.isVirtual(Thread.currentThread()));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	/**
+	 * Test that a factory cannot be created without carrier Threads.
+	 */
+	public void testInvalidCarrierCount() {
+		new VirtualThreadFactory(0);
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	/**
+	 * Test that creating a factory fails on runtimes without virtual Threads.
+	 */
+	public void testUnsupportedRuntime() {
+		assumeTrue(!VirtualThreadFactory.isSupported());
+		new VirtualThreadFactory();
+	}
+
+	@Test(timeout = 5000)
+	/**
+	 * Test that the factory creates virtual Threads that run to completion.
+	 */
+	public void testCreateVirtualThread() throws InterruptedException {
+		assumeTrue(VirtualThreadFactory.isSupported());
+		final MockRunnable runnable = new MockRunnable();
+		final Thread thread = new VirtualThreadFactory().newThread(runnable);
+		assertTrue(VirtualThreadFactory.isVirtual(thread));
+		thread.start();
+		thread.join();
+		assertTrue(runnable.hasRun);
+	}
+
+	private static class MockRunnable implements Runnable {
+
+		private volatile boolean hasRun = false;
+
+		public void run() {
+			hasRun = true;
+		}
+	}
+}
@@ -0,0 +1,133 @@
+package net.alexheavens.cs4099.network;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import net.alexheavens.cs4099.network.configuration.NetworkConfig;
+import net.alexheavens.cs4099.network.configuration.NetworkConfigFactory;
+import net.alexheavens.cs4099.simulation.ExecutionMode;
+import net.alexheavens.cs4099.simulation.InvalidCallException;
+import net.alexheavens.cs4099.simulation.ProcessTimeout;
+import net.alexheavens.cs4099.simulation.SimulationRunner;
+import net.alexheavens.cs4099.simulation.SimulationState;
+import net.alexheavens.cs4099.usercode.MockEventScript;
+import net.alexheavens.cs4099.usercode.MockInstrumentingLoader;
+import net.alexheavens.cs4099.usercode.MockSpinEventScript;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class EventNodeTest {
+
+	private static final long TEST_SIM_LENGTH = 100;
+	private static final long TEST_TIMEOUT = 100000000;
+	private NetworkConfig treeConfig;
+	private Network eventNet;
+
+	@Before
+	public void setup() throws InstantiationException, IllegalAccessException {
+		treeConfig = new NetworkConfigFactory().createTreeNetwork(3, 5);
+		eventNet = new Network(MockEventScript.class, treeConfig, false);
+	}
+
+	@Test
+	/**
+	 * Test that event-driven scripts are given event-driven nodes.
+	 */
+	public void testNetworkCreatesEventNodes() {
+		for (Node node : eventNet.nodes()) {
+			assertTrue(node instanceof EventNode);
+		}
+	}
+
+	@Test(timeout = 5000)
+	/**
+	 * Test that paused event-driven scripts are woken, and that each message
+	 * sent is delivered once the script is no longer paused.
+	 */
+	public void testSimulateEventScripts() {
+		new SimulationRunner(eventNet, TEST_SIM_LENGTH).simulate();
+		assertScriptsCompleted();
+	}
+
+	@Test(timeout = 5000)
+	/**
+	 * Test that event-driven scripts invoked on a work-stealing pool receive
+	 * the same messages and wakes.
+	 */
+	public void testSimulateEventScriptsWorkStealing() {
+		new SimulationRunner(eventNet, TEST_SIM_LENGTH, null, 0,
+				ExecutionMode.WORK_STEALING).simulate();
+		assertScriptsCompleted();
+	}
+
+	private void assertScriptsCompleted() {
+		for (Node node : eventNet.nodes()) {
+			MockEventScript script = (MockEventScript) node.getScript();
+			assertTrue(script.visited());
+			assertEquals(node.neighbourCount(), script.receivedCount());
+			assertEquals(MockEventScript.DEFAULT_PAUSE_COUNT, script.wakeCount());
+			assertEquals(SimulationState.POST_SIMULATION,
+					node.getSimulationState());
+		}
+	}
+
+	@Test(timeout = 10000)
+	/**
+	 * Test that an event-driven script looping forever is cancelled once
+	 * timed out, leaving the shared workers to invoke every other node.
+	 */
+	public void testTimeoutCancelsInvocation() throws Exception {
+		Network spinNet = new Network(MockInstrumentingLoader
+				.instrument(MockSpinEventScript.class), treeConfig, true);
+		SimulationRunner runner = new SimulationRunner(spinNet,
+				TEST_SIM_LENGTH, null, TEST_TIMEOUT);
+		runner.simulate();
+
+		assertEquals(1, runner.recording().timeouts().size());
+		ProcessTimeout timeout = runner.recording().timeouts().get(0);
+		for (Node node : spinNet.nodes()) {
+			assertEquals(SimulationState.POST_SIMULATION,
+					node.getSimulationState());
+			if (node.isInitiator()) {
+				assertEquals(node.getSimulationId(), timeout.simulationId());
+				continue;
+			}
+
+			// The instrumented copy of the script is loaded apart from the
+			// script itself, so is not cast to it.
+			Object script = node.getScript();
+			assertEquals(MockEventScript.DEFAULT_PAUSE_COUNT, script.getClass()
+					.getMethod("wakeCount").invoke(script));
+		}
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	/**
+	 * Test that event-driven scripts cannot be timed out unless they count
+	 * their back edges, as their workers are never stopped.
+	 */
+	public void testTimeoutUninstrumented() {
+		new SimulationRunner(eventNet, TEST_SIM_LENGTH, null, TEST_TIMEOUT);
+	}
+
+	@Test(expected = InvalidCallException.class)
+	/**
+	 * Test that event-driven nodes cannot block on receive.
+	 */
+	public void testReceiveInvalid() {
+		eventNet.nodes().get(0).receive();
+	}
+
+	@Test
+	/**
+	 * Test that event-driven nodes are never given a Thread of their own.
+	 */
+	public void testEventNodesNotThreaded() {
+		for (Node node : eventNet.nodes()) {
+			assertFalse(node instanceof ThreadedNode);
+			assertFalse(node instanceof Runnable);
+		}
+	}
+}
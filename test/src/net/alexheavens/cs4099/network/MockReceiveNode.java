@@ -4,13 +4,13 @@ public class MockReceiveNode extends MockUserNode {
 
 	protected IMessageImpl<?> recMessage = null;
 	protected int nMessagesRead = 1;
-	protected INode recNode = null;
+	protected ILinkEndpoint recNode = null;
 
 	public MockReceiveNode(int id) {
 		super(id);
 	}
 
-	public void setRecNode(INode node) {
+	public void setRecNode(ILinkEndpoint node) {
 		recNode = node;
 	}
 
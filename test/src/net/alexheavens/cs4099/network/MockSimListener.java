@@ -0,0 +1,38 @@
+package net.alexheavens.cs4099.network;
+
+import java.util.ArrayList;
+
+import net.alexheavens.cs4099.simulation.ISimulationEvent;
+import net.alexheavens.cs4099.simulation.ISimulationEventListener;
+
+public class MockSimListener implements ISimulationEventListener {
+
+	protected ArrayList<ISimulationEvent> updates;
+	private ISimulationEvent lastUpdate;
+	private int updateCount;
+
+	public MockSimListener() {
+		lastUpdate = null;
+		updateCount = 0;
+		updates = new ArrayList<ISimulationEvent>();
+	}
+
+	public void eventRaised(ISimulationEvent update) {
+		lastUpdate = update;
+		updates.add(update);
+		updateCount++;
+	}
+
+	public ISimulationEvent lastUpdate() {
+		return lastUpdate;
+	}
+
+	public int updateCount() {
+		return updateCount;
+	}
+
+	public ISimulationEvent getUpdate(int i) {
+		return updates.get(i);
+	}
+
+}
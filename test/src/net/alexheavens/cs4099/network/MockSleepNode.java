@@ -2,7 +2,7 @@ package net.alexheavens.cs4099.network;
 
 import net.alexheavens.cs4099.usercode.NodeScript;
 
-public class MockSleepNode extends Node {
+public class MockSleepNode extends ThreadedNode {
 
 	private final static long SLEEP_TIME = 1000;
 
@@ -2,11 +2,12 @@ package net.alexheavens.cs4099.network;
 
 import net.alexheavens.cs4099.concurrent.WaitRegistrar;
 import net.alexheavens.cs4099.network.Node;
+import net.alexheavens.cs4099.simulation.ISimulationEvent;
 import net.alexheavens.cs4099.simulation.SimulationProfiler;
 import net.alexheavens.cs4099.simulation.SimulationState;
 import net.alexheavens.cs4099.usercode.NodeScript;
 
-public class MockUserNode extends Node {
+public class MockUserNode extends ThreadedNode {
 
 	private static final int N_NODES = 100;
 
@@ -52,9 +53,8 @@ public class MockUserNode extends Node {
 		return setupCount;
 	}
 
-	public void triggerEvent(Object event) {
-		setChanged();
-		notifyObservers(event);
+	public void triggerEvent(ISimulationEvent event) {
+		raiseEventImmediately(event);
 	}
 
 	public void setSimulationState(SimulationState simulating) {
@@ -103,8 +103,8 @@ public class NetworkConfigFactoryTest {
 
 		// Check that the centre of the tree is the right length from all
 		// leaves.
-		for (Iterator<INode> it = centreNode.neighbours(); it.hasNext();) {
-			INode node = it.next();
+		for (Iterator<ILinkEndpoint> it = centreNode.neighbours(); it.hasNext();) {
+			INode node = (INode) it.next();
 			testLeafDistance(N_GENERATIONS - 1, node, centreNode);
 		}
 	}
@@ -113,8 +113,8 @@ public class NetworkConfigFactoryTest {
 		if (remLinks == 0 && node.neighbourCount() != 1) {
 			fail("Distance from the centre of the tree is not uniform.");
 		} else {
-			for (Iterator<INode> it = node.neighbours(); it.hasNext();) {
-				INode next = it.next();
+			for (Iterator<ILinkEndpoint> it = node.neighbours(); it.hasNext();) {
+				INode next = (INode) it.next();
 				if (next != from)
 					testLeafDistance(remLinks - 1, next, node);
 			}
@@ -0,0 +1,265 @@
+package net.alexheavens.cs4099.network;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import net.alexheavens.cs4099.network.configuration.ILinkConfig;
+import net.alexheavens.cs4099.network.configuration.LinkConfig;
+import net.alexheavens.cs4099.network.configuration.NetworkConfig;
+import net.alexheavens.cs4099.network.configuration.NetworkConfigFactory;
+import net.alexheavens.cs4099.network.configuration.NetworkPartition;
+import net.alexheavens.cs4099.network.configuration.NetworkPartitioner;
+
+import org.junit.Test;
+
+public class NetworkPartitionerTest {
+
+	/*
+	 * A square grid whose nodes are numbered in a random order, so that
+	 * consecutive IDs are rarely neighbours.
+	 */
+	private List<ILinkConfig> scrambledGrid(int side, long seed) {
+		final List<Integer> ids = new ArrayList<Integer>();
+		for (int i = 0; i < side * side; i++)
+			ids.add(i);
+		Collections.shuffle(ids, new Random(seed));
+
+		final List<ILinkConfig> links = new ArrayList<ILinkConfig>();
+		for (int row = 0; row < side; row++) {
+			for (int col = 0; col < side; col++) {
+				final int node = ids.get(row * side + col);
+				if (col + 1 < side)
+					links.add(new LinkConfig(node, ids.get(row * side + col
+							+ 1), 1));
+				if (row + 1 < side)
+					links.add(new LinkConfig(node, ids.get((row + 1) * side
+							+ col), 1));
+			}
+		}
+		return links;
+	}
+
+	private int[] blockAssignment(int nodeCount, int partitions) {
+		final int[] partitionOf = new int[nodeCount];
+		for (int id = 0; id < nodeCount; id++)
+			partitionOf[id] = (int) ((long) id * partitions / nodeCount);
+		return partitionOf;
+	}
+
+	@Test
+	/**
+	 * Tests that every partition holds nodes, and none holds much more than
+	 * its share, across several topologies and numbers of partitions.
+	 */
+	public void testPartitionsBalanced() {
+		final NetworkConfigFactory factory = new NetworkConfigFactory();
+		final NetworkConfig[] configs = { factory.createTreeNetwork(4, 4),
+				factory.createCompleteGraph(40), new NetworkConfig(50) };
+		for (NetworkConfig config : configs) {
+			for (int partitions : new int[] { 1, 2, 3, 7 }) {
+				final NetworkPartition partition = new NetworkPartitioner(
+						partitions).partition(config);
+				assertEquals(partitions, partition.partitionCount());
+				assertEquals(config.nodeCount(), partition.nodeCount());
+
+				final int mean = (config.nodeCount() + partitions - 1)
+						/ partitions;
+				final int maxSize = Math.max(mean, (int) Math
+						.floor((double) config.nodeCount() / partitions
+								* (1 + NetworkPartitioner.DEFAULT_IMBALANCE)));
+				int total = 0;
+				for (int size : partition.partitionSizes()) {
+					assertTrue(size > 0);
+					assertTrue(size <= maxSize);
+					total += size;
+				}
+				assertEquals(config.nodeCount(), total);
+			}
+		}
+	}
+
+	@Test
+	/**
+	 * Tests that a ring is cut at its two slowest links.
+	 */
+	public void testCutsSlowestLinks() {
+		final int nodes = 20;
+		final NetworkConfig config = new NetworkConfig(nodes);
+		for (int i = 0; i < nodes; i++) {
+			final long latency = (i == 4 || i == 14) ? 10 : 1;
+			config.addLink(new LinkConfig(i, (i + 1) % nodes, latency));
+		}
+
+		final NetworkPartition partition = new NetworkPartitioner(2)
+				.partition(config);
+		assertEquals(2, partition.cutLinkCount());
+		assertEquals(0.2, partition.cutWeight(), 1e-9);
+		assertEquals(10, partition.minimumCutLatency());
+		assertEquals(1.0, partition.imbalance(), 1e-9);
+		assertEquals(0.1, partition.cutFraction(), 1e-9);
+	}
+
+	@Test
+	/**
+	 * Tests that two cliques joined by a single link are divided at that link.
+	 */
+	public void testSeparatesClusters() {
+		final int cliqueSize = 12;
+		final NetworkConfig config = new NetworkConfig(cliqueSize * 2);
+		for (int clique = 0; clique < 2; clique++) {
+			for (int a = 0; a < cliqueSize; a++) {
+				for (int b = a + 1; b < cliqueSize; b++) {
+
+					// Interleave the cliques' IDs.
+					config.addLink(new LinkConfig(a * 2 + clique, b * 2
+							+ clique, 1));
+				}
+			}
+		}
+		config.addLink(new LinkConfig(0, 1, 5));
+
+		final NetworkPartition partition = new NetworkPartitioner(2)
+				.partition(config);
+		assertEquals(1, partition.cutLinkCount());
+		assertEquals(5, partition.minimumCutLatency());
+		for (int node = 0; node < cliqueSize * 2; node++)
+			assertEquals(partition.partitionOf(node % 2), partition
+					.partitionOf(node));
+	}
+
+	@Test
+	/**
+	 * Tests that a large network, coarsened before it is divided, is cut far
+	 * less than by dividing its IDs into blocks.
+	 */
+	public void testBetterThanBlocks() {
+		final int side = 40;
+		final List<ILinkConfig> links = scrambledGrid(side, 4099);
+		for (int partitions : new int[] { 2, 4, 8 }) {
+			final NetworkPartition partition = new NetworkPartitioner(
+					partitions).partition(side * side, links);
+			final NetworkPartition blocks = new NetworkPartition(partitions,
+					blockAssignment(side * side, partitions), links);
+			assertTrue(partition.cutLinkCount() * 4 < blocks.cutLinkCount());
+			assertTrue(partition.imbalance() <= 1 + NetworkPartitioner.DEFAULT_IMBALANCE);
+		}
+	}
+
+	@Test
+	/**
+	 * Tests that the order in which links are given does not change the
+	 * partitions.
+	 */
+	public void testDeterministic() {
+		final int side = 20;
+		final List<ILinkConfig> links = scrambledGrid(side, 1);
+		final int[] expected = new NetworkPartitioner(5).partition(
+				side * side, links).assignment();
+		for (long seed = 0; seed < 3; seed++) {
+			Collections.shuffle(links, new Random(seed));
+			assertArrayEquals(expected, new NetworkPartitioner(5).partition(
+					side * side, links).assignment());
+		}
+	}
+
+	@Test
+	/**
+	 * Tests the measures of a given division of nodes.
+	 */
+	public void testPartitionMeasures() {
+		final List<ILinkConfig> links = new ArrayList<ILinkConfig>();
+		links.add(new LinkConfig(0, 1, 1));
+		links.add(new LinkConfig(1, 2, 2));
+		links.add(new LinkConfig(2, 3, 4));
+		links.add(new LinkConfig(3, 0, 1));
+
+		final NetworkPartition partition = new NetworkPartition(2, new int[] {
+				0, 0, 1, 0 }, links);
+		assertArrayEquals(new int[] { 3, 1 }, partition.partitionSizes());
+		assertEquals(2, partition.cutLinkCount());
+		assertEquals(0.5, partition.cutFraction(), 1e-9);
+		assertEquals(0.75, partition.cutWeight(), 1e-9);
+		assertEquals(2, partition.minimumCutLatency());
+		assertEquals(1.5, partition.imbalance(), 1e-9);
+
+		final NetworkPartition whole = new NetworkPartition(1, new int[4],
+				links);
+		assertEquals(0, whole.cutLinkCount());
+		assertEquals(Long.MAX_VALUE, whole.minimumCutLatency());
+	}
+
+	@Test
+	/**
+	 * Tests the nodes and lookahead of each partition of a division made from
+	 * an assignment alone.
+	 */
+	public void testFromAssignment() {
+		final List<ILinkConfig> links = new ArrayList<ILinkConfig>();
+		for (int i = 0; i < 6; i++)
+			links.add(new LinkConfig(i, (i + 1) % 6, i + 1));
+
+		final NetworkPartition partition = NetworkPartition.fromAssignment(6,
+				new int[] { 1, 1, 0, 0, 2, 1 }, links);
+		assertEquals(3, partition.partitionCount());
+		assertArrayEquals(new int[] { 2, 3 }, partition.members(0));
+		assertArrayEquals(new int[] { 0, 1, 5 }, partition.members(1));
+		assertArrayEquals(new int[] { 4 }, partition.members(2));
+
+		// Links 1-2 (2), 3-4 (4) and 4-5 (5) are cut.
+		assertEquals(2, partition.minimumCutLatency());
+		assertEquals(2, partition.minimumCutLatency(0));
+		assertEquals(2, partition.minimumCutLatency(1));
+		assertEquals(4, partition.minimumCutLatency(2));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testAssignmentMissingNode() {
+		NetworkPartition.fromAssignment(4, new int[3],
+				new ArrayList<ILinkConfig>());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testAssignmentNegativePartition() {
+		NetworkPartition.fromAssignment(3, new int[] { 0, -1, 0 },
+				new ArrayList<ILinkConfig>());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testAssignmentEmptyPartition() {
+		NetworkPartition.fromAssignment(3, new int[] { 0, 2, 0 },
+				new ArrayList<ILinkConfig>());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testMembersOfMissingPartition() {
+		NetworkPartition.fromAssignment(3, new int[3],
+				new ArrayList<ILinkConfig>()).members(1);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testEmptyPartition() {
+		new NetworkPartition(3, new int[] { 0, 1, 0, 1 },
+				new ArrayList<ILinkConfig>());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testTooManyPartitions() {
+		new NetworkPartitioner(5).partition(new NetworkConfig(4));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidPartitionCount() {
+		new NetworkPartitioner(0);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnknownLinkTarget() {
+		final List<ILinkConfig> links = new ArrayList<ILinkConfig>();
+		links.add(new LinkConfig(0, 4, 1));
+		new NetworkPartitioner(2).partition(4, links);
+	}
+}
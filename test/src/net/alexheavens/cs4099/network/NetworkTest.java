@@ -182,44 +182,44 @@ public class NetworkTest {
 		for (INode node : testNet.nodes()) {
 			switch (node.getSimulationId()) {
 			case 0:
-				for (Iterator<INode> it = node.neighbours(); it.hasNext();) {
-					INode neighbour = it.next();
+				for (Iterator<ILinkEndpoint> it = node.neighbours(); it.hasNext();) {
+					ILinkEndpoint neighbour = it.next();
 					assertTrue(neighbour.getSimulationId() == 1
 							|| neighbour.getSimulationId() == 3);
 				}
 				break;
 			case 1:
-				for (Iterator<INode> it = node.neighbours(); it.hasNext();) {
-					INode neighbour = it.next();
+				for (Iterator<ILinkEndpoint> it = node.neighbours(); it.hasNext();) {
+					ILinkEndpoint neighbour = it.next();
 					assertTrue(neighbour.getSimulationId() == 0
 							|| neighbour.getSimulationId() == 2
 							|| neighbour.getSimulationId() == 3);
 				}
 				break;
 			case 2:
-				for (Iterator<INode> it = node.neighbours(); it.hasNext();) {
-					INode neighbour = it.next();
+				for (Iterator<ILinkEndpoint> it = node.neighbours(); it.hasNext();) {
+					ILinkEndpoint neighbour = it.next();
 					assertTrue(neighbour.getSimulationId() == 1);
 				}
 				break;
 			case 3:
-				for (Iterator<INode> it = node.neighbours(); it.hasNext();) {
-					INode neighbour = it.next();
+				for (Iterator<ILinkEndpoint> it = node.neighbours(); it.hasNext();) {
+					ILinkEndpoint neighbour = it.next();
 					assertTrue(neighbour.getSimulationId() == 0
 							|| neighbour.getSimulationId() == 1
 							|| neighbour.getSimulationId() == 4);
 				}
 				break;
 			case 4:
-				for (Iterator<INode> it = node.neighbours(); it.hasNext();) {
-					INode neighbour = it.next();
+				for (Iterator<ILinkEndpoint> it = node.neighbours(); it.hasNext();) {
+					ILinkEndpoint neighbour = it.next();
 					assertTrue(neighbour.getSimulationId() == 5
 							|| neighbour.getSimulationId() == 3);
 				}
 				break;
 			case 5:
-				for (Iterator<INode> it = node.neighbours(); it.hasNext();) {
-					INode neighbour = it.next();
+				for (Iterator<ILinkEndpoint> it = node.neighbours(); it.hasNext();) {
+					ILinkEndpoint neighbour = it.next();
 					assertTrue(neighbour.getSimulationId() == 4);
 				}
 				break;
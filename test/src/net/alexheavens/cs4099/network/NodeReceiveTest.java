@@ -26,13 +26,13 @@ public class NodeReceiveTest {
 	private MockUserNode testNeighbour;
 	private ILinkImpl testNeighbourLink;
 	private MockUserNode[] testNeighbours;
-	private MockSimObserver testObserver;
+	private MockSimListener testListener;
 	private LeaderBarrier leaderBarrier;
 	private SimulationProfiler simProfiler;
 
 	@Before
 	/**
-	 * Before all tests, create a node with some neighbours and an observer.
+	 * Before all tests, create a node with some neighbours and a listener.
 	 */
 	public void setup() {
 
@@ -48,9 +48,9 @@ public class NodeReceiveTest {
 			testNode.addNeighbour(testNeighbours[i], 1);
 		}
 
-		// Create an Observer to test for event raising.
-		testObserver = new MockSimObserver();
-		testNode.addObserver(testObserver);
+		// Create a listener to test for event raising.
+		testListener = new MockSimListener();
+		testNode.addEventListener(testListener);
 
 		// Create a leader barrier to pause nodes at.
 		leaderBarrier = new LeaderBarrier(Thread.currentThread(), nextId);
@@ -128,10 +128,9 @@ public class NodeReceiveTest {
 		assertNull(testNode.expectedSender);
 
 		// Check that a read event is raised.
-		assertEquals(1, testObserver.updateCount());
-		assertEquals(testNode, testObserver.lastObservable());
-		assertTrue(testObserver.lastUpdate() instanceof MessageReadEvent);
-		MessageReadEvent readEvent = (MessageReadEvent) testObserver
+		assertEquals(1, testListener.updateCount());
+		assertTrue(testListener.lastUpdate() instanceof MessageReadEvent);
+		MessageReadEvent readEvent = (MessageReadEvent) testListener
 				.lastUpdate();
 		assertEquals(messages[0], readEvent.message());
 		assertEquals(ISimulationEvent.CURRENT_TIMESTEP, readEvent.getTimestep());
@@ -154,9 +153,9 @@ public class NodeReceiveTest {
 		}
 
 		// Check that a block event was raised.
-		assertEquals(1, testObserver.updateCount());
-		assertTrue(testObserver.getUpdate(0) instanceof NodeReceiveBlockEvent);
-		NodeReceiveBlockEvent blockEvent = (NodeReceiveBlockEvent) testObserver
+		assertEquals(1, testListener.updateCount());
+		assertTrue(testListener.getUpdate(0) instanceof NodeReceiveBlockEvent);
+		NodeReceiveBlockEvent blockEvent = (NodeReceiveBlockEvent) testListener
 				.getUpdate(0);
 		assertEquals(testNode, blockEvent.node());
 		assertEquals(ISimulationEvent.CURRENT_TIMESTEP,
@@ -179,13 +178,13 @@ public class NodeReceiveTest {
 		// Check that the messages caused arrival events and that the node was
 		// resumed.
 
-		assertEquals(3, testObserver.updateCount());
+		assertEquals(3, testListener.updateCount());
 
 		boolean resumeEventOccurred = false;
 		IMessageImpl<?> readMessage = null;
 		for (int i = 1; i < 3; i++) {
-			if (testObserver.getUpdate(i) instanceof NodeReceiveBlockResumeEvent) {
-				NodeReceiveBlockResumeEvent unblockEvent = (NodeReceiveBlockResumeEvent) testObserver
+			if (testListener.getUpdate(i) instanceof NodeReceiveBlockResumeEvent) {
+				NodeReceiveBlockResumeEvent unblockEvent = (NodeReceiveBlockResumeEvent) testListener
 						.getUpdate(i);
 				if (resumeEventOccurred)
 					fail("More than one receive event.");
@@ -194,8 +193,8 @@ public class NodeReceiveTest {
 				assertEquals(testNode, unblockEvent.node());
 				assertEquals(ISimulationEvent.CURRENT_TIMESTEP,
 						unblockEvent.getTimestep());
-			} else if (testObserver.getUpdate(i) instanceof MessageReadEvent) {
-				MessageReadEvent readEvent = (MessageReadEvent) testObserver
+			} else if (testListener.getUpdate(i) instanceof MessageReadEvent) {
+				MessageReadEvent readEvent = (MessageReadEvent) testListener
 						.getUpdate(i);
 				if (readMessage != null)
 					fail("More than one message read event.");
@@ -241,27 +240,27 @@ public class NodeReceiveTest {
 
 		// We expect a receive block event, receive
 		// unblock and message read event, in that order.
-		assertEquals(3, testObserver.updateCount());
-		assertTrue(testObserver.getUpdate(0) instanceof NodeReceiveBlockEvent);
+		assertEquals(3, testListener.updateCount());
+		assertTrue(testListener.getUpdate(0) instanceof NodeReceiveBlockEvent);
 
 		// ReceiveBlockEvent.
-		NodeReceiveBlockEvent blockEvent = (NodeReceiveBlockEvent) testObserver
+		NodeReceiveBlockEvent blockEvent = (NodeReceiveBlockEvent) testListener
 				.getUpdate(0);
 		assertEquals(testNode, blockEvent.node());
 		assertEquals(ISimulationEvent.CURRENT_TIMESTEP,
 				blockEvent.getTimestep());
 
 		// Unblock event.
-		assertTrue(testObserver.getUpdate(1) instanceof NodeReceiveBlockResumeEvent);
-		NodeReceiveBlockResumeEvent unblockEvent = (NodeReceiveBlockResumeEvent) testObserver
+		assertTrue(testListener.getUpdate(1) instanceof NodeReceiveBlockResumeEvent);
+		NodeReceiveBlockResumeEvent unblockEvent = (NodeReceiveBlockResumeEvent) testListener
 				.getUpdate(1);
 		assertEquals(testNode, unblockEvent.node());
 		assertEquals(ISimulationEvent.CURRENT_TIMESTEP,
 				blockEvent.getTimestep());
 
 		// MessageRead event.
-		assertTrue(testObserver.getUpdate(2) instanceof MessageReadEvent);
-		MessageReadEvent readEvent = (MessageReadEvent) testObserver
+		assertTrue(testListener.getUpdate(2) instanceof MessageReadEvent);
+		MessageReadEvent readEvent = (MessageReadEvent) testListener
 				.getUpdate(2);
 		assertEquals(message, readEvent.message());
 		assertEquals(ISimulationEvent.CURRENT_TIMESTEP, readEvent.getTimestep());
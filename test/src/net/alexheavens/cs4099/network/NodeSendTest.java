@@ -18,15 +18,15 @@ import org.junit.Test;
 public class NodeSendTest {
 
 	private MockUserNode testNode, testNeighbour;
-	private MockSimObserver testObserver;
+	private MockSimListener testListener;
 
 	@Before
 	public void setup() {
 		testNode = new MockUserNode(0);
 		testNeighbour = new MockUserNode(1);
 		testNode.addNeighbour(testNeighbour, 1);
-		testObserver = new MockSimObserver();
-		testNode.addObserver(testObserver);
+		testListener = new MockSimListener();
+		testNode.addEventListener(testListener);
 	}
 
 	@Test
@@ -44,10 +44,9 @@ public class NodeSendTest {
 		testNode.send(testNeighbour, testMessage);
 
 		// Check that the event was raised correctly.
-		assertEquals(1, testObserver.updateCount());
-		assertEquals(testNode, testObserver.lastObservable());
-		assertTrue(testObserver.lastUpdate() instanceof MessageSentEvent);
-		MessageSentEvent event = (MessageSentEvent) testObserver.lastUpdate();
+		assertEquals(1, testListener.updateCount());
+		assertTrue(testListener.lastUpdate() instanceof MessageSentEvent);
+		MessageSentEvent event = (MessageSentEvent) testListener.lastUpdate();
 		assertEquals(ISimulationEvent.CURRENT_TIMESTEP, event.getTimestep());
 		assertFalse(testMessage == event.message());
 		StringMessage message = (StringMessage) event.message();
@@ -76,8 +75,8 @@ public class NodeSendTest {
 	public void testSendAll() {
 
 		testNode = new MockUserNode(0);
-		testObserver = new MockSimObserver();
-		testNode.addObserver(testObserver);
+		testListener = new MockSimListener();
+		testNode.addEventListener(testListener);
 
 		final int nNodes = 100;
 		MockUserNode[] neighbours = new MockUserNode[nNodes];
@@ -93,14 +92,13 @@ public class NodeSendTest {
 		testNode.simState = SimulationState.SIMULATING;
 		testNode.sendAll(testMessage);
 
-		assertEquals(testNode.neighbourCount(), testObserver.updateCount());
-		assertEquals(testNode, testObserver.lastObservable());
+		assertEquals(testNode.neighbourCount(), testListener.updateCount());
 
 		HashSet<IMessage<?>> received = new HashSet<IMessage<?>>(
 				testNode.neighbourCount());
 
-		for (int i = 0; i < testObserver.updateCount(); i++) {
-			Object event = testObserver.getUpdate(i);
+		for (int i = 0; i < testListener.updateCount(); i++) {
+			Object event = testListener.getUpdate(i);
 			assertTrue(event instanceof MessageSentEvent);
 			MessageSentEvent sentEvent = (MessageSentEvent) event;
 			assertEquals(ISimulationEvent.CURRENT_TIMESTEP,
@@ -122,17 +120,17 @@ public class NodeSendTest {
 		final String testData = "TEST_DATA";
 		StringMessage testMessage = new StringMessage(testTag, testData);
 
-		testNeighbour.addObserver(testObserver);
+		testNeighbour.addEventListener(testListener);
 
 		testNode.simState = SimulationState.SIMULATING;
 		testNode.send(testNeighbour, testMessage);
 
-		StringMessage receivedMessage = (StringMessage) ((MessageEvent) testObserver
+		StringMessage receivedMessage = (StringMessage) ((MessageEvent) testListener
 				.lastUpdate()).message();
 		testNeighbour.simState = SimulationState.SIMULATING;
 		testNeighbour.send(testNode, receivedMessage);
 
-		StringMessage returnMessage = (StringMessage) ((MessageEvent) testObserver
+		StringMessage returnMessage = (StringMessage) ((MessageEvent) testListener
 				.lastUpdate()).message();
 		assertEquals(testMessage.getData(), returnMessage.getData());
 		assertEquals(testMessage.getTag(), returnMessage.getTag());
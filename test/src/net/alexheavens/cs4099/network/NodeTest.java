@@ -2,8 +2,10 @@ package net.alexheavens.cs4099.network;
 
 import static org.junit.Assert.*;
 import net.alexheavens.cs4099.concurrent.LeaderBarrier;
+import net.alexheavens.cs4099.concurrent.PlatformThreadFactory;
 import net.alexheavens.cs4099.simulation.ColourChangeEvent;
 import net.alexheavens.cs4099.simulation.ISimulationEvent;
+import net.alexheavens.cs4099.simulation.ISimulationEventListener;
 import net.alexheavens.cs4099.simulation.MockSimEvent;
 import net.alexheavens.cs4099.simulation.NodePauseEvent;
 import net.alexheavens.cs4099.simulation.SimulationProfiler;
@@ -14,9 +16,12 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.awt.Color;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
 
 public class NodeTest {
 
@@ -24,7 +29,7 @@ public class NodeTest {
 	private MockUserNode testNode;
 	private MockUserNode[] otherNodes;
 	private LeaderBarrier leaderBarrier;
-	private MockSimObserver observer;
+	private MockSimListener listener;
 	private SimulationProfiler simProfiler;
 
 	@Before
@@ -39,8 +44,8 @@ public class NodeTest {
 			otherNodes[i].setSimulationId(nextId++, 0);
 		}
 
-		observer = new MockSimObserver();
-		testNode.addObserver(observer);
+		listener = new MockSimListener();
+		testNode.addEventListener(listener);
 		leaderBarrier = new LeaderBarrier(Thread.currentThread(), nextId);
 		simProfiler = new SimulationProfiler(nextId);
 	}
@@ -53,7 +58,7 @@ public class NodeTest {
 		// Test that the node is empty.
 		assertEquals(INodeImpl.INIT_MACHINE_ID, testLocalNode.getSimulationId());
 		assertEquals(0, testLocalNode.neighbourCount());
-		Iterator<INode> it = testLocalNode.neighbours();
+		Iterator<ILinkEndpoint> it = testLocalNode.neighbours();
 		assertFalse(it.hasNext());
 	}
 
@@ -67,13 +72,13 @@ public class NodeTest {
 		}
 
 		// Test that all the neighbours are contained.
-		Iterator<INode> it = testNode.neighbours();
-		Set<INode> addedNodes = new HashSet<INode>();
-		for (INode n : otherNodes)
+		Iterator<ILinkEndpoint> it = testNode.neighbours();
+		Set<ILinkEndpoint> addedNodes = new HashSet<ILinkEndpoint>();
+		for (ILinkEndpoint n : otherNodes)
 			addedNodes.add(n);
 
 		while (it.hasNext()) {
-			INode n = it.next();
+			ILinkEndpoint n = it.next();
 			assertTrue(addedNodes.contains(n));
 		}
 
@@ -165,29 +170,89 @@ public class NodeTest {
 	@Test
 	/**
 	 * Tests that an event caused within a <code>Node</code> is correctly passed
-	 * to an observer.
+	 * to a listener.
 	 * 
 	 * This is needed to ensure easy scheduling of
 	 * <code>ISimulationEvents</code> with an <code>IEventController</code>.
 	 */
 	public void testRaiseEvent() {
 
-		// Create an observer and prepare to update it with an event.
+		// Create a listener and prepare to update it with an event.
 		MockSimEvent event = new MockSimEvent(ISimulationEvent.CURRENT_TIMESTEP);
-		MockSimObserver observer = new MockSimObserver();
-		testNode.addObserver(observer);
+		MockSimListener listener = new MockSimListener();
+		testNode.addEventListener(listener);
 
 		// Check that no event has been observed yet.
-		assertEquals(0, observer.updateCount());
-		assertNull(observer.lastObservable());
-		assertNull(observer.lastUpdate());
+		assertEquals(0, listener.updateCount());
+		assertNull(listener.lastUpdate());
 
 		testNode.raiseEvent(event);
 
 		// Check that the event was observed.
-		assertEquals(1, observer.updateCount());
-		assertEquals(testNode, observer.lastObservable());
-		assertEquals(event, observer.lastUpdate());
+		assertEquals(1, listener.updateCount());
+		assertEquals(event, listener.lastUpdate());
+	}
+
+	@Test
+	/**
+	 * Tests that raised events are passed to every listener.
+	 */
+	public void testRaiseEventToListener() {
+		final List<ISimulationEvent> heard = new ArrayList<ISimulationEvent>();
+		testNode.addEventListener(new ISimulationEventListener() {
+			public void eventRaised(ISimulationEvent event) {
+				heard.add(event);
+			}
+		});
+		MockSimEvent event = new MockSimEvent(ISimulationEvent.CURRENT_TIMESTEP);
+
+		testNode.raiseEvent(event);
+
+		assertEquals(2, testNode.eventListenerCount());
+		assertEquals(1, heard.size());
+		assertEquals(event, heard.get(0));
+		assertEquals(event, listener.lastUpdate());
+	}
+
+	@Test
+	/**
+	 * Tests that events raised whilst a node holds events are kept in its
+	 * outbox, in the order raised, rather than observed.
+	 */
+	public void testHoldEvents() {
+		MockSimEvent firstEvent = new MockSimEvent(
+				ISimulationEvent.CURRENT_TIMESTEP);
+		MockSimEvent secondEvent = new MockSimEvent(
+				ISimulationEvent.CURRENT_TIMESTEP);
+
+		testNode.holdEvents();
+		testNode.raiseEvent(firstEvent);
+		testNode.raiseEvent(secondEvent);
+
+		assertEquals(0, listener.updateCount());
+		assertEquals(firstEvent, testNode.pollOutbox());
+		assertEquals(secondEvent, testNode.pollOutbox());
+		assertNull(testNode.pollOutbox());
+	}
+
+	@Test
+	/**
+	 * Tests that an event raised immediately is observed after any events
+	 * already held in the outbox.
+	 */
+	public void testRaiseEventImmediately() {
+		MockSimEvent heldEvent = new MockSimEvent(
+				ISimulationEvent.CURRENT_TIMESTEP);
+		MockSimEvent immediateEvent = new MockSimEvent(
+				ISimulationEvent.CURRENT_TIMESTEP);
+
+		testNode.holdEvents();
+		testNode.raiseEvent(heldEvent);
+		testNode.raiseEventImmediately(immediateEvent);
+
+		assertEquals(2, listener.updateCount());
+		assertEquals(immediateEvent, listener.lastUpdate());
+		assertNull(testNode.pollOutbox());
 	}
 
 	@Test(expected = IllegalArgumentException.class)
@@ -200,9 +265,9 @@ public class NodeTest {
 	 */
 	public void testRaiseNullEvent() {
 
-		// Create an observer and prepare to update it with an event.
-		MockSimObserver observer = new MockSimObserver();
-		testNode.addObserver(observer);
+		// Create a listener and prepare to update it with an event.
+		MockSimListener listener = new MockSimListener();
+		testNode.addEventListener(listener);
 
 		testNode.raiseEvent(null);
 
@@ -219,9 +284,9 @@ public class NodeTest {
 		final long pauseTime = 20;
 		MockPauseNode pauseNode = new MockPauseNode(0, pauseTime, 1);
 
-		// Create an observer to test that the right event is raised.
-		MockSimObserver observer = new MockSimObserver();
-		pauseNode.addObserver(observer);
+		// Create a listener to test that the right event is raised.
+		MockSimListener listener = new MockSimListener();
+		pauseNode.addEventListener(listener);
 
 		pauseNode.simulate(leaderBarrier, simProfiler);
 
@@ -229,11 +294,10 @@ public class NodeTest {
 		while (!leaderBarrier.containsThread(pauseNode.getThread())) {
 		}
 
-		// Check that the observer saw the pause.
-		assertEquals(1, observer.updateCount());
-		assertEquals(pauseNode, observer.lastObservable());
-		assertTrue(observer.lastUpdate() instanceof NodePauseEvent);
-		NodePauseEvent waitEvent = (NodePauseEvent) observer.lastUpdate();
+		// Check that the listener saw the pause.
+		assertEquals(1, listener.updateCount());
+		assertTrue(listener.lastUpdate() instanceof NodePauseEvent);
+		NodePauseEvent waitEvent = (NodePauseEvent) listener.lastUpdate();
 		assertEquals(pauseNode, waitEvent.node());
 		assertEquals(pauseTime, waitEvent.getPauseTime());
 
@@ -272,10 +336,17 @@ public class NodeTest {
 		// Check that the node has unpaused.
 		assertFalse(SimulationState.PAUSED == pauseNode.getSimulationState());
 
-		while (!leaderBarrier.containsThread(pauseNode.nodeThread)) {
+		// A completed node releases its Thread from the barrier.
+		while (pauseNode.nodeThread.isAlive()) {
 		}
 
 		assertEquals(SimulationState.COMPLETED, pauseNode.getSimulationState());
+		assertFalse(leaderBarrier.containsThread(pauseNode.nodeThread));
+		assertEquals(N_NEIGHBOURS, leaderBarrier.getFollowerThreshold());
+
+		pauseNode.halt();
+		assertEquals(SimulationState.POST_SIMULATION, pauseNode
+				.getSimulationState());
 	}
 
 	@Test(expected = SimulationRuntimeException.class)
@@ -340,6 +411,112 @@ public class NodeTest {
 		}
 	}
 
+	@Test(timeout = 2000)
+	/**
+	 * Tests that killing a node releases its Thread from the barrier once
+	 * only, however many times it is killed, and that it is then halted
+	 * without waiting for its Thread.
+	 */
+	public void testKillReleasesOnce() {
+		MockUserNode sleepNode = new MockUserNode(0) {
+			public void execute() {
+				try {
+					Thread.sleep(10000);
+				} catch (InterruptedException e) {
+				}
+			}
+		};
+
+		sleepNode.simulate(leaderBarrier, simProfiler);
+
+		while (sleepNode.getSimulationState() != SimulationState.SIMULATING) {
+		}
+
+		sleepNode.kill();
+		sleepNode.kill();
+		assertEquals(SimulationState.TIMEOUT, sleepNode.getSimulationState());
+		assertEquals(N_NEIGHBOURS, leaderBarrier.getFollowerThreshold());
+
+		sleepNode.halt();
+		assertEquals(SimulationState.POST_SIMULATION, sleepNode
+				.getSimulationState());
+	}
+
+	@Test(timeout = 2000)
+	/**
+	 * Tests that a node that has completed is not timed out, and keeps its
+	 * Thread released once.
+	 */
+	public void testKillCompletedNode() {
+		testNode.simulate(leaderBarrier, simProfiler);
+
+		while (testNode.getThread().isAlive()) {
+		}
+
+		testNode.kill();
+		assertEquals(SimulationState.COMPLETED, testNode.getSimulationState());
+		assertEquals(N_NEIGHBOURS, leaderBarrier.getFollowerThreshold());
+		assertEquals(0, listener.updateCount());
+	}
+
+	@Test(timeout = 2000)
+	/**
+	 * Test that several nodes can be started at once, counting down a shared
+	 * latch as each finishes its setup.
+	 */
+	public void testSimulateLatch() throws InterruptedException {
+		MockPauseNode[] pauseNodes = new MockPauseNode[N_NEIGHBOURS];
+		CountDownLatch started = new CountDownLatch(pauseNodes.length);
+		for (int i = 0; i < pauseNodes.length; i++) {
+			pauseNodes[i] = new MockPauseNode(i);
+			pauseNodes[i].simulate(leaderBarrier, simProfiler,
+					new PlatformThreadFactory(), started);
+		}
+		started.await();
+
+		for (MockPauseNode pauseNode : pauseNodes) {
+			assertEquals(1, pauseNode.setupCount());
+			assertFalse(SimulationState.PRE_SIMULATION == pauseNode
+					.getSimulationState());
+			assertFalse(SimulationState.SETUP == pauseNode
+					.getSimulationState());
+		}
+	}
+
+	@Test(timeout = 2000)
+	/**
+	 * Test that several paused nodes can be halted at once, counting down a
+	 * shared latch as each leaves simulation.
+	 */
+	public void testHaltLatch() throws InterruptedException {
+		MockPauseNode[] pauseNodes = new MockPauseNode[N_NEIGHBOURS];
+		for (int i = 0; i < pauseNodes.length; i++) {
+			pauseNodes[i] = new MockPauseNode(i);
+			pauseNodes[i].simulate(leaderBarrier, simProfiler);
+		}
+		for (MockPauseNode pauseNode : pauseNodes) {
+			while (!leaderBarrier.containsThread(pauseNode.getThread())) {
+			}
+		}
+
+		CountDownLatch halted = new CountDownLatch(pauseNodes.length + 1);
+		for (MockPauseNode pauseNode : pauseNodes) {
+			pauseNode.halt(halted);
+		}
+		halted.countDown();
+		halted.await();
+
+		for (MockPauseNode pauseNode : pauseNodes) {
+			assertEquals(SimulationState.POST_SIMULATION, pauseNode
+					.getSimulationState());
+		}
+
+		// Halting a node that has left simulation counts down at once.
+		halted = new CountDownLatch(1);
+		pauseNodes[0].halt(halted);
+		assertEquals(0, halted.getCount());
+	}
+
 	@Test
 	/**
 	 * Tests that <code>getNeighbour(int)</code> correctly returns a unique
@@ -353,7 +530,7 @@ public class NodeTest {
 		}
 
 		// Get all the INodes that getNeighbour returns.
-		HashSet<INode> returnedNeighbours = new HashSet<INode>(
+		HashSet<ILinkEndpoint> returnedNeighbours = new HashSet<ILinkEndpoint>(
 				otherNodes.length);
 		for (int i = 0; i < testNode.neighbourCount(); i++) {
 			returnedNeighbours.add(testNode.getNeighbour(i));
@@ -362,7 +539,7 @@ public class NodeTest {
 		// Check that the expected INodes were returned and that there were no
 		// duplicates.
 		assertEquals(testNode.neighbourCount(), returnedNeighbours.size());
-		for (INode node : returnedNeighbours)
+		for (ILinkEndpoint node : returnedNeighbours)
 			assertTrue(testNode.isNeighbour(node));
 	}
 
@@ -413,9 +590,9 @@ public class NodeTest {
 	public void testSetColourValid() {
 		final Color testColour = new Color(5, 5, 5);
 		testNode.setColour(testColour);
-		assertEquals(1, observer.updateCount());
-		assertTrue(observer.getUpdate(0) instanceof ColourChangeEvent);
-		ColourChangeEvent event = (ColourChangeEvent) observer.getUpdate(0);
+		assertEquals(1, listener.updateCount());
+		assertTrue(listener.getUpdate(0) instanceof ColourChangeEvent);
+		ColourChangeEvent event = (ColourChangeEvent) listener.getUpdate(0);
 		assertEquals(testColour, new Color(event.getColour()));
 		assertEquals(testNode, event.node());
 		assertEquals(ISimulationEvent.CURRENT_TIMESTEP, event.getTimestep());
@@ -0,0 +1,173 @@
+package net.alexheavens.cs4099.simulation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class DeadlineWheelTest {
+
+	private static final long TICK = 10;
+	private static final int SLOTS = 8;
+
+	private DeadlineWheel<Integer> wheel;
+
+	@Before
+	public void setup() {
+		wheel = new DeadlineWheel<Integer>(TICK, SLOTS, 0);
+	}
+
+	private static List<Integer> items(
+			List<DeadlineWheel.Deadline<Integer>> deadlines) {
+		final List<Integer> items = new ArrayList<Integer>();
+		for (DeadlineWheel.Deadline<Integer> deadline : deadlines)
+			items.add(deadline.item());
+		return items;
+	}
+
+	@Test
+	public void testCreationValid() {
+		assertEquals(0, wheel.size());
+		assertTrue(wheel.expire(1000).isEmpty());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidTickLength() {
+		new DeadlineWheel<Integer>(0, SLOTS, 0);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidSlots() {
+		new DeadlineWheel<Integer>(TICK, 0, 0);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testScheduleNullItem() {
+		wheel.schedule(null, 5);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testCancelNullDeadline() {
+		wheel.cancel(null);
+	}
+
+	@Test
+	/**
+	 * Tests that only deadlines that have passed expire, including those
+	 * later in the current tick.
+	 */
+	public void testExpirePassedDeadlines() {
+		final DeadlineWheel.Deadline<Integer> early = wheel.schedule(1, 12);
+		wheel.schedule(2, 18);
+		wheel.schedule(3, 35);
+		assertEquals(3, wheel.size());
+		assertEquals(12, early.time());
+
+		assertTrue(wheel.expire(11).isEmpty());
+		final List<DeadlineWheel.Deadline<Integer>> expired = wheel.expire(15);
+		assertEquals(1, expired.size());
+		assertSame(early, expired.get(0));
+		assertEquals(Collections.singletonList(2), items(wheel.expire(18)));
+		assertEquals(Collections.singletonList(3), items(wheel.expire(100)));
+		assertEquals(0, wheel.size());
+	}
+
+	@Test
+	/**
+	 * Tests that a deadline more than a revolution away waits for its tick.
+	 */
+	public void testDistantDeadline() {
+		final long distant = TICK * SLOTS * 3 + 5;
+		wheel.schedule(1, distant);
+		for (long now = 0; now < distant; now += TICK)
+			assertTrue(wheel.expire(now).isEmpty());
+		assertEquals(Collections.singletonList(1), items(wheel.expire(distant)));
+	}
+
+	@Test
+	/**
+	 * Tests that deadlines expire when many revolutions pass at once.
+	 */
+	public void testExpireAfterManyRevolutions() {
+		for (int i = 0; i < 20; i++)
+			wheel.schedule(i, i * TICK * 3);
+		final List<Integer> expired = items(wheel.expire(TICK * SLOTS * 10));
+		Collections.sort(expired);
+		assertEquals(20, expired.size());
+		for (int i = 0; i < 20; i++)
+			assertEquals(i, expired.get(i).intValue());
+	}
+
+	@Test
+	/**
+	 * Tests that a deadline already passed expires at once.
+	 */
+	public void testPastDeadline() {
+		wheel.expire(100);
+		wheel.schedule(1, 50);
+		assertEquals(Collections.singletonList(1), items(wheel.expire(100)));
+	}
+
+	@Test
+	public void testCancelDeadline() {
+		final DeadlineWheel.Deadline<Integer> deadline = wheel.schedule(1, 20);
+		wheel.schedule(2, 20);
+		assertTrue(wheel.cancel(deadline));
+		assertFalse(wheel.cancel(deadline));
+		assertEquals(1, wheel.size());
+		assertEquals(Collections.singletonList(2), items(wheel.expire(20)));
+		assertEquals(0, wheel.size());
+	}
+
+	@Test
+	public void testCancelExpiredDeadline() {
+		final DeadlineWheel.Deadline<Integer> deadline = wheel.schedule(1, 20);
+		wheel.expire(20);
+		assertFalse(wheel.cancel(deadline));
+		assertEquals(0, wheel.size());
+	}
+
+	@Test
+	/**
+	 * Tests that every random deadline expires once, no earlier than it falls.
+	 */
+	public void testRandomDeadlines() {
+		final Random random = new Random(24);
+		final int count = 500;
+		final long[] times = new long[count];
+		for (int i = 0; i < count; i++) {
+			times[i] = random.nextInt(5000);
+			wheel.schedule(i, times[i]);
+		}
+
+		final boolean[] expired = new boolean[count];
+		for (long now = 0; now <= 5000; now += random.nextInt(40)) {
+			for (DeadlineWheel.Deadline<Integer> deadline : wheel.expire(now)) {
+				final int i = deadline.item();
+				assertFalse(expired[i]);
+				assertTrue(times[i] <= now);
+				expired[i] = true;
+			}
+		}
+		assertEquals(count, items(wheel.expire(5000)).size()
+				+ countTrue(expired));
+		assertEquals(0, wheel.size());
+	}
+
+	private static int countTrue(boolean[] values) {
+		int count = 0;
+		for (boolean value : values) {
+			if (value)
+				count++;
+		}
+		return count;
+	}
+}
@@ -0,0 +1,273 @@
+package net.alexheavens.cs4099.simulation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import net.alexheavens.cs4099.network.IMessageImpl;
+import net.alexheavens.cs4099.network.Network;
+import net.alexheavens.cs4099.network.Node;
+import net.alexheavens.cs4099.network.configuration.LinkConfig;
+import net.alexheavens.cs4099.network.configuration.NetworkConfig;
+import net.alexheavens.cs4099.usercode.MockRoundsScript;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+import net.sf.json.JSONSerializer;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class DistributedSimulationTest {
+
+	private static final long TEST_SIM_LENGTH = 100;
+	private static final long TEST_SEED = 14;
+	private static final int NODES = 24;
+	private NetworkConfig config;
+
+	@Before
+	public void setup() {
+		// A ring with chords, of assorted latencies.
+		final Random random = new Random(4099);
+		config = new NetworkConfig(NODES);
+		for (int i = 0; i < NODES; i++) {
+			config.addLink(new LinkConfig(i, (i + 1) % NODES, 1 + random
+					.nextInt(4)));
+		}
+		for (int i = 0; i < NODES / 2; i += 3) {
+			config.addLink(new LinkConfig(i, i + NODES / 2, 2 + random
+					.nextInt(3)));
+		}
+	}
+
+	private Network createNetwork() throws InstantiationException,
+			IllegalAccessException {
+		return new Network(MockRoundsScript.class, config, false, TEST_SEED);
+	}
+
+	private static int initiatorOf(Network net) {
+		for (Node node : net.nodes()) {
+			if (node.isInitiator())
+				return node.getSimulationId();
+		}
+		throw new IllegalStateException();
+	}
+
+	/*
+	 * Describes the events of each timestep of several logs together, in an
+	 * order independent of the order in which they were processed.
+	 */
+	private List<List<String>> describe(List<IEventLog> logs) {
+		final List<List<String>> timesteps = new ArrayList<List<String>>();
+		for (long step = 0; step < TEST_SIM_LENGTH; step++) {
+			final List<String> descriptions = new ArrayList<String>();
+			for (IEventLog log : logs) {
+				for (ISimulationEvent event : log.getEventsInTimestep(step)) {
+					String description = event.getEventType().toString();
+					if (event instanceof MessageEvent) {
+						final IMessageImpl<?> message = ((MessageEvent) event)
+								.message();
+						description += " " + message.getData() + " from "
+								+ message.source().getSimulationId()
+								+ " to "
+								+ message.target().getSimulationId();
+					} else if (event instanceof NodeEvent) {
+						description += " at " + ((NodeEvent) event).getNodeId();
+					}
+					descriptions.add(description);
+				}
+			}
+			Collections.sort(descriptions);
+			timesteps.add(descriptions);
+		}
+		return timesteps;
+	}
+
+	/*
+	 * Simulates the network sequentially, batching the events of each
+	 * timestep as partitions do.
+	 */
+	private IEventLog simulateSequentially() throws InstantiationException,
+			IllegalAccessException {
+		return new SimulationRunner(createNetwork(), TEST_SIM_LENGTH, null, 0,
+				ExecutionMode.WORK_STEALING).simulate().getEvents();
+	}
+
+	/*
+	 * Runs a coordinator on a Thread of its own, recording any failure.
+	 */
+	private Thread startCoordinator(final DistributedCoordinator coordinator,
+			final List<Throwable> failures) {
+		final Thread thread = new Thread(new Runnable() {
+			public void run() {
+				try {
+					coordinator.coordinate();
+				} catch (Throwable e) {
+					failures.add(e);
+				}
+			}
+		});
+		thread.start();
+		return thread;
+	}
+
+	@Test(timeout = 30000)
+	/**
+	 * Tests that workers on Threads of one runtime, each with a copy of the
+	 * network, together produce the same events in each timestep as simulating
+	 * the network sequentially.
+	 */
+	public void testWorkersMatchSequential() throws Exception {
+		final List<List<String>> sequential = describe(Collections
+				.singletonList(simulateSequentially()));
+		final Network network = createNetwork();
+		final int initiator = initiatorOf(network);
+
+		for (final int partitions : new int[] { 1, 2, 3 }) {
+			final DistributedCoordinator coordinator = new DistributedCoordinator(
+					0, partitions, TEST_SIM_LENGTH);
+			final List<Throwable> failures = Collections
+					.synchronizedList(new ArrayList<Throwable>());
+			final Thread coordinatorThread = startCoordinator(coordinator,
+					failures);
+
+			final IEventLog[] logs = new IEventLog[partitions];
+			final Thread[] workerThreads = new Thread[partitions];
+			for (int p = 0; p < partitions; p++) {
+				final DistributedSimulationWorker worker = new DistributedSimulationWorker(
+						MockRoundsScript.class, config, initiator, 0,
+						TEST_SIM_LENGTH, PartitionedSimulationRunner
+								.blockAssignment(network, partitions), p,
+						coordinator.port());
+				final int partition = p;
+				workerThreads[p] = new Thread(new Runnable() {
+					public void run() {
+						try {
+							logs[partition] = worker.simulate().getEvents();
+						} catch (Throwable e) {
+							failures.add(e);
+						}
+					}
+				});
+				workerThreads[p].start();
+			}
+			for (Thread thread : workerThreads)
+				thread.join();
+			coordinatorThread.join();
+
+			assertTrue(failures.toString(), failures.isEmpty());
+			assertTrue(coordinator.windowCount() > 0);
+			final List<IEventLog> logList = new ArrayList<IEventLog>();
+			Collections.addAll(logList, logs);
+			assertEquals(sequential, describe(logList));
+		}
+	}
+
+	@Test(timeout = 60000)
+	/**
+	 * Tests simulation by workers in separate Java runtimes, comparing the
+	 * type and timestep of the events they write with those of a sequential
+	 * simulation.
+	 */
+	public void testWorkerProcesses() throws Exception {
+		final List<String> expected = new ArrayList<String>();
+		for (List<String> timestep : describe(Collections
+				.singletonList(simulateSequentially()))) {
+			for (String description : timestep)
+				expected.add(description.split(" ")[0]);
+		}
+
+		final int partitions = 2;
+		final File configFile = File.createTempFile("distributed", ".json");
+		configFile.deleteOnExit();
+		config.writeToFile(configFile);
+
+		final DistributedCoordinator coordinator = new DistributedCoordinator(
+				0, partitions, TEST_SIM_LENGTH);
+		final List<Throwable> failures = Collections
+				.synchronizedList(new ArrayList<Throwable>());
+		final Thread coordinatorThread = startCoordinator(coordinator,
+				failures);
+
+		final File[] logFiles = new File[partitions];
+		final Process[] workers = new Process[partitions];
+		final String java = System.getProperty("java.home") + File.separator
+				+ "bin" + File.separator + "java";
+		for (int p = 0; p < partitions; p++) {
+			logFiles[p] = File.createTempFile("partition" + p, ".json");
+			logFiles[p].deleteOnExit();
+			final ProcessBuilder builder = new ProcessBuilder(java, "-cp",
+					System.getProperty("java.class.path"),
+					DistributedSimulationWorker.class.getName(), String
+							.valueOf(coordinator.port()), configFile
+							.getPath(), MockRoundsScript.class.getName(),
+					String.valueOf(TEST_SIM_LENGTH), String
+							.valueOf(TEST_SEED), String.valueOf(p), String
+							.valueOf(partitions), logFiles[p].getPath());
+			builder.redirectErrorStream(true);
+			workers[p] = builder.start();
+		}
+		for (Process worker : workers) {
+			final String output = readAll(worker.getInputStream());
+			assertEquals(output, 0, worker.waitFor());
+		}
+		coordinatorThread.join();
+		assertTrue(failures.toString(), failures.isEmpty());
+
+		// Order the events of both partitions by timestep, then type.
+		final List<String> keys = new ArrayList<String>();
+		for (File logFile : logFiles) {
+			final JSONArray logEvents = ((JSONObject) JSONSerializer
+					.toJSON(readAll(new FileInputStream(logFile))))
+					.getJSONArray("events");
+			for (int i = 0; i < logEvents.size(); i++) {
+				final JSONObject event = logEvents.getJSONObject(i);
+				keys.add(String.format("%08d %s", event.getLong("timestep"),
+						event.getString("eventType")));
+			}
+		}
+		Collections.sort(keys);
+		final List<String> actual = new ArrayList<String>();
+		for (String key : keys)
+			actual.add(key.split(" ")[1]);
+		assertEquals(expected, actual);
+	}
+
+	private static String readAll(InputStream in) throws IOException {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final byte[] buffer = new byte[4096];
+		int read;
+		try {
+			while ((read = in.read(buffer)) > 0)
+				bytes.write(buffer, 0, read);
+		} finally {
+			in.close();
+		}
+		return bytes.toString("UTF-8");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testEmptyPartition() throws Exception {
+		new DistributedSimulationWorker(MockRoundsScript.class, config, 0, 0,
+				TEST_SIM_LENGTH, new int[NODES], 1, 0);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidInitiator() throws Exception {
+		new DistributedSimulationWorker(MockRoundsScript.class, config,
+				NODES, 0, TEST_SIM_LENGTH, new int[NODES], 0, 0);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNoPartitions() throws IOException {
+		new DistributedCoordinator(0, 0, TEST_SIM_LENGTH);
+	}
+}
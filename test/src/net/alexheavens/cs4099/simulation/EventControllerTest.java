@@ -1,10 +1,14 @@
 package net.alexheavens.cs4099.simulation;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 import net.alexheavens.cs4099.network.ILink;
 import net.alexheavens.cs4099.network.ILinkImpl;
 import net.alexheavens.cs4099.network.IMessageImpl;
 import net.alexheavens.cs4099.network.MockMessage;
-import net.alexheavens.cs4099.network.MockSimObserver;
+import net.alexheavens.cs4099.network.MockSimListener;
 import net.alexheavens.cs4099.network.MockUserNode;
 import net.alexheavens.cs4099.network.Network;
 import net.alexheavens.cs4099.network.StringMessage;
@@ -26,12 +30,12 @@ import org.junit.Test;
 
 public class EventControllerTest {
 
-	private static final long SIM_LENGTH = 1000;
+	protected static final long SIM_LENGTH = 1000;
 
-	private EventController testController;
+	protected EventController testController;
 	private MockSimulationRunner mockRunner;
 	private Network testNet;
-	private MockUserNode mockNode;
+	protected MockUserNode mockNode;
 
 	@Before
 	public void setup() {
@@ -43,11 +47,20 @@ public class EventControllerTest {
 			e.printStackTrace();
 		}
 		mockRunner = new MockSimulationRunner(testNet, SIM_LENGTH);
-		testController = new EventController(SIM_LENGTH);
+		testController = createController(SIM_LENGTH);
 
 		// Have the controller ready to perceive updates from a test Node.
 		mockNode = new MockUserNode(0);
-		mockNode.addObserver(testController);
+		mockNode.addEventListener(testController);
+	}
+
+	/**
+	 * @param processLimit
+	 *            the timestep at which no further events can occur.
+	 * @return The controller under test.
+	 */
+	protected EventController createController(long processLimit) {
+		return new EventController(processLimit);
 	}
 
 	@Test
@@ -106,6 +119,47 @@ public class EventControllerTest {
 				testController.nextEventTimestep());
 	}
 
+	@Test
+	public void testProcessOtherEvents() {
+
+		// Events need not extend SimulationEvent, and are processed in the
+		// order they were scheduled within a timestep.
+		final List<Integer> processed = new ArrayList<Integer>();
+		for (int i = 0; i < 3; i++) {
+			final int index = i;
+			testController.scheduleEvent(new ISimulationEvent() {
+				private long timestep = 50;
+
+				public long getTimestep() {
+					return timestep;
+				}
+
+				public void markWithTimestep(long eventTimestep) {
+					timestep = eventTimestep;
+				}
+
+				public void process(IEventController controller) {
+					processed.add(index);
+				}
+
+				public void process(SimulationRunner runner) {
+				}
+
+				public int priority() {
+					return IEventController.EVENT_NOTIFY_THRESHOLD + 1;
+				}
+
+				public SimEventType getEventType() {
+					return null;
+				}
+			});
+		}
+
+		mockRunner.setTimestep(50);
+		testController.processTimestep();
+		assertEquals(Arrays.asList(0, 1, 2), processed);
+	}
+
 	@Test
 	public void testStressScheduleEvents() {
 
@@ -209,6 +263,35 @@ public class EventControllerTest {
 		}
 	}
 
+	@Test
+	/**
+	 * Tests that processing a timestep processes every event of the earliest
+	 * timestep, and no others.
+	 */
+	public void testProcessTimestep() {
+		final long timestep = 50;
+		MockSimEvent[] stepEvents = new MockSimEvent[3];
+		for (int i = 0; i < stepEvents.length; i++) {
+			stepEvents[i] = new MockSimEvent(timestep);
+			testController.scheduleEvent(stepEvents[i]);
+		}
+		MockSimEvent laterEvent = new MockSimEvent(timestep + 10);
+		testController.scheduleEvent(laterEvent);
+
+		testController.processTimestep();
+
+		for (MockSimEvent event : stepEvents)
+			assertTrue(event.eventProcessed());
+		assertFalse(laterEvent.eventProcessed());
+		assertEquals(timestep, testController.currentTimestep());
+		assertEquals(timestep + 10, testController.nextEventTimestep());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testProcessNoTimestep() {
+		testController.processTimestep();
+	}
+
 	@Test(expected = IllegalStateException.class)
 	public void testProcessNoEvent() {
 		testController.processEvent();
@@ -273,40 +356,38 @@ public class EventControllerTest {
 	@Test
 	/**
 	 * Tests if events whose <code>priority</code> meet the
-	 * <code>EVENT_NOTIFY_THRESHOLD</code> are indeed passed onto observers of
+	 * <code>EVENT_NOTIFY_THRESHOLD</code> are indeed passed onto listeners of
 	 * the EventController once processed.
 	 */
-	public void testPriorityEventsPassedToObservers() {
+	public void testPriorityEventsPassedToListeners() {
 
-		// Prepare our event and observer.
+		// Prepare our event and listener.
 		MockSimEvent event = new MockSimEvent(40) {
 			public int priority() {
 				return IEventController.EVENT_NOTIFY_THRESHOLD;
 			}
 		};
-		MockSimObserver observer = new MockSimObserver();
-		testController.addObserver(observer);
+		MockSimListener listener = new MockSimListener();
+		testController.addEventListener(listener);
 		testController.scheduleEvent(event);
 
 		// Check that no update has occurred yet.
-		assertEquals(0, observer.updateCount());
-		assertNull(observer.lastObservable());
-		assertNull(observer.lastUpdate());
+		assertEquals(0, listener.updateCount());
+		assertNull(listener.lastUpdate());
 
 		testController.processEvent();
 
-		// Check that the appropriate event was observed by the observer.
-		assertEquals(1, observer.updateCount());
-		assertEquals(testController, observer.lastObservable());
-		assertEquals(event, observer.lastUpdate());
+		// Check that the appropriate event was heard by the listener.
+		assertEquals(1, listener.updateCount());
+		assertEquals(event, listener.lastUpdate());
 	}
 
 	@Test
 	/**
-	 * Tests whether Objects observed by the EventController (e.g. Nodes) can
-	 * schedule events by notifying them as an Observable.
+	 * Tests whether Objects the EventController listens to (e.g. Nodes) can
+	 * schedule events by raising them.
 	 */
-	public void testScheduleEventViaObserverNotify() {
+	public void testScheduleEventViaListener() {
 
 		final long timestep = 50;
 		MockSimEvent event = new MockSimEvent(timestep);
@@ -355,30 +436,18 @@ public class EventControllerTest {
 		assertEquals(timestep, event.getTimestep());
 	}
 
-	@Test(expected = IllegalArgumentException.class)
-	/**
-	 * Tests if the passing of something other than an ISimulationEvent throws
-	 * an IllegalArgumentException.
-	 * 
-	 * This is important as the observer notify channel is reserved for
-	 * ISimulationEvents only.
-	 */
-	public void testNotifyInvalidObject() {
-		mockNode.triggerEvent(new Object());
-	}
-
 	@Test
 	/**
 	 * Tests to ensure that none priority messages (those which do not meet the
-	 * priorty threshold) are not passed on to EventController observers.
+	 * priorty threshold) are not passed on to EventController listeners.
 	 */
 	public void testNotifyNonPriorityMessage() {
 
-		// Prepare our event and observer.
+		// Prepare our event and listener.
 		MockSimEvent event = new MockSimEvent(50);
 		event.setPriority(IEventController.EVENT_NOTIFY_THRESHOLD + 1);
-		MockSimObserver observer = new MockSimObserver();
-		testController.addObserver(observer);
+		MockSimListener listener = new MockSimListener();
+		testController.addEventListener(listener);
 		testController.scheduleEvent(event);
 
 		// Check that no update has occurred yet.
@@ -387,7 +456,7 @@ public class EventControllerTest {
 
 		testController.processEvent();
 
-		// Check that the event was not passed to the observer.
+		// Check that the event was not passed to the listener.
 		assertTrue(event.eventProcessed());
 		assertFalse(event.simProcessed());
 	}
@@ -406,8 +475,8 @@ public class EventControllerTest {
 		mockNode.send(neighbour, testMessage);
 
 		// Check that an appropriate message event was created.
-		assertEquals(1, testController.eventQueue.size());
-		ISimulationEvent event = testController.eventQueue.peek();
+		assertEquals(1, testController.waitingEvents().size());
+		ISimulationEvent event = testController.waitingEvents().get(0);
 		assertTrue(event instanceof MessageArrivalEvent);
 		MessageArrivalEvent arrivalEvent = (MessageArrivalEvent) event;
 		IMessageImpl<?> message = arrivalEvent.message();
@@ -439,6 +508,70 @@ public class EventControllerTest {
 		assertEquals(1, testMessage.getArrivedAt());
 	}
 
+	@Test
+	/**
+	 * Tests that arrivals toward the same node at the same timestep are
+	 * scheduled as one batch, even when scheduled between those of another
+	 * timestep, and delivered and logged in full.
+	 */
+	public void testScheduleArrivalBatches() {
+		MockUserNode first = new MockUserNode(100);
+		MockUserNode second = new MockUserNode(101);
+		mockNode.addNeighbour(first, 1);
+		mockNode.addNeighbour(second, 1);
+		MockMessage[] toFirst = new MockMessage[3];
+		for (int i = 0; i < toFirst.length; i++) {
+			toFirst[i] = new MockMessage(mockNode, first, 0);
+			testController.scheduleArrival(toFirst[i], 1);
+		}
+		MockMessage toSecond = new MockMessage(mockNode, second, 0);
+		MockMessage fromFirst = new MockMessage(first, mockNode, 0);
+		MockMessage later = new MockMessage(mockNode, first, 0);
+		MockMessage afterLater = new MockMessage(mockNode, first, 0);
+		testController.scheduleArrival(toSecond, 1);
+		testController.scheduleArrival(fromFirst, 1);
+		testController.scheduleArrival(later, 2);
+		testController.scheduleArrival(afterLater, 1);
+
+		// One batch per target node and timestep.
+		for (int i = 0; i < 3; i++) {
+			assertEquals(1, testController.nextEventTimestep());
+			testController.processEvent();
+		}
+		assertEquals(2, testController.nextEventTimestep());
+
+		ILinkImpl firstLink = (ILinkImpl) mockNode.neighbourLink(first);
+		ILinkImpl secondLink = (ILinkImpl) mockNode.neighbourLink(second);
+		for (int i = 0; i < toFirst.length; i++) {
+			assertEquals(1, toFirst[i].getArrivedAt());
+		}
+		assertEquals(1, afterLater.getArrivedAt());
+		assertEquals(toFirst.length + 1, firstLink.messageCount(first));
+		assertEquals(toSecond, secondLink.popMessage(second));
+		assertEquals(fromFirst, firstLink.popMessage(mockNode));
+		assertEquals(6, testController.getEventLog().getEventsInTimestep(1)
+				.size());
+	}
+
+	@Test
+	public void testForgetDeliveredArrivals() {
+		MockUserNode first = new MockUserNode(100);
+		MockUserNode second = new MockUserNode(101);
+		mockNode.addNeighbour(first, 1);
+		mockNode.addNeighbour(second, 1);
+		testController.scheduleArrival(new MockMessage(mockNode, first, 0), 1);
+		testController.scheduleArrival(new MockMessage(mockNode, first, 0), 2);
+		testController.scheduleArrival(new MockMessage(mockNode, second, 0), 1);
+		assertEquals(2, testController.arrivalTargetCount());
+
+		// A target is forgotten once its last batch is delivered.
+		testController.processEvent();
+		testController.processEvent();
+		assertEquals(1, testController.arrivalTargetCount());
+		testController.processEvent();
+		assertEquals(0, testController.arrivalTargetCount());
+	}
+
 	@Test
 	public void testLogEventsOnProcess() {
 		MockUserNode target = new MockUserNode(43);
@@ -0,0 +1,166 @@
+package net.alexheavens.cs4099.simulation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import net.alexheavens.cs4099.network.IMessageImpl;
+import net.alexheavens.cs4099.network.ILinkEndpoint;
+import net.alexheavens.cs4099.network.ILinkImpl;
+import net.alexheavens.cs4099.network.MockMessage;
+import net.alexheavens.cs4099.network.MockUserNode;
+import net.alexheavens.cs4099.network.StringMessage;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class MessageArrivalBatchEventTest {
+
+	private MockUserNode source;
+	private MockUserNode target;
+	private MockUserNode other;
+	private MessageArrivalBatchEvent testBatch;
+
+	@Before
+	public void setup() {
+		source = new MockUserNode(0);
+		target = new MockUserNode(1);
+		other = new MockUserNode(2);
+		source.addNeighbour(target, 1);
+		source.addNeighbour(other, 1);
+		testBatch = new MessageArrivalBatchEvent(new MockMessage(source,
+				target, 0), 1);
+	}
+
+	@Test
+	/**
+	 * Tests that every message added to a batch is delivered with it.
+	 */
+	public void testDeliverMessages() {
+		final MockMessage[] added = new MockMessage[10];
+		for (int i = 0; i < added.length; i++) {
+			added[i] = new MockMessage(source, target, 0);
+			testBatch.addMessage(added[i]);
+		}
+		assertEquals(added.length + 1, testBatch.messages().size());
+		assertFalse(testBatch.isDelivered());
+
+		EventController controller = new EventController(10);
+		controller.scheduleEvent(testBatch);
+		controller.processEvent();
+		assertTrue(testBatch.isDelivered());
+
+		ILinkImpl link = (ILinkImpl) source.neighbourLink(target);
+		Set<IMessageImpl<?>> delivered = new HashSet<IMessageImpl<?>>();
+		for (int i = 0; i <= added.length; i++) {
+			delivered.add(link.popMessage(target));
+		}
+		assertTrue(delivered.containsAll(testBatch.messages()));
+		for (int i = 0; i < added.length; i++) {
+			assertEquals(1, added[i].getArrivedAt());
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testAddNullMessage() {
+		testBatch.addMessage(null);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testAddUnsentMessage() {
+		testBatch.addMessage(new StringMessage("unsent"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testAddOtherTargetMessage() {
+		testBatch.addMessage(new MockMessage(source, other, 0));
+	}
+
+	@Test
+	/**
+	 * Tests that messages toward the target across different links share a
+	 * batch, each being queued on its own link.
+	 */
+	public void testDeliverAcrossLinks() {
+		other.addNeighbour(target, 1);
+		MockMessage otherMessage = new MockMessage(other, target, 0);
+		testBatch.addMessage(otherMessage);
+
+		EventController controller = new EventController(10);
+		controller.scheduleEvent(testBatch);
+		controller.processEvent();
+
+		ILinkImpl sourceLink = (ILinkImpl) source.neighbourLink(target);
+		ILinkImpl otherLink = (ILinkImpl) other.neighbourLink(target);
+		assertEquals(testBatch.message(), sourceLink.popMessage(target));
+		assertEquals(otherMessage, otherLink.popMessage(target));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testAddOppositeDirectionMessage() {
+		testBatch.addMessage(new MockMessage(target, source, 0));
+	}
+
+	@Test
+	/**
+	 * Tests that messages sent at the same timestep are queued at their target
+	 * in the order of the batch, as chosen by the controller's scheduler.
+	 */
+	public void testSchedulerOrdersBatch() {
+		final MockMessage[] added = new MockMessage[5];
+		for (int i = 0; i < added.length; i++) {
+			added[i] = new MockMessage(source, target, 0);
+			testBatch.addMessage(added[i]);
+		}
+
+		EventController controller = new EventController(10);
+		controller.setArrivalScheduler(new ArrivalScheduler() {
+			public List<IMessageImpl<?>> order(ILinkEndpoint node, long timestep,
+					List<IMessageImpl<?>> messages) {
+				final List<IMessageImpl<?>> reversed = new ArrayList<IMessageImpl<?>>(
+						messages);
+				Collections.reverse(reversed);
+				return reversed;
+			}
+		});
+		controller.scheduleEvent(testBatch);
+		controller.processEvent();
+
+		ILinkImpl link = (ILinkImpl) source.neighbourLink(target);
+		for (int i = added.length - 1; i >= 0; i--)
+			assertSame(added[i], link.popMessage(target));
+		assertSame(testBatch.message(), link.popMessage(target));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testReorderOtherMessages() {
+		testBatch.addMessage(new MockMessage(source, target, 0));
+		testBatch.reorder(Arrays.<IMessageImpl<?>> asList(testBatch.message(),
+				testBatch.message()));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testReorderDeliveredBatch() {
+		EventController controller = new EventController(10);
+		controller.scheduleEvent(testBatch);
+		controller.processEvent();
+		testBatch.reorder(testBatch.messages());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testAddDeliveredMessage() {
+		EventController controller = new EventController(10);
+		controller.scheduleEvent(testBatch);
+		controller.processEvent();
+		testBatch.addMessage(new MockMessage(source, target, 0));
+	}
+
+}
@@ -0,0 +1,191 @@
+package net.alexheavens.cs4099.simulation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import net.alexheavens.cs4099.network.ILinkEndpoint;
+import net.alexheavens.cs4099.network.IMessageImpl;
+import net.alexheavens.cs4099.network.INodeImpl;
+import net.alexheavens.cs4099.network.MessageImpl;
+import net.alexheavens.cs4099.network.Network;
+import net.alexheavens.cs4099.network.Node;
+import net.alexheavens.cs4099.network.NumericMessage;
+import net.alexheavens.cs4099.network.StringMessage;
+import net.alexheavens.cs4099.network.configuration.LinkConfig;
+import net.alexheavens.cs4099.network.configuration.NetworkConfig;
+import net.alexheavens.cs4099.usercode.MockRoundsScript;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class MessageCodecTest {
+
+	private Network sourceNetwork;
+	private Network targetNetwork;
+	private MessageCodec codec;
+
+	/**
+	 * A message holding a list, which is encoded by serialisation.
+	 */
+	public static class ListMessage extends MessageImpl<ArrayList<Integer>> {
+
+		public ListMessage(String tag, ArrayList<Integer> data) {
+			super(tag, data);
+		}
+	}
+
+	/**
+	 * A message holding a String of any length.
+	 */
+	public static class TextMessage extends MessageImpl<String> {
+
+		public TextMessage(String tag, String data) {
+			super(tag, data);
+		}
+	}
+
+	@Before
+	public void setup() throws InstantiationException, IllegalAccessException {
+		final NetworkConfig config = new NetworkConfig(3);
+		config.addLink(new LinkConfig(0, 1, 3));
+		config.addLink(new LinkConfig(1, 2, 1));
+		sourceNetwork = new Network(MockRoundsScript.class, config, false, 1);
+		targetNetwork = new Network(MockRoundsScript.class, config, false, 1);
+		codec = new MessageCodec(targetNetwork, getClass().getClassLoader());
+	}
+
+	private IMessageImpl<?> send(IMessageImpl<?> message, int source,
+			int target, long sentAt) {
+		message.attachSendData((INodeImpl) sourceNetwork.nodes().get(source),
+				(INodeImpl) sourceNetwork.nodes().get(target));
+		message.markAsSent(sentAt);
+		return message;
+	}
+
+	private IMessageImpl<?> roundTrip(IMessageImpl<?> message)
+			throws IOException {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		codec.encode(message, new DataOutputStream(bytes));
+		return codec.decode(new DataInputStream(new ByteArrayInputStream(
+				bytes.toByteArray())));
+	}
+
+	@Test
+	/**
+	 * Tests that a decoded message holds the same data, tag and send time as
+	 * that encoded, between the nodes of the decoding network.
+	 */
+	public void testRoundTrip() throws IOException {
+		final IMessageImpl<?> decoded = roundTrip(send(new NumericMessage(
+				"count", 300000), 1, 0, 129));
+		assertSame(NumericMessage.class, decoded.getClass());
+		assertEquals(300000, decoded.getData());
+		assertEquals("count", decoded.getTag());
+		assertEquals(129, decoded.getSentAt());
+		assertSame(targetNetwork.nodes().get(1), decoded.source());
+		assertSame(targetNetwork.nodes().get(0), decoded.target());
+		assertEquals(3, decoded.link().latency());
+	}
+
+	@Test
+	public void testRoundTripNoTag() throws IOException {
+		final IMessageImpl<?> decoded = roundTrip(send(
+				new StringMessage("HELLO"), 2, 1, 0));
+		assertEquals("HELLO", decoded.getData());
+		assertNull(decoded.getTag());
+		assertEquals(IMessageImpl.TIMESTEP_NOT_SENT, decoded.getArrivedAt());
+	}
+
+	@Test
+	/**
+	 * Tests Strings longer than the 65535 bytes that writeUTF() is limited to,
+	 * with characters of several bytes.
+	 */
+	public void testRoundTripLongString() throws IOException {
+		final StringBuilder builder = new StringBuilder();
+		while (builder.length() < 100000)
+			builder.append("n\u00f3d\u00e9 \u2192 ");
+		final String text = builder.toString();
+		final IMessageImpl<?> decoded = roundTrip(send(new TextMessage(
+				"long", text), 0, 1, 3));
+		assertEquals(text, decoded.getData());
+	}
+
+	@Test
+	/**
+	 * Tests decoding a message from a node of another partition, held only
+	 * as a stand-in, to a node held in full.
+	 */
+	public void testDecodeFromStandIn() throws Exception {
+		final RemoteNode standIn = new RemoteNode(false);
+		standIn.setSimulationId(0, 0);
+		final Node target = Network.createNode(MockRoundsScript.class, false);
+		target.setSimulationId(1, 0);
+		target.addNeighbour(standIn, 3);
+		codec = new MessageCodec(Arrays.<ILinkEndpoint> asList(standIn, target,
+				null), getClass().getClassLoader());
+
+		final IMessageImpl<?> decoded = roundTrip(send(new StringMessage(
+				"HELLO"), 0, 1, 5));
+		assertSame(standIn, decoded.source());
+		assertSame(target, decoded.target());
+		assertEquals(3, decoded.link().latency());
+	}
+
+	@Test(expected = IOException.class)
+	public void testDecodeNodeNotHeld() throws IOException {
+		final RemoteNode standIn = new RemoteNode(false);
+		standIn.setSimulationId(1, 0);
+		codec = new MessageCodec(Arrays.<ILinkEndpoint> asList(null, standIn,
+				null),
+				getClass().getClassLoader());
+		roundTrip(send(new StringMessage("HELLO"), 2, 1, 0));
+	}
+
+	@Test
+	public void testRoundTripSerialized() throws IOException {
+		final ArrayList<Integer> list = new ArrayList<Integer>(Arrays.asList(
+				4, 0, 9, 9));
+		final IMessageImpl<?> decoded = roundTrip(send(new ListMessage(null,
+				list), 0, 1, 7));
+		assertEquals(list, decoded.getData());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testEncodeUnsent() throws IOException {
+		final IMessageImpl<?> message = new StringMessage("HELLO");
+		message.attachSendData((INodeImpl) sourceNetwork.nodes().get(0),
+				(INodeImpl) sourceNetwork.nodes().get(1));
+		codec.encode(message, new DataOutputStream(new ByteArrayOutputStream()));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testEncodeUnsupportedData() throws IOException {
+		codec.encode(send(new MessageImpl<Object>(new Object()) {
+		}, 0, 1, 0), new DataOutputStream(new ByteArrayOutputStream()));
+	}
+
+	@Test
+	public void testVarLong() throws IOException {
+		final long[] values = { 0, 1, 127, 128, 300000, Long.MAX_VALUE };
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final DataOutputStream out = new DataOutputStream(bytes);
+		for (long value : values)
+			MessageCodec.writeVarLong(out, value);
+		assertEquals(1 + 1 + 1 + 2 + 3 + 9, bytes.size());
+
+		final DataInputStream in = new DataInputStream(
+				new ByteArrayInputStream(bytes.toByteArray()));
+		for (long value : values)
+			assertEquals(value, MessageCodec.readVarLong(in));
+	}
+}
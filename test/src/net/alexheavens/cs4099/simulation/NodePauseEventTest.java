@@ -7,7 +7,7 @@ import org.junit.Test;
 
 import net.alexheavens.cs4099.concurrent.LeaderBarrier;
 import net.alexheavens.cs4099.network.MockPauseNode;
-import net.alexheavens.cs4099.network.MockSimObserver;
+import net.alexheavens.cs4099.network.MockSimListener;
 import net.alexheavens.cs4099.network.MockUserNode;
 
 public class NodePauseEventTest {
@@ -38,16 +38,16 @@ public class NodePauseEventTest {
 		final long SIM_LENGTH = 100;
 		EventController testController = new EventController(SIM_LENGTH);
 
-		// Create an observer to the controller to make sure that node executed
+		// Create a listener to the controller to make sure that node executed
 		// event occurs.
-		MockSimObserver mockRunner = new MockSimObserver();
-		testController.addObserver(mockRunner);
+		MockSimListener mockRunner = new MockSimListener();
+		testController.addEventListener(mockRunner);
 
 		// Create a test node that we can pause.
 		final long pauseLength = 30;
 		final int pauses = 1;
 		MockPauseNode testNode = new MockPauseNode(0, pauseLength, pauses);
-		testNode.addObserver(testController);
+		testNode.addEventListener(testController);
 
 		testNode.simulate(leaderBarrier, simProfiler);
 
@@ -57,8 +57,8 @@ public class NodePauseEventTest {
 
 		// Test that the pause event has queued an unpause at the appropriate
 		// timestep.
-		assertEquals(1, testController.eventQueue.size());
-		ISimulationEvent event = testController.eventQueue.peek();
+		assertEquals(1, testController.waitingEvents().size());
+		ISimulationEvent event = testController.waitingEvents().get(0);
 		assertTrue(event instanceof NodeUnpauseEvent);
 		NodeUnpauseEvent unpauseEvent = (NodeUnpauseEvent) event;
 		assertEquals(testNode, unpauseEvent.node());
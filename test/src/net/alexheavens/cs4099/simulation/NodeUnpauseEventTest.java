@@ -35,12 +35,12 @@ public class NodeUnpauseEventTest {
 		final long pauseLength = 30;
 		final int pauses = 1;
 		MockPauseNode testNode = new MockPauseNode(0, pauseLength, pauses);
-		testNode.addObserver(testController);
+		testNode.addEventListener(testController);
 
 		testNode.simulate(leaderBarrier, simProfiler);
 
 		// Wait for the pause.
-		while (testController.eventQueue.size() < 1) {
+		while (testController.waitingEvents().size() < 1) {
 		}
 
 		assertEquals(SimulationState.PAUSED, testNode.getSimulationState());
@@ -0,0 +1,203 @@
+package net.alexheavens.cs4099.simulation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import net.alexheavens.cs4099.network.ILinkImpl;
+import net.alexheavens.cs4099.network.MockMessage;
+import net.alexheavens.cs4099.network.MockUserNode;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class ParallelEventControllerTest extends TimingWheelEventControllerTest {
+
+	private static final long TIMESTEP = 5;
+	private static final int TARGETS = 20;
+
+	private ExecutorService workers;
+
+	@Override
+	protected EventController createController(long processLimit) {
+		workers = Executors.newFixedThreadPool(4);
+		return new ParallelEventController(processLimit, workers);
+	}
+
+	@After
+	public void teardown() {
+		workers.shutdown();
+	}
+
+	/*
+	 * Creates an important arrival of a message from the test node, noting the
+	 * Thread by which it is processed.
+	 */
+	private MessageArrivalBatchEvent createArrival(MockUserNode target,
+			final Set<Thread> threads) {
+		if (!mockNode.isNeighbour(target))
+			mockNode.addNeighbour(target, 1);
+		return new MessageArrivalBatchEvent(new MockMessage(mockNode, target,
+				0), TIMESTEP) {
+			public void process(IEventController controller) {
+				threads.add(Thread.currentThread());
+				super.process(controller);
+			}
+
+			public int priority() {
+				return 0;
+			}
+		};
+	}
+
+	private List<MockUserNode> createTargets() {
+		final List<MockUserNode> targets = new ArrayList<MockUserNode>();
+		for (int i = 1; i <= TARGETS; i++)
+			targets.add(new MockUserNode(i));
+		return targets;
+	}
+
+	private List<ISimulationEvent> listen() {
+		final List<ISimulationEvent> recorded = Collections
+				.synchronizedList(new ArrayList<ISimulationEvent>());
+		testController.addEventListener(new ISimulationEventListener() {
+			public void eventRaised(ISimulationEvent event) {
+				recorded.add(event);
+			}
+		});
+		return recorded;
+	}
+
+	@Test
+	/**
+	 * Tests that arrivals at many nodes are processed by the workers, and are
+	 * recorded in the order they were scheduled.
+	 */
+	public void testProcessArrivalsConcurrently() {
+		final Set<Thread> threads = Collections
+				.synchronizedSet(new HashSet<Thread>());
+		final List<ISimulationEvent> recorded = listen();
+		final List<ISimulationEvent> scheduled = new ArrayList<ISimulationEvent>();
+		final List<MockUserNode> targets = createTargets();
+		for (int round = 0; round < 3; round++) {
+			for (MockUserNode target : targets) {
+				final ISimulationEvent event = createArrival(target, threads);
+				scheduled.add(event);
+				testController.scheduleEvent(event, false);
+			}
+		}
+
+		testController.processTimestep();
+		assertEquals(scheduled, recorded);
+		assertEquals(1, ((ParallelEventController) testController)
+				.parallelRunCount());
+		assertTrue(!threads.contains(Thread.currentThread()));
+		assertEquals(TIMESTEP, testController.currentTimestep());
+
+		for (MockUserNode target : targets) {
+			final ILinkImpl link = (ILinkImpl) mockNode.neighbourLink(target);
+			for (int round = 0; round < 3; round++)
+				assertNotNull(link.popMessage(target));
+		}
+	}
+
+	@Test
+	/**
+	 * Tests that an event that is not independent is processed alone, once
+	 * the events before it have been.
+	 */
+	public void testDependentEventDividesRuns() {
+		final Set<Thread> threads = Collections
+				.synchronizedSet(new HashSet<Thread>());
+		final List<ISimulationEvent> recorded = listen();
+		final List<MockUserNode> targets = createTargets();
+		final List<MessageArrivalBatchEvent> before = new ArrayList<MessageArrivalBatchEvent>();
+		for (MockUserNode target : targets) {
+			final MessageArrivalBatchEvent event = createArrival(target,
+					threads);
+			before.add(event);
+			testController.scheduleEvent(event, false);
+		}
+
+		final List<Boolean> deliveredBefore = new ArrayList<Boolean>();
+		final MockSimEvent dependent = new MockSimEvent(TIMESTEP) {
+			public void process(IEventController controller) {
+				super.process(controller);
+				for (MessageArrivalBatchEvent event : before)
+					deliveredBefore.add(event.isDelivered());
+			}
+		};
+		dependent.setPriority(0);
+		testController.scheduleEvent(dependent, false);
+		for (MockUserNode target : targets)
+			testController.scheduleEvent(createArrival(target, threads), false);
+
+		testController.processTimestep();
+		assertEquals(2, ((ParallelEventController) testController)
+				.parallelRunCount());
+		assertEquals(Collections.nCopies(TARGETS, true), deliveredBefore);
+		assertEquals(dependent, recorded.get(TARGETS));
+		assertEquals(TARGETS * 2 + 1, recorded.size());
+	}
+
+	@Test
+	/**
+	 * Tests that events acting upon a single node are processed by the calling
+	 * Thread.
+	 */
+	public void testSingleNodeProcessedSerially() {
+		final Set<Thread> threads = Collections
+				.synchronizedSet(new HashSet<Thread>());
+		final MockUserNode target = new MockUserNode(1);
+		for (int i = 0; i < 10; i++)
+			testController.scheduleEvent(createArrival(target, threads), false);
+
+		testController.processTimestep();
+		assertEquals(0, ((ParallelEventController) testController)
+				.parallelRunCount());
+		assertEquals(Collections.singleton(Thread.currentThread()), threads);
+	}
+
+	@Test
+	/**
+	 * Tests that a failed event is raised once the events that occurred
+	 * alongside it have been recorded.
+	 */
+	public void testFailureRaisedAfterRecording() {
+		final Set<Thread> threads = Collections
+				.synchronizedSet(new HashSet<Thread>());
+		final List<ISimulationEvent> recorded = listen();
+		final List<MockUserNode> targets = createTargets();
+		for (MockUserNode target : targets.subList(1, TARGETS))
+			testController.scheduleEvent(createArrival(target, threads), false);
+		mockNode.addNeighbour(targets.get(0), 1);
+		testController.scheduleEvent(new MessageArrivalBatchEvent(
+				new MockMessage(mockNode, targets.get(0), 0), TIMESTEP) {
+			public void process(IEventController controller) {
+				throw new IllegalStateException("Failed arrival.");
+			}
+		}, false);
+
+		try {
+			testController.processTimestep();
+			fail();
+		} catch (IllegalStateException e) {
+			assertEquals("Failed arrival.", e.getMessage());
+		}
+		assertEquals(TARGETS - 1, recorded.size());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNullExecutor() {
+		new ParallelEventController(SIM_LENGTH, null);
+	}
+}
@@ -0,0 +1,210 @@
+package net.alexheavens.cs4099.simulation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import net.alexheavens.cs4099.network.IMessageImpl;
+import net.alexheavens.cs4099.network.Network;
+import net.alexheavens.cs4099.network.Node;
+import net.alexheavens.cs4099.network.configuration.ILinkConfig;
+import net.alexheavens.cs4099.network.configuration.LinkConfig;
+import net.alexheavens.cs4099.network.configuration.NetworkConfig;
+import net.alexheavens.cs4099.usercode.MockEventScript;
+import net.alexheavens.cs4099.usercode.MockRoundsScript;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class PartitionedSimulationRunnerTest {
+
+	private static final long TEST_SIM_LENGTH = 100;
+	private static final int NODES = 24;
+	private NetworkConfig config;
+
+	@Before
+	public void setup() {
+		// A ring with chords, of assorted latencies.
+		final Random random = new Random(4099);
+		config = new NetworkConfig(NODES);
+		for (int i = 0; i < NODES; i++) {
+			config.addLink(new LinkConfig(i, (i + 1) % NODES, 1 + random
+					.nextInt(4)));
+		}
+		for (int i = 0; i < NODES / 2; i += 3) {
+			config.addLink(new LinkConfig(i, i + NODES / 2, 2 + random
+					.nextInt(3)));
+		}
+	}
+
+	private Network createNetwork() throws InstantiationException,
+			IllegalAccessException {
+		return new Network(MockRoundsScript.class, config, false);
+	}
+
+	/*
+	 * Describes the events of a log, in the order they were logged.
+	 */
+	private List<String> describe(IEventLog log) {
+		final List<String> descriptions = new ArrayList<String>();
+		for (ISimulationEvent event : ((RecordEventLog) log).events()) {
+			String description = event.getTimestep() + " "
+					+ event.getEventType();
+			if (event instanceof MessageEvent) {
+				final IMessageImpl<?> message = ((MessageEvent) event)
+						.message();
+				description += " " + message.getData() + " from "
+						+ message.source().getSimulationId()
+						+ " to "
+						+ message.target().getSimulationId();
+			} else if (event instanceof NodeEvent) {
+				description += " at " + ((NodeEvent) event).getNodeId();
+			}
+			descriptions.add(description);
+		}
+		return descriptions;
+	}
+
+	/*
+	 * Simulates the network sequentially, batching the events of each
+	 * timestep as partitions do.
+	 */
+	private IEventLog simulateSequentially() throws InstantiationException,
+			IllegalAccessException {
+		return new SimulationRunner(createNetwork(), TEST_SIM_LENGTH, null, 0,
+				ExecutionMode.WORK_STEALING).simulate().getEvents();
+	}
+
+	@Test(timeout = 30000)
+	/**
+	 * Tests that simulating a network in partitions produces the same log,
+	 * in the same order, as simulating it sequentially.
+	 */
+	public void testSimulateMatchesSequential() throws InstantiationException,
+			IllegalAccessException {
+		final List<String> sequential = describe(simulateSequentially());
+		assertTrue(sequential.size() > NODES * MockRoundsScript.ROUNDS);
+
+		for (int partitions : new int[] { 1, 2, 3, 5 }) {
+			final Network net = createNetwork();
+			final PartitionedSimulationRunner runner = new PartitionedSimulationRunner(
+					net, TEST_SIM_LENGTH, partitions);
+			assertEquals(partitions, runner.partitionCount());
+			assertEquals(sequential, describe(runner.simulate().getEvents()));
+			assertTrue(runner.windowCount() > 0);
+			for (Node node : net.nodes()) {
+				assertEquals(SimulationState.POST_SIMULATION, node
+						.getSimulationState());
+			}
+		}
+	}
+
+	@Test(timeout = 30000)
+	/**
+	 * Tests partitioned simulation with nodes executed cooperatively, each
+	 * partition waiting for its nodes at a parking barrier.
+	 */
+	public void testSimulateCooperative() throws InstantiationException,
+			IllegalAccessException {
+		final List<String> sequential = describe(simulateSequentially());
+		final Network net = createNetwork();
+		final PartitionedSimulationRunner runner = new PartitionedSimulationRunner(
+				net, TEST_SIM_LENGTH, PartitionedSimulationRunner
+						.blockAssignment(net, 4), 0, ExecutionMode.COOPERATIVE,
+				BarrierType.PARKING);
+		assertEquals(sequential, describe(runner.simulate().getEvents()));
+	}
+
+	@Test
+	/**
+	 * Tests that the lookahead is the least latency of the links between
+	 * partitions.
+	 */
+	public void testLookahead() throws InstantiationException,
+			IllegalAccessException {
+		final Network net = createNetwork();
+		final int[] partitionOf = PartitionedSimulationRunner.blockAssignment(
+				net, 2);
+		long leastLatency = Long.MAX_VALUE;
+		for (ILinkConfig link : config.links()) {
+			if (partitionOf[link.source()] != partitionOf[link.target()])
+				leastLatency = Math.min(leastLatency, link.latency());
+		}
+		PartitionedSimulationRunner runner = new PartitionedSimulationRunner(
+				net, TEST_SIM_LENGTH, partitionOf, 0,
+				ExecutionMode.PLATFORM_THREADS, BarrierType.LOCKING);
+		assertEquals(leastLatency, runner.lookahead());
+		assertEquals(Long.MAX_VALUE, new PartitionedSimulationRunner(
+				createNetwork(), TEST_SIM_LENGTH, 1).lookahead());
+	}
+
+	@Test
+	/**
+	 * Tests that nodes are divided into partitions of consecutive IDs and
+	 * near-equal size.
+	 */
+	public void testBlockAssignment() throws InstantiationException,
+			IllegalAccessException {
+		final int[] partitionOf = PartitionedSimulationRunner.blockAssignment(
+				createNetwork(), 5);
+		final int[] sizes = new int[5];
+		for (int id = 0; id < partitionOf.length; id++) {
+			if (id > 0)
+				assertTrue(partitionOf[id] >= partitionOf[id - 1]);
+			sizes[partitionOf[id]]++;
+		}
+		for (int size : sizes)
+			assertTrue(size == NODES / 5 || size == NODES / 5 + 1);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testTooManyPartitions() throws InstantiationException,
+			IllegalAccessException {
+		new PartitionedSimulationRunner(createNetwork(), TEST_SIM_LENGTH,
+				NODES + 1);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testEmptyPartition() throws InstantiationException,
+			IllegalAccessException {
+		final int[] partitionOf = new int[NODES];
+		partitionOf[0] = 2;
+		new PartitionedSimulationRunner(createNetwork(), TEST_SIM_LENGTH,
+				partitionOf, 0, ExecutionMode.PLATFORM_THREADS,
+				BarrierType.LOCKING);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testMissingPartition() throws InstantiationException,
+			IllegalAccessException {
+		new PartitionedSimulationRunner(createNetwork(), TEST_SIM_LENGTH,
+				new int[NODES - 1], 0, ExecutionMode.PLATFORM_THREADS,
+				BarrierType.LOCKING);
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	/**
+	 * Tests that nodes cannot be timed out where they could not be stopped,
+	 * rather than holding a partition, and every other, forever.
+	 */
+	public void testTimeoutUnstoppable() throws InstantiationException,
+			IllegalAccessException {
+		final Network net = new Network(MockEventScript.class, config, false);
+		new PartitionedSimulationRunner(net, TEST_SIM_LENGTH,
+				PartitionedSimulationRunner.blockAssignment(net, 2), 100000000,
+				ExecutionMode.PLATFORM_THREADS, BarrierType.LOCKING);
+	}
+
+	@Test(timeout = 30000, expected = IllegalStateException.class)
+	public void testSimulateTwice() throws InstantiationException,
+			IllegalAccessException {
+		PartitionedSimulationRunner runner = new PartitionedSimulationRunner(
+				createNetwork(), TEST_SIM_LENGTH, 2);
+		runner.simulate();
+		runner.simulate();
+	}
+
+}
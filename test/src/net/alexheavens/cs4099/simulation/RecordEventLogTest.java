@@ -0,0 +1,225 @@
+package net.alexheavens.cs4099.simulation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Color;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import net.alexheavens.cs4099.network.MockMessage;
+import net.alexheavens.cs4099.network.MockUserNode;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class RecordEventLogTest {
+
+	private RecordEventLog testLog;
+	private MockUserNode testSource;
+	private MockUserNode[] testNeighbours;
+	private MockMessage[] testMessages;
+
+	@Before
+	public void setup() {
+		testLog = new RecordEventLog();
+
+		final int nNeighbours = 20;
+		int nextId = 0;
+		testSource = new MockUserNode(nextId++);
+		testNeighbours = new MockUserNode[nNeighbours];
+		for (int i = 0; i < testNeighbours.length; i++) {
+			testNeighbours[i] = new MockUserNode(nextId++);
+			testSource.addNeighbour(testNeighbours[i], 1);
+		}
+
+		testMessages = new MockMessage[testNeighbours.length];
+		for (int i = 0; i < testMessages.length; i++) {
+			testMessages[i] = new MockMessage(testSource, testNeighbours[i], i);
+		}
+	}
+
+	/*
+	 * Creates one event of each type held as a record, and one held as an
+	 * object, each in its own timestep.
+	 */
+	private ISimulationEvent[] createMixedEvents() {
+		final MockUserNode node = testNeighbours[3];
+		final NodePauseEvent pauseEvent = new NodePauseEvent(7, node);
+		pauseEvent.markWithTimestep(4);
+		return new ISimulationEvent[] {
+				new MessageSentEvent(testMessages[0], 1),
+				new MessageArrivalEvent(testMessages[0], 2),
+				new MessageReadEvent(testMessages[0], 3), pauseEvent,
+				new NodeUnpauseEvent(5, node),
+				new NodeReceiveBlockEvent(6, node),
+				new NodeReceiveBlockResumeEvent(7, node),
+				new ColourChangeEvent(new Color(10, 20, 30, 40), node, 8),
+				new NodeKillEvent(9, node.getSimulationId()),
+				new NodeFailureEvent(10, node, new Exception("failure")),
+				new MessageSentEvent(testMessages[1], 11) };
+	}
+
+	@Test
+	/**
+	 * Tests that the log is created empty.
+	 */
+	public void testCreation() {
+		assertEquals(0, testLog.size());
+		assertEquals(0, testLog.messageCount());
+		assertEquals(0, testLog.toJSONObject().getJSONArray("events").size());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	/**
+	 * Test to make sure null is not a valid event to log.
+	 */
+	public void testAddNullEvent() {
+		testLog.addEvent(null);
+	}
+
+	@Test
+	/**
+	 * Tests that each message is stored once, however many events refer to it.
+	 */
+	public void testStoreMessagesOnce() {
+		for (int i = 0; i < testMessages.length; i++) {
+			testLog.addEvent(new MessageSentEvent(testMessages[i], i));
+			testLog.addEvent(new MessageArrivalEvent(testMessages[i], i + 1));
+		}
+		assertEquals(testMessages.length * 2, testLog.size());
+		assertEquals(testMessages.length, testLog.messageCount());
+	}
+
+	@Test
+	/**
+	 * Tests that the JSON produced from records is the same as that of an
+	 * EventLog holding the original events.
+	 */
+	public void testToJSONMatchesEventLog() {
+		final EventLog objectLog = new EventLog();
+		for (ISimulationEvent event : createMixedEvents()) {
+			testLog.addEvent(event);
+			objectLog.addEvent(event);
+		}
+
+		final JSONObject recordJSON = testLog.toJSONObject();
+		assertEquals(objectLog.toJSONObject().toString(), recordJSON.toString());
+		assertEquals(2, recordJSON.getJSONArray("messages").size());
+	}
+
+	@Test
+	/**
+	 * Tests that events logged out of timestep order are converted to JSON in
+	 * timestep order, keeping the order they were logged within a timestep.
+	 */
+	public void testToJSONUnordered() {
+		testLog.addEvent(new MessageSentEvent(testMessages[0], 5));
+		testLog.addEvent(new MessageSentEvent(testMessages[1], 2));
+		testLog.addEvent(new MessageSentEvent(testMessages[2], 5));
+		testLog.addEvent(new MessageSentEvent(testMessages[3], 1));
+
+		final JSONArray events = testLog.toJSONObject().getJSONArray("events");
+		final int[] expectedIds = { 3, 1, 0, 2 };
+		final long[] expectedTimesteps = { 1, 2, 5, 5 };
+		for (int i = 0; i < expectedIds.length; i++) {
+			assertEquals(expectedIds[i], events.getJSONObject(i).getInt(
+					MessageEvent.MESSAGE_ID_TAG));
+			assertEquals(expectedTimesteps[i], events.getJSONObject(i)
+					.getLong("timestep"));
+		}
+	}
+
+	@Test
+	/**
+	 * Tests that events are recreated with the type, timestep and state of
+	 * those logged, across several segments of records.
+	 */
+	public void testGetEventsInTimestep() {
+		final int nEvents = RecordEventLog.SEGMENT_RECORDS * 2 + 10;
+		final long focusTimestep = nEvents / 4;
+		int nFocusEvents = 0;
+		for (int i = 0; i < nEvents; i++) {
+			final long timestep = i / 4;
+			testLog.addEvent(new ColourChangeEvent(new Color(i, true),
+					testNeighbours[i % testNeighbours.length], timestep));
+			if (timestep == focusTimestep)
+				nFocusEvents++;
+		}
+		assertEquals(nEvents, testLog.size());
+
+		final Set<ISimulationEvent> events = testLog
+				.getEventsInTimestep(focusTimestep);
+		assertEquals(nFocusEvents, events.size());
+		for (ISimulationEvent event : events) {
+			final ColourChangeEvent colourEvent = (ColourChangeEvent) event;
+			assertEquals(focusTimestep, colourEvent.getTimestep());
+			assertEquals(focusTimestep, colourEvent.getColour() / 4);
+			assertEquals(testNeighbours[colourEvent.getColour()
+					% testNeighbours.length], colourEvent.node());
+		}
+	}
+
+	@Test
+	/**
+	 * Tests that events are found in a timestep when logged out of order, and
+	 * that events held as objects are returned as logged.
+	 */
+	public void testGetEventsInTimestepUnordered() {
+		final ISimulationEvent failure = new NodeFailureEvent(3,
+				testNeighbours[0], new Exception("failure"));
+		testLog.addEvent(new NodeKillEvent(3, 1));
+		testLog.addEvent(new NodeKillEvent(1, 2));
+		testLog.addEvent(failure);
+		testLog.addEvent(new NodeKillEvent(2, 3));
+
+		final Set<ISimulationEvent> events = testLog.getEventsInTimestep(3);
+		assertEquals(2, events.size());
+		assertTrue(events.contains(failure));
+		assertTrue(testLog.getEventsInTimestep(4).isEmpty());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	/**
+	 * Tests that it is not possible to store an event twice, which is a sign of
+	 * a coding error.
+	 */
+	public void testStoreEventTwice() {
+		final ISimulationEvent event = new MessageSentEvent(testMessages[0], 2);
+		testLog.addEvent(event);
+		testLog.addEvent(new MessageSentEvent(testMessages[1], 2));
+		testLog.addEvent(event);
+	}
+
+	@Test
+	/**
+	 * Tests that each event is recreated once, so that every request returns
+	 * the same object.
+	 */
+	public void testRecreateEventsOnce() {
+		for (ISimulationEvent event : createMixedEvents())
+			testLog.addEvent(event);
+
+		final List<ISimulationEvent> events = testLog.events();
+		final List<ISimulationEvent> again = testLog.events();
+		assertEquals(events.size(), again.size());
+		for (int i = 0; i < events.size(); i++) {
+			assertSame(events.get(i), again.get(i));
+			assertEquals(Collections.singleton(events.get(i)), testLog
+					.getEventsInTimestep(events.get(i).getTimestep()));
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	/**
+	 * Test to check parameter timestep of call to getEventsInTimestep().
+	 */
+	public void testGetInTimestepInvalid() {
+		testLog.getEventsInTimestep(-1);
+	}
+
+}
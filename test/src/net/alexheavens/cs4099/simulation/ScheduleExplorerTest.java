@@ -0,0 +1,178 @@
+package net.alexheavens.cs4099.simulation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import net.alexheavens.cs4099.network.Network;
+import net.alexheavens.cs4099.network.configuration.LinkConfig;
+import net.alexheavens.cs4099.network.configuration.NetworkConfig;
+import net.alexheavens.cs4099.usercode.MockOrderScript;
+import net.alexheavens.cs4099.usercode.MockSumScript;
+
+import org.junit.Test;
+
+public class ScheduleExplorerTest {
+
+	private static final long SIM_LENGTH = 10;
+	private static final ScheduleAssertion PASS = new ScheduleAssertion() {
+		public void check(Network network, SimulationResults results) {
+		}
+	};
+
+	/**
+	 * Creates a star of nodes around node 0, each leaf a timestep away.
+	 */
+	private static NetworkConfig star(int leaves) {
+		final NetworkConfig config = new NetworkConfig(leaves + 1);
+		for (int i = 1; i <= leaves; i++)
+			config.addLink(new LinkConfig(0, i, 1));
+		return config;
+	}
+
+	private static List<Integer> receivedAtCentre(Network network) {
+		return ((MockOrderScript) network.nodes().get(0).getScript())
+				.received();
+	}
+
+	@Test
+	/**
+	 * Tests that every interleaving of the messages arriving together at a
+	 * node is explored once, with the messages of each neighbour in the order
+	 * they were sent.
+	 */
+	public void testExploresEveryInterleaving() throws Exception {
+		final Set<List<Integer>> orders = Collections
+				.newSetFromMap(new ConcurrentHashMap<List<Integer>, Boolean>());
+		final ScheduleExplorer explorer = new ScheduleExplorer(
+				MockOrderScript.class, star(3), 0, 0, SIM_LENGTH,
+				new ScheduleAssertion() {
+					public void check(Network network,
+							SimulationResults results) {
+						final List<Integer> received = receivedAtCentre(network);
+						assertEquals(6, received.size());
+						for (int leaf = 1; leaf <= 3; leaf++)
+							assertTrue(received.indexOf(leaf * 10 + 1) < received
+									.indexOf(leaf * 10 + 2));
+						orders.add(new ArrayList<Integer>(received));
+					}
+				}, 4, ScheduleExplorer.DEFAULT_SCHEDULE_LIMIT, false);
+
+		final ExplorationResult result = explorer.explore();
+		assertFalse(result.failure() + "", result.hasFailed());
+		assertTrue(result.isExhaustive());
+
+		// 6! / (2! 2! 2!) interleavings of three neighbours' pairs.
+		assertEquals(90, result.schedulesRun());
+		assertEquals(0, result.schedulesPruned());
+		assertEquals(90, orders.size());
+	}
+
+	@Test
+	/**
+	 * Tests that a schedule failing the assertion is found, and fails again
+	 * when simulated alone.
+	 */
+	public void testFindsFailingSchedule() throws Exception {
+		final ScheduleExplorer explorer = new ScheduleExplorer(
+				MockOrderScript.class, star(3), 0, SIM_LENGTH,
+				new ScheduleAssertion() {
+					public void check(Network network,
+							SimulationResults results) {
+						final List<Integer> received = receivedAtCentre(network);
+						final List<Integer> sorted = new ArrayList<Integer>(
+								received);
+						Collections.sort(sorted);
+						assertEquals(sorted, received);
+					}
+				});
+
+		// Messages are delivered in the order they were sent by default.
+		explorer.simulate(new Schedule());
+
+		final ExplorationResult result = explorer.explore();
+		assertTrue(result.hasFailed());
+		assertFalse(result.isExhaustive());
+		assertTrue(result.failure() instanceof AssertionError);
+		final Schedule failing = result.failingSchedule();
+		assertNotNull(failing);
+		try {
+			explorer.simulate(failing);
+			fail("Failing schedule passed when simulated alone.");
+		} catch (AssertionError e) {
+		}
+	}
+
+	@Test
+	/**
+	 * Tests that schedules reaching a state already reached are abandoned,
+	 * while every schedule is still accounted for.
+	 */
+	public void testStateHashingPrunes() throws Exception {
+		final ScheduleAssertion sumAssertion = new ScheduleAssertion() {
+			public void check(Network network, SimulationResults results) {
+				assertEquals(10, ((MockSumScript) network.nodes().get(0)
+						.getScript()).sum());
+			}
+		};
+		final ExplorationResult hashed = new ScheduleExplorer(
+				MockSumScript.class, star(4), 0, 0, SIM_LENGTH,
+				sumAssertion, 4, ScheduleExplorer.DEFAULT_SCHEDULE_LIMIT, true)
+				.explore();
+		assertFalse(hashed.hasFailed());
+		assertTrue(hashed.isExhaustive());
+		assertTrue(hashed.schedulesPruned() > 0);
+		assertEquals(24, hashed.schedulesRun() + hashed.schedulesPruned());
+
+		final ExplorationResult unhashed = new ScheduleExplorer(
+				MockSumScript.class, star(4), 0, 0, SIM_LENGTH,
+				sumAssertion, 4, ScheduleExplorer.DEFAULT_SCHEDULE_LIMIT,
+				false).explore();
+		assertEquals(24, unhashed.schedulesRun());
+		assertEquals(0, unhashed.schedulesPruned());
+	}
+
+	@Test
+	/**
+	 * Tests that exploration stops at the limit on schedules.
+	 */
+	public void testScheduleLimit() throws Exception {
+		final ExplorationResult result = new ScheduleExplorer(
+				MockOrderScript.class, star(3), 0, 0, SIM_LENGTH, PASS, 2,
+				10, false).explore();
+		assertFalse(result.isExhaustive());
+		assertFalse(result.hasFailed());
+		assertEquals(10, result.schedulesRun());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testSimulateUnofferedChoice() throws Exception {
+		new ScheduleExplorer(MockOrderScript.class, star(3), 0, SIM_LENGTH,
+				PASS).simulate(new Schedule(90));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNegativeChoice() {
+		new Schedule(0, -1);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNullAssertion() throws Exception {
+		new ScheduleExplorer(MockOrderScript.class, star(3), 0, SIM_LENGTH,
+				null);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidThreads() throws Exception {
+		new ScheduleExplorer(MockOrderScript.class, star(3), 0, 0,
+				SIM_LENGTH, PASS, 0, 1, true);
+	}
+}
@@ -0,0 +1,64 @@
+package net.alexheavens.cs4099.simulation;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.lang.reflect.Field;
+import java.util.List;
+
+import net.alexheavens.cs4099.network.IMessage;
+import net.alexheavens.cs4099.usercode.EventNodeScript;
+
+import org.junit.Test;
+
+public class ScriptFieldsTest {
+
+	public static class BaseScript extends EventNodeScript {
+		public int count = 1;
+		public static int shared = 0;
+
+		public void onMessage(IMessage<?> message, int fromIndex) {
+		}
+	}
+
+	public static class StateScript extends BaseScript {
+		public int[] values = { 1, 2 };
+		public String name = "state";
+		public transient int cache = 3;
+	}
+
+	@Test
+	/**
+	 * Tests that only non-static, non-transient fields are state, ordered by
+	 * name from the script class up.
+	 */
+	public void testStateFields() {
+		final List<Field> fields = ScriptFields.stateFields(StateScript.class);
+		assertEquals(3, fields.size());
+		assertEquals("name", fields.get(0).getName());
+		assertEquals("values", fields.get(1).getName());
+		assertEquals("count", fields.get(2).getName());
+	}
+
+	@Test
+	/**
+	 * Tests that restored fields take the values copied, and that transient
+	 * fields are left as they are.
+	 */
+	public void testCopyRestore() {
+		final ScriptFields fields = new ScriptFields(StateScript.class);
+		final StateScript script = new StateScript();
+		final Object[] copied = fields.copy(script);
+
+		script.values[0] = 5;
+		script.name = "changed";
+		script.count = 7;
+		script.cache = 9;
+		fields.restore(script, copied);
+
+		assertArrayEquals(new int[] { 1, 2 }, script.values);
+		assertEquals("state", script.name);
+		assertEquals(1, script.count);
+		assertEquals(9, script.cache);
+	}
+}
@@ -0,0 +1,80 @@
+package net.alexheavens.cs4099.simulation;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class SimulationEventBusTest {
+
+	private SimulationEventBus bus;
+	private List<String> received;
+
+	@Before
+	public void setup() {
+		bus = new SimulationEventBus();
+		received = new ArrayList<String>();
+	}
+
+	private ISimulationEventListener createListener(final String name) {
+		return new ISimulationEventListener() {
+			public void eventRaised(ISimulationEvent event) {
+				received.add(name);
+			}
+		};
+	}
+
+	@Test
+	public void testCreationValid() {
+		assertEquals(0, bus.listenerCount());
+		bus.publish(new MockSimEvent(0));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testAddNullListener() {
+		bus.addListener(null);
+	}
+
+	@Test
+	/**
+	 * Tests that events are passed to listeners in the order they were added,
+	 * and that a listener added twice is passed each event once.
+	 */
+	public void testPublishInOrder() {
+		ISimulationEventListener first = createListener("first");
+		bus.addListener(first);
+		bus.addListener(createListener("second"));
+		bus.addListener(first);
+		assertEquals(2, bus.listenerCount());
+
+		bus.publish(new MockSimEvent(0));
+		assertEquals(2, received.size());
+		assertEquals("first", received.get(0));
+		assertEquals("second", received.get(1));
+	}
+
+	@Test
+	/**
+	 * Tests that removed listeners are not passed following events.
+	 */
+	public void testRemoveListener() {
+		ISimulationEventListener first = createListener("first");
+		ISimulationEventListener second = createListener("second");
+		ISimulationEventListener third = createListener("third");
+		bus.addListener(first);
+		bus.addListener(second);
+		bus.addListener(third);
+
+		bus.removeListener(second);
+		bus.removeListener(createListener("absent"));
+		assertEquals(2, bus.listenerCount());
+
+		bus.publish(new MockSimEvent(0));
+		assertEquals(2, received.size());
+		assertEquals("first", received.get(0));
+		assertEquals("third", received.get(1));
+	}
+}
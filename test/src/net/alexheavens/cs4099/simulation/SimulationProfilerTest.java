@@ -9,7 +9,7 @@ import static org.junit.Assert.*;
 import net.alexheavens.cs4099.concurrent.LeaderBarrier;
 import net.alexheavens.cs4099.network.MockPauseNode;
 import net.alexheavens.cs4099.network.MockUserNode;
-import net.alexheavens.cs4099.network.Node;
+import net.alexheavens.cs4099.network.ThreadedNode;
 import net.alexheavens.cs4099.usercode.NodeScript;
 
 public class SimulationProfilerTest {
@@ -20,7 +20,7 @@ public class SimulationProfilerTest {
 	private  static final long PAUSE_TOLERANCE_NS = 1000000; // To counteract inherent clock uncertainty.
 	private SimulationProfiler testProfiler;
 	private LeaderBarrier testBarrier;
-	private Node loopNode;
+	private ThreadedNode loopNode;
 
 	@Before
 	public void setup() {
@@ -187,7 +187,7 @@ public class SimulationProfilerTest {
 	 * Test that we cannot track a process that is already tracked.
 	 */
 	public void testTrackWhileAlreadyTracking() throws InterruptedException {
-		loopNode = new Node(new NodeScript() {
+		loopNode = new ThreadedNode(new NodeScript() {
 
 			@Override
 			public void execute() {
@@ -1,7 +1,9 @@
 package net.alexheavens.cs4099.simulation;
 
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import net.alexheavens.cs4099.network.INodeImpl;
 import net.alexheavens.cs4099.network.MockPauseNode;
@@ -9,12 +11,27 @@ import net.alexheavens.cs4099.network.MockUserNode;
 import net.alexheavens.cs4099.network.Network;
 import net.alexheavens.cs4099.network.Node;
 import net.alexheavens.cs4099.network.configuration.INetworkConfigFactory;
+import net.alexheavens.cs4099.network.configuration.LinkConfig;
 import net.alexheavens.cs4099.network.configuration.NetworkConfig;
 import net.alexheavens.cs4099.network.configuration.NetworkConfigFactory;
 import net.alexheavens.cs4099.testframework.MockTestSimulator;
+import net.alexheavens.cs4099.usercode.MockFloodScript;
+import net.alexheavens.cs4099.usercode.MockBusyScript;
+import net.alexheavens.cs4099.usercode.MockEventScript;
+import net.alexheavens.cs4099.usercode.MockInstrumentingLoader;
 import net.alexheavens.cs4099.usercode.MockReceiveScript;
+import net.alexheavens.cs4099.usercode.MockRendezvousScript;
+import net.alexheavens.cs4099.usercode.MockRoundsScript;
+import net.alexheavens.cs4099.usercode.MockTimeoutScript;
+import net.alexheavens.cs4099.usercode.NodeScript;
+import net.sf.json.JSONObject;
 
 import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+import net.alexheavens.cs4099.concurrent.LeaderBarrier;
+import net.alexheavens.cs4099.concurrent.VirtualThreadFactory;
+
 import org.junit.Before;
 import org.junit.Test;
 
@@ -42,20 +59,20 @@ public class SimulationRunnerTest {
 		assertEquals(SimulationState.PRE_SIMULATION, testSim.simulationState());
 		assertEquals(TEST_SIM_LENGTH, testSim.simulationLength());
 
-		// Test that the runner was added as an observer to the EventController.
+		// Test that the runner was added as a listener to the EventController.
 		EventController testController = testSim.eventController;
-		assertEquals(1, testController.countObservers());
-		testController.deleteObserver(testSim);
-		assertEquals(0, testController.countObservers());
+		assertEquals(1, testController.eventListenerCount());
+		testController.removeEventListener(testSim);
+		assertEquals(0, testController.eventListenerCount());
 
-		// Check that the runner was added as an observer to all nodes.
+		// Check that the controller was added as a listener to all nodes.
 		for (INodeImpl node : testSim.network().nodes()) {
 			MockUserNode simpleNode = (MockUserNode) node;
 			assertEquals(0, simpleNode.setupCount());
 			assertEquals(0, simpleNode.executedCount());
-			assertEquals(1, simpleNode.countObservers());
-			simpleNode.deleteObserver(testSim.eventController);
-			assertEquals(0, simpleNode.countObservers());
+			assertEquals(1, simpleNode.eventListenerCount());
+			simpleNode.removeEventListener(testSim.eventController);
+			assertEquals(0, simpleNode.eventListenerCount());
 		}
 	}
 
@@ -226,14 +243,14 @@ public class SimulationRunnerTest {
 	 */
 	public void testProcessNonPriorityEvent() {
 
-		// Create an observable that can pass our event to the runner.
-		MockUserNode observable = new MockUserNode();
-		observable.addObserver(testSim);
+		// Create a node that can pass our event to the runner.
+		MockUserNode source = new MockUserNode();
+		source.addEventListener(testSim);
 
 		// Create an event just below the priority threshold.
 		MockBlankEvent event = new MockBlankEvent(0);
 
-		observable.triggerEvent(event);
+		source.triggerEvent(event);
 	}
 
 	@Test(expected = IllegalStateException.class)
@@ -273,17 +290,6 @@ public class SimulationRunnerTest {
 		testSim.eventController.processEvent();
 	}
 
-	@Test(expected = IllegalArgumentException.class)
-	/**
-	 * Test that non-events are not accepted by the SimulationRunner.
-	 */
-	public void testNonEventNotify() {
-		MockUserNode observable = new MockUserNode();
-		observable.addObserver(testSim);
-		observable.triggerEvent(new Object());
-
-	}
-
 	@Test(timeout = 1000)
 	public void testSimulateRepeatedPauses() throws InstantiationException,
 			IllegalAccessException {
@@ -306,6 +312,312 @@ public class SimulationRunnerTest {
 		}
 	}
 
+	@Test(timeout = 5000)
+	/**
+	 * Tests that nodes executing on virtual Threads pause and complete as they
+	 * would on platform Threads.
+	 */
+	public void testSimulateVirtualThreads() throws InstantiationException,
+			IllegalAccessException {
+		assumeTrue(VirtualThreadFactory.isSupported());
+
+		treeNet = new Network(treeConfig, MockPauseNode.class);
+		SimulationRunner virtualSim = new SimulationRunner(treeNet,
+				TEST_SIM_LENGTH, null, 0, ExecutionMode.VIRTUAL_THREADS);
+		assertEquals(ExecutionMode.VIRTUAL_THREADS, virtualSim.executionMode());
+
+		virtualSim.simulate();
+
+		final int expectedPauseCount = (int) (TEST_SIM_LENGTH / MockPauseNode.DEFAULT_PAUSE_TIME);
+		for (Node node : treeNet.nodes()) {
+			assertTrue(VirtualThreadFactory.isVirtual(node.getThread()));
+			assertEquals(expectedPauseCount, ((MockPauseNode) node).pauseCount());
+			assertEquals(SimulationState.POST_SIMULATION,
+					node.getSimulationState());
+		}
+	}
+
+	@Test(timeout = 10000)
+	/**
+	 * Test that nodes pause and resume correctly at a parking barrier.
+	 */
+	public void testSimulateParkingBarrier() throws InstantiationException,
+			IllegalAccessException {
+		treeNet = new Network(treeConfig, MockPauseNode.class);
+		SimulationRunner parkingSim = new SimulationRunner(treeNet,
+				TEST_SIM_LENGTH, null, 0, ExecutionMode.PLATFORM_THREADS,
+				BarrierType.PARKING);
+		assertEquals(BarrierType.PARKING, parkingSim.barrierType());
+		parkingSim.simulate();
+
+		final int expectedPauseCount = (int) (TEST_SIM_LENGTH / MockPauseNode.DEFAULT_PAUSE_TIME);
+		for (Node node : treeNet.nodes()) {
+			assertEquals(expectedPauseCount, ((MockPauseNode) node).pauseCount());
+			assertEquals(SimulationState.POST_SIMULATION,
+					node.getSimulationState());
+		}
+	}
+
+	@Test(timeout = 10000)
+	/**
+	 * Test that nodes pause and resume correctly when events wait in a timing
+	 * wheel.
+	 */
+	public void testSimulateTimingWheel() throws InstantiationException,
+			IllegalAccessException {
+		treeNet = new Network(treeConfig, MockPauseNode.class);
+		SimulationRunner wheelSim = new SimulationRunner(treeNet,
+				TEST_SIM_LENGTH, null, 0, ExecutionMode.PLATFORM_THREADS,
+				BarrierType.LOCKING, EventQueueType.TIMING_WHEEL);
+		assertEquals(EventQueueType.TIMING_WHEEL, wheelSim.eventQueueType());
+		assertTrue(wheelSim.eventController instanceof TimingWheelEventController);
+		wheelSim.simulate();
+
+		final int expectedPauseCount = (int) (TEST_SIM_LENGTH / MockPauseNode.DEFAULT_PAUSE_TIME);
+		for (Node node : treeNet.nodes()) {
+			assertEquals(expectedPauseCount, ((MockPauseNode) node).pauseCount());
+			assertEquals(SimulationState.POST_SIMULATION,
+					node.getSimulationState());
+		}
+	}
+
+	@Test(timeout = 10000)
+	/**
+	 * Test that nodes pause and resume correctly when the independent events
+	 * of each timestep are processed concurrently.
+	 */
+	public void testSimulateParallelEvents() throws InstantiationException,
+			IllegalAccessException {
+		treeNet = new Network(treeConfig, MockPauseNode.class);
+		SimulationRunner parallelSim = new SimulationRunner(treeNet,
+				TEST_SIM_LENGTH, null, 0, ExecutionMode.PLATFORM_THREADS,
+				BarrierType.LOCKING, EventQueueType.PARALLEL_TIMING_WHEEL);
+		assertTrue(parallelSim.eventController instanceof ParallelEventController);
+		parallelSim.simulate();
+
+		final int expectedPauseCount = (int) (TEST_SIM_LENGTH / MockPauseNode.DEFAULT_PAUSE_TIME);
+		for (Node node : treeNet.nodes()) {
+			assertEquals(expectedPauseCount, ((MockPauseNode) node).pauseCount());
+			assertEquals(SimulationState.POST_SIMULATION,
+					node.getSimulationState());
+		}
+		assertTrue(((ParallelEventController) parallelSim.eventController)
+				.parallelRunCount() > 0);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testCooperativeParallelEvents() {
+		new SimulationRunner(treeNet, TEST_SIM_LENGTH, null, 0,
+				ExecutionMode.COOPERATIVE, BarrierType.LOCKING,
+				EventQueueType.PARALLEL_TIMING_WHEEL);
+	}
+
+	@Test(timeout = 10000)
+	/**
+	 * Test that nodes with Threads of their own execute correctly in
+	 * work-stealing execution.
+	 */
+	public void testSimulateWorkStealing() throws InstantiationException,
+			IllegalAccessException {
+		treeNet = new Network(treeConfig, MockPauseNode.class);
+		SimulationRunner workStealingSim = new SimulationRunner(treeNet,
+				TEST_SIM_LENGTH, null, 0, ExecutionMode.WORK_STEALING);
+		workStealingSim.simulate();
+
+		final int expectedPauseCount = (int) (TEST_SIM_LENGTH / MockPauseNode.DEFAULT_PAUSE_TIME);
+		for (Node node : treeNet.nodes()) {
+			assertEquals(expectedPauseCount, ((MockPauseNode) node).pauseCount());
+			assertEquals(SimulationState.POST_SIMULATION,
+					node.getSimulationState());
+		}
+	}
+
+	@Test(timeout = 10000)
+	/**
+	 * Test that every node made runnable in a timestep executes at the same
+	 * time in work-stealing execution.
+	 */
+	public void testSimulateWorkStealingTogether()
+			throws InstantiationException, IllegalAccessException {
+		final Network rendezvousNet = new Network(MockRendezvousScript.class,
+				treeConfig, false);
+		MockRendezvousScript.reset(rendezvousNet.nodeCount());
+		new SimulationRunner(rendezvousNet, TEST_SIM_LENGTH, null, 0,
+				ExecutionMode.WORK_STEALING).simulate();
+
+		assertEquals(rendezvousNet.nodeCount(), MockRendezvousScript
+				.metCount());
+	}
+
+	@Test(timeout = 10000)
+	/**
+	 * Test that the simulation Thread waits for nodes once per batch of
+	 * events, rather than once per event, in a mode that batches timesteps.
+	 */
+	public void testSimulateBatchesTimestepEvents()
+			throws InstantiationException, IllegalAccessException {
+		final Network floodNet = new Network(MockFloodScript.class,
+				treeConfig, false);
+		final AtomicInteger leaderWaits = new AtomicInteger(0);
+		IEventLog log = createCountingRunner(floodNet,
+				ExecutionMode.WORK_STEALING, leaderWaits).simulate()
+				.getEvents();
+
+		int eventTimesteps = 0;
+		int events = 0;
+		for (long step = 0; step < TEST_SIM_LENGTH; step++) {
+			final int stepEvents = log.getEventsInTimestep(step).size();
+			if (stepEvents > 0)
+				eventTimesteps++;
+			events += stepEvents;
+		}
+		assertTrue(events > 2 * eventTimesteps + 2);
+		assertTrue(leaderWaits.get() <= 2 * eventTimesteps + 2);
+		for (Node node : floodNet.nodes()) {
+			assertEquals(SimulationState.POST_SIMULATION,
+					node.getSimulationState());
+		}
+	}
+
+	@Test(timeout = 10000)
+	/**
+	 * Test that the simulation Thread waits for nodes after every event by
+	 * default, so that each node sees only the events processed before it was
+	 * made runnable.
+	 */
+	public void testSimulateProcessesEventsSingly()
+			throws InstantiationException, IllegalAccessException {
+		final Network floodNet = new Network(MockFloodScript.class,
+				treeConfig, false);
+		final AtomicInteger leaderWaits = new AtomicInteger(0);
+		IEventLog log = createCountingRunner(floodNet,
+				ExecutionMode.PLATFORM_THREADS, leaderWaits).simulate()
+				.getEvents();
+
+		int eventTimesteps = 0;
+		for (long step = 0; step < TEST_SIM_LENGTH; step++) {
+			if (log.getEventsInTimestep(step).size() > 0)
+				eventTimesteps++;
+		}
+		assertTrue(leaderWaits.get() > 2 * eventTimesteps + 2);
+	}
+
+	/*
+	 * Creates a runner counting the waits of the simulation Thread at the
+	 * barrier.
+	 */
+	private SimulationRunner createCountingRunner(final Network net,
+			ExecutionMode mode, final AtomicInteger leaderWaits) {
+		return new SimulationRunner(net, TEST_SIM_LENGTH, null, 0, mode) {
+			protected LeaderBarrier createBarrier(Thread leader) {
+				return new LeaderBarrier(leader, net.nodeCount()) {
+					public void waitThreadUnInterruptedly() {
+						if (Thread.currentThread() == getLeader())
+							leaderWaits.incrementAndGet();
+						super.waitThreadUnInterruptedly();
+					}
+				};
+			}
+		};
+	}
+
+	@Test(timeout = 10000)
+	/**
+	 * Test that cooperative simulations of networks created from the same seed
+	 * produce identical event logs.
+	 */
+	public void testSimulateCooperativeDeterministic()
+			throws InstantiationException, IllegalAccessException {
+		final long seed = 4099;
+		String firstLog = null;
+		for (int i = 0; i < 3; i++) {
+			Network floodNet = new Network(MockFloodScript.class, treeConfig,
+					true, seed);
+			SimulationRunner cooperativeSim = new SimulationRunner(floodNet,
+					TEST_SIM_LENGTH, null, 0, ExecutionMode.COOPERATIVE);
+			String log = cooperativeSim.simulate().getEvents().toJSONObject()
+					.toString();
+
+			if (firstLog == null)
+				firstLog = log;
+			assertEquals(firstLog, log);
+			for (Node node : floodNet.nodes()) {
+				assertEquals(VirtualThreadFactory.isSupported(),
+						VirtualThreadFactory.isVirtual(node.getThread()));
+				assertEquals(SimulationState.POST_SIMULATION,
+						node.getSimulationState());
+			}
+		}
+	}
+
+	@Test(timeout = 10000)
+	/**
+	 * Tests that a simulation ends once every node has blocked with no event
+	 * waiting, however long it was to run.
+	 */
+	public void testSimulateEndsWhenQuiescent() throws InstantiationException,
+			IllegalAccessException {
+		Network floodNet = new Network(MockFloodScript.class, treeConfig, false);
+		SimulationRunner floodSim = new SimulationRunner(floodNet,
+				Long.MAX_VALUE / 2);
+		SimulationResults results = floodSim.simulate();
+
+		assertEquals(TerminationReason.QUIESCENT, results
+				.getTerminationReason());
+		assertEquals(TerminationReason.QUIESCENT, floodSim
+				.terminationReason());
+		assertTrue(results.getTerminationTimestep() < TEST_SIM_LENGTH);
+		assertEquals(results.getTerminationTimestep(), floodSim
+				.terminationTimestep());
+
+		// Every message sent arrived before the end.
+		long latest = 0;
+		for (long step = 0; step <= results.getTerminationTimestep(); step++) {
+			if (!results.getEvents().getEventsInTimestep(step).isEmpty())
+				latest = step;
+		}
+		assertEquals(latest, results.getTerminationTimestep());
+		for (Node node : floodNet.nodes()) {
+			assertEquals(SimulationState.POST_SIMULATION,
+					node.getSimulationState());
+		}
+	}
+
+	@Test(timeout = 5000)
+	/**
+	 * Tests that a simulation whose nodes keep pausing runs to its length.
+	 */
+	public void testSimulateEndsAtLength() throws InstantiationException,
+			IllegalAccessException {
+		treeNet = new Network(treeConfig, MockPauseNode.class);
+		testSim = new MockSimulationRunner(treeNet, TEST_SIM_LENGTH);
+		SimulationResults results = testSim.simulate();
+
+		assertEquals(TerminationReason.LENGTH_REACHED, results
+				.getTerminationReason());
+		assertEquals(TEST_SIM_LENGTH, results.getTerminationTimestep());
+	}
+
+	@Test(timeout = 10000)
+	/**
+	 * Tests that nodes completing during simulation release their Threads,
+	 * while the simulation continues with those left.
+	 */
+	public void testCompletedNodesReleased() throws InstantiationException,
+			IllegalAccessException {
+		MockTestSimulator sim = new MockTestSimulator(treeConfig,
+				MockFloodScript.class, null);
+		Network net = sim.getRunner().network();
+		sim.simulateTo(TEST_SIM_LENGTH / 2);
+
+		for (Node node : net.nodes()) {
+			assertEquals(SimulationState.COMPLETED, node.getSimulationState());
+			while (node.getThread().isAlive()) {
+			}
+		}
+		assertEquals(0, sim.getRunner().pauseBarrier.getFollowerThreshold());
+	}
+
 	@Test(timeout = 1000)
 	public void testReturnLog() {
 		IEventLog log = testSim.simulate().getEvents();
@@ -332,6 +644,30 @@ public class SimulationRunnerTest {
 		}
 	}
 
+	@Test(timeout = 5000)
+	/**
+	 * Tests that the times taken to start and halt every node are recorded.
+	 */
+	public void testSetupTeardownTimeRecorded() throws InstantiationException,
+			IllegalAccessException {
+		treeNet = new Network(treeConfig, MockPauseNode.class);
+		testSim = new MockSimulationRunner(treeNet, TEST_SIM_LENGTH);
+		assertEquals(SimulationResults.TIME_NOT_RECORDED, testSim.setupTime());
+		assertEquals(SimulationResults.TIME_NOT_RECORDED, testSim
+				.teardownTime());
+
+		SimulationResults results = testSim.simulate();
+		assertTrue(results.getSetupTime() >= 0);
+		assertEquals(results.getSetupTime(), testSim.setupTime());
+		assertTrue(results.getTeardownTime() >= 0);
+		assertEquals(results.getTeardownTime(), testSim.teardownTime());
+		for (Node node : treeNet.nodes()) {
+			assertEquals(SimulationState.POST_SIMULATION,
+					node.getSimulationState());
+			assertFalse(node.getThread().isAlive());
+		}
+	}
+
 	@Test
 	/**
 	 * Tests that a set of events can be prescribed to occur during simulation.
@@ -371,4 +707,248 @@ public class SimulationRunnerTest {
 			}
 		}
 	}
+
+	/*
+	 * The events of a simulation as JSON, without the stack traces of failures,
+	 * which differ with the Thread by which a node was timed out.
+	 */
+	private static String eventsWithoutTraces(SimulationResults results) {
+		return results.getEvents().toJSONObject().toString().replaceAll(
+				"\"stackTrace\":\\[[^\\]]*\\]", "");
+	}
+
+	@Test(timeout = 10000)
+	/**
+	 * Test that a simulation in which a node was timed out is replayed to the
+	 * same events, timing the node out without profiling it.
+	 */
+	public void testReplayTimeout() throws InstantiationException,
+			IllegalAccessException {
+		final long nodeTimeout = 100000000;
+		final Class<? extends NodeScript> timeoutScript = MockInstrumentingLoader
+				.instrument(MockTimeoutScript.class);
+		final Network net = new Network(timeoutScript, treeConfig, true);
+		final SimulationRunner runner = new SimulationRunner(net,
+				TEST_SIM_LENGTH, null, nodeTimeout);
+		final SimulationResults results = runner.simulate();
+		final SimulationRecording recording = runner.recording();
+		assertEquals(1, recording.timeouts().size());
+		final ProcessTimeout timeout = recording.timeouts().get(0);
+		assertTrue(net.nodes().get(timeout.simulationId()).isInitiator());
+
+		final Network replayNet = recording.createNetwork(timeoutScript,
+				treeConfig);
+		final SimulationRunner replay = new SimulationRunner(replayNet,
+				new SimulationRecording(recording.toJSONObject()));
+		final SimulationResults replayed = replay.simulate();
+		assertEquals(eventsWithoutTraces(results),
+				eventsWithoutTraces(replayed));
+		assertEquals(results.getTerminationReason(), replayed
+				.getTerminationReason());
+		assertEquals(results.getTerminationTimestep(), replayed
+				.getTerminationTimestep());
+		assertEquals(SimulationState.POST_SIMULATION, replayNet.nodes().get(
+				timeout.simulationId()).getSimulationState());
+		assertEquals(recording.timeouts(), replay.recording().timeouts());
+		for (Map<String, Long> nodeTimes : replayed.getJSONTimeMap().values())
+			assertTrue(nodeTimes.isEmpty());
+	}
+
+	@Test(timeout = 10000)
+	/**
+	 * Tests that a node looping forever in a script that is not instrumented
+	 * is timed out by stopping its Thread, where Threads can be stopped.
+	 */
+	public void testTimeoutStopsThread() throws InstantiationException,
+			IllegalAccessException {
+		assumeTrue(ExecutionMode.PLATFORM_THREADS.canStopThreads());
+		final Network net = new Network(MockTimeoutScript.class, treeConfig,
+				true);
+		final SimulationRunner runner = new SimulationRunner(net,
+				TEST_SIM_LENGTH, null, 100000000);
+		runner.simulate();
+		assertEquals(1, runner.recording().timeouts().size());
+		for (Node node : net.nodes())
+			assertEquals(SimulationState.POST_SIMULATION, node
+					.getSimulationState());
+	}
+
+	@Test(timeout = 20000)
+	/**
+	 * Tests that an instrumented script looping forever on a virtual Thread,
+	 * which cannot be stopped, is stopped by revoking its budget. Nodes left
+	 * waiting for a carrier by the loop may be timed out with it.
+	 */
+	public void testTimeoutVirtualThreads() throws InstantiationException,
+			IllegalAccessException {
+		assumeTrue(VirtualThreadFactory.isSupported());
+		final Network net = new Network(MockInstrumentingLoader
+				.instrument(MockTimeoutScript.class), treeConfig, true);
+		final SimulationRunner runner = new SimulationRunner(net,
+				TEST_SIM_LENGTH, null, 100000000,
+				ExecutionMode.VIRTUAL_THREADS);
+		runner.simulate();
+		boolean initiatorTimedOut = false;
+		for (ProcessTimeout timeout : runner.recording().timeouts()) {
+			if (net.nodes().get(timeout.simulationId()).isInitiator())
+				initiatorTimedOut = true;
+		}
+		assertTrue(initiatorTimedOut);
+		for (Node node : net.nodes()) {
+			assertEquals(SimulationState.POST_SIMULATION, node
+					.getSimulationState());
+			while (node.getThread().isAlive()) {
+			}
+		}
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	/**
+	 * Tests that nodes cannot be timed out where they could not be stopped,
+	 * rather than holding simulation forever.
+	 */
+	public void testTimeoutUnstoppable() throws InstantiationException,
+			IllegalAccessException {
+		assumeTrue(VirtualThreadFactory.isSupported());
+		new SimulationRunner(new Network(MockTimeoutScript.class, treeConfig,
+				true), TEST_SIM_LENGTH, null, 100000000,
+				ExecutionMode.VIRTUAL_THREADS);
+	}
+
+	@Test(timeout = 10000)
+	/**
+	 * Test that prescribed events of the same timestep are replayed in the
+	 * order they were scheduled, and that recordings are kept in JSON.
+	 */
+	public void testReplayPrescribedOrder() throws InstantiationException,
+			IllegalAccessException {
+		final Set<NodeKillEvent> events = new HashSet<NodeKillEvent>();
+		for (int i = 0; i < treeConfig.nodeCount(); i += 2)
+			events.add(new NodeKillEvent(2, i));
+		final Network net = new Network(MockReceiveScript.class, treeConfig,
+				true, 4099);
+		final SimulationRunner runner = new SimulationRunner(net,
+				TEST_SIM_LENGTH, events, 0);
+		final SimulationResults results = runner.simulate();
+
+		final SimulationRecording recording = runner.recording();
+		assertEquals(events.size(), recording.prescribedEvents().size());
+		assertTrue(recording.prescribedEvents().containsAll(events));
+		assertTrue(recording.timeouts().isEmpty());
+		assertEquals(TEST_SIM_LENGTH, recording.simulationLength());
+		assertEquals(ExecutionMode.PLATFORM_THREADS, recording
+				.executionMode());
+
+		final JSONObject json = recording.toJSONObject();
+		final SimulationRecording read = new SimulationRecording(json);
+		assertEquals(json.toString(), read.toJSONObject().toString());
+		assertEquals(recording.initiator(), read.initiator());
+		assertEquals(recording.scrambleCode(), read.scrambleCode());
+
+		final SimulationResults replayed = new SimulationRunner(read
+				.createNetwork(MockReceiveScript.class, treeConfig), read)
+				.simulate();
+		assertEquals(results.getEvents().toJSONObject().toString(), replayed
+				.getEvents().toJSONObject().toString());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	/**
+	 * Test that a recording cannot be replayed by a network whose initiator
+	 * differs from that recorded.
+	 */
+	public void testReplayOtherInitiator() throws InstantiationException,
+			IllegalAccessException {
+		final SimulationRunner runner = new SimulationRunner(new Network(
+				MockRoundsScript.class, treeConfig, true), TEST_SIM_LENGTH);
+		runner.simulate();
+		final SimulationRecording recording = runner.recording();
+		new SimulationRunner(new Network(MockRoundsScript.class, treeConfig,
+				(recording.initiator() + 1) % treeConfig.nodeCount(),
+				recording.scrambleCode()), recording);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testReplayNullRecording() {
+		new SimulationRunner(treeNet, (SimulationRecording) null);
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testRecordingBeforeSimulation() {
+		testSim.recording();
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidInstructionBudget() {
+		testSim.setInstructionBudget(0);
+	}
+
+	@Test(timeout = 20000)
+	/**
+	 * Tests that a timeout is kept alongside an instruction budget, timing
+	 * out a node that spends its time where it is not charged.
+	 */
+	public void testInstructionBudgetWithTimeout()
+			throws InstantiationException, IllegalAccessException {
+		final Network net = new Network(MockInstrumentingLoader
+				.instrument(MockBusyScript.class), treeConfig, true);
+		final SimulationRunner runner = new SimulationRunner(net,
+				TEST_SIM_LENGTH, null, 100000000);
+		runner.setInstructionBudget(1000);
+		runner.simulate();
+
+		assertEquals(1000, runner.recording().instructionBudget());
+		assertEquals(1, runner.recording().timeouts().size());
+		final ProcessTimeout timeout = runner.recording().timeouts().get(0);
+		assertTrue(net.nodes().get(timeout.simulationId()).isInitiator());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testInstructionBudgetReplayed() throws InstantiationException,
+			IllegalAccessException {
+		final SimulationRunner runner = new SimulationRunner(new Network(
+				MockRoundsScript.class, treeConfig, true), TEST_SIM_LENGTH);
+		runner.simulate();
+		final SimulationRecording recording = runner.recording();
+		new SimulationRunner(recording.createNetwork(MockRoundsScript.class,
+				treeConfig), recording).setInstructionBudget(1000);
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testInstructionBudgetAfterSimulation() {
+		testSim.setSimState(SimulationState.SIMULATING);
+		testSim.setInstructionBudget(1000);
+	}
+
+	@Test
+	/**
+	 * Tests that event-driven nodes joined by links of low latency are given
+	 * the same worker, and those joined only by a slow link are not.
+	 */
+	public void testWorkerAssignmentKeepsClusters() throws Exception {
+		final NetworkConfig clusters = new NetworkConfig(8);
+		for (int i = 0; i < 4; i++) {
+			clusters.addLink(new LinkConfig(i, (i + 1) % 4, 1));
+			clusters.addLink(new LinkConfig(4 + i, 4 + (i + 1) % 4, 1));
+		}
+		clusters.addLink(new LinkConfig(0, 4, 10));
+		final Network net = new Network(MockEventScript.class, clusters, false);
+
+		final int[] workerOf = SimulationRunner.workerAssignment(net.nodes(),
+				8, 2);
+		for (int i = 1; i < 4; i++) {
+			assertEquals(workerOf[0], workerOf[i]);
+			assertEquals(workerOf[4], workerOf[4 + i]);
+		}
+		assertTrue(workerOf[0] != workerOf[4]);
+		assertTrue(workerOf[0] >= 0 && workerOf[4] >= 0);
+	}
+
+	@Test
+	public void testWorkerAssignmentThreadedNodes() {
+		final int[] workerOf = SimulationRunner.workerAssignment(treeNet
+				.nodes(), treeNet.nodeCount(), 4);
+		for (int worker : workerOf)
+			assertEquals(-1, worker);
+	}
 }
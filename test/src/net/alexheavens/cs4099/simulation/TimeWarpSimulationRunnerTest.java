@@ -0,0 +1,180 @@
+package net.alexheavens.cs4099.simulation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import net.alexheavens.cs4099.network.IMessageImpl;
+import net.alexheavens.cs4099.network.Network;
+import net.alexheavens.cs4099.network.Node;
+import net.alexheavens.cs4099.network.configuration.LinkConfig;
+import net.alexheavens.cs4099.network.configuration.NetworkConfig;
+import net.alexheavens.cs4099.usercode.MockRelayScript;
+import net.alexheavens.cs4099.usercode.MockRoundsScript;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class TimeWarpSimulationRunnerTest {
+
+	private static final long TEST_SIM_LENGTH = 60;
+	private static final int NODES = 24;
+	private NetworkConfig config;
+
+	@Before
+	public void setup() {
+		// A ring with chords, of assorted latencies.
+		final Random random = new Random(4099);
+		config = new NetworkConfig(NODES);
+		for (int i = 0; i < NODES; i++) {
+			config.addLink(new LinkConfig(i, (i + 1) % NODES, 1 + random
+					.nextInt(4)));
+		}
+		for (int i = 0; i < NODES / 2; i += 3) {
+			config.addLink(new LinkConfig(i, i + NODES / 2, 2 + random
+					.nextInt(3)));
+		}
+	}
+
+	private Network createNetwork() throws InstantiationException,
+			IllegalAccessException {
+		return new Network(MockRelayScript.class, config, false);
+	}
+
+	/*
+	 * Describes the events of each timestep of a log, in an order independent
+	 * of the order in which they were processed.
+	 */
+	private List<List<String>> describe(IEventLog log) {
+		final List<List<String>> timesteps = new ArrayList<List<String>>();
+		for (long step = 0; step < TEST_SIM_LENGTH; step++) {
+			final List<String> descriptions = new ArrayList<String>();
+			for (ISimulationEvent event : log.getEventsInTimestep(step)) {
+				String description = event.getEventType().toString();
+				if (event instanceof MessageEvent) {
+					final IMessageImpl<?> message = ((MessageEvent) event)
+							.message();
+					description += " " + message.getData() + " from "
+							+ message.source().getSimulationId()
+							+ " to "
+							+ message.target().getSimulationId();
+				} else if (event instanceof NodeEvent) {
+					description += " at " + ((NodeEvent) event).getNodeId();
+				}
+				descriptions.add(description);
+			}
+			Collections.sort(descriptions);
+			timesteps.add(descriptions);
+		}
+		return timesteps;
+	}
+
+	private int[] receivedCounts(Network net) {
+		final int[] counts = new int[NODES];
+		for (Node node : net.nodes()) {
+			counts[node.getSimulationId()] = ((MockRelayScript) node
+					.getScript()).receivedCount();
+		}
+		return counts;
+	}
+
+	@Test(timeout = 30000)
+	/**
+	 * Tests that simulating a network optimistically produces the same events
+	 * in each timestep, and leaves each script in the same state, as
+	 * simulating it sequentially, however often processes meet.
+	 */
+	public void testSimulateMatchesSequential() throws InstantiationException,
+			IllegalAccessException {
+		final Network sequentialNet = createNetwork();
+		final List<List<String>> sequential = describe(new SimulationRunner(
+				sequentialNet, TEST_SIM_LENGTH).simulate().getEvents());
+		final int[] sequentialCounts = receivedCounts(sequentialNet);
+		int events = 0;
+		for (List<String> timestep : sequential)
+			events += timestep.size();
+		assertTrue(events > NODES * MockRelayScript.HOPS);
+
+		for (int partitions : new int[] { 1, 2, 3, 5 }) {
+			for (int roundEvents : new int[] { 1, 7,
+					TimeWarpSimulationRunner.DEFAULT_ROUND_EVENTS }) {
+				final Network net = createNetwork();
+				final TimeWarpSimulationRunner runner = new TimeWarpSimulationRunner(
+						net, TEST_SIM_LENGTH, PartitionedSimulationRunner
+								.blockAssignment(net, partitions), roundEvents);
+				assertEquals(partitions, runner.partitionCount());
+				assertEquals(sequential, describe(runner.simulate()
+						.getEvents()));
+				assertTrue(runner.roundCount() > 0);
+				for (int id = 0; id < NODES; id++)
+					assertEquals(sequentialCounts[id], receivedCounts(net)[id]);
+				for (Node node : net.nodes()) {
+					assertEquals(SimulationState.POST_SIMULATION, node
+							.getSimulationState());
+				}
+			}
+		}
+	}
+
+	@Test(timeout = 30000)
+	/**
+	 * Tests that every event processed is either committed or rolled back.
+	 */
+	public void testProcessedEventsCommittedOrRolledBack()
+			throws InstantiationException, IllegalAccessException {
+		final TimeWarpSimulationRunner runner = new TimeWarpSimulationRunner(
+				createNetwork(), TEST_SIM_LENGTH, 4);
+		final IEventLog log = runner.simulate().getEvents();
+
+		// Each node is invoked at its start, when it wakes and when a message
+		// arrives.
+		long committed = NODES;
+		for (long step = 0; step < TEST_SIM_LENGTH; step++) {
+			for (ISimulationEvent event : log.getEventsInTimestep(step)) {
+				if (event.getEventType() == SimEventType.NODE_UNPAUSE
+						|| event.getEventType() == SimEventType.MESSAGE_ARRIVAL)
+					committed++;
+			}
+		}
+		assertEquals(committed, runner.processedCount()
+				- runner.rolledBackCount());
+		assertTrue(runner.antiMessageCount() >= 0);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testThreadedNodes() throws InstantiationException,
+			IllegalAccessException {
+		new TimeWarpSimulationRunner(new Network(MockRoundsScript.class,
+				config, false), TEST_SIM_LENGTH, 2);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testEmptyPartition() throws InstantiationException,
+			IllegalAccessException {
+		final int[] partitionOf = new int[NODES];
+		partitionOf[0] = 2;
+		new TimeWarpSimulationRunner(createNetwork(), TEST_SIM_LENGTH,
+				partitionOf, 1);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidRoundEvents() throws InstantiationException,
+			IllegalAccessException {
+		new TimeWarpSimulationRunner(createNetwork(), TEST_SIM_LENGTH,
+				new int[NODES], 0);
+	}
+
+	@Test(timeout = 30000, expected = IllegalStateException.class)
+	public void testSimulateTwice() throws InstantiationException,
+			IllegalAccessException {
+		TimeWarpSimulationRunner runner = new TimeWarpSimulationRunner(
+				createNetwork(), TEST_SIM_LENGTH, 2);
+		runner.simulate();
+		runner.simulate();
+	}
+
+}
@@ -0,0 +1,83 @@
+package net.alexheavens.cs4099.simulation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.alexheavens.cs4099.network.IMessageImpl;
+import net.alexheavens.cs4099.network.MockUserNode;
+import net.alexheavens.cs4099.network.StringMessage;
+
+import org.junit.Test;
+
+public class TimingWheelEventControllerTest extends EventControllerTest {
+
+	@Override
+	protected EventController createController(long processLimit) {
+		return new TimingWheelEventController(processLimit);
+	}
+
+	@Override
+	@Test
+	public void testProcessMessageSentEvent() {
+		MockUserNode neighbour = new MockUserNode(100);
+		mockNode.addNeighbour(neighbour, 1);
+		StringMessage testMessage = new StringMessage("tag", "data");
+
+		mockNode.setSimulationState(SimulationState.SIMULATING);
+		mockNode.send(neighbour, testMessage);
+
+		// Check that an appropriate message event was created.
+		TimingWheelEventController wheelController = (TimingWheelEventController) testController;
+		assertEquals(1, wheelController.waitingEventCount());
+		ISimulationEvent event = wheelController.pollEvent();
+		assertTrue(event instanceof MessageArrivalEvent);
+		IMessageImpl<?> message = ((MessageArrivalEvent) event).message();
+		assertEquals(mockNode, message.source());
+		assertEquals(neighbour, message.target());
+		assertEquals(mockNode.neighbourLink(neighbour).latency(), event
+				.getTimestep());
+	}
+
+	@Test
+	/**
+	 * Tests that events of the same timestep are processed in the order they
+	 * were scheduled.
+	 */
+	public void testProcessInScheduledOrder() {
+		final long timestep = 70;
+		final List<ISimulationEvent> processed = new ArrayList<ISimulationEvent>();
+		final List<ISimulationEvent> scheduled = new ArrayList<ISimulationEvent>();
+		for (int i = 0; i < 10; i++) {
+			MockSimEvent event = new MockSimEvent(timestep) {
+				public void process(IEventController controller) {
+					processed.add(this);
+				}
+			};
+			scheduled.add(event);
+			testController.scheduleEvent(event);
+		}
+
+		testController.processTimestep();
+		assertEquals(scheduled, processed);
+	}
+
+	@Test
+	/**
+	 * Tests that events far beyond the simulation length can be scheduled
+	 * alongside near events.
+	 */
+	public void testScheduleDistantEvents() {
+		MockSimEvent distantEvent = new MockSimEvent(Long.MAX_VALUE / 2);
+		MockSimEvent nearEvent = new MockSimEvent(SIM_LENGTH - 1);
+		testController.scheduleEvent(distantEvent);
+		testController.scheduleEvent(nearEvent);
+
+		assertEquals(SIM_LENGTH - 1, testController.nextEventTimestep());
+		testController.processEvent();
+		assertTrue(nearEvent.eventProcessed());
+		assertEquals(Long.MAX_VALUE / 2, testController.nextEventTimestep());
+	}
+}
@@ -0,0 +1,101 @@
+package net.alexheavens.cs4099.simulation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class TimingWheelTest {
+
+	private TimingWheel wheel;
+
+	@Before
+	public void setup() {
+		wheel = new TimingWheel();
+	}
+
+	@Test
+	public void testCreationValid() {
+		assertEquals(0, wheel.size());
+		assertEquals(IEventController.NO_EVENTS_TIMESTEP, wheel.nextTimestep());
+		assertNull(wheel.poll());
+		assertTrue(wheel.pollTimestep().isEmpty());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testAddNullEvent() {
+		wheel.add(null);
+	}
+
+	@Test(expected = IllegalStateException.class)
+	/**
+	 * Tests that an event cannot be added before one already removed.
+	 */
+	public void testAddPastEvent() {
+		wheel.add(new MockSimEvent(100));
+		wheel.poll();
+		wheel.add(new MockSimEvent(99));
+	}
+
+	@Test
+	/**
+	 * Tests that events are removed in timestep order, matching a priority
+	 * queue, whilst events are added at a wide range of distances.
+	 */
+	public void testPollMatchesPriorityQueue() {
+		final Random random = new Random(4099);
+		final PriorityQueue<Long> expected = new PriorityQueue<Long>();
+		long now = 0;
+		for (int i = 0; i < 20000; i++) {
+			if (expected.isEmpty() || random.nextInt(3) > 0) {
+				final long distance = random.nextBoolean() ? random.nextInt(70)
+						: (random.nextLong() >>> (1 + random.nextInt(62)));
+				final long timestep = now + distance;
+				wheel.add(new MockSimEvent(timestep));
+				expected.add(timestep);
+			} else {
+				assertEquals(expected.peek().longValue(), wheel.nextTimestep());
+				now = expected.poll();
+				assertEquals(now, wheel.poll().getTimestep());
+			}
+			assertEquals(expected.size(), wheel.size());
+		}
+
+		while (!expected.isEmpty())
+			assertEquals(expected.poll().longValue(), wheel.poll()
+					.getTimestep());
+		assertEquals(0, wheel.size());
+	}
+
+	@Test
+	/**
+	 * Tests that every event of the earliest timestep is removed at once, in
+	 * the order added, including those cascaded from higher levels.
+	 */
+	public void testPollTimestep() {
+		final long timestep = 1 << 20;
+		final MockSimEvent[] events = new MockSimEvent[5];
+		for (int i = 0; i < events.length; i++) {
+			events[i] = new MockSimEvent(timestep);
+			wheel.add(events[i]);
+			wheel.add(new MockSimEvent(timestep + i + 1));
+		}
+
+		Queue<ISimulationEvent> bucket = wheel.pollTimestep();
+		assertEquals(events.length, bucket.size());
+		for (int i = 0; i < events.length; i++)
+			assertEquals(events[i], bucket.poll());
+		assertEquals(events.length, wheel.size());
+		assertEquals(timestep + 1, wheel.nextTimestep());
+
+		// Events may still be added for the timestep just removed.
+		wheel.add(new MockSimEvent(timestep));
+		assertEquals(timestep, wheel.nextTimestep());
+	}
+}
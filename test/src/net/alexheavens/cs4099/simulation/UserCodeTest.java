@@ -8,7 +8,7 @@ import org.junit.Before;
 import org.junit.Test;
 
 import net.alexheavens.cs4099.concurrent.LeaderBarrier;
-import net.alexheavens.cs4099.network.MockSimObserver;
+import net.alexheavens.cs4099.network.MockSimListener;
 import net.alexheavens.cs4099.network.MockUserNode;
 
 public class UserCodeTest {
@@ -38,8 +38,8 @@ public class UserCodeTest {
 			}
 		};
 
-		MockSimObserver observer = new MockSimObserver();
-		testNode.addObserver(observer);
+		MockSimListener listener = new MockSimListener();
+		testNode.addEventListener(listener);
 
 		try {
 			testNode.simulate(leaderBarrier, simProfiler);
@@ -54,9 +54,9 @@ public class UserCodeTest {
 
 		assertEquals(SimulationState.NODE_ERROR,
 				testNode.getSimulationState());
-		assertEquals(1, observer.updateCount());
-		assertTrue(observer.getUpdate(0) instanceof NodeFailureEvent);
-		NodeFailureEvent failureEvent = (NodeFailureEvent) observer
+		assertEquals(1, listener.updateCount());
+		assertTrue(listener.getUpdate(0) instanceof NodeFailureEvent);
+		NodeFailureEvent failureEvent = (NodeFailureEvent) listener
 				.getUpdate(0);
 		assertEquals(testNode, failureEvent.node());
 	}
@@ -65,7 +65,7 @@ public class UserCodeTest {
 	/**
 	 * Test that a user Node that throws a runtime exception in user code
 	 * correctly catches the exception and issues a NodeFailureEvent to any
-	 * observer.
+	 * listener.
 	 */
 	public void testSetupRuntimeException() {
 		testNode = new MockUserNode(32432) {
@@ -74,8 +74,8 @@ public class UserCodeTest {
 			}
 		};
 
-		MockSimObserver observer = new MockSimObserver();
-		testNode.addObserver(observer);
+		MockSimListener listener = new MockSimListener();
+		testNode.addEventListener(listener);
 
 		try {
 			testNode.simulate(leaderBarrier, simProfiler);
@@ -86,9 +86,9 @@ public class UserCodeTest {
 		while (testNode.getSimulationState() != SimulationState.NODE_ERROR) {
 		}
 
-		assertEquals(1, observer.updateCount());
-		assertTrue(observer.getUpdate(0) instanceof NodeFailureEvent);
-		NodeFailureEvent failureEvent = (NodeFailureEvent) observer
+		assertEquals(1, listener.updateCount());
+		assertTrue(listener.getUpdate(0) instanceof NodeFailureEvent);
+		NodeFailureEvent failureEvent = (NodeFailureEvent) listener
 				.getUpdate(0);
 		assertEquals(testNode, failureEvent.node());
 	}
@@ -5,9 +5,9 @@ import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
-import net.alexheavens.cs4099.concurrent.LeaderBarrier;
 import net.alexheavens.cs4099.network.Network;
 import net.alexheavens.cs4099.simulation.PrescribedEvent;
+import net.alexheavens.cs4099.simulation.SimulationCheckpoint;
 import net.alexheavens.cs4099.simulation.SimulationRunner;
 import net.alexheavens.cs4099.simulation.SimulationState;
 
@@ -30,7 +30,7 @@ public class PausableSimulationRunner extends SimulationRunner {
 		loopComplete = syncLock.newCondition();
 		loopBegun = syncLock.newCondition();
 		loopEntered = syncLock.newCondition();
-		pauseBarrier = new LeaderBarrier(simLoop, net.nodeCount());
+		pauseBarrier = createBarrier(simLoop);
 	}
 
 	public void simulateUntil(long toTimestep) {
@@ -71,6 +71,12 @@ public class PausableSimulationRunner extends SimulationRunner {
 		}
 	}
 
+	@Override
+	public synchronized void restore(SimulationCheckpoint checkpoint) {
+		super.restore(checkpoint);
+		visibleTimestep = checkpoint.timestep();
+	}
+
 	/**
 	 * @return The timestep that the simulation appears to have. This differs
 	 *         from its actual timestep, which can only increment to the
@@ -11,6 +11,7 @@ import net.alexheavens.cs4099.network.Network;
 import net.alexheavens.cs4099.network.Node;
 import net.alexheavens.cs4099.network.configuration.NetworkConfig;
 import net.alexheavens.cs4099.simulation.PrescribedEvent;
+import net.alexheavens.cs4099.simulation.SimulationCheckpoint;
 import net.alexheavens.cs4099.usercode.NodeScript;
 
 /**
@@ -120,6 +121,37 @@ public class TestSimulator {
 		}
 	}
 
+	/**
+	 * Captures the state of the simulation at its current timestep. Any
+	 * simulator of the same network and script can be returned to this state
+	 * with <code>reset(SimulationCheckpoint)</code>, any number of times, so
+	 * that the timesteps before it need only be simulated once.
+	 * 
+	 * @return The state of the simulation.
+	 * @throws IllegalStateException
+	 *             if the simulation has not begun.
+	 * @throws UnsupportedOperationException
+	 *             if the script is not event-driven, or its state is not
+	 *             Serializable.
+	 * @see SimulationCheckpoint
+	 */
+	public synchronized SimulationCheckpoint checkpoint() {
+		return simRunner.checkpoint();
+	}
+
+	/**
+	 * Returns the simulation to the state captured in a checkpoint.
+	 * 
+	 * @param checkpoint
+	 *            the state to return to.
+	 * @throws IllegalArgumentException
+	 *             if the checkpoint is of another network or script.
+	 */
+	public synchronized void reset(SimulationCheckpoint checkpoint) {
+		reset();
+		simRunner.restore(checkpoint);
+	}
+
 	private synchronized void resetInner() throws InstantiationException,
 			IllegalAccessException {
 		this.simRunner = new PausableSimulationRunner(new Network(scriptClass,
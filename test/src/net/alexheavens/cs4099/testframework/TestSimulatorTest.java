@@ -5,11 +5,17 @@ import static org.junit.Assert.*;
 import java.io.File;
 import java.io.IOException;
 import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
 
 import net.alexheavens.cs4099.examples.TreeLeaderNode;
+import net.alexheavens.cs4099.network.IMessageImpl;
 import net.alexheavens.cs4099.network.configuration.NetworkConfig;
 import net.alexheavens.cs4099.network.configuration.NetworkConfigException;
+import net.alexheavens.cs4099.simulation.SimulationCheckpoint;
 import net.alexheavens.cs4099.simulation.SimulationRunner;
+import net.alexheavens.cs4099.usercode.MockEventScript;
+import net.alexheavens.cs4099.usercode.MockTickScript;
 import net.alexheavens.cs4099.usercode.NodeScript;
 import net.sf.json.JSONException;
 
@@ -132,4 +138,110 @@ public class TestSimulatorTest {
 			assertEquals((i + 1) * jumpSize, testSim.getTimestep());
 		}
 	}
+
+	/*
+	 * The ticks and received numbers of each node of a simulation of
+	 * MockTickScript, by machine ID.
+	 */
+	private Map<Integer, String> tickState(TestSimulator sim) {
+		final Map<Integer, String> state = new TreeMap<Integer, String>();
+		for (NodeScript node : sim.getNodes()) {
+			final MockTickScript script = (MockTickScript) node;
+			state.put(script.machineId(), script.ticks() + " "
+					+ script.received());
+		}
+		return state;
+	}
+
+	@Test(timeout = 10000)
+	/**
+	 * Test that simulations reset to a checkpoint, repeatedly and by another
+	 * simulator, continue as the simulation checkpointed did.
+	 */
+	public void testResetToCheckpoint() throws InstantiationException,
+			IllegalAccessException {
+		final long checkpointStep = 31;
+		final long endStep = 70;
+		final TestSimulator tickSim = new TestSimulator(testNet,
+				MockTickScript.class);
+		tickSim.simulateTo(checkpointStep);
+		final Map<Integer, String> checkpointState = tickState(tickSim);
+		final SimulationCheckpoint checkpoint = tickSim.checkpoint();
+		assertEquals(checkpointStep, checkpoint.timestep());
+		assertEquals(testNet.nodeCount(), checkpoint.nodeCount());
+
+		tickSim.simulateTo(endStep);
+		final Map<Integer, String> endState = tickState(tickSim);
+		assertFalse(endState.equals(checkpointState));
+
+		for (int fork = 0; fork < 2; fork++) {
+			tickSim.reset(checkpoint);
+			assertEquals(checkpointStep, tickSim.getTimestep());
+			assertEquals(checkpointState, tickState(tickSim));
+			tickSim.simulateTo(endStep);
+			assertEquals(endState, tickState(tickSim));
+		}
+
+		final TestSimulator otherSim = new TestSimulator(testNet,
+				MockTickScript.class);
+		otherSim.reset(checkpoint);
+		otherSim.simulateTo(endStep);
+		assertEquals(endState, tickState(otherSim));
+	}
+
+	@Test(timeout = 10000)
+	/**
+	 * Test that messages held by scripts are recreated between the nodes of
+	 * the simulation reset to a checkpoint.
+	 */
+	public void testCheckpointMessages() throws InstantiationException,
+			IllegalAccessException {
+		final TestSimulator tickSim = new TestSimulator(testNet,
+				MockTickScript.class);
+		tickSim.simulateTo(40);
+		final SimulationCheckpoint checkpoint = tickSim.checkpoint();
+
+		final TestSimulator otherSim = new TestSimulator(testNet,
+				MockTickScript.class);
+		otherSim.reset(checkpoint);
+		for (NodeScript node : otherSim.getNodes()) {
+			final MockTickScript script = (MockTickScript) node;
+			final IMessageImpl<?> message = (IMessageImpl<?>) script
+					.lastMessage();
+			assertNotNull(message);
+			assertEquals(script.machineId(), message.target().getMachineId());
+			assertTrue(message.getArrivedAt() > message.getSentAt());
+			assertTrue(message.getArrivedAt() <= 40);
+		}
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	/**
+	 * Test that simulations of nodes with Threads of their own cannot be
+	 * checkpointed.
+	 */
+	public void testCheckpointThreadedNodes() {
+		testSim.simulateTo(10);
+		testSim.checkpoint();
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testCheckpointBeforeSimulation() {
+		testSim.checkpoint();
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	/**
+	 * Test that a checkpoint cannot be restored to a simulation of another
+	 * script.
+	 */
+	public void testResetToOtherScript() throws InstantiationException,
+			IllegalAccessException {
+		final TestSimulator tickSim = new TestSimulator(testNet,
+				MockTickScript.class);
+		tickSim.simulateTo(10);
+		final TestSimulator eventSim = new TestSimulator(testNet,
+				MockEventScript.class);
+		eventSim.reset(tickSim.checkpoint());
+	}
 }
@@ -0,0 +1,19 @@
+package net.alexheavens.cs4099.usercode;
+
+import java.math.BigInteger;
+
+/**
+ * A script whose initiator spends its time in a single call to the class
+ * library, making no back edge or method entry of its own while it does, so
+ * is never charged for it by an {@link InstructionBudget}.
+ */
+public class MockBusyScript extends NodeScript {
+
+	public static final int BUSY_EXPONENT = 4000000;
+
+	@Override
+	public void execute() {
+		if (isInitiator())
+			BigInteger.valueOf(3).pow(BUSY_EXPONENT);
+	}
+}
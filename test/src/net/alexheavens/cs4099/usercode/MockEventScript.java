@@ -0,0 +1,48 @@
+package net.alexheavens.cs4099.usercode;
+
+import net.alexheavens.cs4099.network.IMessage;
+import net.alexheavens.cs4099.network.StringMessage;
+
+public class MockEventScript extends EventNodeScript {
+
+	public static final long DEFAULT_PAUSE_TIME = 20;
+	public static final int DEFAULT_PAUSE_COUNT = 2;
+
+	private boolean visited = false;
+	private int receivedCount = 0;
+	private int wakeCount = 0;
+
+	public void onStart() {
+		if (machineId() == 0) {
+			sendAll(new StringMessage("HELLO"));
+			visited = true;
+		}
+		pause(DEFAULT_PAUSE_TIME);
+	}
+
+	public void onMessage(IMessage<?> message, int fromIndex) {
+		receivedCount++;
+		if (!visited) {
+			sendAll(message);
+			visited = true;
+		}
+	}
+
+	public void onWake() {
+		wakeCount++;
+		if (wakeCount < DEFAULT_PAUSE_COUNT)
+			pause(DEFAULT_PAUSE_TIME);
+	}
+
+	public boolean visited() {
+		return visited;
+	}
+
+	public int receivedCount() {
+		return receivedCount;
+	}
+
+	public int wakeCount() {
+		return wakeCount;
+	}
+}
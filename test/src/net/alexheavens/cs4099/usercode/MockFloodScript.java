@@ -0,0 +1,14 @@
+package net.alexheavens.cs4099.usercode;
+
+import net.alexheavens.cs4099.network.NumericMessage;
+
+public class MockFloodScript extends NodeScript {
+
+	@Override
+	public void execute() {
+		sendAll(new NumericMessage(machineId()));
+		for (int i = 0; i < neighbourCount(); i++)
+			receive();
+	}
+
+}
@@ -0,0 +1,70 @@
+package net.alexheavens.cs4099.usercode;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Loads an instrumented copy of a compiled script class, as a
+ * {@link DynamicClassLoader} counting back edges would load it from source.
+ */
+public class MockInstrumentingLoader extends ClassLoader {
+
+	private final String className;
+
+	private MockInstrumentingLoader(Class<?> scriptClass) {
+		super(scriptClass.getClassLoader());
+		className = scriptClass.getName();
+	}
+
+	/**
+	 * @param scriptClass
+	 *            a compiled script class.
+	 * @return A copy of the class that counts its back edges.
+	 */
+	public static <T extends NodeScript> Class<? extends NodeScript> instrument(
+			Class<T> scriptClass) {
+		try {
+			return new MockInstrumentingLoader(scriptClass).loadClass(
+					scriptClass.getName()).asSubclass(NodeScript.class);
+		} catch (ClassNotFoundException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	@Override
+	protected Class<?> loadClass(String name, boolean resolve)
+			throws ClassNotFoundException {
+		if (!name.equals(className))
+			return super.loadClass(name, resolve);
+		synchronized (getClassLoadingLock(name)) {
+			Class<?> loaded = findLoadedClass(name);
+			if (loaded == null) {
+				final byte[] classBytes = ScriptInstrumenter
+						.instrument(readClass(name));
+				loaded = defineClass(name, classBytes, 0, classBytes.length);
+			}
+			if (resolve)
+				resolveClass(loaded);
+			return loaded;
+		}
+	}
+
+	private byte[] readClass(String name) throws ClassNotFoundException {
+		final InputStream in = getParent().getResourceAsStream(
+				name.replace('.', '/') + ".class");
+		if (in == null)
+			throw new ClassNotFoundException(name);
+		try {
+			final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			final byte[] buffer = new byte[4096];
+			int read;
+			while ((read = in.read(buffer)) != -1)
+				bytes.write(buffer, 0, read);
+			in.close();
+			return bytes.toByteArray();
+		} catch (IOException e) {
+			throw new ClassNotFoundException(name, e);
+		}
+	}
+}
@@ -0,0 +1,41 @@
+package net.alexheavens.cs4099.usercode;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import net.alexheavens.cs4099.network.IMessage;
+import net.alexheavens.cs4099.network.NumericMessage;
+
+/**
+ * Every node other than the initiator sends two numbered messages to each
+ * neighbour as it starts; the initiator keeps the numbers it receives, in the
+ * order it receives them.
+ */
+public class MockOrderScript extends EventNodeScript implements Serializable {
+
+	public static final int MESSAGES_SENT = 2;
+
+	private static final long serialVersionUID = 1L;
+
+	private final List<Integer> received = new ArrayList<Integer>();
+
+	public void onStart() {
+		if (isInitiator())
+			return;
+		for (int i = 1; i <= MESSAGES_SENT; i++)
+			sendAll(new NumericMessage(machineId() * 10 + i));
+	}
+
+	public void onMessage(IMessage<?> message, int fromIndex) {
+		received.add(((NumericMessage) message).getData().intValue());
+	}
+
+	/**
+	 * @return The numbers received, in the order they were received.
+	 */
+	public List<Integer> received() {
+		return Collections.unmodifiableList(received);
+	}
+}
@@ -0,0 +1,47 @@
+package net.alexheavens.cs4099.usercode;
+
+import net.alexheavens.cs4099.network.IMessage;
+import net.alexheavens.cs4099.network.NumericMessage;
+
+/**
+ * Relays each message it receives onward for a number of hops, and reports the
+ * messages it has received whenever it wakes from one of several pauses. Its
+ * events do not depend on the order of the messages arriving in a timestep.
+ */
+public class MockRelayScript extends EventNodeScript {
+
+	public static final int HOPS = 6;
+	public static final long PAUSE_TIME = 3;
+	public static final int WAKES = 4;
+
+	private int received = 0;
+	private int wakes = 0;
+	private int[] receivedFrom;
+
+	public void onStart() {
+		receivedFrom = new int[neighbourCount()];
+		sendAll(new NumericMessage(0));
+		if (machineId() % 2 == 0)
+			pause(PAUSE_TIME + machineId() % 3);
+	}
+
+	public void onMessage(IMessage<?> message, int fromIndex) {
+		received++;
+		receivedFrom[fromIndex]++;
+		final int hops = ((Number) message.getData()).intValue();
+		if (hops < HOPS)
+			send((hops + machineId()) % neighbourCount(), new NumericMessage(
+					hops + 1));
+	}
+
+	public void onWake() {
+		wakes++;
+		send(0, new NumericMessage(HOPS + received * 100 + receivedFrom[0]));
+		if (wakes < WAKES)
+			pause(PAUSE_TIME);
+	}
+
+	public int receivedCount() {
+		return received;
+	}
+}
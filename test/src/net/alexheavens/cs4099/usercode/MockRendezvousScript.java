@@ -0,0 +1,49 @@
+package net.alexheavens.cs4099.usercode;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pauses for a timestep, then waits for every other node of the network to
+ * wake as well. The nodes only meet if those woken in the same timestep
+ * execute at the same time.
+ */
+public class MockRendezvousScript extends NodeScript {
+
+	public static final long WAIT_MILLIS = 2000;
+
+	private static CountDownLatch woken;
+	private static final AtomicInteger met = new AtomicInteger(0);
+
+	/**
+	 * Prepares for a network of nodes to meet.
+	 * 
+	 * @param nodes
+	 *            the number of nodes in the network.
+	 */
+	public static void reset(int nodes) {
+		woken = new CountDownLatch(nodes);
+		met.set(0);
+	}
+
+	/**
+	 * @return The number of nodes that met every other.
+	 */
+	public static int metCount() {
+		return met.get();
+	}
+
+	@Override
+	public void execute() {
+		pause(1);
+		woken.countDown();
+		try {
+			if (woken.await(WAIT_MILLIS, TimeUnit.MILLISECONDS))
+				met.incrementAndGet();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+}
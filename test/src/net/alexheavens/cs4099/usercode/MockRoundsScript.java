@@ -0,0 +1,22 @@
+package net.alexheavens.cs4099.usercode;
+
+import net.alexheavens.cs4099.network.NumericMessage;
+
+/**
+ * Exchanges a message with every neighbour in each of several rounds, waiting
+ * for those of its neighbours before beginning the next.
+ */
+public class MockRoundsScript extends NodeScript {
+
+	public static final int ROUNDS = 4;
+
+	@Override
+	public void execute() {
+		for (int round = 0; round < ROUNDS; round++) {
+			sendAll(new NumericMessage(machineId() * ROUNDS + round));
+			for (int i = 0; i < neighbourCount(); i++)
+				receive();
+		}
+	}
+
+}
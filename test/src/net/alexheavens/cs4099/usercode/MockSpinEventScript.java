@@ -0,0 +1,32 @@
+package net.alexheavens.cs4099.usercode;
+
+import net.alexheavens.cs4099.network.IMessage;
+
+/**
+ * An event-driven script whose initiator loops forever once started, so is
+ * timed out, while every other node pauses as a {@link MockEventScript}.
+ */
+public class MockSpinEventScript extends EventNodeScript {
+
+	private long spins = 0;
+	private int wakeCount = 0;
+
+	public void onStart() {
+		while (isInitiator())
+			spins++;
+		pause(MockEventScript.DEFAULT_PAUSE_TIME);
+	}
+
+	public void onMessage(IMessage<?> message, int fromIndex) {
+	}
+
+	public void onWake() {
+		wakeCount++;
+		if (wakeCount < MockEventScript.DEFAULT_PAUSE_COUNT)
+			pause(MockEventScript.DEFAULT_PAUSE_TIME);
+	}
+
+	public int wakeCount() {
+		return wakeCount;
+	}
+}
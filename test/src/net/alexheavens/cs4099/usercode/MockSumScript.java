@@ -0,0 +1,31 @@
+package net.alexheavens.cs4099.usercode;
+
+import java.io.Serializable;
+
+import net.alexheavens.cs4099.network.IMessage;
+import net.alexheavens.cs4099.network.NumericMessage;
+
+/**
+ * Every node other than the initiator sends its machine ID to each neighbour
+ * as it starts; the initiator keeps only the sum of those it receives, so
+ * ends in the same state whatever order they arrive in.
+ */
+public class MockSumScript extends EventNodeScript implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private int sum = 0;
+
+	public void onStart() {
+		if (!isInitiator())
+			sendAll(new NumericMessage(machineId()));
+	}
+
+	public void onMessage(IMessage<?> message, int fromIndex) {
+		sum += ((NumericMessage) message).getData().intValue();
+	}
+
+	public int sum() {
+		return sum;
+	}
+}
@@ -0,0 +1,57 @@
+package net.alexheavens.cs4099.usercode;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import net.alexheavens.cs4099.network.IMessage;
+import net.alexheavens.cs4099.network.NumericMessage;
+
+/**
+ * Sends a numbered message to every neighbour each time it wakes from a pause,
+ * and pauses again on receiving a message, keeping every number it receives.
+ * Its state can be checkpointed.
+ */
+public class MockTickScript extends EventNodeScript implements Serializable {
+
+	public static final long PERIOD = 3;
+
+	private static final long serialVersionUID = 1L;
+
+	private int ticks = 0;
+	private final List<Integer> received = new ArrayList<Integer>();
+	private IMessage<?> lastMessage = null;
+
+	public void onStart() {
+		pause(PERIOD);
+	}
+
+	public void onMessage(IMessage<?> message, int fromIndex) {
+		received.add(((NumericMessage) message).getData().intValue());
+		lastMessage = message;
+		pause(PERIOD);
+	}
+
+	public void onWake() {
+		ticks++;
+		sendAll(new NumericMessage(machineId() * 1000 + ticks));
+	}
+
+	public int ticks() {
+		return ticks;
+	}
+
+	/**
+	 * @return The numbers received, in ascending order.
+	 */
+	public List<Integer> received() {
+		final List<Integer> sorted = new ArrayList<Integer>(received);
+		Collections.sort(sorted);
+		return sorted;
+	}
+
+	public IMessage<?> lastMessage() {
+		return lastMessage;
+	}
+}
@@ -0,0 +1,31 @@
+package net.alexheavens.cs4099.usercode;
+
+import net.alexheavens.cs4099.network.NumericMessage;
+
+/**
+ * Exchanges a message with every neighbour in each of several rounds, as
+ * {@link MockRoundsScript}, except that the initiator loops forever once it
+ * has sent in the round <code>LOOPING_ROUND</code>, so is timed out.
+ */
+public class MockTimeoutScript extends NodeScript {
+
+	public static final int ROUNDS = 4;
+	public static final int LOOPING_ROUND = 2;
+
+	private long spins = 0;
+
+	@Override
+	public void execute() {
+		for (int round = 0; round < ROUNDS; round++) {
+			sendAll(new NumericMessage(machineId() * ROUNDS + round));
+			while (isInitiator() && round == LOOPING_ROUND)
+				spins++;
+			for (int i = 0; i < neighbourCount(); i++)
+				receive();
+		}
+	}
+
+	public long spins() {
+		return spins;
+	}
+}
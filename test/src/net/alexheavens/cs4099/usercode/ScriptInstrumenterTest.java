@@ -0,0 +1,175 @@
+package net.alexheavens.cs4099.usercode;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+
+import net.alexheavens.cs4099.network.Network;
+import net.alexheavens.cs4099.network.Node;
+import net.alexheavens.cs4099.network.configuration.NetworkConfig;
+import net.alexheavens.cs4099.network.configuration.NetworkConfigFactory;
+import net.alexheavens.cs4099.simulation.SimulationRecording;
+import net.alexheavens.cs4099.simulation.SimulationResults;
+import net.alexheavens.cs4099.simulation.SimulationRunner;
+import net.alexheavens.cs4099.simulation.SimulationState;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class ScriptInstrumenterTest {
+
+	private static final long SIM_LENGTH = 100;
+	private static final long BUDGET = 10000;
+	private static final long RECURSION_BUDGET = 1000;
+
+	private NetworkConfig treeConfig;
+
+	@Before
+	public void setup() {
+		treeConfig = new NetworkConfigFactory().createTreeNetwork(3, 3);
+	}
+
+	private static Class<? extends NodeScript> loadSpinningNode(
+			boolean countBackEdges) throws Exception {
+		return loadNode("SpinningNode", countBackEdges);
+	}
+
+	private static Class<? extends NodeScript> loadNode(String name,
+			boolean countBackEdges) throws Exception {
+		return new DynamicClassLoader(countBackEdges).loadClass(
+				new File("test/node_scripts/" + name + ".java")).asSubclass(
+				NodeScript.class);
+	}
+
+	private static long spinsOf(Node node) throws Exception {
+		return longFieldOf(node, "spins");
+	}
+
+	private static long longFieldOf(Node node, String field) throws Exception {
+		final NodeScript script = node.getScript();
+		return script.getClass().getField(field).getLong(script);
+	}
+
+	private static Node initiatorOf(Network net) {
+		for (Node node : net.nodes()) {
+			if (node.isInitiator())
+				return node;
+		}
+		throw new IllegalStateException("Network has no initiator.");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInstrumentNull() {
+		ScriptInstrumenter.instrument(null);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInstrumentMalformed() {
+		ScriptInstrumenter.instrument(new byte[] { (byte) 0xCA, (byte) 0xFE,
+				(byte) 0xBA, (byte) 0xBE, 0, 0, 0, 50, 0, 9 });
+	}
+
+	@Test
+	/**
+	 * Tests that only a class loaded with its back edges counted is marked as
+	 * instrumented.
+	 */
+	public void testInstrumentedClassMarked() throws Exception {
+		assertTrue(ScriptInstrumenter.isInstrumented(loadSpinningNode(true)));
+		assertFalse(ScriptInstrumenter.isInstrumented(loadSpinningNode(false)));
+		assertFalse(ScriptInstrumenter.isInstrumented(MockRoundsScript.class));
+	}
+
+	@Test(timeout = 20000)
+	/**
+	 * Tests that a node spinning forever exhausts its budget at the same
+	 * iteration in every simulation, and is timed out.
+	 */
+	public void testSpinningNodeExhaustsBudget() throws Exception {
+		final Class<? extends NodeScript> spinningNode = loadSpinningNode(true);
+		long spins = -1;
+		for (int run = 0; run < 2; run++) {
+			final Network net = new Network(spinningNode, treeConfig, true);
+			final SimulationRunner runner = new SimulationRunner(net,
+					SIM_LENGTH);
+			runner.setInstructionBudget(BUDGET);
+			runner.simulate();
+			final long runSpins = spinsOf(initiatorOf(net));
+			if (run > 0)
+				assertEquals(spins, runSpins);
+			spins = runSpins;
+			assertEquals(BUDGET, runner.recording().instructionBudget());
+		}
+
+		// The entry to execute is charged, and each jump back to the body.
+		assertEquals(BUDGET, spins);
+	}
+
+	@Test(timeout = 20000)
+	/**
+	 * Tests that a node recursing without a loop exhausts its budget at the
+	 * same depth in every simulation, and is timed out.
+	 */
+	public void testRecursingNodeExhaustsBudget() throws Exception {
+		final Class<? extends NodeScript> recursingNode = loadNode(
+				"RecursingNode", true);
+		final Network net = new Network(recursingNode, treeConfig, true);
+		final SimulationRunner runner = new SimulationRunner(net, SIM_LENGTH);
+		runner.setInstructionBudget(RECURSION_BUDGET);
+		runner.simulate();
+
+		// Each call is charged on entry, after the entry to execute.
+		assertEquals(RECURSION_BUDGET - 1, longFieldOf(initiatorOf(net),
+				"depth"));
+	}
+
+	@Test(timeout = 20000)
+	/**
+	 * Tests that a replayed simulation enforces the budget it recorded.
+	 */
+	public void testReplayBudget() throws Exception {
+		final Class<? extends NodeScript> spinningNode = loadSpinningNode(true);
+		final Network net = new Network(spinningNode, treeConfig, true);
+		final SimulationRunner runner = new SimulationRunner(net, SIM_LENGTH);
+		runner.setInstructionBudget(BUDGET);
+		final SimulationResults results = runner.simulate();
+		final SimulationRecording recording = new SimulationRecording(runner
+				.recording().toJSONObject());
+		assertEquals(BUDGET, recording.instructionBudget());
+
+		final Network replayNet = recording.createNetwork(spinningNode,
+				treeConfig);
+		final SimulationResults replayed = new SimulationRunner(replayNet,
+				recording).simulate();
+		assertEquals(BUDGET, spinsOf(initiatorOf(replayNet)));
+		assertEquals(results.getTerminationTimestep(), replayed
+				.getTerminationTimestep());
+	}
+
+	@Test(timeout = 20000)
+	/**
+	 * Tests that a script that makes few loop iterations ends as it would
+	 * without a budget.
+	 */
+	public void testBudgetNotExhausted() throws Exception {
+		final SimulationState[] unlimited = simulateRounds(0);
+		final SimulationState[] limited = simulateRounds(BUDGET);
+		for (int i = 0; i < unlimited.length; i++)
+			assertEquals(unlimited[i], limited[i]);
+	}
+
+	private SimulationState[] simulateRounds(long budget) throws Exception {
+		final Network net = new Network(MockRoundsScript.class, treeConfig,
+				true);
+		final SimulationRunner runner = new SimulationRunner(net, SIM_LENGTH);
+		if (budget > 0)
+			runner.setInstructionBudget(budget);
+		runner.simulate();
+		final SimulationState[] states = new SimulationState[net.nodeCount()];
+		for (int i = 0; i < states.length; i++)
+			states[i] = net.nodes().get(i).getSimulationState();
+		return states;
+	}
+}